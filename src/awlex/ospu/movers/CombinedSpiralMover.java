@@ -23,9 +23,14 @@ public class CombinedSpiralMover extends Mover {
     private int halfTime;
     private int startTime;
     private int endTime;
+    private AutoMoverFactory fallback;
 
-    public CombinedSpiralMover(GameObject middle, GameObject start, GameObject end, int dir) {
+    /**
+     * @param fallback factory for the inner movers that are too short for a spiral
+     */
+    public CombinedSpiralMover(GameObject middle, GameObject start, GameObject end, int dir, AutoMoverFactory fallback) {
         super(start, end, dir);
+        this.fallback = fallback;
         fakeObject = middle != null ? middle : new FakeGameObject(start, end);
 
         halfTime = fakeObject.getEndTime();
@@ -37,8 +42,8 @@ public class CombinedSpiralMover extends Mover {
         movers[1] = bestPick(1, fakeObject, end, dir);
     }
 
-    public CombinedSpiralMover(GameObject start, GameObject end, int dir) {
-        this(null, start, end, dir);
+    public CombinedSpiralMover(GameObject start, GameObject end, int dir, AutoMoverFactory fallback) {
+        this(null, start, end, dir, fallback);
     }
 
     /**
@@ -55,7 +60,7 @@ public class CombinedSpiralMover extends Mover {
     private Mover bestPick(int pos, GameObject start, GameObject end, int dir) {
 
         if (endTime - startTime < 10 || Utils.distance(start.end.x, start.end.y, end.start.x, end.start.y) < 40)
-            return new AutoMoverFactory().create(start, end, dir);
+            return fallback.create(start, end, dir);
 
         SpiralToMover spiralTo = new SpiralToMover(start, end, dir);
         CentralSpiralMover center = new CentralSpiralMover(start, end, dir);
@@ -72,7 +77,7 @@ public class CombinedSpiralMover extends Mover {
                 return spiralTo;
         } else throw new IllegalStateException("Only 2 inner Movers allowed");
 
-        return new CombinedSpiralMover(start, end, dir);
+        return new CombinedSpiralMover(start, end, dir, fallback);
     }
 
 
@@ -3,7 +3,9 @@ package awlex.ospu.movers.factories;
 import awlex.ospu.FakeGameObject;
 import awlex.ospu.movers.CombinedSpiralMover;
 import itdelatrisu.opsu.objects.GameObject;
+import yugecin.opsudance.DanceConfig;
 import yugecin.opsudance.movers.Mover;
+import yugecin.opsudance.movers.factories.AutoMoverFactory;
 import yugecin.opsudance.movers.factories.MoverFactory;
 
 /**
@@ -11,13 +13,20 @@ import yugecin.opsudance.movers.factories.MoverFactory;
  */
 public class CenterSpiralMoverFactory implements MoverFactory {
 
-    private static FakeGameObject middle;
+    private FakeGameObject middle;
+    private final AutoMoverFactory fallback = new AutoMoverFactory();
+
     @Override
     public Mover create(GameObject start, GameObject end, int dir) {
         if (middle == null)
             middle = new FakeGameObject();
         middle.setTime(start.getEndTime() + (end.getTime() - start.getEndTime()) / 2);
-        return new CombinedSpiralMover(middle, start, end, dir);
+        return new CombinedSpiralMover(middle, start, end, dir, fallback);
+    }
+
+    @Override
+    public void setConfig(DanceConfig config) {
+        fallback.setConfig(config);
     }
 
     @Override
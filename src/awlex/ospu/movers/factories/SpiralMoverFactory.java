@@ -5,8 +5,10 @@ import itdelatrisu.opsu.Utils;
 import itdelatrisu.opsu.objects.GameObject;
 import awlex.ospu.movers.CentralSpiralMover;
 import awlex.ospu.movers.CombinedSpiralMover;
+import yugecin.opsudance.DanceConfig;
 import yugecin.opsudance.movers.Mover;
 import awlex.ospu.movers.SpiralToMover;
+import yugecin.opsudance.movers.factories.AutoMoverFactory;
 import yugecin.opsudance.movers.factories.MoverFactory;
 
 /**
@@ -17,6 +19,7 @@ public class SpiralMoverFactory implements MoverFactory {
 
     private int startTime;
     private int endTime;
+    private final AutoMoverFactory fallback = new AutoMoverFactory();
 
     /**
      * This method will return either a {@link CentralSpiralMover}, {@link SpiralToMover} or
@@ -48,7 +51,7 @@ public class SpiralMoverFactory implements MoverFactory {
             else if (inBounds(spiralTo) || inBounds(spiralTo = new SpiralToMover(start, end, -dir)))
                 return spiralTo;
         }
-        return new CombinedSpiralMover(start, end, dir);
+        return new CombinedSpiralMover(start, end, dir, fallback);
     }
 
     /**
@@ -90,6 +93,11 @@ public class SpiralMoverFactory implements MoverFactory {
         return 0 < pos[0] && pos[0] < Options.width && 0 < pos[1] && pos[1] < Options.height;
     }
 
+    @Override
+    public void setConfig(DanceConfig config) {
+        fallback.setConfig(config);
+    }
+
     @Override
     public String toString() {
         return "Spiral me right round, baby";
@@ -1,9 +1,6 @@
 package awlex.ospu.polymover;
 
-import Jama.Matrix;
-import itdelatrisu.opsu.objects.Circle;
 import itdelatrisu.opsu.objects.GameObject;
-import itdelatrisu.opsu.objects.Slider;
 
 import static java.lang.Math.*;
 
@@ -13,6 +10,8 @@ import static java.lang.Math.*;
 public class ArcMover implements PolyMover {
 
 	public static final int ITEMS_NEEDED = 3;
+	/** sine of the smallest angle at p1 for which the points are not treated as collinear */
+	private static final double COLLINEAR_EPSILON = 1e-6;
 	private GameObject p1, middle, p2;
 	private double xm, ym, r, alpha, beta, gamma;
 	
@@ -24,17 +23,25 @@ public class ArcMover implements PolyMover {
 	}
 	
 	private void init() {
-		Matrix m = prepareMatrix(p1, middle, p2);
-		xm = m.get(1, 0) * 0.5;
-		ym = m.get(2, 0) * 0.5;
-		r = sqrt(pow(xm, 2) + pow(ym, 2) - m.get(0, 0));
+		// circumcircle, relative to p1 to keep the products small
+		double ax = p1.end.x, ay = p1.end.y;
+		double bx = middle.start.x - ax, by = middle.start.y - ay;
+		double cx = p2.start.x - ax, cy = p2.start.y - ay;
+		double d = 2 * (bx * cy - by * cx);
+		double b2 = bx * bx + by * by;
+		double c2 = cx * cx + cy * cy;
+		double ux = (cy * b2 - by * c2) / d;
+		double uy = (bx * c2 - cx * b2) / d;
+		xm = ax + ux;
+		ym = ay + uy;
+		r = sqrt(ux * ux + uy * uy);
 		alpha = atan2(p1.end.y - ym, p1.end.x - xm);
 		beta = atan2(middle.start.y - ym, middle.start.x - xm);
 		gamma = atan2(p2.start.y - ym, p2.start.x - xm);
 	}
 	
 	@Override
-	public double[] getPointAt(int time) {
+	public double[] getPointAt(int time, double[] out) {
 		double angle;
 		if (time < middle.getTime()) {
 			double percent = ((double) time - p1.getEndTime()) / ((middle.getTime() - p1.getEndTime()));
@@ -43,10 +50,9 @@ public class ArcMover implements PolyMover {
 		else {
 			angle = beta + (gamma - beta) * ((double) time - middle.getTime()) / (p2.getTime() - middle.getTime());
 		}
-		return new double[]{
-			xm + r * cos(angle),
-			ym + r * sin(angle)
-		};
+		out[0] = xm + r * cos(angle);
+		out[1] = ym + r * sin(angle);
+		return out;
 	}
 	
 	@Override
@@ -58,45 +64,15 @@ public class ArcMover implements PolyMover {
 		};
 	}
 
-	private static Matrix prepareMatrix(GameObject p1, GameObject middle, GameObject p2) {
-		Matrix a, b;
-
-		//if (!p2.isSlider()) {
-			a = new Matrix(new double[][]{
-				{1, -p1.end.x, -p1.end.y},
-				{1, -middle.start.x, -middle.start.y},
-				{1, -p2.start.x, -p2.start.y}
-			});
-			b = new Matrix(new double[][]{
-				{-(pow(p1.end.x, 2) + pow(p1.end.y, 2))},
-				{-(pow(middle.start.x, 2) + pow(middle.start.y, 2))},
-				{-(pow(p2.start.x, 2) + pow(p2.start.y, 2))},
-			});
-		/*
-		} else {
-			Circle c = ((Slider) p2).getTickPositionCircles()[0];
-			a = new Matrix(new double[][]{
-				{1, -p1.end.x, -p1.end.y},
-				{1, -middle.start.x, -middle.start.y},
-				{1, -c.start.x, -c.start.y}
-			});
-			b = new Matrix(new double[][]{
-				{-(pow(p1.end.x, 2) + pow(p1.end.y, 2))},
-				{-(pow(middle.start.x, 2) + pow(middle.start.y, 2))},
-				{-(pow(c.start.x, 2) + pow(c.start.y, 2))},
-			});
-		}
-		*/
-		return a.solve(b);
-	}
-	
+	/**
+	 * A circle only exists through three points that are not (nearly) collinear,
+	 * otherwise the center would be (nearly) at infinity.
+	 */
 	public static boolean canCricleExistBetweenItems(GameObject p1, GameObject p2, GameObject p3) {
-		try {
-			prepareMatrix(p1, p2, p3);
-		} catch (RuntimeException e) {
-			return false;
-		}
-		return true;
+		double bx = p2.start.x - p1.end.x, by = p2.start.y - p1.end.y;
+		double cx = p3.start.x - p1.end.x, cy = p3.start.y - p1.end.y;
+		double cross = bx * cy - by * cx;
+		return abs(cross) > COLLINEAR_EPSILON * sqrt((bx * bx + by * by) * (cx * cx + cy * cy));
 	}
 
 	@Override
@@ -30,10 +30,10 @@ public class LineMover implements PolyMover {
 	}
 
 	@Override
-	public double[] getPointAt(int time) {
-		if (objects[currentIndex].getEndTime() < time)
+	public double[] getPointAt(int time, double[] out) {
+		if (objects[currentIndex].getEndTime() < time && m.getEnd() != objects[currentIndex + 1])
 			m = new LinearMover(objects[currentIndex], objects[currentIndex + 1], 1);
-		return m.getPointAt(time);
+		return m.getPointAt(time, out);
 	}
 	
 	@Override
@@ -7,7 +7,11 @@ import itdelatrisu.opsu.objects.GameObject;
  */
 public interface PolyMover {
 
-	double[] getPointAt(int time);
+	/**
+	 * @param out receives [x, y]
+	 * @return out
+	 */
+	double[] getPointAt(int time, double[] out);
 
 	GameObject[] getItems();
 
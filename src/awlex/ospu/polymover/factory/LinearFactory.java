@@ -11,8 +11,8 @@ public class LinearFactory extends PolyMoverFactory {
 	public final static int PREFFERED_BUFFER_SIZE = 2;
 
 	@Override
-	public double[] getPointAt(int time) {
-		return getCurrent().getPointAt(time);
+	public double[] getPointAt(int time, double[] out) {
+		return getCurrent().getPointAt(time, out);
 	}
 
 	@Override
@@ -16,6 +16,7 @@ import java.util.List;
 public abstract class PolyMoverFactory implements MoverFactory {
 
 	private LinkedList<PolyMover> movers;
+	private final double[] point = new double[2];
 	private int latestIndex;
 
 	public PolyMoverFactory() {
@@ -24,22 +25,23 @@ public abstract class PolyMoverFactory implements MoverFactory {
 
 	/**
 	 * @param time point in time whose cursor position has to be calculated
-	 * @return [x, y]
+	 * @param out receives [x, y]
+	 * @return out
 	 */
-	public double[] getPointAt(int time) {
-		double[] ret = new double[2];
+	public double[] getPointAt(int time, double[] out) {
+		double x = 0, y = 0;
 		int i = 0;
-		while (i < movers.size()) {
-			if (movers.get(i).getLastItem().getEndTime() < time)
+		for (PolyMover mover : movers) {
+			if (mover.getLastItem().getEndTime() < time)
 				break;
-			double[] point = movers.get(i).getPointAt(time);
-			ret[0] += point[0];
-			ret[1] += point[1];
+			mover.getPointAt(time, point);
+			x += point[0];
+			y += point[1];
 			i++;
 		}
-		ret[0] /= i;
-		ret[1] /= i;
-		return ret;
+		out[0] = x / i;
+		out[1] = y / i;
+		return out;
 	}
 
 	@Override
@@ -129,4 +131,12 @@ public abstract class PolyMoverFactory implements MoverFactory {
 		return latestIndex;
 	}
 
+	/**
+	 * Drops the movers of the previous dance, so the next one starts over with {@link #create(GameObject[], int)}.
+	 */
+	public void reset() {
+		movers.clear();
+		latestIndex = 0;
+	}
+
 }
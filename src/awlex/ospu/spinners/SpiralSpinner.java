@@ -31,14 +31,17 @@ public class SpiralSpinner extends Spinner {
      * Positive = counter clockwise
      */
     private final double DELTA = -Math.PI / 20;
+    /**
+     * How many points the Spinner goes through before it looks the same again.
+     * Every bounce (from the center out and back) rotates all points twice by DELTA,
+     * so after 20 bounces they made a full turn.
+     */
+    private final int PERIOD = 20 * 2 * (SIZE - 1);
     private int MAX_RAD;
-    private int index;
-    double[][] points;
-    boolean down;
 
     @Override
     public void init() {
-        points = new double[SIZE][];
+        double[][] points = new double[SIZE][];
         double ang;
         double rad;
         for (int i = 0; i < SIZE / 2; i++) {
@@ -56,16 +59,13 @@ public class SpiralSpinner extends Spinner {
                     offsetY + rad * -Math.sin(ang)
             };
         }
-    }
-
-    @Override
-    public String toString() {
-        return "Spiralspinner";
-    }
 
-    @Override
-    public double[] getPoint() {
-        //if (waitForDelay()) {
+        // walk through the spinner once and remember where it went
+        double[] xs = new double[PERIOD];
+        double[] ys = new double[PERIOD];
+        int index = 0;
+        boolean down = false;
+        for (int i = 0; i < PERIOD; i++) {
             if (down) {
                 if (--index == 0)
                     down = !down;
@@ -77,9 +77,16 @@ public class SpiralSpinner extends Spinner {
             } else if (down && index == SIZE - 2) {
                 rotatePointAroundCenter(points[SIZE - 1], DELTA);
             }
-        //}
-        rotatePointAroundCenter(points[index], DELTA);
-        return points[index];
+            rotatePointAroundCenter(points[index], DELTA);
+            xs[i] = points[index][0];
+            ys[i] = points[index][1];
+        }
+        init(xs, ys, 0);
+    }
+
+    @Override
+    public String toString() {
+        return "Spiralspinner";
     }
 
     private void rotatePointAroundCenter(double[] point, double beta) {
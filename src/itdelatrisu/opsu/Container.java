@@ -32,6 +32,7 @@ import org.newdawn.slick.AppGameContainer;
 import org.newdawn.slick.Game;
 import org.newdawn.slick.SlickException;
 import org.newdawn.slick.opengl.InternalTextureLoader;
+import yugecin.opsudance.SimulationClock;
 
 /**
  * AppGameContainer extension that sends critical errors to ErrorHandler.
@@ -93,6 +94,8 @@ public class Container extends AppGameContainer {
 			try { Thread.sleep(100); } catch (Exception e) {}
 		} else {
 			try {
+				delta = SimulationClock.instance.nextFrame(delta);
+				MusicController.updateClock();
 				updateAndRender(delta);
 			} catch (SlickException e) {
 				this.e = e;  // store exception to display later
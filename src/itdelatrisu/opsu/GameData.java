@@ -28,7 +28,7 @@ import itdelatrisu.opsu.downloads.Updater;
 import itdelatrisu.opsu.objects.curves.Curve;
 import itdelatrisu.opsu.objects.curves.Vec2f;
 import itdelatrisu.opsu.replay.Replay;
-import itdelatrisu.opsu.replay.ReplayFrame;
+import itdelatrisu.opsu.replay.ReplayFrames;
 import itdelatrisu.opsu.ui.Colors;
 import itdelatrisu.opsu.ui.Fonts;
 import itdelatrisu.opsu.ui.animations.AnimationEquation;
@@ -36,8 +36,6 @@ import itdelatrisu.opsu.ui.animations.AnimationEquation;
 import java.io.File;
 import java.util.Date;
 import java.util.HashMap;
-import java.util.Iterator;
-import java.util.concurrent.LinkedBlockingDeque;
 
 import org.newdawn.slick.Animation;
 import org.newdawn.slick.Color;
@@ -197,75 +195,97 @@ public class GameData {
 	private int[] hitResultOffset;
 
 	/** List of hit result objects associated with hit objects. */
-	private LinkedBlockingDeque<HitObjectResult> hitResultList;
+	private final PooledList<HitObjectResult> hitResultList = new PooledList<HitObjectResult>() {
+		@Override
+		protected HitObjectResult create() { return new HitObjectResult(); }
+
+		@Override
+		protected void recycle(HitObjectResult hitResult) {
+			if (hitResult.curve != null)
+				hitResult.curve.discardCache();
+			hitResult.color = null;
+			hitResult.curve = null;
+		}
+	};
 
 	/**
 	 * Class to store hit error information.
 	 * @author fluddokt
 	 */
-	private class HitErrorInfo {
+	private static class HitErrorInfo {
 		/** The correct hit time. */
-		private final int time;
+		private int time;
 
 		/** The coordinates of the hit. */
-		@SuppressWarnings("unused")
-		private final int x, y;
+		private int x, y;
 
 		/** The difference between the correct and actual hit times. */
-		private final int timeDiff;
+		private int timeDiff;
 
 		/**
-		 * Constructor.
+		 * Sets all fields (the object is recycled).
 		 * @param time the correct hit time
 		 * @param x the x coordinate of the hit
 		 * @param y the y coordinate of the hit
 		 * @param timeDiff the difference between the correct and actual hit times
 		 */
-		public HitErrorInfo(int time, int x, int y, int timeDiff) {
+		public void set(int time, int x, int y, int timeDiff) {
 			this.time = time;
 			this.x = x;
 			this.y = y;
 			this.timeDiff = timeDiff;
 		}
+
+		/**
+		 * Copies all fields from another object.
+		 * @param info the object to copy
+		 */
+		public void set(HitErrorInfo info) { set(info.time, info.x, info.y, info.timeDiff); }
 	}
 
-	/** List containing recent hit error information. */
-	private LinkedBlockingDeque<HitErrorInfo> hitErrorList;
+	/** List containing recent hit error information (oldest first). */
+	private final PooledList<HitErrorInfo> hitErrorList = new PooledList<HitErrorInfo>() {
+		@Override
+		protected HitErrorInfo create() { return new HitErrorInfo(); }
+	};
+
+	/** Buffer for mirrored hit result coordinates. */
+	private final float[] mirrorPoint = new float[2];
 
 	/** Hit object types, used for drawing results. */
 	public enum HitObjectType { CIRCLE, SLIDERTICK, SLIDER_FIRST, SLIDER_LAST, SPINNER }
 
-	/** Hit result helper class. */
-	private class HitObjectResult {
+	/** Hit result helper class (recycled through {@link #hitResultList}). */
+	private static class HitObjectResult {
 		/** Object start time. */
-		public final int time;
+		public int time;
 
 		/** Hit result. */
-		public final int result;
+		public int result;
 
 		/** Object coordinates. */
-		public final float x, y;
+		public float x, y;
 
 		/** Combo color. */
-		public final Color color;
+		public Color color;
 
 		/** The type of the hit object. */
-		public final HitObjectType hitResultType;
+		public HitObjectType hitResultType;
 
 		/** Slider curve. */
-		public final Curve curve;
+		public Curve curve;
 
 		/** Whether or not to expand when animating. */
-		public final boolean expand;
+		public boolean expand;
 
 		/** Whether or not to hide the hit result. */
-		public final boolean hideResult;
+		public boolean hideResult;
 
 		/** Alpha level (for fading out). */
-		public float alpha = 1f;
+		public float alpha;
 
 		/**
-		 * Constructor.
+		 * Sets all fields (the object is recycled).
 		 * @param time the result's starting track position
 		 * @param result the hit result (HIT_* constants)
 		 * @param x the center x coordinate
@@ -276,8 +296,9 @@ public class GameData {
 		 * @param expand whether or not the hit result animation should expand (if applicable)
 		 * @param hideResult whether or not to hide the hit result (but still show the other animations)
 		 */
-		public HitObjectResult(int time, int result, float x, float y, Color color,
+		public void set(int time, int result, float x, float y, Color color,
 				HitObjectType hitResultType, Curve curve, boolean expand, boolean hideResult) {
+			this.alpha = 1f;
 			this.time = time;
 			this.result = result;
 			this.x = x;
@@ -288,6 +309,15 @@ public class GameData {
 			this.expand = expand;
 			this.hideResult = hideResult;
 		}
+
+		/**
+		 * Copies all fields from another object.
+		 * @param r the object to copy
+		 */
+		public void set(HitObjectResult r) {
+			set(r.time, r.result, r.x, r.y, r.color, r.hitResultType, r.curve, r.expand, r.hideResult);
+			this.alpha = r.alpha;
+		}
 	}
 
 	/** Current game score. */
@@ -388,14 +418,8 @@ public class GameData {
 		healthDisplay = 100f;
 		hitResultCount = new int[HIT_MAX];
 		drainRate = 5f;
-		if (hitResultList != null) {
-			for (HitObjectResult hitResult : hitResultList) {
-				if (hitResult.curve != null)
-					hitResult.curve.discardCache();
-			}
-		}
-		hitResultList = new LinkedBlockingDeque<HitObjectResult>();
-		hitErrorList = new LinkedBlockingDeque<HitErrorInfo>();
+		hitResultList.clear();
+		hitErrorList.clear();
 		fullObjectCount = 0;
 		combo = 0;
 		comboMax = 0;
@@ -405,6 +429,91 @@ public class GameData {
 		scoreData = null;
 	}
 
+	/**
+	 * Scoring state saved by {@link GameData#saveState()}.
+	 */
+	public static class State {
+		/** Game score. */
+		private long score;
+
+		/** Health bar percentage. */
+		private float health;
+
+		/** Counts of each hit result. */
+		private int[] hitResultCount;
+
+		/** Full combo object count, combo streak, max combo streak and combo burst index. */
+		private int fullObjectCount, combo, comboMax, comboBurstIndex;
+
+		/** Combo end bitmask. */
+		private byte comboEnd;
+
+		/** Combo pop and combo burst animation state. */
+		private int comboPopTime;
+		private float comboBurstAlpha, comboBurstX;
+
+		/** Running hit result animations and recent hit errors (copies). */
+		private HitObjectResult[] hitResults;
+		private HitErrorInfo[] hitErrors;
+
+		/** Constructor. */
+		private State() {}
+	}
+
+	/**
+	 * Saves the scoring state (score, health, hit results and combo) and the
+	 * running animations, e.g. to resume a replay from this point later.
+	 * @return the state
+	 */
+	public State saveState() {
+		State s = new State();
+		s.score = score;
+		s.health = health;
+		s.hitResultCount = hitResultCount.clone();
+		s.fullObjectCount = fullObjectCount;
+		s.combo = combo;
+		s.comboMax = comboMax;
+		s.comboBurstIndex = comboBurstIndex;
+		s.comboEnd = comboEnd;
+		s.comboPopTime = comboPopTime;
+		s.comboBurstAlpha = comboBurstAlpha;
+		s.comboBurstX = comboBurstX;
+		s.hitResults = new HitObjectResult[hitResultList.size()];
+		for (int i = 0; i < s.hitResults.length; i++)
+			(s.hitResults[i] = new HitObjectResult()).set(hitResultList.get(i));
+		s.hitErrors = new HitErrorInfo[hitErrorList.size()];
+		for (int i = 0; i < s.hitErrors.length; i++)
+			(s.hitErrors[i] = new HitErrorInfo()).set(hitErrorList.get(i));
+		return s;
+	}
+
+	/**
+	 * Restores a scoring state saved by {@link #saveState()}.
+	 * Displayed values jump to the restored ones.
+	 * @param s the state
+	 */
+	public void restoreState(State s) {
+		score = scoreDisplay = s.score;
+		scorePercentDisplay = getScorePercent();
+		health = healthDisplay = s.health;
+		hitResultCount = s.hitResultCount.clone();
+		fullObjectCount = s.fullObjectCount;
+		combo = s.combo;
+		comboMax = s.comboMax;
+		comboBurstIndex = s.comboBurstIndex;
+		comboEnd = s.comboEnd;
+		comboPopTime = s.comboPopTime;
+		comboBurstAlpha = s.comboBurstAlpha;
+		comboBurstX = s.comboBurstX;
+		hitResultList.clear();
+		for (int i = 0; i < s.hitResults.length; i++)
+			hitResultList.add().set(s.hitResults[i]);
+		hitErrorList.clear();
+		for (int i = 0; i < s.hitErrors.length; i++)
+			hitErrorList.add().set(s.hitErrors[i]);
+		scoreData = null;  // cached, made again when needed
+	}
+
 	/**
 	 * Loads all game score images.
 	 */
@@ -490,6 +599,11 @@ public class GameData {
 	 */
 	public void setHitResultOffset(int[] hitResultOffset) { this.hitResultOffset = hitResultOffset; }
 
+	/**
+	 * Returns the array of hit result offsets (indexed by HIT_* constants).
+	 */
+	public int[] getHitResultOffsets() { return hitResultOffset; }
+
 	/**
 	 * Draws a number with defaultSymbols.
 	 * @param n the number to draw
@@ -660,8 +774,9 @@ public class GameData {
 			// fade out with last tick
 			float hitErrorAlpha = 1f;
 			Color white = new Color(Color.white);
-			if (trackPosition - hitErrorList.getFirst().time > HIT_ERROR_FADE_TIME * 0.9f)
-				hitErrorAlpha = (HIT_ERROR_FADE_TIME - (trackPosition - hitErrorList.getFirst().time)) / (HIT_ERROR_FADE_TIME * 0.1f);
+			int lastHitTime = hitErrorList.getLast().time;
+			if (trackPosition - lastHitTime > HIT_ERROR_FADE_TIME * 0.9f)
+				hitErrorAlpha = (HIT_ERROR_FADE_TIME - (trackPosition - lastHitTime)) / (HIT_ERROR_FADE_TIME * 0.1f);
 
 			// draw bar
 			float hitErrorX = width / uiScale / 2;
@@ -695,7 +810,8 @@ public class GameData {
 
 			// draw ticks
 			float tickWidth = 2 * uiScale;
-			for (HitErrorInfo info : hitErrorList) {
+			for (int i = hitErrorList.size() - 1; i >= 0; i--) {
+				HitErrorInfo info = hitErrorList.get(i);
 				int time = info.time;
 				float alpha = 1 - ((float) (trackPosition - time) / HIT_ERROR_FADE_TIME);
 				white.a = alpha * hitErrorAlpha;
@@ -876,10 +992,10 @@ public class GameData {
 	 * @param trackPosition the current track position (in ms)
 	 */
 	public void drawHitResults(int trackPosition) {
-		Iterator<HitObjectResult> iter = hitResultList.iterator();
-		while (iter.hasNext()) {
-			HitObjectResult hitResult = iter.next();
-			if (hitResult.time + HITRESULT_TIME > trackPosition) {
+		for (int i = 0, size = hitResultList.size(); i < size; i++) {
+			HitObjectResult hitResult = hitResultList.get(i);
+			boolean keep = (hitResult.time + HITRESULT_TIME > trackPosition);
+			if (keep) {
 				// spinner
 				if (hitResult.hitResultType == HitObjectType.SPINNER && hitResult.result != HIT_MISS) {
 					Image spinnerOsu = GameImage.SPINNER_OSU.getImage();
@@ -960,14 +1076,32 @@ public class GameData {
 				}
 
 				hitResult.alpha = 1 - ((float) (trackPosition - hitResult.time) / HITRESULT_FADE_TIME);
-			} else {
-				if (hitResult.curve != null)
-					hitResult.curve.discardCache();
-				iter.remove();
 			}
+			hitResultList.retain(i, keep);
+		}
+		hitResultList.endRetain();
+	}
+
+	/**
+	 * Removes expired hit results and hit errors without drawing them, as
+	 * {@link #drawHitResults(int)} and {@link #updateDisplays(int)} do in game.
+	 * @param trackPosition the current track position (in ms)
+	 */
+	void removeExpiredResults(int trackPosition) {
+		for (int i = 0, size = hitResultList.size(); i < size; i++)
+			hitResultList.retain(i, hitResultList.get(i).time + HITRESULT_TIME > trackPosition);
+		hitResultList.endRetain();
+		for (int i = 0, size = hitErrorList.size(); i < size; i++) {
+			HitErrorInfo info = hitErrorList.get(i);
+			hitErrorList.retain(i, Math.abs(info.timeDiff) < hitResultOffset[GameData.HIT_50] &&
+			                       info.time + HIT_ERROR_FADE_TIME > trackPosition);
 		}
+		hitErrorList.endRetain();
 	}
 
+	/** Returns the number of stored hit results (the ones still drawn). */
+	int getHitResultListSize() { return hitResultList.size(); }
+
 	/**
 	 * Changes health by a given percentage, modified by drainRate.
 	 * @param percent the health percentage
@@ -1142,13 +1276,12 @@ public class GameData {
 		// hit error bar
 		if (Options.isHitErrorBarEnabled()) {
 			int trackPosition = MusicController.getPosition();
-			Iterator<HitErrorInfo> iter = hitErrorList.iterator();
-			while (iter.hasNext()) {
-				HitErrorInfo info = iter.next();
-				if (Math.abs(info.timeDiff) >= hitResultOffset[GameData.HIT_50] ||
-				    info.time + HIT_ERROR_FADE_TIME <= trackPosition)
-					iter.remove();
+			for (int i = 0, size = hitErrorList.size(); i < size; i++) {
+				HitErrorInfo info = hitErrorList.get(i);
+				hitErrorList.retain(i, Math.abs(info.timeDiff) < hitResultOffset[GameData.HIT_50] &&
+				                       info.time + HIT_ERROR_FADE_TIME > trackPosition);
 			}
+			hitErrorList.endRetain();
 		}
 	}
 
@@ -1157,6 +1290,22 @@ public class GameData {
 	 */
 	public int getComboStreak() { return combo; }
 
+	/**
+	 * Returns the maximum combo streak.
+	 */
+	public int getComboMax() { return comboMax; }
+
+	/**
+	 * Returns the current score.
+	 */
+	public long getScore() { return score; }
+
+	/**
+	 * Returns the number of hit results of a type.
+	 * @param result the hit result (HIT_* constants)
+	 */
+	public int getHitResultCount(int result) { return hitResultCount[result]; }
+
 	/**
 	 * Increases the combo streak by one.
 	 */
@@ -1167,7 +1316,7 @@ public class GameData {
 			comboMax = combo;
 
 		// combo bursts (at 30, 60, 100+50x)
-		if (Options.isComboBurstEnabled() &&
+		if (Options.isComboBurstEnabled() && comboBurstImages != null &&
 			(combo == 30 || combo == 60 || (combo >= 100 && combo % 50 == 0))) {
 			if (Options.getSkin().isComboBurstRandom())
 				comboBurstIndex = (int) (Math.random() * comboBurstImages.length);
@@ -1197,12 +1346,12 @@ public class GameData {
 	}
 
 	public void sendInitialSliderResult(int time, float x, float y, Color color, Color mirrorcolor) {
-		hitResultList.add(new HitObjectResult(time, HIT_SLIDER_INITIAL, x, y, color, null, null, true, false));
+		hitResultList.add().set(time, HIT_SLIDER_INITIAL, x, y, color, null, null, true, false);
 		if (!Dancer.mirror || !GameMod.AUTO.isActive()) {
 			return;
 		}
-		float[] m = Utils.mirrorPoint(x, y);
-		hitResultList.add(new HitObjectResult(time, HIT_SLIDER_INITIAL, m[0], m[1], mirrorcolor, null, null, true, false));
+		float[] m = Utils.mirrorPoint(x, y, mirrorPoint);
+		hitResultList.add().set(time, HIT_SLIDER_INITIAL, m[0], m[1], mirrorcolor, null, null, true, false);
 	}
 
 	/**
@@ -1245,7 +1394,7 @@ public class GameData {
 			if (!Options.isPerfectHitBurstEnabled())
 				;  // hide perfect hit results
 			else
-				hitResultList.add(new HitObjectResult(time, result, x, y, null, HitObjectType.SLIDERTICK, null, false, false));
+				hitResultList.add().set(time, result, x, y, null, HitObjectType.SLIDERTICK, null, false, false);
 		}
 		fullObjectCount++;
 	}
@@ -1415,7 +1564,7 @@ public class GameData {
 			return;  // "relax" and "autopilot" mods: hide misses
 
 		boolean hideResult = (hitResult == HIT_300 || hitResult == HIT_300G || hitResult == HIT_300K) && !Options.isPerfectHitBurstEnabled();
-		hitResultList.add(new HitObjectResult(time, hitResult, x, y, color, hitResultType, curve, expand, hideResult));
+		hitResultList.add().set(time, hitResult, x, y, color, hitResultType, curve, expand, hideResult);
 
 		/*
 		// sliders: add the other curve endpoint for the hit animation
@@ -1423,7 +1572,7 @@ public class GameData {
 			boolean isFirst = (hitResultType == HitObjectType.SLIDER_FIRST);
 			Vec2f p = curve.pointAt((isFirst) ? 1f : 0f);
 			HitObjectType type = (isFirst) ? HitObjectType.SLIDER_LAST : HitObjectType.SLIDER_FIRST;
-			hitResultList.add(new HitObjectResult(time, hitResult, p.x, p.y, color, type, null, expand, hideResult));
+			hitResultList.add().set(time, hitResult, p.x, p.y, color, type, null, expand, hideResult);
 		}
 		*/
 	}
@@ -1469,7 +1618,7 @@ public class GameData {
 	 * @param beatmap the associated beatmap
 	 * @return the Replay object, or null if none exists and frames is null
 	 */
-	public Replay getReplay(ReplayFrame[] frames, Beatmap beatmap) {
+	public Replay getReplay(ReplayFrames frames, Beatmap beatmap) {
 		if (replay != null && frames == null)
 			return replay;
 
@@ -1527,6 +1676,6 @@ public class GameData {
 	 * @param timeDiff the difference between the correct and actual hit times
 	 */
 	public void addHitError(int time, int x, int y, int timeDiff) {
-		hitErrorList.addFirst(new HitErrorInfo(time, x, y, timeDiff));
+		hitErrorList.add().set(time, x, y, timeDiff);
 	}
 }
@@ -18,6 +18,7 @@
 
 package itdelatrisu.opsu;
 
+import itdelatrisu.opsu.skins.SkinAtlas;
 import itdelatrisu.opsu.ui.Fonts;
 
 import java.io.File;
@@ -456,6 +457,7 @@ public enum GameImage {
 			img.defaultImages = img.skinImages = null;
 			img.isSkinned = false;
 		}
+		SkinAtlas.clearReferences();
 	}
 
 	/**
@@ -725,6 +727,41 @@ public enum GameImage {
 		return false;
 	}
 
+	/**
+	 * Returns the file names of all images this resource can be loaded from
+	 * with the current options, including all image array frames.
+	 * @param dir the image directory to search, or null to use the default resource locations
+	 * @return the list of file names (possibly empty)
+	 */
+	public List<String> getImageFileNames(File dir) {
+		List<String> names = new ArrayList<String>();
+		for (String suffix : getSuffixes()) {
+			if (filenameFormat != null) {
+				for (int i = 0; ; i++) {
+					String name = getImageFileName(String.format(filenameFormat + suffix, i), dir, type, true);
+					if (name == null)
+						break;
+					names.add(name);
+				}
+			}
+			String name = getImageFileName(filename + suffix, dir, type, true);
+			if (name != null)
+				names.add(name);
+		}
+		return names;
+	}
+
+	/**
+	 * Loads an image, using the skin atlas if it contains the file.
+	 * @param name the image file name
+	 * @return the loaded image
+	 * @throws SlickException if the image could not be loaded
+	 */
+	private static Image loadImage(String name) throws SlickException {
+		Image img = SkinAtlas.getImage(name);
+		return (img != null) ? img : new Image(name);
+	}
+
 	/**
 	 * Attempts to load multiple Images from the GameImage.
 	 * @param dir the image directory to search, or null to use the default resource locations
@@ -744,7 +781,7 @@ public enum GameImage {
 
 					// add image to list
 					try {
-						Image img = new Image(name);
+						Image img = loadImage(name);
 						if (suffix.equals(HD_SUFFIX))
 							img = img.getScaledCopy(0.5f);
 						list.add(img);
@@ -758,7 +795,7 @@ public enum GameImage {
 					String name = getImageFileName(filename, dir, type, true);
 					if (name != null) {
 						try {
-							Image img = new Image(name);
+							Image img = loadImage(name);
 							if (suffix.equals(HD_SUFFIX))
 								img = img.getScaledCopy(0.5f);
 							list.add(img);
@@ -785,7 +822,7 @@ public enum GameImage {
 			String name = getImageFileName(filename + suffix, dir, type, true);
 			if (name != null) {
 				try {
-					Image img = new Image(name);
+					Image img = loadImage(name);
 					if (suffix.equals(HD_SUFFIX))
 						img = img.getScaledCopy(0.5f);
 					return img;
@@ -0,0 +1,553 @@
+/*
+ * opsu! - an open-source osu! client
+ * Copyright (C) 2014, 2015 Jeffrey Han
+ *
+ * opsu! is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * opsu! is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with opsu!.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package itdelatrisu.opsu;
+
+import itdelatrisu.opsu.audio.HitSound;
+import itdelatrisu.opsu.audio.SoundController;
+import itdelatrisu.opsu.beatmap.Beatmap;
+import itdelatrisu.opsu.beatmap.HitObject;
+import itdelatrisu.opsu.beatmap.TimingPoint;
+import itdelatrisu.opsu.objects.Circle;
+import itdelatrisu.opsu.objects.DummyObject;
+import itdelatrisu.opsu.objects.GameObject;
+import itdelatrisu.opsu.objects.Slider;
+import itdelatrisu.opsu.objects.Spinner;
+import itdelatrisu.opsu.replay.ReplayFrame;
+import itdelatrisu.opsu.states.Game;
+import itdelatrisu.opsu.ui.InputEventQueue;
+
+/**
+ * Judges the hit objects of a beatmap from cursor positions and game keys
+ * (replay frames), and sends the results to a {@link GameData} object.
+ * <p>
+ * The judge does not draw, play music or read input, so it can also score
+ * replays and generated input without a game. The game state extends it to
+ * filter game keys (pausing, skipping, mods), record the frames and update
+ * the parts of the game that follow the object index.
+ * <p>
+ * Health is drained, but the judge does not end the game when it runs out:
+ * like a replay without the "Easy" mod, the objects are judged to the end.
+ */
+public class GameJudge {
+	/** Converts input event times to track positions. */
+	public interface TrackClock {
+		/**
+		 * Returns the track position at a time.
+		 * @param time the time (in nanoseconds, {@link System#nanoTime()} time base)
+		 * @return the track position (in ms)
+		 */
+		public int getPositionAt(long time);
+	}
+
+	/** Judging state saved by {@link GameJudge#saveState()}. */
+	public static class State {
+		/** The current hit object index (no earlier object is in progress). */
+		private int objectIndex;
+
+		/** The current timing point index. */
+		private int timingPointIndex;
+
+		/** Current beat lengths. */
+		private float beatLength, beatLengthBase;
+
+		/** The current break index and start time. */
+		private int breakIndex, breakTime;
+
+		/** The time and keys of the last frame. */
+		private int lastFrameTime, keys;
+
+		/** Scoring state. */
+		private GameData.State data;
+
+		/** Constructor. */
+		private State() {}
+	}
+
+	/** The associated GameData object. */
+	protected final GameData data;
+
+	/** The associated beatmap. */
+	protected Beatmap beatmap;
+
+	/** The beatmap's game objects, indexed by objectIndex. */
+	protected GameObject[] gameObjects;
+
+	/** Current hit object index (in both hit object arrays). */
+	private int objectIndex = 0;
+
+	/** Current timing point index in timingPoints ArrayList. */
+	private int timingPointIndex;
+
+	/** Current beat lengths (base value and inherited value). */
+	private float beatLengthBase = 1f, beatLength = 1f;
+
+	/** Current break index in breaks ArrayList. */
+	private int breakIndex;
+
+	/** Break start time (0 if not in break). */
+	private int breakTime = 0;
+
+	/** The time of the last frame. */
+	private int lastFrameTime = 0;
+
+	/** The keys pressed in the last frame. */
+	private int keys = ReplayFrame.KEY_NONE;
+
+	/**
+	 * Constructor.
+	 * @param data the GameData object receiving the hit results
+	 */
+	public GameJudge(GameData data) {
+		this.data = data;
+	}
+
+	/**
+	 * Sets the beatmap and its game objects, call {@link #reset()} before judging.
+	 * @param beatmap the beatmap
+	 * @param gameObjects the game objects, see {@link #createGameObjects(Beatmap, Game, GameData)}
+	 */
+	public void setBeatmap(Beatmap beatmap, GameObject[] gameObjects) {
+		this.beatmap = beatmap;
+		this.gameObjects = gameObjects;
+	}
+
+	/**
+	 * Resets the judged objects and the judging state, and loads the first timing point.
+	 * The game data is not cleared.
+	 */
+	public void reset() {
+		if (gameObjects != null) {
+			for (int i = Math.min(objectIndex, gameObjects.length - 1); i >= 0; i--)
+				gameObjects[i].reset();
+		}
+		objectIndex = 0;
+		breakIndex = 0;
+		breakTime = 0;
+		timingPointIndex = 0;
+		beatLengthBase = beatLength = 1;
+		lastFrameTime = 0;
+		keys = ReplayFrame.KEY_NONE;
+
+		// load the first timingPoint
+		if (beatmap != null && !beatmap.timingPoints.isEmpty()) {
+			TimingPoint timingPoint = beatmap.timingPoints.get(0);
+			if (!timingPoint.isInherited()) {
+				setBeatLength(timingPoint, true);
+				timingPointIndex++;
+			}
+		}
+	}
+
+	/**
+	 * Skips to an object, e.g. to start at a checkpoint: earlier objects are never judged.
+	 * @param index the object index
+	 */
+	public void skipTo(int index) {
+		objectIndex = index;
+		lastFrameTime = beatmap.objects[index].getTime();
+	}
+
+	/** Returns the current hit object index. */
+	public int getObjectIndex() { return objectIndex; }
+
+	/** Returns whether all objects have been judged. */
+	public boolean isComplete() { return objectIndex >= gameObjects.length; }
+
+	/** Returns the current break index. */
+	public int getBreakIndex() { return breakIndex; }
+
+	/** Returns the start time of the current break, or 0 if not in a break. */
+	public int getBreakTime() { return breakTime; }
+
+	/** Returns the beat length. */
+	public float getBeatLength() { return beatLength; }
+
+	/** Returns the beat length of the last uninherited timing point. */
+	public float getBeatLengthBase() { return beatLengthBase; }
+
+	/** Returns the keys pressed in the last frame. */
+	public int getKeys() { return keys; }
+
+	/** Returns the time of the last frame. */
+	public int getLastFrameTime() { return lastFrameTime; }
+
+	/**
+	 * Handles the queued game key events, each at the track position of the
+	 * time it happened (clamped between the last frame and the current track
+	 * position), and clears the queue.
+	 * @param events the game key events
+	 * @param clock the clock converting the event times to track positions
+	 * @param trackPosition the current track position
+	 */
+	public void processInputEvents(InputEventQueue events, TrackClock clock, int trackPosition) {
+		for (int i = 0; i < events.size(); i++) {
+			int time = clock.getPositionAt(events.getTime(i));
+			time = Math.max(Math.min(time, trackPosition), lastFrameTime);
+			if (events.isPressed(i))
+				keyPressed(events.getKeys(i), events.getX(i), events.getY(i), time);
+			else
+				keyReleased(events.getKeys(i), events.getX(i), events.getY(i), time);
+		}
+		events.clear();
+	}
+
+	/**
+	 * Handles a game key pressed event: runs a frame with the keys added.
+	 * @param keys the game keys pressed
+	 * @param x the cursor x coordinate
+	 * @param y the cursor y coordinate
+	 * @param trackPosition the track position
+	 */
+	public void keyPressed(int keys, int x, int y, int trackPosition) {
+		if (keys != ReplayFrame.KEY_NONE)
+			addFrameAndRun(x, y, this.keys | keys, trackPosition);
+	}
+
+	/**
+	 * Handles a game key released event: runs a frame with the keys removed.
+	 * @param keys the game keys released
+	 * @param x the cursor x coordinate
+	 * @param y the cursor y coordinate
+	 * @param trackPosition the track position
+	 */
+	public void keyReleased(int keys, int x, int y, int trackPosition) {
+		if (keys != ReplayFrame.KEY_NONE)
+			addFrameAndRun(x, y, this.keys & ~keys, trackPosition);
+	}
+
+	/**
+	 * Runs a new frame, timed from the last one.
+	 * @param x the cursor x coordinate
+	 * @param y the cursor y coordinate
+	 * @param keys the keys pressed
+	 * @param time the time of the frame
+	 */
+	public void addFrameAndRun(int x, int y, int keys, int time) {
+		runFrame(time - lastFrameTime, time, x, y, keys);
+	}
+
+	/**
+	 * Runs a frame: a key press is sent to the current object, other frames update the game.
+	 * @param timeDiff time since the previous frame (in ms)
+	 * @param time the frame time (in ms)
+	 * @param x the scaled cursor x coordinate
+	 * @param y the scaled cursor y coordinate
+	 * @param keys the keys pressed
+	 */
+	public void runFrame(int timeDiff, int time, int x, int y, int keys) {
+		lastFrameTime = time;
+		int deltaKeys = (keys & ~this.keys);  // keys that turned on
+		if (deltaKeys != ReplayFrame.KEY_NONE)  // send a key press
+			sendKeyPress(x, y, time);
+		else if (keys != this.keys)
+			;  // do nothing
+		else
+			update(x, y, timeDiff, time, keys);
+		this.keys = keys;
+	}
+
+	/**
+	 * Sends a game key press to the current hit object.
+	 * @param x the cursor x coordinate
+	 * @param y the cursor y coordinate
+	 * @param trackPosition the track position
+	 */
+	private void sendKeyPress(int x, int y, int trackPosition) {
+		if (objectIndex >= gameObjects.length)  // nothing to do here
+			return;
+
+		HitObject hitObject = beatmap.objects[objectIndex];
+
+		// circles
+		if (hitObject.isCircle() && gameObjects[objectIndex].mousePressed(x, y, trackPosition))
+			objectIndexChanged(++objectIndex);  // circle hit
+
+		// sliders
+		else if (hitObject.isSlider())
+			gameObjects[objectIndex].mousePressed(x, y, trackPosition);
+	}
+
+	/**
+	 * Updates the game: timing, health and the hit objects.
+	 * The game state overrides this to also handle the end of the game and deaths.
+	 * @param x the cursor x coordinate
+	 * @param y the cursor y coordinate
+	 * @param delta the delta interval
+	 * @param trackPosition the track position
+	 * @param keys the keys that are pressed
+	 */
+	public void update(int x, int y, int delta, int trackPosition, int keys) {
+		if (isComplete() || !updateTiming(trackPosition))
+			return;
+		data.changeHealth(delta * -1 * GameData.HP_DRAIN_MULTIPLIER);
+		updateObjects(x, y, delta, trackPosition, keys != ReplayFrame.KEY_NONE);
+	}
+
+	/**
+	 * Moves to the next timing point and break, if the track position reached them.
+	 * @param trackPosition the track position
+	 * @return false before the first object and during breaks, when objects are not updated
+	 */
+	public boolean updateTiming(int trackPosition) {
+		// timing points
+		if (timingPointIndex < beatmap.timingPoints.size()) {
+			TimingPoint timingPoint = beatmap.timingPoints.get(timingPointIndex);
+			if (trackPosition >= timingPoint.getTime()) {
+				setBeatLength(timingPoint, true);
+				timingPointIndex++;
+			}
+		}
+
+		// song beginning
+		if (objectIndex == 0 && trackPosition < beatmap.objects[0].getTime())
+			return false;  // nothing to do here
+
+		// break periods
+		if (beatmap.breaks != null && breakIndex < beatmap.breaks.size()) {
+			int breakValue = beatmap.breaks.get(breakIndex);
+			if (breakTime > 0) {  // in a break period
+				if (trackPosition < breakValue)
+					return false;
+				else {
+					// break is over
+					breakTime = 0;
+					breakIndex++;
+				}
+			} else if (trackPosition >= breakValue) {
+				// start a break
+				breakTime = breakValue;
+				breakIndex++;
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Updates the hit objects whose time has come, and moves past the completed ones.
+	 * @param x the cursor x coordinate
+	 * @param y the cursor y coordinate
+	 * @param delta the delta interval
+	 * @param trackPosition the track position
+	 * @param keyPressed whether a game key is pressed
+	 */
+	public void updateObjects(int x, int y, int delta, int trackPosition, boolean keyPressed) {
+		int[] hitResultOffset = data.getHitResultOffsets();
+
+		// loop in unlikely event of any skipped indexes
+		while (objectIndex < gameObjects.length && trackPosition > beatmap.objects[objectIndex].getTime()) {
+			// check if we've already passed the next object's start time
+			boolean overlap = (objectIndex + 1 < gameObjects.length &&
+					trackPosition > beatmap.objects[objectIndex + 1].getTime() - hitResultOffset[GameData.HIT_50]);
+
+			// update hit object and check completion status
+			if (gameObjects[objectIndex].update(overlap, delta, x, y, keyPressed, trackPosition))
+				objectIndexChanged(++objectIndex);  // done, so increment object index
+			else
+				break;
+		}
+	}
+
+	/**
+	 * Called when the current object is done and the object index moved on.
+	 * @param objectIndex the new object index
+	 */
+	protected void objectIndexChanged(int objectIndex) {}
+
+	/**
+	 * Sets the beat length fields based on a given timing point.
+	 * @param timingPoint the timing point
+	 * @param setSampleSet whether to set the hit sample set based on the timing point
+	 */
+	private void setBeatLength(TimingPoint timingPoint, boolean setSampleSet) {
+		if (!timingPoint.isInherited())
+			beatLengthBase = beatLength = timingPoint.getBeatLength();
+		else
+			beatLength = beatLengthBase * timingPoint.getSliderMultiplier();
+		if (setSampleSet) {
+			HitSound.setDefaultSampleSet(timingPoint.getSampleType());
+			SoundController.setSampleVolume(timingPoint.getSampleVolume());
+		}
+	}
+
+	/**
+	 * Returns whether the state can be saved at a time, i.e. no hit object is
+	 * in progress or about to be hit.
+	 * @param time the time of the last frame run
+	 */
+	public boolean canSaveState(int time) {
+		return objectIndex < gameObjects.length &&
+		       time < beatmap.objects[objectIndex].getTime() - data.getHitResultOffsets()[GameData.HIT_MISS];
+	}
+
+	/**
+	 * Saves the judging and scoring state, see {@link #canSaveState(int)}.
+	 * @return the state
+	 */
+	public State saveState() {
+		State s = new State();
+		s.objectIndex = objectIndex;
+		s.timingPointIndex = timingPointIndex;
+		s.beatLength = beatLength;
+		s.beatLengthBase = beatLengthBase;
+		s.breakIndex = breakIndex;
+		s.breakTime = breakTime;
+		s.lastFrameTime = lastFrameTime;
+		s.keys = keys;
+		s.data = data.saveState();
+		return s;
+	}
+
+	/**
+	 * Restores a state saved by {@link #saveState()}. The objects from the
+	 * saved object index on are reset; earlier objects were done when the
+	 * state was saved, and are never judged again.
+	 * @param s the state
+	 */
+	public void restoreState(State s) {
+		for (int i = Math.min(objectIndex, gameObjects.length - 1); i >= s.objectIndex; i--)
+			gameObjects[i].reset();
+		objectIndex = s.objectIndex;
+		timingPointIndex = s.timingPointIndex;
+		if (timingPointIndex > 0)
+			setBeatLength(beatmap.timingPoints.get(timingPointIndex - 1), true);
+		beatLength = s.beatLength;
+		beatLengthBase = s.beatLengthBase;
+		breakIndex = s.breakIndex;
+		breakTime = s.breakTime;
+		lastFrameTime = s.lastFrameTime;
+		keys = s.keys;
+		data.restoreState(s.data);
+	}
+
+	/**
+	 * Returns the hit result time offsets for an overall difficulty.
+	 * @param overallDifficulty the overall difficulty (after mods)
+	 * @return the offsets, in milliseconds (indexed by GameData.HIT_* constants)
+	 */
+	public static int[] getHitResultOffsets(float overallDifficulty) {
+		int[] hitResultOffset = new int[GameData.HIT_MAX];
+		hitResultOffset[GameData.HIT_300]  = (int) (79.5f - (overallDifficulty * 6));
+		hitResultOffset[GameData.HIT_100]  = (int) (139.5f - (overallDifficulty * 8));
+		hitResultOffset[GameData.HIT_50]   = (int) (199.5f - (overallDifficulty * 10));
+		hitResultOffset[GameData.HIT_MISS] = (int) (500 - (overallDifficulty * 10));
+		//final float mult = 0.608f;
+		//hitResultOffset[GameData.HIT_300]  = (int) ((128 - (overallDifficulty * 9.6)) * mult);
+		//hitResultOffset[GameData.HIT_100]  = (int) ((224 - (overallDifficulty * 12.8)) * mult);
+		//hitResultOffset[GameData.HIT_50]   = (int) ((320 - (overallDifficulty * 16)) * mult);
+		//hitResultOffset[GameData.HIT_MISS] = (int) ((1000 - (overallDifficulty * 10)) * mult);
+		return hitResultOffset;
+	}
+
+	/**
+	 * Sets the map modifiers the hit objects and the scoring need, like the
+	 * game does when a beatmap starts, but without loading any images.
+	 * {@link HitObject#init(int, int)} must be called first.
+	 * @param beatmap the beatmap
+	 * @param data the GameData object to set up for scoring, or null
+	 */
+	public static void initHeadless(Beatmap beatmap, GameData data) {
+		float multiplier = GameMod.getDifficultyMultiplier();
+		float circleSize = Math.min(beatmap.circleSize * multiplier, 10f);
+		float overallDifficulty = Math.min(beatmap.overallDifficulty * multiplier, 10f);
+		float HPDrainRate = Math.min(beatmap.HPDrainRate * multiplier, 10f);
+		if (Options.getFixedCS() > 0f)
+			circleSize = Options.getFixedCS();
+		if (Options.getFixedOD() > 0f)
+			overallDifficulty = Options.getFixedOD();
+		if (Options.getFixedHP() > 0f)
+			HPDrainRate = Options.getFixedHP();
+
+		float diameter = 108.848f - (circleSize * 8.9646f);
+		HitObject.setStackOffset(diameter * Game.STACK_OFFSET_MODIFIER);
+		Circle.diameter = diameter * HitObject.getXMultiplier();
+		Slider.initSize(diameter);
+		Slider.initTiming(beatmap);
+		Spinner.init(Options.width, Options.height, overallDifficulty);
+
+		if (data != null) {
+			data.setHitResultOffset(getHitResultOffsets(overallDifficulty));
+			data.setDrainRate(HPDrainRate);
+			data.calculateDifficultyMultiplier(beatmap.HPDrainRate, beatmap.circleSize, beatmap.overallDifficulty);
+		}
+	}
+
+	/**
+	 * Creates the game objects of a beatmap, each with the timing of the
+	 * timing point it starts in, and calculates the stacks.
+	 * Objects that fail to load are replaced by a {@link DummyObject}.
+	 * @param beatmap the beatmap, with parsed hit objects
+	 * @param game the game drawing the objects, or null if they are never drawn
+	 * @param data the GameData object receiving the hit results, or null if they are never judged
+	 * @return the game objects
+	 */
+	public static GameObject[] createGameObjects(Beatmap beatmap, Game game, GameData data) {
+		GameObject[] gameObjects = new GameObject[beatmap.objects.length];
+		float beatLengthBase = 1f, beatLength = 1f;
+		int timingPointIndex = 0;
+		if (!beatmap.timingPoints.isEmpty() && !beatmap.timingPoints.get(0).isInherited()) {
+			beatLengthBase = beatLength = beatmap.timingPoints.get(0).getBeatLength();
+			timingPointIndex++;
+		}
+		for (int i = 0; i < beatmap.objects.length; i++) {
+			HitObject hitObject = beatmap.objects[i];
+
+			// is this the last note in the combo?
+			boolean comboEnd = false;
+			if (i + 1 >= beatmap.objects.length || beatmap.objects[i + 1].isNewCombo())
+				comboEnd = true;
+
+			// pass beatLength to hit objects
+			int hitObjectTime = hitObject.getTime();
+			while (timingPointIndex < beatmap.timingPoints.size()) {
+				TimingPoint timingPoint = beatmap.timingPoints.get(timingPointIndex);
+				if (timingPoint.getTime() > hitObjectTime)
+					break;
+				if (!timingPoint.isInherited())
+					beatLengthBase = beatLength = timingPoint.getBeatLength();
+				else
+					beatLength = beatLengthBase * timingPoint.getSliderMultiplier();
+				timingPointIndex++;
+			}
+
+			try {
+				if (hitObject.isCircle())
+					gameObjects[i] = new Circle(hitObject, game, data, hitObject.getComboIndex(), comboEnd);
+				else if (hitObject.isSlider())
+					gameObjects[i] = new Slider(hitObject, game, data, hitObject.getComboIndex(), comboEnd,
+							beatLength, beatLength / beatLengthBase);
+				else if (hitObject.isSpinner())
+					gameObjects[i] = new Spinner(hitObject, game, data);
+				else
+					gameObjects[i] = new DummyObject(hitObject);
+			} catch (Exception e) {
+				// try to handle the error gracefully: substitute in a dummy GameObject
+				ErrorHandler.error(String.format("Failed to create %s at index %d:\n%s",
+						hitObject.getTypeName(), i, hitObject.toString()), e, true);
+				gameObjects[i] = new DummyObject(hitObject);
+			}
+		}
+
+		// stack calculations
+		Game.calculateStacks(beatmap, gameObjects);
+		for (int i = 0; i < gameObjects.length; i++)
+			gameObjects[i].updateStartEndPositions(beatmap.objects[i].getTime());
+		return gameObjects;
+	}
+}
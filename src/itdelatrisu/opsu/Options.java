@@ -56,7 +56,6 @@ import com.sun.jna.platform.win32.Advapi32Util;
 import com.sun.jna.platform.win32.Win32Exception;
 import com.sun.jna.platform.win32.WinReg;
 import yugecin.opsudance.*;
-import yugecin.opsudance.movers.factories.AutoMoverFactory;
 import yugecin.opsudance.spinners.Spinner;
 import yugecin.opsudance.ui.SBOverlay;
 
@@ -94,9 +93,21 @@ public class Options {
 	/** Score database name. */
 	public static final File SCORE_DB = new File(DATA_DIR, ".opsu_scores.db");
 
+	/** Directory for storing storyboards (per-object dance options). */
+	public static final File STORYBOARD_DIR = new File(DATA_DIR, "Storyboards/");
+
+	/** Directory for storing cached MP3 frame indices. */
+	public static final File FRAME_INDEX_DIR = new File(DATA_DIR, ".opsu_frames/");
+
 	/** Directory where natives are unpacked. */
 	public static final File NATIVE_DIR = new File(CACHE_DIR, "Natives/");
 
+	/** Directory where packed skin texture atlases are cached. */
+	public static final File SKIN_ATLAS_DIR = new File(CACHE_DIR, "SkinAtlas/");
+
+	/** Directory where decoded sounds are cached. */
+	public static final File SOUND_CACHE_DIR = new File(CACHE_DIR, "Sounds/");
+
 	/** Font file name. */
 	public static final String FONT_NAME = "DroidSansFallback.ttf";
 
@@ -594,11 +605,23 @@ public class Options {
 		REPLAY_SEEKING ("Replay Seeking", "ReplaySeeking", "Enable a seeking bar on the left side of the screen during replays.", false),
 		DISABLE_UPDATER ("Disable Automatic Updates", "DisableUpdater", "Disable automatic checking for updates upon starting opsu!.", false),
 		ENABLE_WATCH_SERVICE ("Enable Watch Service", "WatchService", "Watch the beatmap directory for changes. Requires a restart.", false),
+		MAX_DOWNLOADS ("Simultaneous Downloads", "MaxDownloads", "Number of beatmaps downloaded at the same time. Others wait in line.", 3, 1, 10) {
+			@Override
+			public String getValueString() { return String.valueOf(val); }
+		},
+		MAX_HOST_CONNECTIONS ("Connections per Server", "MaxHostConnections", "Maximum number of connections to one download server.", 2, 1, 8) {
+			@Override
+			public String getValueString() { return String.valueOf(val); }
+		},
+		DOWNLOAD_SEGMENTS ("Download Segments", "DownloadSegments", "Fetch large beatmaps in this many parts at once, if the server allows it.", 1, 1, 8) {
+			@Override
+			public String getValueString() { return (val == 1) ? "Disabled" : String.valueOf(val); }
+		},
 
 		DANCE_MOVER ("Mover algorithm", "Mover", "Algorithm that decides how to move from note to note" ) {
 			@Override
 			public Object[] getListItems() {
-				return Dancer.moverFactories;
+				return Dancer.instance.moverFactories;
 			}
 
 			@Override
@@ -608,7 +631,7 @@ public class Options {
 
 			@Override
 			public String getValueString() {
-				return Dancer.moverFactories[Dancer.instance.getMoverFactoryIndex()].toString();
+				return Dancer.instance.moverFactories[Dancer.instance.getMoverFactoryIndex()].toString();
 			}
 
 			@Override
@@ -626,7 +649,7 @@ public class Options {
 		DANCE_MOVER_DIRECTION ("Mover direction", "MoverDirection", "The direction the mover goes" ) {
 			@Override
 			public String getValueString() {
-				return Dancer.moverDirection.toString();
+				return Dancer.instance.config.moverDirection.toString();
 			}
 
 			@Override
@@ -636,52 +659,51 @@ public class Options {
 
 			@Override
 			public void clickListItem(int index) {
-				Dancer.moverDirection = MoverDirection.values()[index];
+				Dancer.instance.config.moverDirection = MoverDirection.values()[index];
 			}
 
 			@Override
 			public String write() {
-				return "" + Dancer.moverDirection.nr;
+				return "" + Dancer.instance.config.moverDirection.nr;
 			}
 
 			@Override
 			public void read(String s) {
-				Dancer.moverDirection = MoverDirection.values()[Integer.parseInt(s)];
+				Dancer.instance.config.moverDirection = MoverDirection.values()[Integer.parseInt(s)];
 			}
 		},
 
 		DANCE_SLIDER_MOVER_TYPE ("Slider mover", "SliderMover", "How to move in sliders") {
 			@Override
 			public String getValueString() {
-				return Dancer.sliderMoverController.toString();
+				return Dancer.instance.sliderMovers[Dancer.instance.getSliderMoverIndex()].toString();
 			}
 
 			@Override
 			public Object[] getListItems() {
-				return Dancer.sliderMovers;
+				return Dancer.instance.sliderMovers;
 			}
 
 			@Override
 			public void clickListItem(int index) {
-				val = index;
-				Dancer.sliderMoverController = Dancer.sliderMovers[index];
+				Dancer.instance.setSliderMoverIndex(index);
 			}
 
 			@Override
 			public String write() {
-				return String.valueOf(val);
+				return String.valueOf(Dancer.instance.getSliderMoverIndex());
 			}
 
 			@Override
 			public void read(String s) {
-				Dancer.sliderMoverController = Dancer.sliderMovers[val = Integer.parseInt(s)];
+				Dancer.instance.setSliderMoverIndex(Integer.parseInt(s));
 			}
 		},
 
 		DANCE_SPINNER ("Spinner", "Spinner", "Spinner style") {
 			@Override
 			public Object[] getListItems() {
-				return Dancer.spinners;
+				return Dancer.instance.spinners;
 			}
 
 			@Override
@@ -691,7 +713,7 @@ public class Options {
 
 			@Override
 			public String getValueString() {
-				return Dancer.spinners[Dancer.instance.getSpinnerIndex()].toString();
+				return Dancer.instance.spinners[Dancer.instance.getSpinnerIndex()].toString();
 			}
 
 			@Override
@@ -705,64 +727,65 @@ public class Options {
 			}
 		},
 
-		DANCE_SPINNER_DELAY ("Spinner delay", "SpinnerDelay", "Fiddle with this if spinner goes too fast.", Spinner.DELAY, 0, 200) {
+		// the value is the time per spinner point in ms (it used to be tenths of a ms, saved as "SpinnerDelay", see readOptions)
+		DANCE_SPINNER_DELAY ("Spinner delay", "SpinnerStepTime", "Fiddle with this if spinner goes too fast.", Dancer.instance.config.spinnerDelay, Spinner.MIN_DELAY, 100) {
 			@Override
 			public String getValueString() {
-				return String.format("%dms", val / 10);
+				return String.format("%dms", val);
 			}
 
 			@Override
 			public void drag(GameContainer container, int d) {
 				super.drag(container, d);
-				Spinner.DELAY = val / 10;
+				Dancer.instance.config.spinnerDelay = val;
 			}
 
 			@Override
 			public void read(String s) {
 				super.read(s);
-				Spinner.DELAY = val / 10;
+				Dancer.instance.config.spinnerDelay = val;
 			}
 		},
 
-		DANCE_LAZY_SLIDERS ("Lazy sliders", "LazySliders", "Don't do short sliders", Dancer.LAZY_SLIDERS) {
+		DANCE_LAZY_SLIDERS ("Lazy sliders", "LazySliders", "Don't do short sliders", Dancer.instance.config.lazySliders) {
 			@Override
 			public void click(GameContainer container) {
 				bool = !bool;
-				Dancer.LAZY_SLIDERS = bool;
+				Dancer.instance.config.lazySliders = bool;
 			}
 
 			@Override
 			public void read(String s) {
 				super.read(s);
-				Dancer.LAZY_SLIDERS = bool;
+				Dancer.instance.config.lazySliders = bool;
 			}
 		},
 
-		DANCE_ONLY_CIRCLE_STACKS ("Only circle stacks", "CircleStacks", "Only do circle movement on stacks", AutoMoverFactory.ONLY_CIRCLE_STACKS) {
+		DANCE_ONLY_CIRCLE_STACKS ("Only circle stacks", "CircleStacks", "Only do circle movement on stacks", Dancer.instance.config.onlyCircleStacks) {
 			@Override
 			public void click(GameContainer container) {
 				bool = !bool;
-				AutoMoverFactory.ONLY_CIRCLE_STACKS = bool;
+				Dancer.instance.config.onlyCircleStacks = bool;
 			}
 
 			@Override
 			public void read(String s) {
 				super.read(s);
-				AutoMoverFactory.ONLY_CIRCLE_STACKS = bool;
+				Dancer.instance.config.onlyCircleStacks = bool;
 			}
 		},
 
-		DANCE_CIRCLE_STREAMS ("Circle streams", "CircleStreams", "Make circles while streaming", AutoMoverFactory.CIRCLE_STREAM == 58) {
+		DANCE_CIRCLE_STREAMS ("Circle streams", "CircleStreams", "Make circles while streaming", Dancer.instance.config.circleStream == 58) {
 			@Override
 			public void click(GameContainer container) {
 				bool = !bool;
-				AutoMoverFactory.CIRCLE_STREAM = bool ? 58 : 85;
+				Dancer.instance.config.circleStream = bool ? 58 : 85;
 			}
 
 			@Override
 			public void read(String s) {
 				super.read(s);
-				AutoMoverFactory.CIRCLE_STREAM = bool ? 58 : 85;
+				Dancer.instance.config.circleStream = bool ? 58 : 85;
 			}
 		},
 
@@ -780,6 +803,42 @@ public class Options {
 			}
 		},
 
+		DANCE_BAKE ("Bake dance", "BakeDance", "Compute the whole dance before playing, so it is smooth and the same on every run.", Dancer.bake) {
+			@Override
+			public void click(GameContainer container) {
+				bool = !bool;
+				Dancer.bake = bool;
+			}
+
+			@Override
+			public void read(String s) {
+				super.read(s);
+				Dancer.bake = bool;
+			}
+		},
+
+		DANCE_FIXED_FRAMERATE ("Fixed framerate", "FixedFramerate", "For recordings: every frame advances the game by exactly one frame, however long drawing takes. The music is not played.", Dancer.fixedframerate, 0, 240) {
+			@Override
+			public String getValueString() {
+				if (val == 0) {
+					return "Disabled";
+				}
+				return String.format("%dfps", val);
+			}
+
+			@Override
+			public void drag(GameContainer container, int d) {
+				super.drag(container, d);
+				Dancer.fixedframerate = val;
+			}
+
+			@Override
+			public void read(String s) {
+				super.read(s);
+				Dancer.fixedframerate = val;
+			}
+		},
+
 		DANCE_DRAW_APPROACH ("Draw approach circles", "DrawApproach", "Can get a bit busy when using mirror collage", Dancer.drawApproach) {
 			@Override
 			public void click(GameContainer container) {
@@ -1004,31 +1063,31 @@ public class Options {
 			}
 		},
 
-		DANCE_CIRLCE_IN_SLOW_SLIDERS ("Do circles in slow sliders", "CircleInSlider", "Circle around sliderball in lazy & slow sliders", Pippi.circleSlowSliders) {
+		DANCE_CIRLCE_IN_SLOW_SLIDERS ("Do circles in slow sliders", "CircleInSlider", "Circle around sliderball in lazy & slow sliders", Dancer.instance.config.pippiCircleSlowSliders) {
 			@Override
 			public void click(GameContainer container) {
 				bool = !bool;
-				Pippi.circleSlowSliders = bool;
+				Dancer.instance.config.pippiCircleSlowSliders = bool;
 			}
 
 			@Override
 			public void read(String s) {
 				super.read(s);
-				Pippi.circleSlowSliders = bool;
+				Dancer.instance.config.pippiCircleSlowSliders = bool;
 			}
 		},
 
-		DANCE_CIRLCE_IN_LAZY_SLIDERS ("Do circles in lazy sliders", "CircleInLazySlider", "Circle in hitcircle in lazy sliders", Pippi.circleLazySliders) {
+		DANCE_CIRLCE_IN_LAZY_SLIDERS ("Do circles in lazy sliders", "CircleInLazySlider", "Circle in hitcircle in lazy sliders", Dancer.instance.config.pippiCircleLazySliders) {
 			@Override
 			public void click(GameContainer container) {
 				bool = !bool;
-				Pippi.circleLazySliders = bool;
+				Dancer.instance.config.pippiCircleLazySliders = bool;
 			}
 
 			@Override
 			public void read(String s) {
 				super.read(s);
-				Pippi.circleLazySliders = bool;
+				Dancer.instance.config.pippiCircleLazySliders = bool;
 			}
 		},
 
@@ -1077,17 +1136,17 @@ public class Options {
 			}
 		},
 
-		PIPPI_ENABLE ("Pippi", "Pippi", "Move in circles like dancing pippi (osu! april fools joke 2016)", Pippi.enabled) {
+		PIPPI_ENABLE ("Pippi", "Pippi", "Move in circles like dancing pippi (osu! april fools joke 2016)", Dancer.instance.config.pippiEnabled) {
 			@Override
 			public void click(GameContainer container) {
 				bool = !bool;
-				Pippi.enabled = bool;
+				Dancer.instance.config.pippiEnabled = bool;
 			}
 
 			@Override
 			public void read(String s) {
 				super.read(s);
-				Pippi.enabled = bool;
+				Dancer.instance.config.pippiEnabled = bool;
 			}
 		},
 
@@ -1100,17 +1159,17 @@ public class Options {
 			@Override
 			public void drag(GameContainer container, int d) {
 				super.drag(container, d);
-				Pippi.setRadiusPercent(val / 2);
+				Dancer.instance.pippi.setRadiusPercent(val / 2);
 			}
 
 			@Override
 			public void read(String s) {
 				super.read(s);
-				Pippi.setRadiusPercent(val / 2);
+				Dancer.instance.pippi.setRadiusPercent(val / 2);
 			}
 		},
 
-		PIPPI_ANGLE_INC_MUL("Pippi angle increment multiplier", "PippiAngIncMul", "How fast pippi's angle increments", Pippi.angleInc, -200, 200) {
+		PIPPI_ANGLE_INC_MUL("Pippi angle increment multiplier", "PippiAngIncMul", "How fast pippi's angle increments", Dancer.instance.config.pippiAngleInc, -200, 200) {
 			@Override
 			public String getValueString() {
 				return String.format("x%.1f", val / 10f);
@@ -1119,17 +1178,17 @@ public class Options {
 			@Override
 			public void drag(GameContainer container, int d) {
 				super.drag(container, d);
-				Pippi.angleInc = val;
+				Dancer.instance.config.pippiAngleInc = val;
 			}
 
 			@Override
 			public void read(String s) {
 				super.read(s);
-				Pippi.angleInc = val;
+				Dancer.instance.config.pippiAngleInc = val;
 			}
 		},
 
-		PIPPI_ANGLE_INC_MUL_SLIDER ("Pippi angle increment multiplier slider", "PippiAngIncMulSlider", "Same as above, but in sliders", Pippi.angleSliderInc, -200, 200) {
+		PIPPI_ANGLE_INC_MUL_SLIDER ("Pippi angle increment multiplier slider", "PippiAngIncMulSlider", "Same as above, but in sliders", Dancer.instance.config.pippiAngleSliderInc, -200, 200) {
 			@Override
 			public String getValueString() {
 				return String.format("x%.1f", val / 10f);
@@ -1138,41 +1197,41 @@ public class Options {
 			@Override
 			public void drag(GameContainer container, int d) {
 				super.drag(container, d);
-				Pippi.angleSliderInc = val;
+				Dancer.instance.config.pippiAngleSliderInc = val;
 			}
 
 			@Override
 			public void read(String s) {
 				super.read(s);
-				Pippi.angleSliderInc = val;
+				Dancer.instance.config.pippiAngleSliderInc = val;
 			}
 		},
 
-		PIPPI_SLIDER_FOLLOW_EXPAND ("Followcircle expand", "PippiFollowExpand", "Increase radius in followcircles", Pippi.followcircleExpand) {
+		PIPPI_SLIDER_FOLLOW_EXPAND ("Followcircle expand", "PippiFollowExpand", "Increase radius in followcircles", Dancer.instance.config.pippiFollowcircleExpand) {
 			@Override
 			public void click(GameContainer container) {
 				bool = !bool;
-				Pippi.followcircleExpand = bool;
+				Dancer.instance.config.pippiFollowcircleExpand = bool;
 			}
 
 			@Override
 			public void read(String s) {
 				super.read(s);
-				Pippi.followcircleExpand = bool;
+				Dancer.instance.config.pippiFollowcircleExpand = bool;
 			}
 		},
 
-		PIPPI_PREVENT_WOBBLY_STREAMS ("Prevent wobbly streams", "PippiPreventWobblyStreams", "Force linear mover while doing streams to prevent wobbly pippi", Pippi.preventWobblyStreams) {
+		PIPPI_PREVENT_WOBBLY_STREAMS ("Prevent wobbly streams", "PippiPreventWobblyStreams", "Force linear mover while doing streams to prevent wobbly pippi", Dancer.instance.config.pippiPreventWobblyStreams) {
 			@Override
 			public void click(GameContainer container) {
 				bool = !bool;
-				Pippi.preventWobblyStreams = bool;
+				Dancer.instance.config.pippiPreventWobblyStreams = bool;
 			}
 
 			@Override
 			public void read(String s) {
 				super.read(s);
-				Pippi.preventWobblyStreams = bool;
+				Dancer.instance.config.pippiPreventWobblyStreams = bool;
 			}
 		};
 
@@ -1743,6 +1802,24 @@ public class Options {
 	 */
 	public static boolean isWatchServiceEnabled() { return GameOption.ENABLE_WATCH_SERVICE.getBooleanValue(); }
 
+	/**
+	 * Returns the maximum number of downloads running at the same time.
+	 * @return the number of downloads [1, 10]
+	 */
+	public static int getMaxDownloads() { return GameOption.MAX_DOWNLOADS.getIntegerValue(); }
+
+	/**
+	 * Returns the maximum number of connections to one download server.
+	 * @return the number of connections [1, 8]
+	 */
+	public static int getMaxHostConnections() { return GameOption.MAX_HOST_CONNECTIONS.getIntegerValue(); }
+
+	/**
+	 * Returns the number of segments large downloads are fetched in.
+	 * @return the number of segments [1, 8], 1 if disabled
+	 */
+	public static int getDownloadSegments() { return GameOption.DOWNLOAD_SEGMENTS.getIntegerValue(); }
+
 	/**
 	 * Sets the track checkpoint time, if within bounds.
 	 * @param time the track position (in ms)
@@ -2050,6 +2127,9 @@ public class Options {
 		return beatmap;
 	}
 
+	/** Name of the spinner delay option before it was in ms (its value was in tenths of a ms). */
+	private static final String LEGACY_SPINNER_DELAY = "SpinnerDelay";
+
 	/**
 	 * Reads user options from the options file, if it exists.
 	 */
@@ -2060,6 +2140,20 @@ public class Options {
 			return;
 		}
 
+		// read file
+		try (BufferedReader in = new BufferedReader(new FileReader(OPTIONS_FILE))) {
+			readOptions(in);
+		} catch (IOException e) {
+			ErrorHandler.error(String.format("Failed to read file '%s'.", OPTIONS_FILE.getAbsolutePath()), e, false);
+		}
+	}
+
+	/**
+	 * Reads user options from a reader, in the options file format.
+	 * @param in the reader
+	 * @throws IOException if an I/O error occurs
+	 */
+	static void readOptions(BufferedReader in) throws IOException {
 		// create option map
 		if (optionMap == null) {
 			optionMap = new HashMap<String, GameOption>();
@@ -2067,31 +2161,42 @@ public class Options {
 				optionMap.put(option.getDisplayName(), option);
 		}
 
-		// read file
-		try (BufferedReader in = new BufferedReader(new FileReader(OPTIONS_FILE))) {
-			String line;
-			while ((line = in.readLine()) != null) {
-				line = line.trim();
-				if (line.length() < 2 || line.charAt(0) == '#')
-					continue;
-				int index = line.indexOf('=');
-				if (index == -1)
-					continue;
-
-				// read option
-				String name = line.substring(0, index).trim();
-				GameOption option = optionMap.get(name);
-				if (option != null) {
-					try {
-						String value = line.substring(index + 1).trim();
-						option.read(value);
-					} catch (NumberFormatException e) {
-						Log.warn(String.format("Format error in options file for line: '%s'.", line), e);
-					}
+		String legacySpinnerDelay = null;
+		boolean spinnerDelayRead = false;
+		String line;
+		while ((line = in.readLine()) != null) {
+			line = line.trim();
+			if (line.length() < 2 || line.charAt(0) == '#')
+				continue;
+			int index = line.indexOf('=');
+			if (index == -1)
+				continue;
+
+			// read option
+			String name = line.substring(0, index).trim();
+			GameOption option = optionMap.get(name);
+			if (option != null) {
+				if (option == GameOption.DANCE_SPINNER_DELAY)
+					spinnerDelayRead = true;
+				try {
+					String value = line.substring(index + 1).trim();
+					option.read(value);
+				} catch (NumberFormatException e) {
+					Log.warn(String.format("Format error in options file for line: '%s'.", line), e);
 				}
+			} else if (name.equals(LEGACY_SPINNER_DELAY))
+				legacySpinnerDelay = line.substring(index + 1).trim();
+		}
+
+		// the old setting was in tenths of a ms: convert it, unless the new one is set
+		if (legacySpinnerDelay != null && !spinnerDelayRead) {
+			try {
+				GameOption option = GameOption.DANCE_SPINNER_DELAY;
+				int delay = Integer.parseInt(legacySpinnerDelay) / 10;
+				option.read(Integer.toString(Utils.clamp(delay, Spinner.MIN_DELAY, option.getMaxValue())));
+			} catch (NumberFormatException e) {
+				Log.warn(String.format("Format error in options file for spinner delay: '%s'.", legacySpinnerDelay), e);
 			}
-		} catch (IOException e) {
-			ErrorHandler.error(String.format("Failed to read file '%s'.", OPTIONS_FILE.getAbsolutePath()), e, false);
 		}
 	}
 
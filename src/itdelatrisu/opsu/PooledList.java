@@ -0,0 +1,129 @@
+/*
+ * opsu! - an open-source osu! client
+ * Copyright (C) 2014, 2015 Jeffrey Han
+ *
+ * opsu! is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * opsu! is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with opsu!.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package itdelatrisu.opsu;
+
+/**
+ * Array-backed list that recycles its elements.
+ * <p>
+ * Removed elements are kept past the end of the list and handed out again
+ * by {@link #add()}, so a list with a steady number of live elements stops
+ * allocating once warmed up. Not thread-safe.
+ *
+ * @param <T> the element type
+ */
+public abstract class PooledList<T> {
+	/** Initial capacity. */
+	private static final int INITIAL_CAPACITY = 32;
+
+	/** The elements (live elements first, then recycled ones). */
+	private Object[] items = new Object[INITIAL_CAPACITY];
+
+	/** Number of live elements. */
+	private int size = 0;
+
+	/** Number of elements removed in the current {@link #retain(int)} pass. */
+	private int removed = 0;
+
+	/**
+	 * Creates a new element (called only when no recycled element is available).
+	 */
+	protected abstract T create();
+
+	/**
+	 * Called when an element is removed, to release any references it holds.
+	 * @param item the removed element
+	 */
+	protected void recycle(T item) {}
+
+	/**
+	 * Appends an element, reusing a recycled one if possible.
+	 * The caller is responsible for setting all of its fields.
+	 * @return the element
+	 */
+	@SuppressWarnings("unchecked")
+	public T add() {
+		if (size == items.length) {
+			Object[] newItems = new Object[items.length * 2];
+			System.arraycopy(items, 0, newItems, 0, items.length);
+			items = newItems;
+		}
+		T item = (T) items[size];
+		if (item == null) {
+			item = create();
+			items[size] = item;
+		}
+		size++;
+		return item;
+	}
+
+	/**
+	 * Returns the element at an index.
+	 * @param i the index (0 is the oldest element)
+	 */
+	@SuppressWarnings("unchecked")
+	public T get(int i) { return (T) items[i]; }
+
+	/** Returns the last (newest) element. */
+	public T getLast() { return get(size - 1); }
+
+	/** Returns the number of elements. */
+	public int size() { return size; }
+
+	/** Returns whether the list is empty. */
+	public boolean isEmpty() { return size == 0; }
+
+	/**
+	 * Marks whether the element at an index is kept, as part of an in-place
+	 * filtering pass. Every index from 0 to {@code size() - 1} must be passed
+	 * exactly once, in order, followed by a call to {@link #endRetain()}.
+	 * The order of kept elements is preserved.
+	 * @param i the index
+	 * @param keep whether to keep the element
+	 */
+	@SuppressWarnings("unchecked")
+	public void retain(int i, boolean keep) {
+		if (!keep) {
+			recycle((T) items[i]);
+			removed++;
+		} else if (removed > 0) {
+			Object tmp = items[i - removed];
+			items[i - removed] = items[i];
+			items[i] = tmp;
+		}
+	}
+
+	/**
+	 * Ends a filtering pass started with {@link #retain(int, boolean)}.
+	 */
+	public void endRetain() {
+		size -= removed;
+		removed = 0;
+	}
+
+	/**
+	 * Removes all elements (they are kept for reuse).
+	 */
+	@SuppressWarnings("unchecked")
+	public void clear() {
+		for (int i = 0; i < size; i++)
+			recycle((T) items[i]);
+		size = 0;
+		removed = 0;
+	}
+}
@@ -25,6 +25,7 @@ import itdelatrisu.opsu.downloads.Download;
 import itdelatrisu.opsu.downloads.DownloadNode;
 import itdelatrisu.opsu.objects.Circle;
 import itdelatrisu.opsu.replay.PlaybackSpeed;
+import itdelatrisu.opsu.skins.SkinAtlas;
 import itdelatrisu.opsu.ui.Fonts;
 import itdelatrisu.opsu.ui.UI;
 
@@ -62,6 +63,7 @@ import org.newdawn.slick.Animation;
 import org.newdawn.slick.Color;
 import org.newdawn.slick.GameContainer;
 import org.newdawn.slick.Input;
+import org.newdawn.slick.openal.Mp3FrameIndex;
 import org.newdawn.slick.state.StateBasedGame;
 import org.newdawn.slick.util.Log;
 
@@ -109,6 +111,9 @@ public class Utils {
 		container.setAlwaysRender(true);
 		container.setUpdateOnlyWhenVisible(false);
 
+		// cache MP3 frame indices beside the beatmap database
+		Mp3FrameIndex.setCacheDir(Options.FRAME_INDEX_DIR);
+
 		// calculate UI scale
 		GameImage.init(width, height);
 
@@ -122,6 +127,9 @@ public class Utils {
 		// load skin
 		Options.loadSkin();
 
+		// pack gameplay images into the skin atlas
+		SkinAtlas.load(Options.getSkin());
+
 		// initialize game images
 		for (GameImage img : GameImage.values()) {
 			if (img.isPreload())
@@ -349,7 +357,7 @@ public class Utils {
 	 * deletes the directory itself.
 	 * @param dir the directory to delete
 	 */
-	private static void deleteDirectory(File dir) {
+	public static void deleteDirectory(File dir) {
 		if (dir == null || !dir.isDirectory())
 			return;
 
@@ -590,15 +598,18 @@ public class Utils {
 	}
 	*/
 
-	public static float[] mirrorPoint(float x, float y) {
-		double dx = x - Options.width / 2d;
-		double dy = y - Options.height / 2d;
-		double ang = Math.atan2(dy, dx);
-		double d = -Math.sqrt(dx * dx + dy * dy);
-		return new float[]{
-			(float) (Options.width / 2d + Math.cos(ang) * d),
-			(float) (Options.height / 2d + Math.sin(ang) * d)
-		};
+	/**
+	 * Mirrors a point through the center of the screen.
+	 * @param x the x coordinate
+	 * @param y the y coordinate
+	 * @param out the array to store the mirrored coordinates in
+	 * @return {@code out}
+	 */
+	public static float[] mirrorPoint(float x, float y, float[] out) {
+		// a rotation of 180 degrees around the center
+		out[0] = Options.width - x;
+		out[1] = Options.height - y;
+		return out;
 	}
 
 }
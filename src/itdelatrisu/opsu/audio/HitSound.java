@@ -76,11 +76,14 @@ public enum HitSound implements SoundController.SoundComponent {
 	/** Current default sample set. */
 	private static SampleSet currentDefaultSampleSet = SampleSet.NORMAL;
 
+	/** All sample sets (values() copies the array on every call). */
+	private static final SampleSet[] SAMPLE_SETS = SampleSet.values();
+
 	/** The file name. */
 	private final String filename;
 
-	/** The Clip associated with the hit sound. */
-	private HashMap<SampleSet, MultiClip> clips;
+	/** The decoded samples associated with the hit sound. */
+	private HashMap<SampleSet, SoundSample> samples;
 
 	/** Total number of hit sounds. */
 	public static final int SIZE = values().length;
@@ -91,7 +94,7 @@ public enum HitSound implements SoundController.SoundComponent {
 	 */
 	HitSound(String filename) {
 		this.filename = filename;
-		this.clips = new HashMap<SampleSet, MultiClip>();
+		this.samples = new HashMap<SampleSet, SoundSample>();
 	}
 
 	/**
@@ -101,23 +104,23 @@ public enum HitSound implements SoundController.SoundComponent {
 	public String getFileName() { return filename; }
 
 	@Override
-	public MultiClip getClip() {
-		return (currentSampleSet != null) ? clips.get(currentSampleSet) : null;
+	public SoundSample getSample() {
+		return (currentSampleSet != null) ? samples.get(currentSampleSet) : null;
 	}
 
 	/**
-	 * Returns the Clip associated with the given sample set.
+	 * Returns the sample associated with the given sample set.
 	 * @param s the sample set
 	 */
-	public MultiClip getClip(SampleSet s) { return clips.get(s); }
+	public SoundSample getSample(SampleSet s) { return samples.get(s); }
 
 	/**
-	 * Sets the hit sound Clip for the sample type.
+	 * Sets the hit sound sample for the sample type.
 	 * @param s the sample set
-	 * @param clip the Clip
+	 * @param sample the sample
 	 */
-	public void setClip(SampleSet s, MultiClip clip) {
-		clips.put(s, clip);
+	public void setSample(SampleSet s, SoundSample sample) {
+		samples.put(s, sample);
 	}
 
 	/**
@@ -140,7 +143,7 @@ public enum HitSound implements SoundController.SoundComponent {
 	 */
 	public static void setDefaultSampleSet(byte sampleType) {
 		currentDefaultSampleSet = SampleSet.NORMAL;
-		for (SampleSet ss : SampleSet.values()) {
+		for (SampleSet ss : SAMPLE_SETS) {
 			if (sampleType == ss.getIndex()) {
 				currentDefaultSampleSet = ss;
 				return;
@@ -154,7 +157,7 @@ public enum HitSound implements SoundController.SoundComponent {
 	 */
 	public static void setSampleSet(byte sampleType) {
 		currentSampleSet = currentDefaultSampleSet;
-		for (SampleSet ss : SampleSet.values()) {
+		for (SampleSet ss : SAMPLE_SETS) {
 			if (sampleType == ss.getIndex()) {
 				currentSampleSet = ss;
 				return;
@@ -0,0 +1,263 @@
+/*
+ * opsu! - an open-source osu! client
+ * Copyright (C) 2014, 2015 Jeffrey Han
+ *
+ * opsu! is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * opsu! is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with opsu!.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package itdelatrisu.opsu.audio;
+
+/**
+ * Smooth, high-resolution clock following the music position.
+ * <p>
+ * The audio position reported by OpenAL advances in coarse steps tied to
+ * buffer boundaries, so it is only sampled at a low rate. Between samples,
+ * the position is extrapolated from {@link System#nanoTime()} and the pitch.
+ * Small errors against the sampled position are corrected by slightly
+ * speeding up or slowing down the clock (so it never jumps or runs
+ * backwards); large errors (e.g. after a seek) snap the clock to the
+ * sampled position.
+ * <p>
+ * The clock is advanced once per frame with {@link #update(long)}, and
+ * {@link #getPosition()} returns the same value until the next update, so
+ * all consumers within a frame see one consistent timestamp.
+ * <p>
+ * In fixed mode ({@link #setFixed(boolean)}), the audio position is not
+ * sampled: the clock only advances by the times passed to {@link #update(long)},
+ * and snaps to the positions passed to {@link #invalidate(double)}, so the
+ * positions only depend on those.
+ */
+public class MusicClock {
+	/** Source of the audio position. */
+	public interface Source {
+		/** Returns the current audio position, in seconds. */
+		public float getPosition();
+
+		/** Returns the current playback pitch (and speed). */
+		public float getPitch();
+	}
+
+	/** Interval between audio position samples (in nanoseconds). */
+	private static final long SAMPLE_INTERVAL = 50000000L;
+
+	/** Errors larger than this snap the clock to the audio position (in ms). */
+	private static final double SNAP_THRESHOLD = 100;
+
+	/** Time over which an error is corrected (in ms of clock time). */
+	private static final double CORRECTION_TIME = 500;
+
+	/** Maximum speed correction, as a fraction of the playback speed. */
+	private static final double MAX_CORRECTION = 0.05;
+
+	/** The audio position source. */
+	private final Source source;
+
+	/** True if the clock must snap to the audio position on the next update. */
+	private boolean invalid = true;
+
+	/** True if the clock does not follow the audio position. */
+	private boolean fixed = false;
+
+	/** Position to snap to in fixed mode (in ms), or NaN to use the audio position. */
+	private double snapPosition = Double.NaN;
+
+	/** Anchor time (in nanoseconds). */
+	private long anchorTime;
+
+	/** Position at the anchor time (in ms). */
+	private double anchorPosition;
+
+	/** Playback pitch at the anchor time. */
+	private float pitch;
+
+	/** Speed correction applied since the anchor time (fraction of the pitch). */
+	private double correction;
+
+	/** Time of the last audio position sample (in nanoseconds). */
+	private long lastSampleTime;
+
+	/** Position returned for the current frame (in ms). */
+	private double framePosition;
+
+	/** Number of audio position samples taken. */
+	private int sampleCount = 0;
+
+	/** Number of times the clock snapped to the audio position. */
+	private int snapCount = 0;
+
+	/** Mean and running sum of squared deviations of the error (in ms), for the statistics. */
+	private double errorMean = 0, errorM2 = 0;
+
+	/** Maximum absolute error (in ms). */
+	private double errorMax = 0;
+
+	/** Last error (in ms). */
+	private double lastError = 0;
+
+	/**
+	 * Constructor.
+	 * @param source the audio position source
+	 */
+	public MusicClock(Source source) {
+		this.source = source;
+	}
+
+	/**
+	 * Advances the clock to the given time, sampling the audio position if
+	 * needed. Should be called once per frame.
+	 * @param now the current time (in nanoseconds, from {@link System#nanoTime()})
+	 */
+	public void update(long now) {
+		if (invalid) {
+			snap(now);
+			return;
+		}
+
+		// pitch changed: re-anchor at the current position
+		float newPitch = source.getPitch();
+		if (newPitch != pitch) {
+			anchorPosition = extrapolate(now);
+			anchorTime = now;
+			pitch = newPitch;
+		}
+
+		if (!fixed && now - lastSampleTime >= SAMPLE_INTERVAL) {
+			lastSampleTime = now;
+			double predicted = extrapolate(now);
+			double error = source.getPosition() * 1000.0 - predicted;
+			addSample(error);
+			if (Math.abs(error) > SNAP_THRESHOLD) {
+				snapCount++;
+				snap(now);
+				return;
+			}
+
+			// correct the error smoothly over the next CORRECTION_TIME ms
+			anchorPosition = predicted;
+			anchorTime = now;
+			correction = Math.max(-MAX_CORRECTION, Math.min(MAX_CORRECTION, error / CORRECTION_TIME));
+		}
+
+		framePosition = Math.max(framePosition, extrapolate(now));
+	}
+
+	/**
+	 * Forces the clock to snap to the audio position on the next update
+	 * (e.g. after a seek, or when playback starts or resumes).
+	 */
+	public void invalidate() { invalidate(Double.NaN); }
+
+	/**
+	 * Forces the clock to snap on the next update, to the given position in
+	 * fixed mode, or to the audio position otherwise.
+	 * @param position the position (in ms), or NaN to use the audio position
+	 */
+	public void invalidate(double position) {
+		invalid = true;
+		snapPosition = position;
+	}
+
+	/**
+	 * Sets whether the clock follows the audio position, or only the times
+	 * passed to {@link #update(long)} (e.g. when rendering frames offline).
+	 * The clock snaps on the next update.
+	 * @param fixed true to stop following the audio position
+	 */
+	public void setFixed(boolean fixed) {
+		this.fixed = fixed;
+		invalidate();
+	}
+
+	/** Returns whether the clock does not follow the audio position. */
+	public boolean isFixed() { return fixed; }
+
+	/** Returns whether the clock will snap on the next update. */
+	public boolean isInvalid() { return invalid; }
+
+	/**
+	 * Returns the position for the current frame, in milliseconds.
+	 */
+	public double getPosition() { return framePosition; }
+
+	/**
+	 * Returns the position at a time close to the current frame (e.g. the
+	 * time of an input event), in milliseconds.
+	 * @param time the time (in nanoseconds, from {@link System#nanoTime()})
+	 */
+	public double getPositionAt(long time) { return extrapolate(time); }
+
+	/** Returns the number of audio position samples taken. */
+	public int getSampleCount() { return sampleCount; }
+
+	/** Returns the number of times the clock snapped to the audio position. */
+	public int getSnapCount() { return snapCount; }
+
+	/** Returns the last measured drift (audio position minus clock position), in milliseconds. */
+	public double getDrift() { return lastError; }
+
+	/** Returns the mean drift, in milliseconds. */
+	public double getMeanDrift() { return errorMean; }
+
+	/** Returns the maximum absolute drift, in milliseconds. */
+	public double getMaxDrift() { return errorMax; }
+
+	/** Returns the jitter (standard deviation of the drift), in milliseconds. */
+	public double getJitter() { return (sampleCount > 1) ? Math.sqrt(errorM2 / (sampleCount - 1)) : 0; }
+
+	/**
+	 * Resets the drift and jitter statistics.
+	 */
+	public void resetStatistics() {
+		sampleCount = 0;
+		snapCount = 0;
+		errorMean = errorM2 = errorMax = lastError = 0;
+	}
+
+	/**
+	 * Snaps the clock to the audio position.
+	 * @param now the current time (in nanoseconds)
+	 */
+	private void snap(long now) {
+		invalid = false;
+		anchorTime = lastSampleTime = now;
+		if (fixed && !Double.isNaN(snapPosition))
+			anchorPosition = framePosition = snapPosition;
+		else
+			anchorPosition = framePosition = source.getPosition() * 1000.0;
+		snapPosition = Double.NaN;
+		pitch = source.getPitch();
+		correction = 0;
+	}
+
+	/**
+	 * Returns the extrapolated position at a time (in ms).
+	 * @param now the time (in nanoseconds)
+	 */
+	private double extrapolate(long now) {
+		return anchorPosition + (now - anchorTime) / 1000000.0 * pitch * (1 + correction);
+	}
+
+	/**
+	 * Adds a drift sample to the statistics (Welford's algorithm).
+	 * @param error the drift (in ms)
+	 */
+	private void addSample(double error) {
+		sampleCount++;
+		double delta = error - errorMean;
+		errorMean += delta / sampleCount;
+		errorM2 += delta * (error - errorMean);
+		errorMax = Math.max(errorMax, Math.abs(error));
+		lastError = error;
+	}
+}
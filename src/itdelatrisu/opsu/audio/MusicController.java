@@ -24,6 +24,7 @@ import itdelatrisu.opsu.beatmap.Beatmap;
 import itdelatrisu.opsu.beatmap.BeatmapParser;
 import itdelatrisu.opsu.states.Game;
 import itdelatrisu.opsu.ui.UI;
+import yugecin.opsudance.SimulationClock;
 
 import java.io.File;
 import java.io.IOException;
@@ -74,6 +75,27 @@ public class MusicController {
 	/** Whether the current track volume is dimmed. */
 	private static boolean trackDimmed = false;
 
+	/** Whether the track follows the simulation clock without being heard, see {@link #setFixedTimestep(boolean)}. */
+	private static boolean fixedTimestep = false;
+
+	/** Whether the track is playing, while following the simulation clock. */
+	private static boolean silentPlaying = false;
+
+	/**
+	 * Whether to seek to the pause time on resume, after leaving the fixed timestep mode.
+	 * Playing, seeking or stopping the track cancels it (e.g. retrying from the pause menu).
+	 */
+	private static boolean seekOnResume = false;
+
+	/** The clock following the track position. */
+	private static final MusicClock clock = new MusicClock(new MusicClock.Source() {
+		@Override
+		public float getPosition() { return player.getPosition(); }
+
+		@Override
+		public float getPitch() { return player.getPitch(); }
+	});
+
 	/** The track dim level, if dimmed. */
 	private static float dimLevel = 1f;
 
@@ -158,12 +180,19 @@ public class MusicController {
 			setVolume(Options.getMusicVolume() * Options.getMasterVolume());
 			trackEnded = false;
 			pauseTime = 0f;
+			seekOnResume = false;
+			if (fixedTimestep) {
+				silentPlaying = true;
+				clock.invalidate(Math.max(position, 0));
+				return;
+			}
 			if (loop)
 				player.loop();
 			else
 				player.play();
 			if (position >= 0)
 				player.setPosition(position / 1000f);
+			clock.invalidate();
 		}
 	}
 
@@ -188,6 +217,8 @@ public class MusicController {
 	 * Returns true if the current track is playing.
 	 */
 	public static boolean isPlaying() {
+		if (fixedTimestep)
+			return (trackExists() && silentPlaying);
 		return (trackExists() && player.playing());
 	}
 
@@ -203,6 +234,13 @@ public class MusicController {
 	 */
 	public static void pause() {
 		if (isPlaying()) {
+			if (fixedTimestep) {
+				if (clock.isInvalid())
+					clock.update(SimulationClock.instance.now());
+				pauseTime = (float) (clock.getPosition() / 1000);
+				silentPlaying = false;
+				return;
+			}
 			pauseTime = player.getPosition();
 			player.pause();
 		}
@@ -213,9 +251,20 @@ public class MusicController {
 	 */
 	public static void resume() {
 		if (trackExists()) {
-			pauseTime = 0f;
+			if (fixedTimestep) {
+				clock.invalidate(pauseTime * 1000.0);
+				pauseTime = 0f;
+				silentPlaying = true;
+				return;
+			}
 			player.resume();
 			player.setVolume(1.0f);
+			if (seekOnResume) {
+				seekOnResume = false;
+				player.setPosition(pauseTime);
+			}
+			pauseTime = 0f;
+			clock.invalidate();
 		}
 	}
 
@@ -223,7 +272,9 @@ public class MusicController {
 	 * Stops the current track.
 	 */
 	public static void stop() {
-		if (isPlaying())
+		silentPlaying = false;
+		seekOnResume = false;
+		if (trackExists() && player.playing())
 			player.stop();
 		if (trackExists())
 			pauseTime = 0f;
@@ -234,7 +285,7 @@ public class MusicController {
 	 * @param duration the fade time (in ms)
 	 */
 	public static void fadeOut(int duration) {
-		if (isPlaying())
+		if (isPlaying() && !fixedTimestep)
 			player.fade(duration, 0f, true);
 	}
 
@@ -243,28 +294,106 @@ public class MusicController {
 	 * @param duration the pitch fade time (in ms)
 	 */
 	public static void pitchFadeOut(int duration) {
-		if (isPlaying())
+		if (isPlaying() && !fixedTimestep)
 			player.pitchFade(duration, 0f);
 	}
 
+	/**
+	 * Advances the music clock.
+	 * Should be called once per frame, before any call to {@link #getPosition()}.
+	 */
+	public static void updateClock() {
+		if (isPlaying()) {
+			clock.update(SimulationClock.instance.getTime());
+			// the silent track does not end by itself
+			if (fixedTimestep && getDuration() > 0 && clock.getPosition() >= getDuration()) {
+				silentPlaying = false;
+				trackEnded = true;
+			}
+		} else
+			clock.invalidate();
+	}
+
+	/**
+	 * Sets whether the track follows the simulation clock instead of the
+	 * audio. The track is not heard meanwhile, since the simulation may run
+	 * slower (or faster) than real time. When leaving this mode, the audio
+	 * continues at the simulated position.
+	 * @param fixed true to follow the simulation clock
+	 * @see SimulationClock#setFixedFrameRate(int)
+	 */
+	public static void setFixedTimestep(boolean fixed) {
+		if (fixed == fixedTimestep)
+			return;
+		if (fixed && trackExists() && player.playing()) {
+			if (clock.isInvalid())
+				clock.update(System.nanoTime());
+			double position = clock.getPosition();
+			player.pause();
+			silentPlaying = true;
+			fixedTimestep = true;
+			clock.setFixed(true);
+			clock.invalidate(position);
+			return;
+		}
+		if (!fixed && trackExists()) {
+			if (silentPlaying) {
+				if (clock.isInvalid())
+					clock.update(SimulationClock.instance.now());
+				float position = (float) (clock.getPosition() / 1000);
+				silentPlaying = false;
+				player.play();
+				player.setPosition(position);
+			} else if (isPaused())
+				seekOnResume = true;
+		}
+		fixedTimestep = fixed;
+		clock.setFixed(fixed);
+	}
+
+	/**
+	 * Returns the music clock (for drift and jitter statistics).
+	 */
+	public static MusicClock getClock() { return clock; }
+
 	/**
 	 * Returns the position in the current track, in milliseconds.
+	 * While playing, this is the music clock position for the current frame.
 	 * If no track is loaded, 0 will be returned.
 	 */
 	public static int getPosition() {
-		if (isPlaying())
-			return (int) (player.getPosition() * 1000 + Options.getMusicOffset() + Game.currentMapMusicOffset);
-		else if (isPaused())
+		if (isPlaying()) {
+			if (clock.isInvalid())
+				clock.update(SimulationClock.instance.now());
+			return (int) (clock.getPosition() + Options.getMusicOffset() + Game.currentMapMusicOffset);
+		} else if (isPaused())
 			return Math.max((int) (pauseTime * 1000 + Options.getMusicOffset() + Game.currentMapMusicOffset), 0);
 		else
 			return 0;
 	}
 
+	/**
+	 * Returns the position in the current track at a given time close to
+	 * the current frame (e.g. the time of an input event), in milliseconds.
+	 * @param time the time (in nanoseconds, from {@link System#nanoTime()})
+	 */
+	public static int getPositionAt(long time) {
+		if (isPlaying() && !clock.isInvalid() && !fixedTimestep)
+			return (int) (clock.getPositionAt(time) + Options.getMusicOffset() + Game.currentMapMusicOffset);
+		return getPosition();
+	}
+
 	/**
 	 * Seeks to a position in the current track.
 	 * @param position the new track position (in ms)
 	 */
 	public static boolean setPosition(int position) {
+		seekOnResume = false;
+		if (fixedTimestep) {
+			clock.invalidate(position);
+			return (trackExists() && position >= 0);
+		}
+		clock.invalidate();
 		return (trackExists() && position >= 0 && player.setPosition(position / 1000f));
 	}
 
@@ -306,10 +435,17 @@ public class MusicController {
 	public static void play(boolean loop) {
 		if (trackExists()) {
 			trackEnded = false;
+			seekOnResume = false;
+			if (fixedTimestep) {
+				silentPlaying = true;
+				clock.invalidate();
+				return;
+			}
 			if (loop)
 				player.loop();
 			else
 				player.play();
+			clock.invalidate();
 		}
 	}
 
@@ -406,6 +542,8 @@ public class MusicController {
 		themePlaying = false;
 		pauseTime = 0f;
 		trackDimmed = false;
+		silentPlaying = false;
+		seekOnResume = false;
 
 		// releases all sources from previous tracks
 		destroyOpenAL();
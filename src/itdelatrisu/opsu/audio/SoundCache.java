@@ -0,0 +1,252 @@
+/*
+ * opsu! - an open-source osu! client
+ * Copyright (C) 2014, 2015 Jeffrey Han
+ *
+ * opsu! is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * opsu! is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with opsu!.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package itdelatrisu.opsu.audio;
+
+import itdelatrisu.opsu.Options;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+
+import org.newdawn.slick.util.Log;
+
+/**
+ * Disk cache of decoded sound samples.
+ * <p>
+ * Samples are stored as raw PCM in the mixer format, keyed by the source
+ * file path, size and modification time, so later launches read the cached
+ * data instead of decoding the source files again. Entries not used for a
+ * while, or beyond the cache size limit, are removed by {@link #prune()}.
+ */
+public class SoundCache {
+	/** Cache format version (change to invalidate old caches). */
+	private static final int FORMAT_VERSION = 1;
+
+	/** Cache file magic number. */
+	private static final int MAGIC = 0x4F504357;  // "OPCW"
+
+	/** Cache file header size, in bytes (magic, version, sample rate, sample count). */
+	private static final int HEADER_SIZE = 16;
+
+	/** Maximum total size of the cache, in bytes (least recently used entries are removed first). */
+	private static final long MAX_CACHE_SIZE = 64L * 1024 * 1024;
+
+	/** Time after which an unused entry is removed (e.g. left behind by a changed or removed skin). */
+	private static final long STALE_TIME = TimeUnit.DAYS.toMillis(30);
+
+	// This class should not be instantiated.
+	private SoundCache() {}
+
+	/**
+	 * Loads a cached sample.
+	 * @param ref the resource name
+	 * @param url the resource URL
+	 * @return the sample, or null if not cached
+	 */
+	public static SoundSample load(String ref, URL url) { return load(Options.SOUND_CACHE_DIR, ref, url); }
+
+	/**
+	 * Loads a cached sample from a cache directory.
+	 * The file is read into a heap buffer rather than mapped, so it is closed
+	 * (and can be replaced or deleted) as soon as this method returns.
+	 * @param dir the cache directory
+	 * @param ref the resource name
+	 * @param url the resource URL
+	 * @return the sample, or null if not cached
+	 */
+	static SoundSample load(File dir, String ref, URL url) {
+		File file = getCacheFile(dir, ref, url);
+		if (file == null || !file.isFile())
+			return null;
+		SoundSample sample;
+		try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+		     FileChannel channel = raf.getChannel()) {
+			long size = channel.size();
+			if (size < HEADER_SIZE || size > Integer.MAX_VALUE)
+				return null;
+			ByteBuffer buf = ByteBuffer.allocate((int) size).order(ByteOrder.LITTLE_ENDIAN);
+			while (buf.hasRemaining()) {
+				if (channel.read(buf) < 0)
+					return null;
+			}
+			buf.flip();
+			if (buf.getInt() != MAGIC || buf.getInt() != FORMAT_VERSION || buf.getInt() != SoundMixer.SAMPLE_RATE)
+				return null;
+			int length = buf.getInt();
+			if (length < 0 || (long) length * 2 != size - HEADER_SIZE)
+				return null;
+			short[] data = new short[length];
+			buf.asShortBuffer().get(data);
+			sample = new SoundSample(ref, data);
+		} catch (IOException e) {
+			Log.warn(String.format("Failed to read cached sound '%s'.", file.getName()), e);
+			return null;
+		}
+
+		// mark as recently used
+		file.setLastModified(System.currentTimeMillis());
+		return sample;
+	}
+
+	/**
+	 * Stores a sample in the cache.
+	 * @param ref the resource name
+	 * @param url the resource URL
+	 * @param sample the decoded sample
+	 */
+	public static void store(String ref, URL url, SoundSample sample) { store(Options.SOUND_CACHE_DIR, ref, url, sample); }
+
+	/**
+	 * Stores a sample in a cache directory.
+	 * @param dir the cache directory
+	 * @param ref the resource name
+	 * @param url the resource URL
+	 * @param sample the decoded sample
+	 */
+	static void store(File dir, String ref, URL url, SoundSample sample) {
+		File file = getCacheFile(dir, ref, url);
+		if (file == null)
+			return;
+		if (!dir.isDirectory() && !dir.mkdirs()) {
+			Log.warn(String.format("Failed to create sound cache directory '%s'.", dir.getAbsolutePath()));
+			return;
+		}
+		short[] data = sample.getData();
+		File tmp = new File(dir, file.getName() + ".tmp");
+		try (RandomAccessFile raf = new RandomAccessFile(tmp, "rw");
+		     FileChannel channel = raf.getChannel()) {
+			raf.setLength(0);
+			ByteBuffer buf = ByteBuffer.allocate(HEADER_SIZE + data.length * 2).order(ByteOrder.LITTLE_ENDIAN);
+			buf.putInt(MAGIC).putInt(FORMAT_VERSION).putInt(SoundMixer.SAMPLE_RATE).putInt(data.length);
+			buf.asShortBuffer().put(data);
+			buf.clear();
+			while (buf.hasRemaining())
+				channel.write(buf);
+		} catch (IOException e) {
+			Log.warn(String.format("Failed to write cached sound '%s'.", file.getName()), e);
+			tmp.delete();
+			return;
+		}
+		if (!tmp.renameTo(file)) {
+			file.delete();
+			if (!tmp.renameTo(file)) {
+				Log.warn(String.format("Failed to write cached sound '%s'.", file.getName()));
+				tmp.delete();
+			}
+		}
+	}
+
+	/**
+	 * Removes stale entries and keeps the cache under its size limit.
+	 * Should be called once all sounds are loaded.
+	 */
+	public static void prune() { prune(Options.SOUND_CACHE_DIR, MAX_CACHE_SIZE, System.currentTimeMillis()); }
+
+	/**
+	 * Removes the entries of a cache directory that were not used within
+	 * {@link #STALE_TIME}, then the least recently used entries until the
+	 * rest fits in {@code maxSize}. Leftover temporary files are removed too.
+	 * @param dir the cache directory
+	 * @param maxSize the maximum total size, in bytes
+	 * @param now the current time
+	 */
+	static void prune(File dir, long maxSize, long now) {
+		File[] files = dir.listFiles();
+		if (files == null)
+			return;
+
+		// most recently used first
+		final long[] lastUsed = new long[files.length];
+		Integer[] order = new Integer[files.length];
+		for (int i = 0; i < files.length; i++) {
+			lastUsed[i] = files[i].lastModified();
+			order[i] = i;
+		}
+		Arrays.sort(order, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer a, Integer b) { return Long.compare(lastUsed[b], lastUsed[a]); }
+		});
+
+		long size = 0;
+		int removed = 0;
+		for (int i : order) {
+			File file = files[i];
+			if (!file.isFile())
+				continue;
+			boolean keep = file.getName().endsWith(".pcm") &&
+				now - lastUsed[i] <= STALE_TIME && size + file.length() <= maxSize;
+			if (keep)
+				size += file.length();
+			else if (file.delete())
+				removed++;
+		}
+		if (removed > 0)
+			Log.debug(String.format("Removed %d entries from the sound cache (%d bytes kept).", removed, size));
+	}
+
+	/**
+	 * Returns the cache file for a resource.
+	 * The name covers the resource path, size and modification time, so any
+	 * change to the source file results in a new cache file.
+	 * @param dir the cache directory
+	 * @param ref the resource name
+	 * @param url the resource URL
+	 * @return the cache file, or null if no hash algorithm is available
+	 */
+	private static File getCacheFile(File dir, String ref, URL url) {
+		MessageDigest md;
+		try {
+			md = MessageDigest.getInstance("MD5");
+		} catch (NoSuchAlgorithmException e) {
+			return null;
+		}
+		long length = -1, lastModified = -1;
+		File file = new File(ref);
+		if (file.isAbsolute() && file.isFile()) {
+			length = file.length();
+			lastModified = file.lastModified();
+		} else {
+			try {
+				URLConnection conn = url.openConnection();
+				length = conn.getContentLengthLong();
+				lastModified = conn.getLastModified();
+				conn.getInputStream().close();
+			} catch (Exception e) {
+				// unknown stamp: still keyed by name
+			}
+		}
+		String key = String.format("%d|%d|%s|%d|%d", FORMAT_VERSION, SoundMixer.SAMPLE_RATE, url, length, lastModified);
+		byte[] digest = md.digest(key.getBytes(StandardCharsets.UTF_8));
+		StringBuilder sb = new StringBuilder(digest.length * 2 + 4);
+		for (byte b : digest)
+			sb.append(String.format("%02x", b & 0xFF));
+		return new File(dir, sb.append(".pcm").toString());
+	}
+}
@@ -27,6 +27,10 @@ import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URL;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.sound.sampled.AudioFormat;
 import javax.sound.sampled.AudioInputStream;
@@ -37,28 +41,30 @@ import javax.sound.sampled.LineListener;
 import javax.sound.sampled.LineUnavailableException;
 
 import org.newdawn.slick.SlickException;
+import org.newdawn.slick.util.Log;
 import org.newdawn.slick.util.ResourceLoader;
 
 /**
  * Controller for all (non-music) sound components.
  * Note: Uses Java Sound because OpenAL lags too much for accurate hit sounds.
+ * Sound effects and hit sounds are played through the {@link SoundMixer}.
  */
 public class SoundController {
 
     /** Interface for all (non-music) sound components. */
 	public interface SoundComponent {
 		/**
-		 * Returns the Clip associated with the sound component.
-		 * @return the Clip
+		 * Returns the decoded sample associated with the sound component.
+		 * @return the sample
 		 */
-		public MultiClip getClip();
+		public SoundSample getSample();
 	}
 
 	/** The current track being played, if any. */
 	private static MultiClip currentTrack;
 
 	/** The current SoundComponent being played, if any */
-	private static MultiClip currentSoundComponent;
+	private static SoundSample currentSoundComponent;
 
 	/** Sample volume multiplier, from timing points [0, 1]. */
 	private static float sampleVolumeMultiplier = 1f;
@@ -67,21 +73,21 @@ public class SoundController {
 	private static boolean isMuted;
 
 	/** The name of the current sound file being loaded. */
-	private static String currentFileName;
+	private static volatile String currentFileName;
 
-	/** The number of the current sound file being loaded. */
-	private static int currentFileIndex = -1;
+	/** The number of sound files loaded so far (-1 if not loading). */
+	private static final AtomicInteger currentFileIndex = new AtomicInteger(-1);
 
 	// This class should not be instantiated.
 	private SoundController() {}
 
 	/**
-	 * Loads and returns a Clip from a resource.
+	 * Loads and decodes a sample from a resource, using the decoded sound
+	 * cache if possible.
 	 * @param ref the resource name
-	 * @param isMP3 true if MP3, false if WAV
-	 * @return the loaded and opened clip
+	 * @return the decoded sample
 	 */
-	private static MultiClip loadClip(String ref, boolean isMP3) {
+	private static SoundSample loadSample(String ref) {
 		try {
 			URL url = ResourceLoader.getResource(ref);
 
@@ -89,12 +95,16 @@ public class SoundController {
 			InputStream in = url.openStream();
 			if (in.available() == 0) {
 				in.close();
-				return new MultiClip(ref, null);
+				return new SoundSample(ref, new short[0]);
 			}
 			in.close();
 
-			AudioInputStream audioIn = AudioSystem.getAudioInputStream(url);
-			return loadClip(ref, audioIn, isMP3);
+			SoundSample sample = SoundCache.load(ref, url);
+			if (sample == null) {
+				sample = SoundSample.decode(ref, AudioSystem.getAudioInputStream(url));
+				SoundCache.store(ref, url, sample);
+			}
+			return sample;
 		} catch (Exception e) {
 			ErrorHandler.error(String.format("Failed to load file '%s'.", ref), e, true);
 			return null;
@@ -201,52 +211,79 @@ public class SoundController {
 
 	/**
 	 * Loads all sound files.
+	 * Files are decoded in parallel (or read from the decoded sound cache).
 	 */
 	public static void init() {
 		if (Options.isSoundDisabled())
 			return;
 
-		currentFileIndex = 0;
+		long startTime = System.currentTimeMillis();
 
-		// menu and game sounds
-		for (SoundEffect s : SoundEffect.values()) {
-			if ((currentFileName = getSoundFileName(s.getFileName())) == null) {
-				ErrorHandler.error(String.format("Could not find sound file '%s'.", s.getFileName()), null, false);
-				continue;
-			}
-			MultiClip newClip = loadClip(currentFileName, currentFileName.endsWith(".mp3"));
-			if (s.getClip() != null) {  // clip previously loaded (e.g. program restart)
-				if (newClip != null) {
-					s.getClip().destroy();  // destroy previous clip
-					s.setClip(newClip);
+		// start the mixer
+		SoundMixer.get();
+
+		// base file names: menu and game sounds, then hit sounds
+		final int effectCount = SoundEffect.SIZE;
+		int fileCount = effectCount + (HitSound.SIZE * SampleSet.SIZE);
+		final String[] filenames = new String[fileCount];
+		for (SoundEffect s : SoundEffect.values())
+			filenames[s.ordinal()] = s.getFileName();
+		for (SampleSet ss : SampleSet.values()) {
+			for (HitSound s : HitSound.values())
+				filenames[effectCount + ss.ordinal() * HitSound.SIZE + s.ordinal()] = String.format("%s-%s", ss.getName(), s.getFileName());
+		}
+
+		// load all files
+		final SoundSample[] samples = new SoundSample[fileCount];
+		currentFileIndex.set(0);
+		int threadCount = Math.max(Math.min(Runtime.getRuntime().availableProcessors(), fileCount), 1);
+		ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+		for (int i = 0; i < fileCount; i++) {
+			final int index = i;
+			executor.execute(new Runnable() {
+				@Override
+				public void run() {
+					String filename = getSoundFileName(filenames[index]);
+					if (filename == null) {
+						ErrorHandler.error(String.format((index < effectCount) ?
+								"Could not find sound file '%s'." : "Could not find hit sound file '%s'.",
+								filenames[index]), null, false);
+					} else {
+						currentFileName = filename;
+						samples[index] = loadSample(filename);
+					}
+					currentFileIndex.incrementAndGet();
 				}
-			} else
-				s.setClip(newClip);
-			currentFileIndex++;
+			});
+		}
+		executor.shutdown();
+		try {
+			executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+		} catch (InterruptedException e) {
+			executor.shutdownNow();
+			Thread.currentThread().interrupt();
 		}
 
-		// hit sounds
+		// keep previous samples on failure (e.g. program restart)
+		for (SoundEffect s : SoundEffect.values()) {
+			SoundSample sample = samples[s.ordinal()];
+			if (sample != null || s.getSample() == null)
+				s.setSample(sample);
+		}
 		for (SampleSet ss : SampleSet.values()) {
 			for (HitSound s : HitSound.values()) {
-				String filename = String.format("%s-%s", ss.getName(), s.getFileName());
-				if ((currentFileName = getSoundFileName(filename)) == null) {
-					ErrorHandler.error(String.format("Could not find hit sound file '%s'.", filename), null, false);
-					continue;
-				}
-				MultiClip newClip = loadClip(currentFileName, false);
-				if (s.getClip(ss) != null) {  // clip previously loaded (e.g. program restart)
-					if (newClip != null) {
-						s.getClip(ss).destroy();  // destroy previous clip
-						s.setClip(ss, newClip);
-					}
-				} else
-					s.setClip(ss, newClip);
-				currentFileIndex++;
+				SoundSample sample = samples[effectCount + ss.ordinal() * HitSound.SIZE + s.ordinal()];
+				if (sample != null || s.getSample(ss) == null)
+					s.setSample(ss, sample);
 			}
 		}
 
+		SoundCache.prune();
+
 		currentFileName = null;
-		currentFileIndex = -1;
+		currentFileIndex.set(-1);
+		Log.debug(String.format("Loaded %d sounds on %d thread(s) in %dms.",
+				fileCount, threadCount, System.currentTimeMillis() - startTime));
 	}
 
 	/**
@@ -268,8 +305,6 @@ public class SoundController {
 		if (clip == null)  // clip failed to load properly
 			return;
 
-        currentSoundComponent = clip;
-
 		if (volume > 0f && !isMuted) {
 			try {
 				clip.start(volume, listener);
@@ -279,12 +314,28 @@ public class SoundController {
 		}
 	}
 
+	/**
+	 * Plays a decoded sample through the mixer.
+	 * @param sample the sample to play
+	 * @param volume the volume [0, 1]
+	 */
+	private static void playSample(SoundSample sample, float volume) {
+		if (sample == null)  // sample failed to load properly
+			return;
+
+		currentSoundComponent = sample;
+
+		SoundMixer mixer = SoundMixer.get();
+		if (mixer != null && volume > 0f && !isMuted)
+			mixer.play(sample, volume);
+	}
+
 	/**
 	 * Plays a sound.
 	 * @param s the sound effect
 	 */
 	public static void playSound(SoundComponent s) {
-		playClip(s.getClip(), Options.getEffectVolume() * Options.getMasterVolume(), null);
+		playSample(s.getSample(), Options.getEffectVolume() * Options.getMasterVolume());
 	}
 
 	/**
@@ -308,17 +359,17 @@ public class SoundController {
 		// play all sounds
 		if (hitSound == HitObject.SOUND_NORMAL || Options.getSkin().isLayeredHitSounds()) {
 			HitSound.setSampleSet(sampleSet);
-			playClip(HitSound.NORMAL.getClip(), volume, null);
+			playSample(HitSound.NORMAL.getSample(), volume);
 		}
 
 		if (hitSound != HitObject.SOUND_NORMAL) {
 			HitSound.setSampleSet(additionSampleSet);
 			if ((hitSound & HitObject.SOUND_WHISTLE) > 0)
-				playClip(HitSound.WHISTLE.getClip(), volume, null);
+				playSample(HitSound.WHISTLE.getSample(), volume);
 			if ((hitSound & HitObject.SOUND_FINISH) > 0)
-				playClip(HitSound.FINISH.getClip(), volume, null);
+				playSample(HitSound.FINISH.getSample(), volume);
 			if ((hitSound & HitObject.SOUND_CLAP) > 0)
-				playClip(HitSound.CLAP.getClip(), volume, null);
+				playSample(HitSound.CLAP.getSample(), volume);
 		}
 	}
 
@@ -327,7 +378,7 @@ public class SoundController {
 	 * @param s the hit sound
 	 */
 	public static void playHitSound(SoundComponent s) {
-		playClip(s.getClip(), Options.getHitSoundVolume() * sampleVolumeMultiplier * Options.getMasterVolume(), null);
+		playSample(s.getSample(), Options.getHitSoundVolume() * sampleVolumeMultiplier * Options.getMasterVolume());
 	}
 
 	/**
@@ -348,10 +399,11 @@ public class SoundController {
 	 * @return the completion percent [0, 100] or -1
 	 */
 	public static int getLoadingProgress() {
-		if (currentFileIndex == -1)
+		int index = currentFileIndex.get();
+		if (index == -1)
 			return -1;
 
-		return currentFileIndex * 100 / (SoundEffect.SIZE + (HitSound.SIZE * SampleSet.SIZE));
+		return index * 100 / (SoundEffect.SIZE + (HitSound.SIZE * SampleSet.SIZE));
 	}
 
 	/**
@@ -387,7 +439,9 @@ public class SoundController {
 
 	public static void muteSoundComponent() {
 		if (currentSoundComponent != null) {
-			currentSoundComponent.mute();
+			SoundMixer mixer = SoundMixer.get();
+			if (mixer != null)
+				mixer.stop(currentSoundComponent);
 			currentSoundComponent = null;
 		}
 	}
@@ -44,8 +44,8 @@ public enum SoundEffect implements SoundController.SoundComponent {
 	/** The file name. */
 	private final String filename;
 
-	/** The Clip associated with the sound effect. */
-	private MultiClip clip;
+	/** The decoded sample associated with the sound effect. */
+	private SoundSample sample;
 
 	/** Total number of sound effects. */
 	public static final int SIZE = values().length;
@@ -65,11 +65,11 @@ public enum SoundEffect implements SoundController.SoundComponent {
 	public String getFileName() { return filename; }
 
 	@Override
-	public MultiClip getClip() { return clip; }
+	public SoundSample getSample() { return sample; }
 
 	/**
-	 * Sets the Clip for the sound.
-	 * @param clip the clip
+	 * Sets the decoded sample for the sound.
+	 * @param sample the sample
 	 */
-	public void setClip(MultiClip clip) { this.clip = clip; }
+	public void setSample(SoundSample sample) { this.sample = sample; }
 }
@@ -0,0 +1,485 @@
+/*
+ * opsu! - an open-source osu! client
+ * Copyright (C) 2014, 2015 Jeffrey Han
+ *
+ * opsu! is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * opsu! is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with opsu!.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package itdelatrisu.opsu.audio;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.LineUnavailableException;
+import javax.sound.sampled.SourceDataLine;
+
+import org.newdawn.slick.util.Log;
+
+/**
+ * Software mixer for sound effects and hit sounds.
+ * <p>
+ * Triggers are put into a lock-free command queue. A single mixer thread
+ * takes them out, sums all active voices into a small buffer and writes it
+ * to one output {@link Sink} (normally a {@link SourceDataLine}). Neither
+ * triggering nor mixing allocates once the voice table has grown to the
+ * highest number of simultaneous voices.
+ */
+public class SoundMixer {
+	/** Mixer sample rate. */
+	public static final int SAMPLE_RATE = 44100;
+
+	/** Mixer output format: 16-bit signed little-endian stereo. */
+	public static final AudioFormat FORMAT = new AudioFormat(SAMPLE_RATE, 16, 2, true, false);
+
+	/** Number of frames mixed per cycle (about 6ms). */
+	public static final int BUFFER_FRAMES = 256;
+
+	/** Size of the output line buffer, in cycles. */
+	private static final int LINE_BUFFER_CYCLES = 4;
+
+	/** Command queue capacity (power of two). */
+	private static final int QUEUE_CAPACITY = 256;
+
+	/** Command volume value meaning "stop all voices of the sample". */
+	private static final float STOP = -1f;
+
+	/** Output for mixed audio. */
+	public interface Sink {
+		/**
+		 * Opens the sink.
+		 * @param format the audio format
+		 * @param bufferSize the requested buffer size, in bytes
+		 * @throws LineUnavailableException if the sink cannot be opened
+		 */
+		public void open(AudioFormat format, int bufferSize) throws LineUnavailableException;
+
+		/**
+		 * Writes mixed audio, blocking until there is room for it.
+		 * @param b the buffer
+		 * @param off the offset
+		 * @param len the length, in bytes
+		 */
+		public void write(byte[] b, int off, int len);
+
+		/**
+		 * Closes the sink.
+		 */
+		public void close();
+	}
+
+	/** Sink writing to the default Java Sound output line. */
+	public static class LineSink implements Sink {
+		/** The output line. */
+		private SourceDataLine line;
+
+		@Override
+		public void open(AudioFormat format, int bufferSize) throws LineUnavailableException {
+			line = AudioSystem.getSourceDataLine(format);
+			line.open(format, bufferSize);
+			line.start();
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) { line.write(b, off, len); }
+
+		@Override
+		public void close() {
+			line.stop();
+			line.close();
+		}
+	}
+
+	/**
+	 * Sink keeping everything written to it in memory, for checking the mixer
+	 * without an audio device. In real-time mode, writes block like an output
+	 * line playing the audio would.
+	 */
+	public static class RecordingSink implements Sink {
+		/** Whether writes block until the audio would have been played. */
+		private final boolean realTime;
+
+		/** The recorded bytes. */
+		private byte[] data = new byte[0x10000];
+
+		/** Number of recorded bytes. */
+		private int length = 0;
+
+		/** Time the first write happened (real-time mode). */
+		private long startTime = -1;
+
+		/** Whether the sink is open. */
+		private volatile boolean open = false;
+
+		/**
+		 * Constructor.
+		 * @param realTime whether writes should block at the playback rate
+		 */
+		public RecordingSink(boolean realTime) {
+			this.realTime = realTime;
+		}
+
+		@Override
+		public void open(AudioFormat format, int bufferSize) { open = true; }
+
+		@Override
+		public void write(byte[] b, int off, int len) {
+			synchronized (this) {
+				if (length + len > data.length)
+					data = Arrays.copyOf(data, Math.max(data.length * 2, length + len));
+				System.arraycopy(b, off, data, length, len);
+				length += len;
+			}
+			if (realTime) {
+				long now = System.nanoTime();
+				if (startTime < 0)
+					startTime = now;
+				long playedUntil = startTime + (long) (length / FORMAT.getFrameSize() * 1e9 / SAMPLE_RATE);
+				long wait = playedUntil - now - (long) (BUFFER_FRAMES * LINE_BUFFER_CYCLES * 1e9 / SAMPLE_RATE);
+				if (wait > 0)
+					LockSupport.parkNanos(wait);
+			}
+		}
+
+		@Override
+		public void close() { open = false; }
+
+		/** Returns whether the sink is open. */
+		public boolean isOpen() { return open; }
+
+		/** Returns the recorded audio as interleaved stereo samples. */
+		public synchronized short[] getSamples() {
+			short[] samples = new short[length / 2];
+			for (int i = 0; i < samples.length; i++)
+				samples[i] = (short) ((data[i * 2] & 0xFF) | (data[i * 2 + 1] << 8));
+			return samples;
+		}
+	}
+
+	/** Single mixer instance used by {@link SoundController}. */
+	private static SoundMixer mixer;
+
+	/** Whether opening the output line of the shared mixer failed (not retried). */
+	private static boolean unavailable = false;
+
+	/** Command slots: sample to play. */
+	private final SoundSample[] cmdSample = new SoundSample[QUEUE_CAPACITY];
+
+	/** Command slots: volume, or {@link #STOP}. */
+	private final float[] cmdVolume = new float[QUEUE_CAPACITY];
+
+	/** Command slots: trigger time (from {@link System#nanoTime()}). */
+	private final long[] cmdTime = new long[QUEUE_CAPACITY];
+
+	/** Command slot sequence numbers (for the lock-free queue). */
+	private final AtomicLongArray cmdSequence = new AtomicLongArray(QUEUE_CAPACITY);
+
+	/** Next command position to write. */
+	private final AtomicLong writePosition = new AtomicLong();
+
+	/** Next command position to read (mixer thread only). */
+	private long readPosition = 0;
+
+	/** Number of commands dropped because the queue was full. */
+	private final AtomicLong droppedCommands = new AtomicLong();
+
+	/** Active voices (mixer thread only). */
+	private SoundSample[] voiceSample = new SoundSample[16];
+
+	/** Active voice volumes (mixer thread only). */
+	private float[] voiceVolume = new float[16];
+
+	/** Active voice positions, in samples (mixer thread only). */
+	private int[] voicePosition = new int[16];
+
+	/** Number of active voices (mixer thread only). */
+	private int voiceCount = 0;
+
+	/** Mix accumulator. */
+	private final float[] mixBuffer = new float[BUFFER_FRAMES * 2];
+
+	/** Output buffer. */
+	private final byte[] outBuffer = new byte[BUFFER_FRAMES * 4];
+
+	/** The output sink. */
+	private final Sink sink;
+
+	/** The mixer thread. */
+	private Thread thread;
+
+	/** Whether the mixer thread should keep running. */
+	private volatile boolean running = false;
+
+	/** Statistics: mix cycles, total and maximum mix time (ns). */
+	private volatile long mixCycles, mixTimeTotal, mixTimeMax;
+
+	/** Statistics: mixed triggers, total and maximum trigger-to-buffer latency (ns). */
+	private volatile long triggerCount, triggerLatencyTotal, triggerLatencyMax;
+
+	/**
+	 * Constructor.
+	 * @param sink the output sink
+	 */
+	public SoundMixer(Sink sink) {
+		this.sink = sink;
+		for (int i = 0; i < QUEUE_CAPACITY; i++)
+			cmdSequence.set(i, i);
+	}
+
+	/**
+	 * Returns the shared mixer, starting it on the default output line if needed.
+	 * If the line cannot be opened, this is logged once and not tried again.
+	 * @return the mixer, or null if no output line is available
+	 */
+	public static synchronized SoundMixer get() {
+		if (mixer == null && !unavailable) {
+			SoundMixer m = new SoundMixer(new LineSink());
+			try {
+				m.start();
+				mixer = m;
+			} catch (LineUnavailableException | IllegalArgumentException e) {
+				unavailable = true;
+				Log.warn("Failed to open the sound mixer output line, sound effects are disabled.", e);
+			}
+		}
+		return mixer;
+	}
+
+	/**
+	 * Logs the trigger latency and mix time statistics of the shared mixer, if running.
+	 */
+	public static synchronized void logStatistics() {
+		if (mixer == null)
+			return;
+		Log.info(String.format("Sound mixer: %d cycles, mix time avg %.3fms max %.3fms; " +
+				"%d triggers, latency avg %.3fms max %.3fms; %d dropped",
+				mixer.getMixCycles(), mixer.getAverageMixTime() / 1e6, mixer.getMaxMixTime() / 1e6,
+				mixer.getTriggerCount(), mixer.getAverageTriggerLatency() / 1e6, mixer.getMaxTriggerLatency() / 1e6,
+				mixer.getDroppedCommands()));
+	}
+
+	/**
+	 * Opens the sink and starts the mixer thread.
+	 * @throws LineUnavailableException if the sink cannot be opened
+	 */
+	public void start() throws LineUnavailableException {
+		sink.open(FORMAT, outBuffer.length * LINE_BUFFER_CYCLES);
+		running = true;
+		thread = new Thread("SoundMixer") {
+			@Override
+			public void run() {
+				while (running)
+					mix();
+				sink.close();
+			}
+		};
+		thread.setDaemon(true);
+		thread.setPriority(Thread.MAX_PRIORITY);
+		thread.start();
+	}
+
+	/**
+	 * Stops the mixer thread and closes the sink.
+	 */
+	public void stop() {
+		running = false;
+		if (thread != null) {
+			try {
+				thread.join(1000);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			thread = null;
+		}
+	}
+
+	/**
+	 * Starts playing a sample. Can be called from any thread.
+	 * @param sample the sample
+	 * @param volume the volume [0, 1]
+	 */
+	public void play(SoundSample sample, float volume) {
+		if (sample != null && volume > 0f)
+			offer(sample, volume);
+	}
+
+	/**
+	 * Stops all voices playing a sample. Can be called from any thread.
+	 * @param sample the sample
+	 */
+	public void stop(SoundSample sample) {
+		if (sample != null)
+			offer(sample, STOP);
+	}
+
+	/**
+	 * Adds a command to the queue (multi-producer, bounded, lock-free).
+	 * @param sample the sample
+	 * @param volume the volume, or {@link #STOP}
+	 */
+	private void offer(SoundSample sample, float volume) {
+		long time = System.nanoTime();
+		long pos;
+		int slot;
+		while (true) {
+			pos = writePosition.get();
+			slot = (int) (pos & (QUEUE_CAPACITY - 1));
+			long diff = cmdSequence.get(slot) - pos;
+			if (diff == 0) {
+				if (writePosition.compareAndSet(pos, pos + 1))
+					break;
+			} else if (diff < 0) {  // full
+				droppedCommands.incrementAndGet();
+				return;
+			}
+		}
+		cmdSample[slot] = sample;
+		cmdVolume[slot] = volume;
+		cmdTime[slot] = time;
+		cmdSequence.lazySet(slot, pos + 1);
+	}
+
+	/**
+	 * Takes all queued commands and applies them to the voice table.
+	 */
+	private void pollCommands() {
+		while (true) {
+			int slot = (int) (readPosition & (QUEUE_CAPACITY - 1));
+			if (cmdSequence.get(slot) != readPosition + 1)
+				break;
+			SoundSample sample = cmdSample[slot];
+			float volume = cmdVolume[slot];
+			long time = cmdTime[slot];
+			cmdSample[slot] = null;
+			cmdSequence.lazySet(slot, readPosition + QUEUE_CAPACITY);
+			readPosition++;
+
+			if (volume == STOP) {
+				for (int i = 0; i < voiceCount; i++) {
+					if (voiceSample[i] == sample)
+						voicePosition[i] = Integer.MAX_VALUE;
+				}
+				continue;
+			}
+			if (voiceCount == voiceSample.length)
+				growVoices();
+			voiceSample[voiceCount] = sample;
+			voiceVolume[voiceCount] = volume;
+			voicePosition[voiceCount] = 0;
+			voiceCount++;
+			long latency = System.nanoTime() - time;
+			triggerCount++;
+			triggerLatencyTotal += latency;
+			if (latency > triggerLatencyMax)
+				triggerLatencyMax = latency;
+		}
+	}
+
+	/**
+	 * Doubles the size of the voice table.
+	 */
+	private void growVoices() {
+		int size = voiceSample.length * 2;
+		SoundSample[] samples = new SoundSample[size];
+		float[] volumes = new float[size];
+		int[] positions = new int[size];
+		System.arraycopy(voiceSample, 0, samples, 0, voiceCount);
+		System.arraycopy(voiceVolume, 0, volumes, 0, voiceCount);
+		System.arraycopy(voicePosition, 0, positions, 0, voiceCount);
+		voiceSample = samples;
+		voiceVolume = volumes;
+		voicePosition = positions;
+	}
+
+	/**
+	 * Runs one mix cycle: applies queued commands, mixes all active voices
+	 * into the output buffer and writes it to the sink.
+	 */
+	public void mix() {
+		long startTime = System.nanoTime();
+		pollCommands();
+
+		// sum voices
+		float[] mix = mixBuffer;
+		for (int i = 0; i < mix.length; i++)
+			mix[i] = 0f;
+		for (int v = 0; v < voiceCount; v++) {
+			short[] data = voiceSample[v].getData();
+			float volume = voiceVolume[v];
+			int pos = voicePosition[v];
+			int n = Math.min(mix.length, data.length - pos);
+			for (int i = 0; i < n; i++)
+				mix[i] += data[pos + i] * volume;
+			voicePosition[v] = (n > 0) ? pos + n : Integer.MAX_VALUE;
+		}
+
+		// remove finished voices
+		int kept = 0;
+		for (int v = 0; v < voiceCount; v++) {
+			if (voicePosition[v] < voiceSample[v].getData().length) {
+				voiceSample[kept] = voiceSample[v];
+				voiceVolume[kept] = voiceVolume[v];
+				voicePosition[kept] = voicePosition[v];
+				kept++;
+			}
+		}
+		for (int v = kept; v < voiceCount; v++)
+			voiceSample[v] = null;
+		voiceCount = kept;
+
+		// convert to 16-bit little-endian
+		byte[] out = outBuffer;
+		for (int i = 0; i < mix.length; i++) {
+			float f = mix[i];
+			int s = (f > Short.MAX_VALUE) ? Short.MAX_VALUE : (f < Short.MIN_VALUE) ? Short.MIN_VALUE : (int) f;
+			out[i * 2] = (byte) s;
+			out[i * 2 + 1] = (byte) (s >> 8);
+		}
+
+		long mixTime = System.nanoTime() - startTime;
+		mixCycles++;
+		mixTimeTotal += mixTime;
+		if (mixTime > mixTimeMax)
+			mixTimeMax = mixTime;
+
+		sink.write(out, 0, out.length);
+	}
+
+	/** Returns the number of currently active voices (approximate outside the mixer thread). */
+	public int getVoiceCount() { return voiceCount; }
+
+	/** Returns the number of triggers dropped because the command queue was full. */
+	public long getDroppedCommands() { return droppedCommands.get(); }
+
+	/** Returns the number of completed mix cycles. */
+	public long getMixCycles() { return mixCycles; }
+
+	/** Returns the average mix cycle time (excluding the sink write), in nanoseconds. */
+	public long getAverageMixTime() { return (mixCycles == 0) ? 0 : mixTimeTotal / mixCycles; }
+
+	/** Returns the maximum mix cycle time (excluding the sink write), in nanoseconds. */
+	public long getMaxMixTime() { return mixTimeMax; }
+
+	/** Returns the number of triggers that reached a mix buffer. */
+	public long getTriggerCount() { return triggerCount; }
+
+	/** Returns the average time from a trigger to its first mix buffer, in nanoseconds. */
+	public long getAverageTriggerLatency() { return (triggerCount == 0) ? 0 : triggerLatencyTotal / triggerCount; }
+
+	/** Returns the maximum time from a trigger to its first mix buffer, in nanoseconds. */
+	public long getMaxTriggerLatency() { return triggerLatencyMax; }
+}
@@ -0,0 +1,210 @@
+/*
+ * opsu! - an open-source osu! client
+ * Copyright (C) 2014, 2015 Jeffrey Han
+ *
+ * opsu! is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * opsu! is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with opsu!.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package itdelatrisu.opsu.audio;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+
+/**
+ * A decoded sound, stored as PCM in the mixer format (see {@link SoundMixer#FORMAT}).
+ */
+public class SoundSample {
+	/** The sample name (usually the file name). */
+	private final String name;
+
+	/** Interleaved stereo samples. */
+	private final short[] data;
+
+	/**
+	 * Constructor.
+	 * @param name the sample name
+	 * @param data the interleaved stereo samples, in the mixer format
+	 */
+	public SoundSample(String name, short[] data) {
+		this.name = name;
+		this.data = data;
+	}
+
+	/**
+	 * Returns the sample name.
+	 */
+	public String getName() { return name; }
+
+	/**
+	 * Returns the interleaved stereo samples.
+	 */
+	public short[] getData() { return data; }
+
+	/**
+	 * Returns the number of frames (samples per channel).
+	 */
+	public int getFrameLength() { return data.length / 2; }
+
+	/**
+	 * Decodes an audio stream into a sample in the mixer format.
+	 * The stream is first converted to 16-bit signed PCM by Java Sound, then
+	 * mixed to stereo and resampled to the mixer sample rate if needed.
+	 * @param name the sample name
+	 * @param audioIn the audio stream (closed by this method)
+	 * @return the decoded sample
+	 * @throws IOException if the stream could not be read or converted
+	 */
+	public static SoundSample decode(String name, AudioInputStream audioIn) throws IOException {
+		try {
+			AudioFormat format = audioIn.getFormat();
+			float sampleRate = format.getSampleRate();
+			if (sampleRate == AudioSystem.NOT_SPECIFIED)
+				sampleRate = SoundMixer.SAMPLE_RATE;
+			int channels = Math.max(format.getChannels(), 1);
+			AudioFormat pcmFormat = new AudioFormat(
+					AudioFormat.Encoding.PCM_SIGNED, sampleRate, 16,
+					channels, channels * 2, sampleRate, false);
+			AudioInputStream pcmIn = format.matches(pcmFormat) ? audioIn : AudioSystem.getAudioInputStream(pcmFormat, audioIn);
+			try {
+				long frames = audioIn.getFrameLength();
+				if (sampleRate == SoundMixer.SAMPLE_RATE && frames > 0 && frames <= Integer.MAX_VALUE / 2)
+					return new SoundSample(name, readDirect(pcmIn, (int) frames, channels));
+				byte[] bytes = readFully(pcmIn, frames * channels * 2, channels * 2);
+				return new SoundSample(name, toMixerFormat(bytes, channels, sampleRate));
+			} finally {
+				if (pcmIn != audioIn)
+					pcmIn.close();
+			}
+		} catch (IllegalArgumentException e) {
+			throw new IOException(String.format("Unsupported audio format for '%s'.", name), e);
+		} finally {
+			audioIn.close();
+		}
+	}
+
+	/**
+	 * Reads 16-bit little-endian PCM at the mixer sample rate straight into
+	 * interleaved stereo samples, so the only allocation is the result.
+	 * @param in the PCM stream
+	 * @param frames the number of frames in the stream
+	 * @param channels the number of channels in the stream
+	 * @return the interleaved stereo samples (truncated if the stream ends early)
+	 * @throws IOException if an I/O error occurs
+	 */
+	private static short[] readDirect(InputStream in, int frames, int channels) throws IOException {
+		short[] out = new short[frames * 2];
+		int frameSize = channels * 2;
+		byte[] buf = new byte[frameSize * 1024];
+		int frame = 0, len = 0;
+		while (frame < frames) {
+			int read = in.read(buf, len, buf.length - len);
+			if (read < 0)
+				break;
+			len += read;
+			int count = Math.min(len / frameSize, frames - frame);
+			for (int i = 0; i < count; i++, frame++) {
+				int j = i * frameSize;
+				short left = (short) ((buf[j] & 0xFF) | (buf[j + 1] << 8));
+				out[frame * 2] = left;
+				out[frame * 2 + 1] = (channels > 1) ? (short) ((buf[j + 2] & 0xFF) | (buf[j + 3] << 8)) : left;
+			}
+			// keep any partial frame for the next read
+			int used = count * frameSize;
+			System.arraycopy(buf, used, buf, 0, len - used);
+			len -= used;
+		}
+		if (frame == frames)
+			return out;
+		short[] result = new short[frame * 2];
+		System.arraycopy(out, 0, result, 0, result.length);
+		return result;
+	}
+
+	/**
+	 * Reads a stream until its end.
+	 * @param in the input stream
+	 * @param expectedLength the expected length in bytes, or a non-positive value if unknown
+	 * @param frameSize the frame size in bytes (audio streams only read whole frames)
+	 * @return the bytes read
+	 * @throws IOException if an I/O error occurs
+	 */
+	private static byte[] readFully(InputStream in, long expectedLength, int frameSize) throws IOException {
+		byte[] buf = new byte[(expectedLength > 0 && expectedLength < Integer.MAX_VALUE) ? (int) expectedLength : 0x10000];
+		int len = 0;
+		while (true) {
+			if (len == buf.length) {
+				// expected length reached: check for the end before growing
+				byte[] frame = new byte[frameSize];
+				int read = in.read(frame, 0, frameSize);
+				if (read < 0)
+					break;
+				byte[] newBuf = new byte[Math.max(buf.length * 2, len + frameSize)];
+				System.arraycopy(buf, 0, newBuf, 0, len);
+				buf = newBuf;
+				System.arraycopy(frame, 0, buf, len, read);
+				len += read;
+			}
+			int read = in.read(buf, len, buf.length - len);
+			if (read < 0)
+				break;
+			len += read;
+		}
+		if (len == buf.length)
+			return buf;
+		byte[] result = new byte[len];
+		System.arraycopy(buf, 0, result, 0, len);
+		return result;
+	}
+
+	/**
+	 * Converts 16-bit little-endian PCM into interleaved stereo samples at the
+	 * mixer sample rate (using linear interpolation).
+	 * @param bytes the PCM data
+	 * @param channels the number of channels in the PCM data
+	 * @param sampleRate the sample rate of the PCM data
+	 * @return the interleaved stereo samples
+	 */
+	static short[] toMixerFormat(byte[] bytes, int channels, float sampleRate) {
+		int frames = bytes.length / (channels * 2);
+		double step = sampleRate / SoundMixer.SAMPLE_RATE;
+		int outFrames = (int) (frames / step);
+		short[] out = new short[outFrames * 2];
+		for (int i = 0; i < outFrames; i++) {
+			double pos = i * step;
+			int f = (int) pos;
+			float frac = (float) (pos - f);
+			int g = Math.min(f + 1, frames - 1);
+			float left = lerp(sample(bytes, f, 0, channels), sample(bytes, g, 0, channels), frac);
+			float right = (channels > 1) ? lerp(sample(bytes, f, 1, channels), sample(bytes, g, 1, channels), frac) : left;
+			out[i * 2] = (short) left;
+			out[i * 2 + 1] = (short) right;
+		}
+		return out;
+	}
+
+	/** Returns a 16-bit little-endian sample from PCM data. */
+	private static int sample(byte[] bytes, int frame, int channel, int channels) {
+		int i = (frame * channels + channel) * 2;
+		return (bytes[i] & 0xFF) | (bytes[i + 1] << 8);
+	}
+
+	/** Linearly interpolates between two values. */
+	private static float lerp(int a, int b, float t) {
+		return a + (b - a) * t;
+	}
+}
@@ -261,6 +261,16 @@ public class BeatmapParser {
 		beatmap.timingPoints.add(timingPoint);
 	}
 
+	/**
+	 * Parses a single beatmap, including its hit objects, without using the
+	 * beatmap database or the song list.
+	 * @param file the file to parse
+	 * @return the new beatmap, or null if it could not be parsed
+	 */
+	public static Beatmap parseFile(File file) {
+		return parseFile(file, file.getAbsoluteFile().getParentFile(), new ArrayList<Beatmap>(), true);
+	}
+
 	/**
 	 * Parses a beatmap.
 	 * @param file the file to parse
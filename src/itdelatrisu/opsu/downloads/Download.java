@@ -15,29 +15,51 @@
  * You should have received a copy of the GNU General Public License
  * along with opsu!.  If not, see <http://www.gnu.org/licenses/>.
  */
-
 package itdelatrisu.opsu.downloads;
 
 import itdelatrisu.opsu.ErrorHandler;
+import itdelatrisu.opsu.Options;
 import itdelatrisu.opsu.Utils;
 
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.nio.ByteBuffer;
 import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
 import java.nio.channels.ReadableByteChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import org.newdawn.slick.util.Log;
 
 /**
  * File download.
+ * <p>
+ * Downloads are run by the {@link DownloadScheduler} of the {@link DownloadList}.
+ * The file is written to a ".part" file next to the local path, and moved when
+ * complete. A dropped connection is retried a few times, continuing from the
+ * bytes received so far with an HTTP range request; a cancelled or failed
+ * download can be continued the same way with {@link #retry()}, also after a
+ * restart (the URL and file version are kept in a ".part.info" file).
+ * Large files can be fetched in several segments at once, if the server
+ * supports range requests.
  */
 public class Download {
 	/** Connection timeout, in ms. */
@@ -49,6 +71,24 @@ public class Download {
 	/** Maximum number of HTTP/HTTPS redirects to follow. */
 	public static final int MAX_REDIRECTS = 3;
 
+	/** Maximum number of times a dropped transfer is retried. */
+	public static final int MAX_RETRIES = 3;
+
+	/** Time to wait before the first retry (multiplied by the attempt), in ms. */
+	private static final int RETRY_DELAY = 2000;
+
+	/** Minimum size of a segment, in bytes (smaller files are not segmented). */
+	private static final long MIN_SEGMENT_SIZE = 2 * 1024 * 1024;
+
+	/** Extension of the partially downloaded file. */
+	private static final String PART_EXTENSION = ".part";
+
+	/** Extension of the file describing the partially downloaded file. */
+	private static final String INFO_EXTENSION = ".part.info";
+
+	/** Pattern of a "Content-Range" header: start, end (or "*"), total length (or "*"). */
+	private static final Pattern CONTENT_RANGE = Pattern.compile("bytes\\s+(?:(\\d+)-(\\d+)|\\*)/(\\d+|\\*)");
+
 	/** Time between download speed and ETA updates, in ms. */
 	private static final int UPDATE_INTERVAL = 1000;
 
@@ -86,6 +126,15 @@ public class Download {
 		public void error();
 	}
 
+	/** A failure that retrying will not fix. */
+	private static class DownloadException extends IOException {
+		private static final long serialVersionUID = 1L;
+
+		public DownloadException(String message) { super(message); }
+
+		public DownloadException(String message, Throwable cause) { super(message, cause); }
+	}
+
 	/** The local path. */
 	private String localPath;
 
@@ -98,17 +147,23 @@ public class Download {
 	/** The download listener. */
 	private DownloadListener listener;
 
-	/** The readable byte channel. */
-	private ReadableByteChannelWrapper rbc;
+	/** The readable byte channels of the current transfer, one per segment (elements may be null). */
+	private volatile ReadableByteChannelWrapper[] channels;
+
+	/** The channel of the partially downloaded file. */
+	private volatile FileChannel fileChannel;
 
-	/** The file output stream. */
-	private FileOutputStream fos;
+	/** Whether a segment of the current transfer failed, so the other segments stop. */
+	private volatile boolean segmentFailed = false;
+
+	/** The number of bytes in the partially downloaded file when the current transfer started. */
+	private volatile long offset = 0;
 
 	/** The size of the download. */
-	private int contentLength = -1;
+	private volatile long contentLength = -1;
 
 	/** The download status. */
-	private Status status = Status.WAITING;
+	private volatile Status status = Status.WAITING;
 
 	/** Time when lastReadSoFar was updated. */
 	private long lastReadSoFarTime = -1;
@@ -167,114 +222,438 @@ public class Download {
 
 	/**
 	 * Starts the download from the "waiting" status.
+	 * The download is queued until the scheduler has room for it.
 	 */
 	public void start() {
 		if (status != Status.WAITING)
 			return;
 
-		new Thread() {
-			@Override
-			public void run() {
-				// open connection
-				HttpURLConnection conn = null;
-				try {
-					URL downloadURL = url;
-					int redirectCount = 0;
-					boolean isRedirect = false;
-					do {
-						isRedirect = false;
-
-						conn = (HttpURLConnection) downloadURL.openConnection();
-						conn.setConnectTimeout(CONNECTION_TIMEOUT);
-						conn.setReadTimeout(READ_TIMEOUT);
-						conn.setUseCaches(false);
-
-						// allow HTTP <--> HTTPS redirects
-						// http://download.java.net/jdk7u2/docs/technotes/guides/deployment/deployment-guide/upgrade-guide/article-17.html
-						conn.setInstanceFollowRedirects(false);
-						conn.setRequestProperty("User-Agent", "Mozilla/5.0...");
-
-						// check for redirect
-						int status = conn.getResponseCode();
-						if (status == HttpURLConnection.HTTP_MOVED_TEMP || status == HttpURLConnection.HTTP_MOVED_PERM ||
-						    status == HttpURLConnection.HTTP_SEE_OTHER || status == HttpURLConnection.HTTP_USE_PROXY) {
-							URL base = conn.getURL();
-							String location = conn.getHeaderField("Location");
-							URL target = null;
-							if (location != null)
-								target = new URL(base, location);
-							conn.disconnect();
-
-							// check for problems
-							String error = null;
-							if (location == null)
-								error = String.format("Download for URL '%s' is attempting to redirect without a 'location' header.", base.toString());
-							else if (!target.getProtocol().equals("http") && !target.getProtocol().equals("https"))
-								error = String.format("Download for URL '%s' is attempting to redirect to a non-HTTP/HTTPS protocol '%s'.", base.toString(), target.getProtocol());
-							else if (redirectCount > MAX_REDIRECTS)
-								error = String.format("Download for URL '%s' is attempting too many redirects (over %d).", base.toString(), MAX_REDIRECTS);
-							if (error != null) {
-								ErrorHandler.error(error, null, false);
-								throw new IOException();
-							}
-
-							// follow redirect
-							downloadURL = target;
-							redirectCount++;
-							isRedirect = true;
-						}
-					} while (isRedirect);
+		DownloadList.get().getScheduler().submit(this);
+	}
 
-					// store content length
-					contentLength = conn.getContentLength();
-				} catch (IOException e) {
+	/**
+	 * Restarts a cancelled or failed download, continuing from the bytes
+	 * received so far if possible.
+	 */
+	public void retry() {
+		if (status != Status.CANCELLED && status != Status.ERROR)
+			return;
+
+		status = Status.WAITING;
+		lastReadSoFarTime = lastReadSoFar = -1;
+		start();
+	}
+
+	/**
+	 * Runs the download on the calling (worker) thread.
+	 * @param scheduler the scheduler running the download, for segment connections
+	 */
+	void run(DownloadScheduler scheduler) {
+		if (status != Status.WAITING)
+			return;
+
+		status = Status.DOWNLOADING;
+		for (int attempt = 0; ; attempt++) {
+			try {
+				transfer(scheduler);
+				break;
+			} catch (IOException e) {
+				if (status != Status.DOWNLOADING)  // cancelled
+					return;
+				if (e instanceof DownloadException || attempt >= MAX_RETRIES) {
 					status = Status.ERROR;
-					Log.warn("Failed to open connection.", e);
+					Log.warn(String.format("Download '%s' failed.", url.toString()), e);
 					if (listener != null)
 						listener.error();
 					return;
 				}
+				Log.warn(String.format("Download '%s' was interrupted, retrying (%d/%d).",
+						url.toString(), attempt + 1, MAX_RETRIES), e);
+				try {
+					Thread.sleep(RETRY_DELAY * (attempt + 1));
+				} catch (InterruptedException ie) {
+					Thread.currentThread().interrupt();
+				}
+				if (status != Status.DOWNLOADING)
+					return;
+			}
+		}
 
-				// download file
-				try (
-					InputStream in = conn.getInputStream();
-					ReadableByteChannel readableByteChannel = Channels.newChannel(in);
-					FileOutputStream fileOutputStream = new FileOutputStream(localPath);
-				) {
-					rbc = new ReadableByteChannelWrapper(readableByteChannel);
-					fos = fileOutputStream;
-					status = Status.DOWNLOADING;
-					updateReadSoFar();
-					long bytesRead = fos.getChannel().transferFrom(rbc, 0, Long.MAX_VALUE);
-					if (status == Status.DOWNLOADING) {  // not interrupted
-						// check if the entire file was received
-						if (bytesRead < contentLength) {
-							status = Status.ERROR;
-							Log.warn(String.format("Download '%s' failed: %d bytes expected, %d bytes received.", url.toString(), contentLength, bytesRead));
-							if (listener != null)
-								listener.error();
-							return;
-						}
+		if (status != Status.DOWNLOADING)
+			return;
+		status = Status.COMPLETE;
+		if (listener != null)
+			listener.completed();
+	}
 
-						// mark download as complete
-						status = Status.COMPLETE;
-						rbc.close();
-						fos.close();
-						if (rename != null) {
-							Path source = new File(localPath).toPath();
-							Files.move(source, source.resolveSibling(rename), StandardCopyOption.REPLACE_EXISTING);
+	/**
+	 * Transfers the rest of the file, and moves it to the local path when complete.
+	 * @param scheduler the scheduler running the download
+	 * @throws DownloadException if the download cannot be completed
+	 * @throws IOException if the transfer was interrupted, and may be retried
+	 */
+	private void transfer(DownloadScheduler scheduler) throws IOException {
+		File part = new File(localPath + PART_EXTENSION);
+		File info = new File(localPath + INFO_EXTENSION);
+
+		// continue a previous transfer of the same URL
+		Properties props = readInfo(info);
+		long start = 0;
+		String validator = null;
+		if (part.isFile() && props != null && url.toString().equals(props.getProperty("url"))) {
+			start = part.length();
+			validator = props.getProperty("validator");
+		}
+
+		HttpURLConnection conn = openConnection((start > 0) ? start : -1, -1, validator);
+		try {
+			int code = conn.getResponseCode();
+			long total;
+			if (code == HttpURLConnection.HTTP_PARTIAL) {
+				long[] range = parseContentRange(conn.getHeaderField("Content-Range"));
+				String length = (props != null) ? props.getProperty("length") : null;
+				if (range == null || range[0] != start || (length != null && !length.equals(Long.toString(range[2])))) {
+					// not what was asked for, or a different file: start over
+					deletePart();
+					throw new IOException(String.format("Unexpected range '%s'.", conn.getHeaderField("Content-Range")));
+				}
+				total = range[2];
+			} else if (code == HttpURLConnection.HTTP_OK) {
+				start = 0;  // range not supported, or the file changed
+				total = conn.getContentLengthLong();
+			} else if (code == 416 && start > 0) {  // range not satisfiable: maybe already complete
+				long[] range = parseContentRange(conn.getHeaderField("Content-Range"));
+				if (range != null && range[2] == start) {
+					contentLength = start;
+					offset = start;
+					finish(part, info);
+					return;
+				}
+				deletePart();
+				throw new IOException("Range not satisfiable.");
+			} else if (code >= 500)
+				throw new IOException(String.format("Server returned HTTP %d.", code));
+			else
+				throw new DownloadException(String.format("Server returned HTTP %d.", code));
+
+			// segments (and later continuations) must be of this version of the file
+			contentLength = total;
+			String etag = conn.getHeaderField("ETag");
+			validator = (etag != null && !etag.startsWith("W/")) ? etag : conn.getHeaderField("Last-Modified");
+			writeInfo(info, total, validator);
+
+			try (FileChannel out = FileChannel.open(part.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+				fileChannel = out;
+				if (start == 0)
+					out.truncate(0);
+				offset = start;
+				segmentFailed = false;
+				if (status != Status.DOWNLOADING)
+					return;
+
+				int segments = 1;
+				if (start == 0 && total > 0 && "bytes".equalsIgnoreCase(conn.getHeaderField("Accept-Ranges")))
+					segments = (int) Math.max(Math.min(Options.getDownloadSegments(), total / MIN_SEGMENT_SIZE), 1);
+				if (segments > 1) {
+					transferSegments(scheduler, conn, out, total, segments, validator);
+				} else {
+					ReadableByteChannelWrapper[] channels = new ReadableByteChannelWrapper[1];
+					this.channels = channels;
+					long received = start + copy(conn, out, start, (total >= 0) ? total - start : Long.MAX_VALUE, channels, 0);
+					if (status != Status.DOWNLOADING)
+						return;
+					if (total >= 0 && received < total)
+						throw new IOException(String.format("%d bytes expected, %d bytes received.", total, received));
+				}
+			}
+		} finally {
+			conn.disconnect();
+		}
+
+		if (status == Status.DOWNLOADING)
+			finish(part, info);
+	}
+
+	/**
+	 * Fetches a file in segments, each over its own connection.
+	 * If a segment fails, the other segments are stopped, and the file is cut
+	 * after the bytes received from the start, so a retry continues from there.
+	 * @param scheduler the scheduler, for the extra connections
+	 * @param conn the connection to the whole file, used for the first segment
+	 * @param out the file channel
+	 * @param total the file size
+	 * @param segments the number of segments wanted
+	 * @param validator the ETag or last modification date of the file, or null
+	 */
+	private void transferSegments(DownloadScheduler scheduler, HttpURLConnection conn, final FileChannel out,
+			final long total, int segments, final String validator) throws IOException {
+		String host = url.getHost();
+		int extra = scheduler.acquireConnections(host, segments - 1);
+		try {
+			segments = extra + 1;
+			final long size = total / segments;
+			final ReadableByteChannelWrapper[] channels = new ReadableByteChannelWrapper[segments];
+			this.channels = channels;
+
+			// segments are written at their position: the file must be that large
+			if (segments > 1)
+				out.write(ByteBuffer.wrap(new byte[1]), total - 1);
+
+			List<Future<Long>> futures = new ArrayList<Future<Long>>();
+			for (int i = 1; i < segments; i++) {
+				final int index = i;
+				final long from = i * size, to = (i == segments - 1) ? total : from + size;
+				futures.add(scheduler.execute(new Callable<Long>() {
+					@Override
+					public Long call() throws IOException {
+						if (segmentFailed)
+							return 0L;
+						HttpURLConnection c = null;
+						try {
+							c = openConnection(from, to - 1, validator);
+							long[] range = parseContentRange(c.getHeaderField("Content-Range"));
+							if (c.getResponseCode() != HttpURLConnection.HTTP_PARTIAL || range == null || range[0] != from || range[2] != total)
+								throw new IOException(String.format("Segment request failed (HTTP %d).", c.getResponseCode()));
+							if (status != Status.DOWNLOADING || segmentFailed)
+								return 0L;
+							return copy(c, out, from, to - from, channels, index);
+						} catch (IOException e) {
+							stopSegments(channels);
+							throw e;
+						} finally {
+							if (c != null)
+								c.disconnect();
 						}
-						if (listener != null)
-							listener.completed();
 					}
-				} catch (Exception e) {
-					status = Status.ERROR;
-					Log.warn("Failed to start download.", e);
-					if (listener != null)
-						listener.error();
+				}));
+			}
+
+			// first segment on this thread, then wait for the others
+			IOException failure = null;
+			long[] done = new long[segments];
+			try {
+				done[0] = copy(conn, out, 0, size, channels, 0);
+			} catch (IOException e) {
+				if (!segmentFailed)
+					failure = e;
+				stopSegments(channels);
+				done[0] = (channels[0] != null) ? channels[0].getReadSoFar() : 0;
+			}
+			for (int i = 1; i < segments; i++) {
+				try {
+					done[i] = futures.get(i - 1).get();
+				} catch (ExecutionException | InterruptedException e) {
+					stopSegments(channels);
+					if (failure == null)
+						failure = (e.getCause() instanceof IOException) ? (IOException) e.getCause() : new IOException(e);
+					done[i] = (channels[i] != null) ? channels[i].getReadSoFar() : 0;
 				}
 			}
-		}.start();
+			if (status != Status.DOWNLOADING)
+				return;
+
+			// keep the bytes received from the start
+			long received = 0;
+			for (int i = 0; i < segments; i++) {
+				long length = ((i == segments - 1) ? total : (i + 1) * size) - i * size;
+				received += Math.min(done[i], length);
+				if (done[i] < length)
+					break;
+			}
+			if (received < total) {
+				out.truncate(received);
+				throw (failure != null) ? failure :
+					new IOException(String.format("%d bytes expected, %d bytes received.", total, received));
+			}
+		} finally {
+			if (extra > 0)
+				scheduler.releaseConnections(host, extra);
+		}
+	}
+
+	/**
+	 * Stops all segments of a transfer after one failed: the bytes after the
+	 * failed segment would be fetched again anyway.
+	 * @param channels the channels of the transfer
+	 */
+	private void stopSegments(ReadableByteChannelWrapper[] channels) {
+		segmentFailed = true;
+		for (ReadableByteChannelWrapper rbc : channels) {
+			try {
+				if (rbc != null && rbc.isOpen())
+					rbc.close();
+			} catch (IOException e) {}
+		}
+	}
+
+	/**
+	 * Copies the body of a response into the file.
+	 * @param conn the connection
+	 * @param out the file channel
+	 * @param position the file position to write at
+	 * @param count the maximum number of bytes to copy
+	 * @param channels the channels of the transfer, to store the channel in
+	 * @param index the index of the channel
+	 * @return the number of bytes copied
+	 */
+	private long copy(HttpURLConnection conn, FileChannel out, long position, long count,
+			ReadableByteChannelWrapper[] channels, int index) throws IOException {
+		try (
+			InputStream in = conn.getInputStream();
+			ReadableByteChannel readableByteChannel = Channels.newChannel(in);
+		) {
+			ReadableByteChannelWrapper rbc = new ReadableByteChannelWrapper(readableByteChannel);
+			channels[index] = rbc;
+			long copied = 0;
+			while (copied < count && status == Status.DOWNLOADING && !segmentFailed) {
+				long bytes = out.transferFrom(rbc, position + copied, count - copied);
+				if (bytes <= 0)
+					break;
+				copied += bytes;
+			}
+			return copied;
+		}
+	}
+
+	/**
+	 * Moves the completed file to the local path.
+	 * @param part the partially downloaded file
+	 * @param info the file describing it
+	 */
+	private void finish(File part, File info) throws DownloadException {
+		try {
+			fileChannel = null;
+			Path target = new File(localPath).toPath();
+			if (rename != null)
+				target = target.resolveSibling(rename);
+			Files.move(part.toPath(), target, StandardCopyOption.REPLACE_EXISTING);
+			info.delete();
+		} catch (IOException e) {
+			throw new DownloadException("Failed to move the downloaded file.", e);
+		}
+	}
+
+	/**
+	 * Opens a connection to the download URL, following redirects.
+	 * @param from the first byte to request, or -1 for the whole file
+	 * @param to the last byte to request, or -1 for the rest of the file
+	 * @param validator the ETag or last modification date the range must be of, or null
+	 * @return the connection, with the response received
+	 */
+	private HttpURLConnection openConnection(long from, long to, String validator) throws IOException {
+		HttpURLConnection conn;
+		URL downloadURL = url;
+		int redirectCount = 0;
+		boolean isRedirect = false;
+		do {
+			isRedirect = false;
+
+			conn = (HttpURLConnection) downloadURL.openConnection();
+			conn.setConnectTimeout(CONNECTION_TIMEOUT);
+			conn.setReadTimeout(READ_TIMEOUT);
+			conn.setUseCaches(false);
+
+			// allow HTTP <--> HTTPS redirects
+			// http://download.java.net/jdk7u2/docs/technotes/guides/deployment/deployment-guide/upgrade-guide/article-17.html
+			conn.setInstanceFollowRedirects(false);
+			conn.setRequestProperty("User-Agent", "Mozilla/5.0...");
+			if (from >= 0) {
+				conn.setRequestProperty("Range", (to >= 0) ? String.format("bytes=%d-%d", from, to) : String.format("bytes=%d-", from));
+				if (validator != null)
+					conn.setRequestProperty("If-Range", validator);
+			}
+
+			// check for redirect
+			int status = conn.getResponseCode();
+			if (status == HttpURLConnection.HTTP_MOVED_TEMP || status == HttpURLConnection.HTTP_MOVED_PERM ||
+			    status == HttpURLConnection.HTTP_SEE_OTHER || status == HttpURLConnection.HTTP_USE_PROXY) {
+				URL base = conn.getURL();
+				String location = conn.getHeaderField("Location");
+				URL target = null;
+				if (location != null)
+					target = new URL(base, location);
+				conn.disconnect();
+
+				// check for problems
+				String error = null;
+				if (location == null)
+					error = String.format("Download for URL '%s' is attempting to redirect without a 'location' header.", base.toString());
+				else if (!target.getProtocol().equals("http") && !target.getProtocol().equals("https"))
+					error = String.format("Download for URL '%s' is attempting to redirect to a non-HTTP/HTTPS protocol '%s'.", base.toString(), target.getProtocol());
+				else if (redirectCount > MAX_REDIRECTS)
+					error = String.format("Download for URL '%s' is attempting too many redirects (over %d).", base.toString(), MAX_REDIRECTS);
+				if (error != null) {
+					ErrorHandler.error(error, null, false);
+					throw new DownloadException(error);
+				}
+
+				// follow redirect
+				downloadURL = target;
+				redirectCount++;
+				isRedirect = true;
+			}
+		} while (isRedirect);
+		return conn;
+	}
+
+	/**
+	 * Parses a "Content-Range" header.
+	 * @param header the header value, or null
+	 * @return {start, end, total} (start and end are -1 for "*"), or null if invalid or the total is unknown
+	 */
+	private static long[] parseContentRange(String header) {
+		if (header == null)
+			return null;
+		Matcher m = CONTENT_RANGE.matcher(header.trim());
+		if (!m.matches() || m.group(3).equals("*"))
+			return null;
+		if (m.group(1) == null)
+			return new long[] { -1, -1, Long.parseLong(m.group(3)) };
+		return new long[] { Long.parseLong(m.group(1)), Long.parseLong(m.group(2)), Long.parseLong(m.group(3)) };
+	}
+
+	/**
+	 * Reads the file describing the partially downloaded file.
+	 * @return the properties, or null if there are none
+	 */
+	private static Properties readInfo(File info) {
+		if (!info.isFile())
+			return null;
+		Properties props = new Properties();
+		try (InputStream in = new FileInputStream(info)) {
+			props.load(in);
+			return props;
+		} catch (IOException e) {
+			Log.warn(String.format("Failed to read '%s'.", info.getName()), e);
+			return null;
+		}
+	}
+
+	/**
+	 * Writes the file describing the partially downloaded file.
+	 * @param total the file size, or -1 if unknown
+	 * @param validator the ETag or last modification date of the file, or null
+	 */
+	private void writeInfo(File info, long total, String validator) {
+		Properties props = new Properties();
+		props.setProperty("url", url.toString());
+		if (total >= 0)
+			props.setProperty("length", Long.toString(total));
+		if (validator != null)
+			props.setProperty("validator", validator);
+		try (OutputStream out = new FileOutputStream(info)) {
+			props.store(out, null);
+		} catch (IOException e) {
+			Log.warn(String.format("Failed to write '%s', the download cannot be continued later.", info.getName()), e);
+		}
+	}
+
+	/**
+	 * Deletes the partially downloaded file.
+	 */
+	private void deletePart() {
+		new File(localPath + PART_EXTENSION).delete();
+		new File(localPath + INFO_EXTENSION).delete();
 	}
 
 	/**
@@ -286,7 +665,8 @@ public class Download {
 	 * Returns true if transfers are currently taking place.
 	 */
 	public boolean isTransferring() {
-		return (rbc != null && rbc.isOpen() && fos != null && fos.getChannel().isOpen());
+		FileChannel fileChannel = this.fileChannel;
+		return (status == Status.DOWNLOADING && fileChannel != null && fileChannel.isOpen());
 	}
 
 	/**
@@ -300,7 +680,7 @@ public class Download {
 	 * Returns the size of the download content in bytes, or -1 if not calculated
 	 * (or if an error has occurred).
 	 */
-	public int contentLength() { return contentLength; }
+	public long contentLength() { return contentLength; }
 
 	/**
 	 * Returns the download completion percentage, or -1f if an error has occurred.
@@ -312,8 +692,8 @@ public class Download {
 		case COMPLETE:
 			return 100f;
 		case DOWNLOADING:
-			if (rbc != null && fos != null && contentLength > 0)
-				return (float) rbc.getReadSoFar() / (float) contentLength * 100f;
+			if (contentLength > 0)
+				return (float) readSoFar() / (float) contentLength * 100f;
 			else
 				return 0f;
 		case CANCELLED:
@@ -324,16 +704,22 @@ public class Download {
 	}
 
 	/**
-	 * Returns the number of bytes read so far.
+	 * Returns the number of bytes read so far, including the bytes
+	 * received before the download was continued.
 	 */
 	public long readSoFar() {
 		switch (status) {
 		case COMPLETE:
-			return (rbc != null) ? rbc.getReadSoFar() : contentLength;
 		case DOWNLOADING:
-			if (rbc != null)
-				return rbc.getReadSoFar();
-			// else fall through
+			long bytes = offset;
+			ReadableByteChannelWrapper[] channels = this.channels;
+			if (channels != null) {
+				for (ReadableByteChannelWrapper rbc : channels) {
+					if (rbc != null)
+						bytes += rbc.getReadSoFar();
+				}
+			}
+			return bytes;
 		case WAITING:
 		case CANCELLED:
 		case ERROR:
@@ -398,23 +784,33 @@ public class Download {
 
 	/**
 	 * Cancels the download, if running.
+	 * The partially downloaded file is kept, see {@link #retry()} and {@link #discard()}.
 	 */
 	public void cancel() {
 		try {
 			this.status = Status.CANCELLED;
-			boolean transferring = isTransferring();
-			if (rbc != null && rbc.isOpen())
-				rbc.close();
-			if (fos != null && fos.getChannel().isOpen())
-				fos.close();
-			if (transferring) {
-				File f = new File(localPath);
-				if (f.isFile())
-					f.delete();
+			DownloadList.get().getScheduler().remove(this);
+			ReadableByteChannelWrapper[] channels = this.channels;
+			if (channels != null) {
+				for (ReadableByteChannelWrapper rbc : channels) {
+					if (rbc != null && rbc.isOpen())
+						rbc.close();
+				}
 			}
+			FileChannel fileChannel = this.fileChannel;
+			if (fileChannel != null && fileChannel.isOpen())
+				fileChannel.close();
 		} catch (IOException e) {
 			this.status = Status.ERROR;
 			ErrorHandler.error("Failed to cancel download.", e, true);
 		}
 	}
+
+	/**
+	 * Deletes the partially downloaded file of a cancelled or failed download.
+	 */
+	public void discard() {
+		if (status == Status.CANCELLED || status == Status.ERROR)
+			deletePart();
+	}
 }
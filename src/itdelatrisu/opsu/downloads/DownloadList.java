@@ -42,6 +42,9 @@ public class DownloadList {
 	/** The map of beatmap set IDs to DownloadNodes for the current downloads. */
 	private Map<Integer, DownloadNode> map;
 
+	/** The scheduler running the downloads. */
+	private final DownloadScheduler scheduler = new DownloadScheduler();
+
 	/**
 	 * Returns the single instance of this class.
 	 */
@@ -55,6 +58,11 @@ public class DownloadList {
 		map = new HashMap<Integer, DownloadNode>();
 	}
 
+	/**
+	 * Returns the scheduler running the downloads.
+	 */
+	public DownloadScheduler getScheduler() { return scheduler; }
+
 	/**
 	 * Returns the DownloadNode at an index, or null if the index is out of bounds.
 	 */
@@ -136,7 +144,7 @@ public class DownloadList {
 	}
 
 	/**
-	 * Removes all inactive downloads from the list.
+	 * Removes all inactive downloads from the list, deleting their partially downloaded files.
 	 */
 	public void clearInactiveDownloads() {
 		Iterator<DownloadNode> iter = nodes.iterator();
@@ -144,6 +152,7 @@ public class DownloadList {
 			DownloadNode node = iter.next();
 			Download dl = node.getDownload();
 			if (dl != null && !dl.isActive()) {
+				dl.discard();
 				node.clearDownload();
 				iter.remove();
 				map.remove(node.getID());
@@ -161,6 +170,7 @@ public class DownloadList {
 			DownloadNode node = iter.next();
 			Download dl = node.getDownload();
 			if (dl != null && dl.getStatus() == status) {
+				dl.discard();
 				node.clearDownload();
 				iter.remove();
 				map.remove(node.getID());
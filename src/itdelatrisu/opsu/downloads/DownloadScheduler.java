@@ -0,0 +1,169 @@
+/*
+ * opsu! - an open-source osu! client
+ * Copyright (C) 2014, 2015 Jeffrey Han
+ *
+ * opsu! is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * opsu! is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with opsu!.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package itdelatrisu.opsu.downloads;
+
+import itdelatrisu.opsu.Options;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs downloads on a pool of worker threads.
+ * <p>
+ * At most {@link Options#getMaxDownloads()} downloads run at the same time,
+ * and at most {@link Options#getMaxHostConnections()} connections are open to
+ * one host (a download takes one, plus one for each extra segment it fetches).
+ * Other downloads wait in the queue, in the order they were started.
+ */
+public class DownloadScheduler {
+	/** Downloads waiting for a worker, in order. */
+	private final ArrayDeque<Download> queue = new ArrayDeque<Download>();
+
+	/** Number of open connections per host. */
+	private final Map<String, Integer> hostConnections = new HashMap<String, Integer>();
+
+	/** Number of running downloads. */
+	private int running = 0;
+
+	/** The worker threads (the number of running downloads is limited by {@link #dispatch()}). */
+	private final ExecutorService executor = Executors.newCachedThreadPool(new ThreadFactory() {
+		private final AtomicInteger count = new AtomicInteger();
+
+		@Override
+		public Thread newThread(Runnable r) {
+			Thread thread = new Thread(r, String.format("Download-%d", count.incrementAndGet()));
+			thread.setDaemon(true);
+			return thread;
+		}
+	});
+
+	/**
+	 * Queues a download, and starts it if a worker and a connection to its host are free.
+	 * @param download the download, in the "waiting" status
+	 */
+	public synchronized void submit(Download download) {
+		if (!queue.contains(download))
+			queue.add(download);
+		dispatch();
+	}
+
+	/**
+	 * Removes a download from the queue, if it has not started yet.
+	 * @param download the download
+	 */
+	public synchronized void remove(Download download) {
+		queue.remove(download);
+	}
+
+	/**
+	 * Returns the number of downloads waiting for a worker.
+	 */
+	public synchronized int getQueueSize() { return queue.size(); }
+
+	/**
+	 * Returns the number of running downloads.
+	 */
+	public synchronized int getRunningCount() { return running; }
+
+	/**
+	 * Returns the number of connections open to a host.
+	 * @param host the host name
+	 */
+	public synchronized int getConnections(String host) {
+		Integer count = hostConnections.get(host);
+		return (count == null) ? 0 : count;
+	}
+
+	/**
+	 * Tries to open extra connections to a host, for the segments of a running download.
+	 * @param host the host name
+	 * @param wanted the number of connections wanted
+	 * @return the number of connections granted, between 0 and {@code wanted}
+	 */
+	synchronized int acquireConnections(String host, int wanted) {
+		int granted = Math.max(Math.min(wanted, Options.getMaxHostConnections() - getConnections(host)), 0);
+		if (granted > 0)
+			hostConnections.put(host, getConnections(host) + granted);
+		return granted;
+	}
+
+	/**
+	 * Releases connections to a host, and starts waiting downloads that can use them.
+	 * @param host the host name
+	 * @param count the number of connections to release
+	 */
+	synchronized void releaseConnections(String host, int count) {
+		int left = getConnections(host) - count;
+		if (left > 0)
+			hostConnections.put(host, left);
+		else
+			hostConnections.remove(host);
+		dispatch();
+	}
+
+	/**
+	 * Runs a task (a download segment) on a worker thread, outside of the download limits.
+	 * @param task the task
+	 * @return the future result
+	 */
+	<T> Future<T> execute(Callable<T> task) {
+		return executor.submit(task);
+	}
+
+	/**
+	 * Starts as many waiting downloads as the limits allow.
+	 */
+	private void dispatch() {
+		Iterator<Download> iter = queue.iterator();
+		while (running < Options.getMaxDownloads() && iter.hasNext()) {
+			final Download download = iter.next();
+			if (download.getStatus() != Download.Status.WAITING) {  // cancelled while waiting
+				iter.remove();
+				continue;
+			}
+			final String host = download.getRemoteURL().getHost();
+			if (getConnections(host) >= Options.getMaxHostConnections())
+				continue;
+
+			iter.remove();
+			running++;
+			hostConnections.put(host, getConnections(host) + 1);
+			executor.execute(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						download.run(DownloadScheduler.this);
+					} finally {
+						synchronized (DownloadScheduler.this) {
+							running--;
+							releaseConnections(host, 1);
+						}
+					}
+				}
+			});
+		}
+	}
+}
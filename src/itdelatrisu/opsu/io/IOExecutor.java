@@ -0,0 +1,60 @@
+/*
+ * opsu! - an open-source osu! client
+ * Copyright (C) 2014, 2015 Jeffrey Han
+ *
+ * opsu! is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * opsu! is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with opsu!.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package itdelatrisu.opsu.io;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Shared executor for background file writes.
+ * <p>
+ * Tasks run one at a time, in submission order, on a single worker thread.
+ * The worker is not a daemon thread (so queued writes are finished before
+ * the JVM exits) and stops after being idle for a few seconds.
+ */
+public class IOExecutor {
+	/** Seconds an idle worker thread is kept alive. */
+	private static final long KEEP_ALIVE_SECONDS = 5;
+
+	/** The executor. */
+	private static final ThreadPoolExecutor executor = new ThreadPoolExecutor(
+		0, 1, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+		new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r, "IOExecutor");
+				t.setDaemon(false);
+				return t;
+			}
+		}
+	);
+
+	// This class should not be instantiated.
+	private IOExecutor() {}
+
+	/**
+	 * Queues a task.
+	 * @param task the task
+	 */
+	public static void execute(Runnable task) {
+		executor.execute(task);
+	}
+}
@@ -60,6 +60,12 @@ public class OsuWriter {
 	 */
 	public OutputStream getOutputStream() { return writer; }
 
+	/**
+	 * Flushes the output stream.
+	 * @throws IOException if an I/O error occurs
+	 */
+	public void flush() throws IOException { writer.flush(); }
+
 	/**
 	 * Closes the output stream.
 	 * @throws IOException if an I/O error occurs
@@ -57,6 +57,9 @@ public class Circle extends GameObject {
 	private Color color;
 	private Color mirrorColor;
 
+	/** Buffer for mirrored hit result coordinates. */
+	private static final float[] mirrorPoint = new float[2];
+
 	/** Whether or not the circle result ends the combo streak. */
 	private boolean comboEnd;
 
@@ -113,9 +116,12 @@ public class Circle extends GameObject {
 		float fadeinScale = (timeDiff - approachTime + fadeInTime) / (float) fadeInTime;
 		float alpha = Utils.clamp(1 - fadeinScale, 0, 1);
 
-		g.pushTransform();
+		// mirrored circles are drawn upright, so mirroring them only moves them
+		float x = this.x, y = this.y;
 		if (mirror) {
-			g.rotate(x, y, -180f);
+			float[] m = Utils.mirrorPoint(x, y, mirrorPoint);
+			x = m[0];
+			y = m[1];
 		}
 
 		if (GameMod.HIDDEN.isActive()) {
@@ -143,7 +149,6 @@ public class Circle extends GameObject {
 
 		Colors.WHITE_FADE.a = oldAlpha;
 
-		g.popTransform();
 		color = orig;
 	}
 
@@ -155,7 +160,7 @@ public class Circle extends GameObject {
 	private int hitResult(int time) {
 		int timeDiff = Math.abs(time);
 
-		int[] hitResultOffset = game.getHitResultOffsets();
+		int[] hitResultOffset = data.getHitResultOffsets();
 		int result = -1;
 		if (timeDiff <= hitResultOffset[GameData.HIT_300])
 			result = GameData.HIT_300;
@@ -190,14 +195,14 @@ public class Circle extends GameObject {
 	public boolean update(boolean overlap, int delta, int mouseX, int mouseY, boolean keyPressed, int trackPosition) {
 		int time = hitObject.getTime();
 
-		int[] hitResultOffset = game.getHitResultOffsets();
+		int[] hitResultOffset = data.getHitResultOffsets();
 		boolean isAutoMod = GameMod.AUTO.isActive();
 
 		if (trackPosition > time + hitResultOffset[GameData.HIT_50]) {
 			if (isAutoMod) {// "auto" mod: catch any missed notes due to lag
 				data.hitResult(time, GameData.HIT_300, x, y, color, comboEnd, hitObject, HitObjectType.CIRCLE, true, 0, null, false);
 				if (Dancer.mirror && GameMod.AUTO.isActive()) {
-					float[] m = Utils.mirrorPoint(x, y);
+					float[] m = Utils.mirrorPoint(x, y, mirrorPoint);
 					data.hitResult(time, GameData.HIT_300, m[0], m[1], mirrorColor, comboEnd, hitObject, HitObjectType.CIRCLE, true, 0, null, false, false);
 				}
 			}
@@ -212,7 +217,7 @@ public class Circle extends GameObject {
 			if (Math.abs(trackPosition - time) < hitResultOffset[GameData.HIT_300]) {
 				data.hitResult(time, GameData.HIT_300, x, y, color, comboEnd, hitObject, HitObjectType.CIRCLE, true, 0, null, false);
 				if (Dancer.mirror && GameMod.AUTO.isActive()) {
-					float[] m = Utils.mirrorPoint(x, y);
+					float[] m = Utils.mirrorPoint(x, y, mirrorPoint);
 					data.hitResult(time, GameData.HIT_300, m[0], m[1], mirrorColor, comboEnd, hitObject, HitObjectType.CIRCLE, true, 0, null, false, false);
 				}
 				return true;
@@ -46,6 +46,8 @@ public abstract class GameObject {
 	 * Draws the hit object to the graphics context.
 	 * @param g the graphics context
 	 * @param trackPosition the current track position
+	 * @param mirrored whether to draw the mirrored copy, through the center of the screen
+	 *                 (the object applies the mirroring itself)
 	 */
 	public abstract void draw(Graphics g, int trackPosition, boolean mirrored);
 
@@ -73,6 +73,9 @@ public class Slider extends GameObject {
 	private Color color;
 	private Color mirrorColor;
 
+	/** Buffer for mirrored hit result coordinates. */
+	private static final float[] mirrorPoint = new float[2];
+
 	/** The underlying Curve. */
 	private Curve curve;
 
@@ -119,6 +122,9 @@ public class Slider extends GameObject {
 
 	private int comboColorIndex;
 
+	/** The slider multiplier given by the timing point at the slider. */
+	private float timingPointMultiplier;
+
 	private int tickExpand = 0;
 	private final int TICKEXPAND = 200;
 
@@ -132,11 +138,9 @@ public class Slider extends GameObject {
 		containerWidth = container.getWidth();
 		containerHeight = container.getHeight();
 
-		diameter = circleDiameter * HitObject.getXMultiplier();  // convert from Osupixels (640x480)
+		initSize(circleDiameter);
 		int diameterInt = (int) diameter;
 
-		followRadius = diameter / 2 * 3f;
-
 		// slider ball
 		if (GameImage.SLIDER_BALL.hasBeatmapSkinImages() ||
 		    (!GameImage.SLIDER_BALL.hasBeatmapSkinImage() && GameImage.SLIDER_BALL.getImages() != null))
@@ -150,19 +154,39 @@ public class Slider extends GameObject {
 		GameImage.REVERSEARROW.setImage(GameImage.REVERSEARROW.getImage().getScaledCopy(diameterInt, diameterInt));
 		GameImage.SLIDER_TICK.setImage(GameImage.SLIDER_TICK.getImage().getScaledCopy(diameterInt / 4, diameterInt / 4));
 
+		initTiming(beatmap);
+	}
+
+	/**
+	 * Initializes the slider dimensions, without touching any images.
+	 * @param circleDiameter the circle diameter
+	 */
+	public static void initSize(float circleDiameter) {
+		diameter = circleDiameter * HitObject.getXMultiplier();  // convert from Osupixels (640x480)
+		followRadius = diameter / 2 * 3f;
+	}
+
+	/**
+	 * Initializes the beatmap-dependent slider timing values, without touching any images.
+	 * @param beatmap the associated beatmap
+	 */
+	public static void initTiming(Beatmap beatmap) {
 		sliderMultiplier = beatmap.sliderMultiplier;
 		sliderTickRate = beatmap.sliderTickRate;
 	}
 
 	/**
-	 * Constructor.
+	 * Constructor (the game may be null if the slider is never drawn, the data if it is never judged).
 	 * @param hitObject the associated HitObject
 	 * @param game the associated Game object
 	 * @param data the associated GameData object
 	 * @param comboColorIndex index of the combo color of this slider
 	 * @param comboEnd true if this is the last hit object in the combo
+	 * @param beatLength the beat length at the slider (in ms)
+	 * @param timingPointMultiplier the slider multiplier given by the timing point at the slider
 	 */
-	public Slider(HitObject hitObject, Game game, GameData data, int comboColorIndex, boolean comboEnd) {
+	public Slider(HitObject hitObject, Game game, GameData data, int comboColorIndex, boolean comboEnd,
+			float beatLength, float timingPointMultiplier) {
 		this.hitObject = hitObject;
 		this.game = game;
 		this.data = data;
@@ -172,13 +196,14 @@ public class Slider extends GameObject {
 		updatePosition();
 
 		this.pixelLength = hitObject.getPixelLength();
+		this.timingPointMultiplier = timingPointMultiplier;
 
 		// slider time calculations
-		this.sliderTime = hitObject.getSliderTime(sliderMultiplier, game.getBeatLength());
+		this.sliderTime = hitObject.getSliderTime(sliderMultiplier, beatLength);
 		this.sliderTimeTotal = sliderTime * hitObject.getRepeatCount();
 
 		// ticks
-		float tickLengthDiv = 100f * sliderMultiplier / sliderTickRate / game.getTimingPointMultiplier();
+		float tickLengthDiv = 100f * sliderMultiplier / sliderTickRate / timingPointMultiplier;
 		int tickCount = (int) Math.ceil(hitObject.getPixelLength() / tickLengthDiv) - 1;
 		if (tickCount > 0) {
 			this.ticksT = new float[tickCount];
@@ -194,10 +219,22 @@ public class Slider extends GameObject {
 	@Override
 	public void draw(Graphics g, int trackPosition, boolean mirror) {
 		Color orig = color;
+		float oldAlpha = Colors.WHITE_FADE.a;
 		if (mirror) {
+			// the curve, arrows and ball are rotated around the center, the circles turn back upright
 			color = mirrorColor;
+			g.pushTransform();
+			g.rotate(Options.width / 2f, Options.height / 2f, 180f);
+			drawObject(g, trackPosition, true);
+			g.popTransform();
+		} else {
+			drawObject(g, trackPosition, false);
 		}
+		Colors.WHITE_FADE.a = oldAlpha;
+		color = orig;
+	}
 
+	private void drawObject(Graphics g, int trackPosition, boolean mirror) {
 		int timeDiff = hitObject.getTime() - trackPosition;
 		final int approachTime = game.getApproachTime();
 		final int fadeInTime = game.getFadeInTime();
@@ -207,7 +244,6 @@ public class Slider extends GameObject {
 		float alpha = Utils.clamp(1 - fadeinScale, 0, 1);
 		float decorationsAlpha = Utils.clamp(-2.0f * fadeinScale, 0, 1);
 		boolean overlayAboveNumber = Options.getSkin().isHitCircleOverlayAboveNumber();
-		float oldAlpha = Colors.WHITE_FADE.a;
 		Colors.WHITE_FADE.a = color.a = alpha;
 		Image hitCircleOverlay = GameImage.HITCIRCLE_OVERLAY.getImage();
 		Image hitCircle = GameImage.HITCIRCLE.getImage();
@@ -363,10 +399,6 @@ public class Slider extends GameObject {
 				}
 			}
 		}
-
-		Colors.WHITE_FADE.a = oldAlpha;
-
-		color = orig;
 	}
 
 	/**
@@ -449,7 +481,7 @@ public class Slider extends GameObject {
 				cx, cy, color, comboEnd, hitObject, type, sliderHeldToEnd,
 				currentRepeats + 1, curve, sliderHeldToEnd);
 		if (Dancer.mirror && GameMod.AUTO.isActive()) {
-			float[] m = Utils.mirrorPoint(cx, cy);
+			float[] m = Utils.mirrorPoint(cx, cy, mirrorPoint);
 			data.hitResult(hitObject.getTime() + (int) sliderTimeTotal, result,
 				m[0], m[1], mirrorColor, comboEnd, hitObject, type, sliderHeldToEnd,
 				currentRepeats + 1, curve, sliderHeldToEnd, false);
@@ -466,7 +498,7 @@ public class Slider extends GameObject {
 		double distance = Math.hypot(this.x - x, this.y - y);
 		if (distance < diameter / 2) {
 			int timeDiff = Math.abs(trackPosition - hitObject.getTime());
-			int[] hitResultOffset = game.getHitResultOffsets();
+			int[] hitResultOffset = data.getHitResultOffsets();
 
 			int result = -1;
 			if (timeDiff < hitResultOffset[GameData.HIT_50]) {
@@ -489,7 +521,7 @@ public class Slider extends GameObject {
 	@Override
 	public boolean update(boolean overlap, int delta, int mouseX, int mouseY, boolean keyPressed, int trackPosition) {
 		int repeatCount = hitObject.getRepeatCount();
-		int[] hitResultOffset = game.getHitResultOffsets();
+		int[] hitResultOffset = data.getHitResultOffsets();
 		boolean isAutoMod = GameMod.AUTO.isActive();
 
 		if (!sliderClickedInitial) {
@@ -669,6 +701,7 @@ public class Slider extends GameObject {
 		tickIndex = 0;
 		ticksHit = 0;
 		tickIntervals = 1;
+		tickExpand = 0;
 	}
 
 	public Curve getCurve() {
@@ -705,7 +738,7 @@ public class Slider extends GameObject {
 	}
 
 	public Circle[] getTickPositionCircles() {
-		float tickLengthDiv = 100f * sliderMultiplier / sliderTickRate / (game.getBeatLength() / game.getBeatLengthBase());
+		float tickLengthDiv = 100f * sliderMultiplier / sliderTickRate / timingPointMultiplier;
 		int tickCount = (int) Math.ceil(pixelLength / tickLengthDiv) - 1;
 		Circle[] ticks = new Circle[1 + ( tickCount + 1 ) * repeats];
 		Vec2f pos;
@@ -113,8 +113,18 @@ public class Spinner extends GameObject {
 	 * @param difficulty the map's overall difficulty value
 	 */
 	public static void init(GameContainer container, float difficulty) {
-		width  = container.getWidth();
-		height = container.getHeight();
+		init(container.getWidth(), container.getHeight(), difficulty);
+	}
+
+	/**
+	 * Initializes the Spinner data type with dimensions, without a game container.
+	 * @param width the container width
+	 * @param height the container height
+	 * @param difficulty the map's overall difficulty value
+	 */
+	public static void init(int width, int height, float difficulty) {
+		Spinner.width = width;
+		Spinner.height = height;
 		overallDifficulty = difficulty;
 	}
 
@@ -410,6 +420,9 @@ public class Spinner extends GameObject {
 		drawRotation = 0;
 		rotations = 0;
 		deltaOverflow = 0;
+		deltaAngleOverflow = 0;
+		lastAngle = 0;
+		drawnRPM = 0;
 		isSpinning = false;
 	}
 
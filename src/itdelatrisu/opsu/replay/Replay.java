@@ -21,28 +21,26 @@ package itdelatrisu.opsu.replay;
 import itdelatrisu.opsu.ErrorHandler;
 import itdelatrisu.opsu.Options;
 import itdelatrisu.opsu.ScoreData;
-import itdelatrisu.opsu.Utils;
 import itdelatrisu.opsu.beatmap.Beatmap;
+import itdelatrisu.opsu.io.IOExecutor;
 import itdelatrisu.opsu.io.OsuReader;
 import itdelatrisu.opsu.io.OsuWriter;
 
 import java.io.BufferedOutputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
-import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
-import java.nio.CharBuffer;
-import java.nio.charset.CharsetEncoder;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
-import java.text.DecimalFormat;
-import java.text.NumberFormat;
-import java.util.ArrayList;
+import java.nio.file.StandardOpenOption;
 import java.util.Date;
-import java.util.List;
 
 import org.apache.commons.compress.compressors.lzma.LZMACompressorInputStream;
-import org.newdawn.slick.util.Log;
 
 import lzma.streams.LzmaOutputStream;
 
@@ -102,13 +100,16 @@ public class Replay {
 	public int replayLength;
 
 	/** Replay frames. */
-	public ReplayFrame[] frames;
+	public ReplayFrames frames;
 
 	/** Seed. (?) */
 	public int seed;
 
 	/** Seed string. */
-	private static final String SEED_STRING = "-12345";
+	static final String SEED_STRING = "-12345";
+
+	/** Buffer size for compressed replay data being written to a file. */
+	private static final int COMPRESSED_BUFFER_SIZE = 65536;
 
 	/**
 	 * Empty constructor.
@@ -178,21 +179,7 @@ public class Replay {
 	 */
 	private void loadData(OsuReader reader) throws IOException {
 		// life data
-		String[] lifeData = reader.readString().split(",");
-		List<LifeFrame> lifeFrameList = new ArrayList<LifeFrame>(lifeData.length);
-		for (String frame : lifeData) {
-			String[] tokens = frame.split("\\|");
-			if (tokens.length < 2)
-				continue;
-			try {
-				int time = Integer.parseInt(tokens[0]);
-				float percentage = Float.parseFloat(tokens[1]);
-				lifeFrameList.add(new LifeFrame(time, percentage));
-			} catch (NumberFormatException e) {
-				Log.warn(String.format("Failed to load life frame: '%s'", frame), e);
-			}
-		}
-		this.lifeFrames = lifeFrameList.toArray(new LifeFrame[lifeFrameList.size()]);
+		this.lifeFrames = ReplayParser.parseLifeFrames(reader.readString());
 
 		// timestamp
 		this.timestamp = reader.readDate();
@@ -200,34 +187,11 @@ public class Replay {
 		// LZMA-encoded replay data
 		this.replayLength = reader.readInt();
 		if (replayLength > 0) {
-			LZMACompressorInputStream lzma = new LZMACompressorInputStream(reader.getInputStream());
-			String[] replayFrames = Utils.convertStreamToString(lzma).split(",");
-			lzma.close();
-			List<ReplayFrame> replayFrameList = new ArrayList<ReplayFrame>(replayFrames.length);
-			int lastTime = 0;
-			for (String frame : replayFrames) {
-				if (frame.isEmpty())
-					continue;
-				String[] tokens = frame.split("\\|");
-				if (tokens.length < 4)
-					continue;
-				try {
-					if (tokens[0].equals(SEED_STRING)) {
-						seed = Integer.parseInt(tokens[3]);
-						continue;
-					}
-					int timeDiff = Integer.parseInt(tokens[0]);
-					int time = timeDiff + lastTime;
-					float x = Float.parseFloat(tokens[1]);
-					float y = Float.parseFloat(tokens[2]);
-					int keys = Integer.parseInt(tokens[3]);
-					replayFrameList.add(new ReplayFrame(timeDiff, time, x, y, keys));
-					lastTime = time;
-				} catch (NumberFormatException e) {
-					Log.warn(String.format("Failed to parse frame: '%s'", frame), e);
-				}
+			try (LZMACompressorInputStream lzma = new LZMACompressorInputStream(reader.getInputStream())) {
+				ReplayParser parser = new ReplayParser(lzma);
+				this.frames = parser.parse();
+				this.seed = parser.getSeed();
 			}
-			this.frames = replayFrameList.toArray(new ReplayFrame[replayFrameList.size()]);
 		}
 	}
 
@@ -278,89 +242,107 @@ public class Replay {
 			}
 		}
 
-		// write file in new thread
+		// write file in background
 		final File file = new File(dir, String.format("%s.osr", getReplayFilename()));
-		new Thread() {
+		IOExecutor.execute(new Runnable() {
 			@Override
 			public void run() {
-				try (OutputStream out = new BufferedOutputStream(new FileOutputStream(file))) {
-					OsuWriter writer = new OsuWriter(out);
-
-					// header
-					writer.write(mode);
-					writer.write(version);
-					writer.write(beatmapHash);
-					writer.write(playerName);
-					writer.write(replayHash);
-					writer.write(hit300);
-					writer.write(hit100);
-					writer.write(hit50);
-					writer.write(geki);
-					writer.write(katu);
-					writer.write(miss);
-					writer.write(score);
-					writer.write(combo);
-					writer.write(perfect);
-					writer.write(mods);
-
-					// life data
-					StringBuilder sb = new StringBuilder();
-					if (lifeFrames != null) {
-						NumberFormat nf = new DecimalFormat("##.##");
-						for (int i = 0; i < lifeFrames.length; i++) {
-							LifeFrame frame = lifeFrames[i];
-							sb.append(String.format("%d|%s,",
-									frame.getTime(), nf.format(frame.getPercentage())));
-						}
-					}
-					writer.write(sb.toString());
-
-					// timestamp
-					writer.write(timestamp);
-
-					// LZMA-encoded replay data
-					if (frames != null && frames.length > 0) {
-						// build full frame string
-						NumberFormat nf = new DecimalFormat("###.#####");
-						sb = new StringBuilder();
-						for (int i = 0; i < frames.length; i++) {
-							ReplayFrame frame = frames[i];
-							sb.append(String.format("%d|%s|%s|%d,",
-									frame.getTimeDiff(), nf.format(frame.getX()),
-									nf.format(frame.getY()), frame.getKeys()));
-						}
-						sb.append(String.format("%s|0|0|%d", SEED_STRING, seed));
-
-						// get bytes from string
-						CharsetEncoder encoder = StandardCharsets.US_ASCII.newEncoder();
-						CharBuffer buffer = CharBuffer.wrap(sb);
-						byte[] bytes = encoder.encode(buffer).array();
-
-						// compress data
-						ByteArrayOutputStream bout = new ByteArrayOutputStream();
-						LzmaOutputStream compressedOut = new LzmaOutputStream.Builder(bout).useMediumDictionarySize().build();
-						try {
-							compressedOut.write(bytes);
-						} catch (IOException e) {
-							// possible OOM: https://github.com/jponge/lzma-java/issues/9
-							ErrorHandler.error("LZMA compression failed (possible out-of-memory error).", e, true);
-						}
-						compressedOut.close();
-						bout.close();
-
-						// write to file
-						byte[] compressed = bout.toByteArray();
-						writer.write(compressed.length);
-						writer.write(compressed);
-					} else
-						writer.write(0);
-
-					writer.close();
+				try {
+					write(file);
 				} catch (IOException e) {
 					ErrorHandler.error("Could not save replay data.", e, true);
 				}
 			}
-		}.start();
+		});
+	}
+
+	/**
+	 * Writes the replay to a file.
+	 * <p>
+	 * Frame data is formatted into a small buffer and compressed straight into
+	 * the file, so neither the frame string nor the compressed data is held in
+	 * memory. The compressed length (which precedes the data) is written once
+	 * the data is complete.
+	 * @param file the file to write to
+	 * @throws IOException if an I/O error occurs
+	 */
+	public void write(File file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file.toPath(),
+				StandardOpenOption.WRITE, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			// don't let the writers close the channel
+			OutputStream channelOut = new FilterOutputStream(Channels.newOutputStream(channel)) {
+				@Override
+				public void write(byte[] b, int off, int len) throws IOException { out.write(b, off, len); }
+
+				@Override
+				public void close() throws IOException { flush(); }
+			};
+			OsuWriter writer = new OsuWriter(channelOut);
+
+			// header
+			writer.write(mode);
+			writer.write(version);
+			writer.write(beatmapHash);
+			writer.write(playerName);
+			writer.write(replayHash);
+			writer.write(hit300);
+			writer.write(hit100);
+			writer.write(hit50);
+			writer.write(geki);
+			writer.write(katu);
+			writer.write(miss);
+			writer.write(score);
+			writer.write(combo);
+			writer.write(perfect);
+			writer.write(mods);
+
+			// life data
+			ByteArrayOutputStream lifeOut = new ByteArrayOutputStream();
+			if (lifeFrames != null) {
+				ReplayDataWriter lifeWriter = new ReplayDataWriter(lifeOut);
+				for (int i = 0; i < lifeFrames.length; i++) {
+					LifeFrame frame = lifeFrames[i];
+					lifeWriter.writeInt(frame.getTime());
+					lifeWriter.writeChar('|');
+					lifeWriter.writeDecimal(frame.getPercentage(), 2);
+					lifeWriter.writeChar(',');
+				}
+				lifeWriter.flush();
+			}
+			writer.write(new String(lifeOut.toByteArray(), StandardCharsets.US_ASCII));
+
+			// timestamp
+			writer.write(timestamp);
+
+			// LZMA-encoded replay data
+			writer.write(0);  // length placeholder
+			writer.flush();
+			long lengthPosition = channel.position() - 4;
+			if (frames != null && !frames.isEmpty()) {
+				LzmaOutputStream compressedOut = new LzmaOutputStream.Builder(
+						new BufferedOutputStream(channelOut, COMPRESSED_BUFFER_SIZE)).useMediumDictionarySize().build();
+				try {
+					ReplayDataWriter frameWriter = new ReplayDataWriter(compressedOut);
+					for (int i = 0, size = frames.size(); i < size; i++)
+						frameWriter.writeFrame(frames.getTimeDiff(i), frames.getX(i), frames.getY(i), frames.getKeys(i));
+					frameWriter.writeString(SEED_STRING);
+					frameWriter.writeString("|0|0|");
+					frameWriter.writeInt(seed);
+					frameWriter.flush();
+				} catch (IOException e) {
+					// possible OOM: https://github.com/jponge/lzma-java/issues/9
+					ErrorHandler.error("LZMA compression failed (possible out-of-memory error).", e, true);
+				}
+				compressedOut.close();
+
+				// fill in the compressed length
+				int length = (int) (channel.position() - lengthPosition - 4);
+				ByteBuffer lengthBuffer = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN);
+				lengthBuffer.putInt(length).flip();
+				while (lengthBuffer.hasRemaining())
+					channel.write(lengthBuffer, lengthPosition + lengthBuffer.position());
+			}
+		}
 	}
 
 	/**
@@ -409,11 +391,11 @@ public class Replay {
 		sb.append("Timestamp: "); sb.append(timestamp); sb.append('\n');
 		sb.append("Replay length: "); sb.append(replayLength); sb.append('\n');
 		if (frames != null) {
-			sb.append("Frames ("); sb.append(frames.length); sb.append(" total):\n");
-			for (int i = 0; i < frames.length && i < MAX_LINES; i++) {
+			sb.append("Frames ("); sb.append(frames.size()); sb.append(" total):\n");
+			for (int i = 0; i < frames.size() && i < MAX_LINES; i++) {
 				if (i % LINE_SPLIT == 0)
 					sb.append('\t');
-				sb.append(frames[i]);
+				sb.append(frames.get(i));
 				sb.append((i % LINE_SPLIT == LINE_SPLIT - 1) ? '\n' : ' ');
 			}
 			sb.append('\n');
@@ -0,0 +1,238 @@
+/*
+ * opsu! - an open-source osu! client
+ * Copyright (C) 2014, 2015 Jeffrey Han
+ *
+ * opsu! is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * opsu! is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with opsu!.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package itdelatrisu.opsu.replay;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.text.NumberFormat;
+import java.util.Locale;
+
+/**
+ * Buffered ASCII writer for replay frame and life data.
+ * <p>
+ * Numbers are formatted into a reusable byte buffer that is written to the
+ * underlying stream when full. Decimals are formatted like the
+ * {@link DecimalFormat} patterns used by the replay format ("###.#####" for
+ * frames, "##.##" for life data): rounded half-even on the exact value,
+ * with no trailing zeros.
+ */
+class ReplayDataWriter {
+	/** Buffer size. */
+	private static final int BUFFER_SIZE = 8192;
+
+	/** Maximum number of bytes written for one value. */
+	private static final int MAX_VALUE_LENGTH = 64;
+
+	/** Powers of ten. */
+	private static final long[] POWERS_OF_TEN = { 1L, 10L, 100L, 1000L, 10000L, 100000L };
+
+	/** Largest magnitude formatted without falling back to {@link DecimalFormat}. */
+	private static final float MAX_FAST_VALUE = 1e9f;
+
+	/** The underlying stream. */
+	private final OutputStream out;
+
+	/** The buffer. */
+	private final byte[] buf = new byte[BUFFER_SIZE];
+
+	/** Number of bytes in the buffer. */
+	private int count = 0;
+
+	/** Fallback formatters (lazily created), indexed by fraction digits. */
+	private final NumberFormat[] formats = new NumberFormat[POWERS_OF_TEN.length];
+
+	/**
+	 * Constructor.
+	 * @param out the stream to write to
+	 */
+	ReplayDataWriter(OutputStream out) {
+		this.out = out;
+	}
+
+	/**
+	 * Writes a frame ("timeDiff|x|y|keys,").
+	 * @param timeDiff time since the previous action (in ms)
+	 * @param x cursor x coordinate
+	 * @param y cursor y coordinate
+	 * @param keys keys pressed (bitmask)
+	 */
+	void writeFrame(int timeDiff, float x, float y, int keys) throws IOException {
+		writeInt(timeDiff);
+		writeChar('|');
+		writeDecimal(x, 5);
+		writeChar('|');
+		writeDecimal(y, 5);
+		writeChar('|');
+		writeInt(keys);
+		writeChar(',');
+	}
+
+	/**
+	 * Writes an ASCII character.
+	 */
+	void writeChar(char c) throws IOException {
+		if (count == buf.length)
+			flushBuffer();
+		buf[count++] = (byte) c;
+	}
+
+	/**
+	 * Writes an ASCII string.
+	 */
+	void writeString(String s) throws IOException {
+		for (int i = 0, n = s.length(); i < n; i++)
+			writeChar(s.charAt(i));
+	}
+
+	/**
+	 * Writes a decimal integer.
+	 */
+	void writeInt(int v) throws IOException {
+		ensureCapacity();
+		long n = v;
+		if (n < 0) {
+			buf[count++] = '-';
+			n = -n;
+		}
+		count = writeDigits(n, 1, buf, count);
+	}
+
+	/**
+	 * Writes a decimal number rounded (half-even) to at most the given
+	 * number of fraction digits, as {@code new DecimalFormat("###.#####")}
+	 * (with that many '#' after the point) would format it in an English locale.
+	 * @param v the value
+	 * @param fractionDigits the maximum number of fraction digits [0, 5]
+	 */
+	void writeDecimal(float v, int fractionDigits) throws IOException {
+		ensureCapacity();
+		if (!(Math.abs(v) < MAX_FAST_VALUE)) {  // also catches NaN
+			writeString(getFormat(fractionDigits).format(v));
+			return;
+		}
+
+		// v = mantissa * 2^exponent
+		int bits = Float.floatToRawIntBits(v);
+		boolean negative = (bits < 0);
+		int biased = (bits >>> 23) & 0xFF;
+		long mantissa = bits & 0x7FFFFF;
+		if (biased == 0)
+			biased = 1;  // subnormal
+		else
+			mantissa |= 0x800000;
+		int exponent = biased - 127 - 23;
+
+		// scaled = round_half_even(|v| * 10^fractionDigits)
+		long scaled = mantissa * POWERS_OF_TEN[fractionDigits];
+		if (exponent >= 0)
+			scaled <<= exponent;
+		else {
+			int shift = -exponent;
+			if (shift > 62)
+				scaled = 0;  // less than half a unit in the last place
+			else {
+				long q = scaled >>> shift;
+				long r = scaled & ((1L << shift) - 1);
+				long half = 1L << (shift - 1);
+				if (r > half || (r == half && (q & 1) != 0))
+					q++;
+				scaled = q;
+			}
+		}
+
+		if (negative)
+			buf[count++] = '-';
+		long unit = POWERS_OF_TEN[fractionDigits];
+		long integer = scaled / unit, fraction = scaled % unit;
+		count = writeDigits(integer, 1, buf, count);
+		if (fraction != 0) {
+			// strip trailing zeros
+			int digits = fractionDigits;
+			while (fraction % 10 == 0) {
+				fraction /= 10;
+				digits--;
+			}
+			buf[count++] = '.';
+			count = writeDigits(fraction, digits, buf, count);
+		}
+	}
+
+	/**
+	 * Writes the buffered bytes to the underlying stream.
+	 */
+	void flush() throws IOException {
+		flushBuffer();
+		out.flush();
+	}
+
+	/**
+	 * Makes room for one value in the buffer.
+	 */
+	private void ensureCapacity() throws IOException {
+		if (buf.length - count < MAX_VALUE_LENGTH)
+			flushBuffer();
+	}
+
+	/**
+	 * Writes the buffered bytes to the underlying stream (without flushing it).
+	 */
+	private void flushBuffer() throws IOException {
+		if (count > 0) {
+			out.write(buf, 0, count);
+			count = 0;
+		}
+	}
+
+	/**
+	 * Returns the fallback formatter for the given number of fraction digits.
+	 */
+	private NumberFormat getFormat(int fractionDigits) {
+		NumberFormat nf = formats[fractionDigits];
+		if (nf == null) {
+			StringBuilder pattern = new StringBuilder("###.");
+			for (int i = 0; i < fractionDigits; i++)
+				pattern.append('#');
+			nf = new DecimalFormat(pattern.toString(), DecimalFormatSymbols.getInstance(Locale.ENGLISH));
+			formats[fractionDigits] = nf;
+		}
+		return nf;
+	}
+
+	/**
+	 * Writes a non-negative number in decimal.
+	 * @param n the number
+	 * @param minDigits the minimum number of digits (padded with leading zeros)
+	 * @param dst the destination array
+	 * @param off the destination offset
+	 * @return the offset after the last digit
+	 */
+	private static int writeDigits(long n, int minDigits, byte[] dst, int off) {
+		int digits = 1;
+		for (long t = n / 10; t != 0; t /= 10)
+			digits++;
+		digits = Math.max(digits, minDigits);
+		for (int i = off + digits - 1; i >= off; i--) {
+			dst[i] = (byte) ('0' + (n % 10));
+			n /= 10;
+		}
+		return off + digits;
+	}
+}
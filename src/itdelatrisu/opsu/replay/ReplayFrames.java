@@ -0,0 +1,245 @@
+/*
+ * opsu! - an open-source osu! client
+ * Copyright (C) 2014, 2015 Jeffrey Han
+ *
+ * opsu! is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * opsu! is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with opsu!.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package itdelatrisu.opsu.replay;
+
+import itdelatrisu.opsu.beatmap.HitObject;
+
+import java.util.Arrays;
+
+/**
+ * Replay frames stored as primitive columns.
+ * <p>
+ * Holds one array per frame field instead of one {@link ReplayFrame} object
+ * per frame; {@link #get(int)} returns a {@link ReplayFrame} view of a
+ * single frame when one is needed. The columns are split into fixed-size
+ * chunks, so the table grows by allocating a new chunk without copying
+ * existing frames. Used both for loaded replays and for recording a replay
+ * during play; the recorded table is handed to the {@link Replay} as is.
+ */
+public class ReplayFrames {
+	/** Number of frames per chunk (as a power of two). */
+	private static final int CHUNK_SHIFT = 12;
+
+	/** Number of frames per chunk. */
+	private static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+
+	/** Mask for the index within a chunk. */
+	private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+	/** Time, in milliseconds, since the previous action. */
+	private int[][] timeDiff;
+
+	/** Time, in milliseconds. */
+	private int[][] time;
+
+	/** Cursor coordinates (in OsuPixels). */
+	private float[][] x, y;
+
+	/** Keys pressed (bitmask). */
+	private int[][] keys;
+
+	/** Number of allocated chunks. */
+	private int chunks = 0;
+
+	/** Number of frames. */
+	private int size = 0;
+
+	/**
+	 * Running maximum of the frame times, for seeking (built on demand, null if stale).
+	 * Frame times are not always increasing (e.g. around the skip frames),
+	 * but this column is.
+	 */
+	private int[] maxTime;
+
+	/**
+	 * Constructor.
+	 */
+	public ReplayFrames() {
+		this(CHUNK_SIZE);
+	}
+
+	/**
+	 * Constructor.
+	 * @param capacity the number of frames to preallocate
+	 */
+	public ReplayFrames(int capacity) {
+		int n = Math.max((capacity + CHUNK_MASK) >> CHUNK_SHIFT, 1);
+		timeDiff = new int[n][];
+		time = new int[n][];
+		x = new float[n][];
+		y = new float[n][];
+		keys = new int[n][];
+		while (chunks < n)
+			addChunk();
+	}
+
+	/**
+	 * Adds a frame.
+	 * @param frameTimeDiff time since the previous action (in ms)
+	 * @param frameTime time (in ms)
+	 * @param frameX cursor x coordinate [0, 512]
+	 * @param frameY cursor y coordinate [0, 384]
+	 * @param frameKeys keys pressed (bitmask)
+	 */
+	public void add(int frameTimeDiff, int frameTime, float frameX, float frameY, int frameKeys) {
+		if (size == chunks << CHUNK_SHIFT)
+			addChunk();
+		size++;
+		set(size - 1, frameTimeDiff, frameTime, frameX, frameY, frameKeys);
+		maxTime = null;
+	}
+
+	/**
+	 * Adds a frame.
+	 * @param frame the frame
+	 */
+	public void add(ReplayFrame frame) {
+		add(frame.getTimeDiff(), frame.getTime(), frame.getX(), frame.getY(), frame.getKeys());
+	}
+
+	/**
+	 * Replaces the i-th frame.
+	 * @param i the frame index
+	 * @param frameTimeDiff time since the previous action (in ms)
+	 * @param frameTime time (in ms)
+	 * @param frameX cursor x coordinate [0, 512]
+	 * @param frameY cursor y coordinate [0, 384]
+	 * @param frameKeys keys pressed (bitmask)
+	 */
+	public void set(int i, int frameTimeDiff, int frameTime, float frameX, float frameY, int frameKeys) {
+		checkIndex(i);
+		int c = i >> CHUNK_SHIFT, j = i & CHUNK_MASK;
+		timeDiff[c][j] = frameTimeDiff;
+		time[c][j] = frameTime;
+		x[c][j] = frameX;
+		y[c][j] = frameY;
+		keys[c][j] = frameKeys;
+		maxTime = null;
+	}
+
+	/**
+	 * Replaces the i-th frame.
+	 * @param i the frame index
+	 * @param frame the frame
+	 */
+	public void set(int i, ReplayFrame frame) {
+		set(i, frame.getTimeDiff(), frame.getTime(), frame.getX(), frame.getY(), frame.getKeys());
+	}
+
+	/** Returns the number of frames. */
+	public int size() { return size; }
+
+	/** Returns whether there are no frames. */
+	public boolean isEmpty() { return size == 0; }
+
+	/** Returns the time of the i-th frame, in milliseconds. */
+	public int getTime(int i) { checkIndex(i); return time[i >> CHUNK_SHIFT][i & CHUNK_MASK]; }
+
+	/** Returns the time since the previous action of the i-th frame, in milliseconds. */
+	public int getTimeDiff(int i) { checkIndex(i); return timeDiff[i >> CHUNK_SHIFT][i & CHUNK_MASK]; }
+
+	/**
+	 * Sets the time since the previous action of the i-th frame.
+	 * @param i the frame index
+	 * @param diff the time difference, in milliseconds
+	 */
+	public void setTimeDiff(int i, int diff) { checkIndex(i); timeDiff[i >> CHUNK_SHIFT][i & CHUNK_MASK] = diff; }
+
+	/** Returns the raw cursor x coordinate of the i-th frame. */
+	public float getX(int i) { checkIndex(i); return x[i >> CHUNK_SHIFT][i & CHUNK_MASK]; }
+
+	/** Returns the raw cursor y coordinate of the i-th frame. */
+	public float getY(int i) { checkIndex(i); return y[i >> CHUNK_SHIFT][i & CHUNK_MASK]; }
+
+	/** Returns the scaled cursor x coordinate of the i-th frame. */
+	public int getScaledX(int i) { return (int) (getX(i) * HitObject.getXMultiplier() + HitObject.getXOffset()); }
+
+	/** Returns the scaled cursor y coordinate of the i-th frame. */
+	public int getScaledY(int i) { return (int) (getY(i) * HitObject.getYMultiplier() + HitObject.getYOffset()); }
+
+	/** Returns the keys pressed (KEY_* bitmask) in the i-th frame. */
+	public int getKeys(int i) { checkIndex(i); return keys[i >> CHUNK_SHIFT][i & CHUNK_MASK]; }
+
+	/** Returns whether or not a key was pressed in the i-th frame. */
+	public boolean isKeyPressed(int i) { return (getKeys(i) != ReplayFrame.KEY_NONE); }
+
+	/**
+	 * Returns the index of the first frame with a time after the given time,
+	 * i.e. where a forward scan from the first frame that stops at the first
+	 * frame with {@code getTime(i) > time} would stop. Uses a binary search.
+	 * @param time the time, in milliseconds
+	 * @return the frame index, or {@link #size()} if there is no such frame
+	 */
+	public int indexAfter(int time) {
+		if (maxTime == null) {
+			maxTime = new int[size];
+			int max = Integer.MIN_VALUE;
+			for (int i = 0; i < size; i++) {
+				max = Math.max(max, getTime(i));
+				maxTime[i] = max;
+			}
+		}
+		int low = 0, high = size;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (maxTime[mid] > time)
+				high = mid;
+			else
+				low = mid + 1;
+		}
+		return low;
+	}
+
+	/**
+	 * Returns a view of the i-th frame.
+	 * @param i the frame index
+	 */
+	public ReplayFrame get(int i) {
+		return new ReplayFrame(getTimeDiff(i), getTime(i), getX(i), getY(i), getKeys(i));
+	}
+
+	/**
+	 * Checks that an index refers to an existing frame.
+	 * @throws IndexOutOfBoundsException if it does not
+	 */
+	private void checkIndex(int i) {
+		if (i < 0 || i >= size)
+			throw new IndexOutOfBoundsException(String.format("Index: %d, Size: %d", i, size));
+	}
+
+	/**
+	 * Allocates a new chunk (the chunk table itself is doubled if full).
+	 */
+	private void addChunk() {
+		if (chunks == time.length) {
+			int n = chunks * 2;
+			timeDiff = Arrays.copyOf(timeDiff, n);
+			time = Arrays.copyOf(time, n);
+			keys = Arrays.copyOf(keys, n);
+			x = Arrays.copyOf(x, n);
+			y = Arrays.copyOf(y, n);
+		}
+		timeDiff[chunks] = new int[CHUNK_SIZE];
+		time[chunks] = new int[CHUNK_SIZE];
+		x[chunks] = new float[CHUNK_SIZE];
+		y[chunks] = new float[CHUNK_SIZE];
+		keys[chunks] = new int[CHUNK_SIZE];
+		chunks++;
+	}
+}
@@ -0,0 +1,307 @@
+/*
+ * opsu! - an open-source osu! client
+ * Copyright (C) 2014, 2015 Jeffrey Han
+ *
+ * opsu! is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * opsu! is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with opsu!.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package itdelatrisu.opsu.replay;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.newdawn.slick.util.Log;
+
+/**
+ * Streaming parser for osu! replay frame data.
+ * <p>
+ * Replay data is a comma-separated list of "w|x|y|z" frames. Instead of
+ * decoding the whole stream into a string and splitting it, the bytes are
+ * tokenized as they are read and the numbers are parsed in place, straight
+ * into a {@link ReplayFrames} table.
+ */
+class ReplayParser {
+	/** Read buffer size. */
+	private static final int BUFFER_SIZE = 8192;
+
+	/** Maximum number of tokens kept per frame. */
+	private static final int MAX_TOKENS = 4;
+
+	/** Powers of ten that are exactly representable as doubles. */
+	private static final double[] POWERS_OF_TEN = new double[23];
+	static {
+		POWERS_OF_TEN[0] = 1;
+		for (int i = 1; i < POWERS_OF_TEN.length; i++)
+			POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+	}
+
+	/** The input stream. */
+	private final InputStream in;
+
+	/** The read buffer. */
+	private final byte[] buf = new byte[BUFFER_SIZE];
+
+	/** Read buffer position and length. */
+	private int pos = 0, len = 0;
+
+	/** The current frame. */
+	private char[] frame = new char[64];
+
+	/** Length of the current frame. */
+	private int frameLength;
+
+	/** Token bounds in the current frame. */
+	private final int[] tokenStart = new int[MAX_TOKENS], tokenEnd = new int[MAX_TOKENS];
+
+	/** The replay seed (0 if not present). */
+	private int seed = 0;
+
+	/**
+	 * Constructor.
+	 * @param in the (uncompressed) replay data stream
+	 */
+	ReplayParser(InputStream in) {
+		this.in = in;
+	}
+
+	/**
+	 * Returns the seed read by {@link #parse()}, or 0 if none.
+	 */
+	int getSeed() { return seed; }
+
+	/**
+	 * Parses all frames in the stream.
+	 * Malformed frames are logged and skipped.
+	 * @return the frames
+	 * @throws IOException if an I/O error occurs
+	 */
+	ReplayFrames parse() throws IOException {
+		ReplayFrames frames = new ReplayFrames();
+		int lastTime = 0;
+		while (readFrame()) {
+			int tokens = tokenize();
+			if (tokens < 4)
+				continue;
+			try {
+				if (equals(0, Replay.SEED_STRING)) {
+					seed = parseInt(frame, tokenStart[3], tokenEnd[3]);
+					continue;
+				}
+				int timeDiff = parseInt(frame, tokenStart[0], tokenEnd[0]);
+				int time = timeDiff + lastTime;
+				float x = parseFloat(frame, tokenStart[1], tokenEnd[1]);
+				float y = parseFloat(frame, tokenStart[2], tokenEnd[2]);
+				int keys = parseInt(frame, tokenStart[3], tokenEnd[3]);
+				frames.add(timeDiff, time, x, y, keys);
+				lastTime = time;
+			} catch (NumberFormatException e) {
+				Log.warn(String.format("Failed to parse frame: '%s'", new String(frame, 0, frameLength)), e);
+			}
+		}
+		return frames;
+	}
+
+	/**
+	 * Reads the next frame (up to the next comma) into the frame buffer.
+	 * @return false if the end of the stream was reached and no data was read
+	 * @throws IOException if an I/O error occurs
+	 */
+	private boolean readFrame() throws IOException {
+		frameLength = 0;
+		while (true) {
+			if (pos == len) {
+				len = in.read(buf, 0, buf.length);
+				pos = 0;
+				if (len <= 0) {
+					len = 0;
+					return frameLength > 0;
+				}
+			}
+			while (pos < len) {
+				char c = (char) (buf[pos++] & 0xFF);
+				if (c == ',')
+					return true;
+				if (frameLength == frame.length) {
+					char[] newFrame = new char[frame.length * 2];
+					System.arraycopy(frame, 0, newFrame, 0, frameLength);
+					frame = newFrame;
+				}
+				frame[frameLength++] = c;
+			}
+		}
+	}
+
+	/**
+	 * Splits the current frame on '|' (keeping the first {@link #MAX_TOKENS}
+	 * token bounds), with the same token count as {@code String.split("\\|")}.
+	 * @return the number of tokens
+	 */
+	private int tokenize() {
+		if (frameLength == 0)
+			return 0;
+		int count = 0, nonEmpty = 0, start = 0;
+		for (int i = 0; i <= frameLength; i++) {
+			if (i < frameLength && frame[i] != '|')
+				continue;
+			if (count < MAX_TOKENS) {
+				tokenStart[count] = start;
+				tokenEnd[count] = i;
+			}
+			count++;
+			if (i > start)
+				nonEmpty = count;
+			start = i + 1;
+		}
+		// trailing empty tokens are dropped
+		return nonEmpty;
+	}
+
+	/**
+	 * Returns whether a token of the current frame equals a string.
+	 * @param token the token index
+	 * @param s the string
+	 */
+	private boolean equals(int token, String s) {
+		int start = tokenStart[token], end = tokenEnd[token];
+		if (end - start != s.length())
+			return false;
+		for (int i = start; i < end; i++) {
+			if (frame[i] != s.charAt(i - start))
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Parses life data ("time|percentage" frames separated by commas).
+	 * Malformed frames are logged and skipped.
+	 * @param data the life data string
+	 * @return the life frames
+	 */
+	static LifeFrame[] parseLifeFrames(String data) {
+		char[] chars = data.toCharArray();
+		List<LifeFrame> list = new ArrayList<LifeFrame>();
+		int start = 0;
+		while (start <= chars.length) {
+			int end = start;
+			while (end < chars.length && chars[end] != ',')
+				end++;
+			int bar = start;
+			while (bar < end && chars[bar] != '|')
+				bar++;
+			int next = bar + 1;
+			while (next < end && chars[next] != '|')
+				next++;
+			if (bar > start && next > bar + 1) {
+				try {
+					int time = parseInt(chars, start, bar);
+					float percentage = parseFloat(chars, bar + 1, next);
+					list.add(new LifeFrame(time, percentage));
+				} catch (NumberFormatException e) {
+					Log.warn(String.format("Failed to load life frame: '%s'", new String(chars, start, end - start)), e);
+				}
+			}
+			start = end + 1;
+		}
+		return list.toArray(new LifeFrame[list.size()]);
+	}
+
+	/**
+	 * Parses a decimal integer, as {@link Integer#parseInt(String)}.
+	 * @param s the characters
+	 * @param start the start index (inclusive)
+	 * @param end the end index (exclusive)
+	 * @throws NumberFormatException if the characters are not a valid integer
+	 */
+	static int parseInt(char[] s, int start, int end) {
+		int i = start;
+		boolean negative = false;
+		if (i < end && (s[i] == '-' || s[i] == '+')) {
+			negative = (s[i] == '-');
+			i++;
+		}
+		if (i == end)
+			throw numberFormatException(s, start, end);
+		long value = 0;
+		for (; i < end; i++) {
+			int digit = s[i] - '0';
+			if (digit < 0 || digit > 9)
+				throw numberFormatException(s, start, end);
+			value = value * 10 + digit;
+			if (value > (long) Integer.MAX_VALUE + 1)
+				throw numberFormatException(s, start, end);
+		}
+		if (negative)
+			value = -value;
+		if (value > Integer.MAX_VALUE)
+			throw numberFormatException(s, start, end);
+		return (int) value;
+	}
+
+	/**
+	 * Parses a decimal number, as {@link Float#parseFloat(String)}.
+	 * Plain numbers ("-123.456") are parsed without allocating; anything else
+	 * (exponents, "NaN", surrounding whitespace, too many digits) is passed on
+	 * to {@link Float#parseFloat(String)}.
+	 * @param s the characters
+	 * @param start the start index (inclusive)
+	 * @param end the end index (exclusive)
+	 * @throws NumberFormatException if the characters are not a valid number
+	 */
+	static float parseFloat(char[] s, int start, int end) {
+		int i = start;
+		boolean negative = false;
+		if (i < end && (s[i] == '-' || s[i] == '+')) {
+			negative = (s[i] == '-');
+			i++;
+		}
+		long mantissa = 0;
+		int digits = 0, fractionDigits = 0;
+		boolean point = false, fast = (i < end);
+		for (; i < end && fast; i++) {
+			char c = s[i];
+			if (c >= '0' && c <= '9') {
+				if (mantissa != 0 || c != '0')
+					digits++;
+				mantissa = mantissa * 10 + (c - '0');
+				if (point)
+					fractionDigits++;
+			} else if (c == '.' && !point)
+				point = true;
+			else
+				fast = false;
+		}
+		// the mantissa and the power of ten must both be exact doubles
+		if (fast && digits <= 15 && fractionDigits < POWERS_OF_TEN.length && (end - start) > (point ? 1 : 0) + (s[start] == '-' || s[start] == '+' ? 1 : 0)) {
+			double value = mantissa / POWERS_OF_TEN[fractionDigits];
+
+			// rounding to float again is only wrong if the double landed exactly halfway
+			// between two floats, so leave those (very rare) cases to Float.parseFloat()
+			if ((Double.doubleToRawLongBits(value) & 0x1FFFFFFFL) != 0x10000000L) {
+				float f = (float) value;
+				return negative ? -f : f;
+			}
+		}
+		return Float.parseFloat(new String(s, start, end - start));
+	}
+
+	/**
+	 * Returns a NumberFormatException for the given characters.
+	 */
+	private static NumberFormatException numberFormatException(char[] s, int start, int end) {
+		return new NumberFormatException(String.format("For input string: \"%s\"", new String(s, start, end - start)));
+	}
+}
@@ -0,0 +1,351 @@
+/*
+ * opsu! - an open-source osu! client
+ * Copyright (C) 2014, 2015 Jeffrey Han
+ *
+ * opsu! is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * opsu! is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with opsu!.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package itdelatrisu.opsu.skins;
+
+import itdelatrisu.opsu.ErrorHandler;
+import itdelatrisu.opsu.GameImage;
+import itdelatrisu.opsu.Options;
+import itdelatrisu.opsu.Utils;
+
+import java.awt.image.BufferedImage;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.URLConnection;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.imageio.ImageIO;
+
+import org.newdawn.slick.Image;
+import org.newdawn.slick.SlickException;
+import org.newdawn.slick.util.Log;
+import org.newdawn.slick.util.ResourceLoader;
+
+/**
+ * Texture atlas for gameplay skin images.
+ * <p>
+ * All beatmap-skinnable images (including HD variants and animation frames)
+ * of the current skin are packed into a few large pages, so that drawing
+ * them does not require a texture bind per image. The packed pages are cached
+ * on disk, keyed by a hash of the skin directory contents, so the packing
+ * only happens once per skin.
+ */
+public class SkinAtlas {
+	/** Cache format version (change to invalidate old caches). */
+	private static final int FORMAT_VERSION = 1;
+
+	/** Atlas page width and height. */
+	private static final int PAGE_SIZE = 2048;
+
+	/** Empty pixels around each image. */
+	private static final int PADDING = 2;
+
+	/** Maximum number of atlas pages. */
+	private static final int MAX_PAGES = 4;
+
+	/** Images larger than this (in either dimension) are not packed. */
+	static final int MAX_IMAGE_SIZE = 512;
+
+	/** Name of the index file within a cache directory. */
+	private static final String INDEX_FILENAME = "atlas.idx";
+
+	/** File name format of the page images within a cache directory. */
+	private static final String PAGE_FILENAME_FORMAT = "page%d.png";
+
+	/** Header of the index file. */
+	private static final String INDEX_HEADER = "opsu-atlas";
+
+	/** The loaded atlas pages. */
+	private static Image[] pages;
+
+	/** Packed regions, keyed by image file name. */
+	private static Map<String, SkinAtlasPacker.Region> regions = new HashMap<String, SkinAtlasPacker.Region>();
+
+	// This class should not be instantiated.
+	private SkinAtlas() {}
+
+	/**
+	 * Loads the atlas for the given skin, packing it first if it is not cached.
+	 * This must be called from the thread owning the OpenGL context, after
+	 * the skin was loaded and before any game images are set.
+	 * @param skin the loaded skin
+	 */
+	public static void load(Skin skin) {
+		clearReferences();
+
+		List<String> names = getImageFileNames(skin.getDirectory());
+		if (names.isEmpty())
+			return;
+		String key = getCacheKey(skin.getDirectory(), names);
+		if (key == null)
+			return;
+		File dir = new File(Options.SKIN_ATLAS_DIR, key);
+
+		long startTime = System.currentTimeMillis();
+		SkinAtlasPacker packer = readIndex(dir);
+		boolean cached = (packer != null);
+		if (!cached) {
+			if ((packer = build(dir, names)) == null)
+				return;
+			pruneCache(dir);
+		}
+
+		Image[] loaded = new Image[packer.getPageCount()];
+		try {
+			for (int i = 0; i < loaded.length; i++)
+				loaded[i] = new Image(new File(dir, String.format(PAGE_FILENAME_FORMAT, i)).getAbsolutePath());
+		} catch (SlickException e) {
+			ErrorHandler.error("Failed to load skin atlas pages.", e, false);
+			return;
+		}
+		pages = loaded;
+		for (SkinAtlasPacker.Region r : packer.getRegions()) {
+			if (r.isPacked())
+				regions.put(r.name, r);
+		}
+		Log.debug(String.format("Skin atlas: %d images on %d page(s), %s in %dms.",
+				regions.size(), pages.length, cached ? "loaded" : "packed",
+				System.currentTimeMillis() - startTime));
+	}
+
+	/**
+	 * Returns the atlas sub-image for an image file.
+	 * @param name the image file name (as resolved by {@link GameImage})
+	 * @return the sub-image, or null if the image is not in the atlas
+	 */
+	public static Image getImage(String name) {
+		if (pages == null)
+			return null;
+		SkinAtlasPacker.Region r = regions.get(name);
+		if (r == null)
+			return null;
+		return pages[r.page].getSubImage(r.x, r.y, r.width, r.height);
+	}
+
+	/**
+	 * Clears all atlas references.
+	 * This does NOT destroy the pages (see {@link GameImage#clearReferences()}).
+	 */
+	public static void clearReferences() {
+		pages = null;
+		regions.clear();
+	}
+
+	/**
+	 * Returns whether an image is small enough to be packed.
+	 * @param width the image width
+	 * @param height the image height
+	 */
+	static boolean isPackable(int width, int height) {
+		return width <= MAX_IMAGE_SIZE && height <= MAX_IMAGE_SIZE;
+	}
+
+	/**
+	 * Deletes all cached atlases except one.
+	 * Every change in a skin results in a new cache directory, so the old
+	 * ones would otherwise pile up.
+	 * @param keep the cache directory to keep
+	 */
+	static void pruneCache(File keep) {
+		File[] dirs = keep.getParentFile().listFiles();
+		if (dirs == null)
+			return;
+		for (File dir : dirs) {
+			if (dir.isDirectory() && !dir.equals(keep))
+				Utils.deleteDirectory(dir);
+		}
+	}
+
+	/**
+	 * Returns the file names of all gameplay images that can be loaded for the skin.
+	 * @param skinDir the skin directory, or null for the default skin
+	 */
+	private static List<String> getImageFileNames(File skinDir) {
+		Set<String> names = new LinkedHashSet<String>();
+		for (GameImage img : GameImage.values()) {
+			if (!img.isBeatmapSkinnable())
+				continue;
+			if (skinDir != null)
+				names.addAll(img.getImageFileNames(skinDir));
+			names.addAll(img.getImageFileNames(null));
+		}
+		return new ArrayList<String>(names);
+	}
+
+	/**
+	 * Returns the cache key for a set of image files.
+	 * The key covers the skin directory, and the size and modification time
+	 * of every image file, so any change in the skin results in a new key.
+	 * @param skinDir the skin directory, or null for the default skin
+	 * @param names the image file names
+	 * @return the key, or null if no hash algorithm is available
+	 */
+	private static String getCacheKey(File skinDir, List<String> names) {
+		MessageDigest md;
+		try {
+			md = MessageDigest.getInstance("MD5");
+		} catch (NoSuchAlgorithmException e) {
+			ErrorHandler.error("Failed to get MD5 digest for skin atlas.", e, false);
+			return null;
+		}
+		StringBuilder sb = new StringBuilder();
+		sb.append(FORMAT_VERSION).append('|').append(PAGE_SIZE).append('|');
+		sb.append((skinDir == null) ? "" : skinDir.getAbsolutePath()).append('\n');
+		for (String name : names) {
+			long length = -1, lastModified = -1;
+			File file = new File(name);
+			if (file.isAbsolute() && file.isFile()) {
+				length = file.length();
+				lastModified = file.lastModified();
+			} else {
+				try {
+					URLConnection conn = ResourceLoader.getResource(name).openConnection();
+					length = conn.getContentLengthLong();
+					lastModified = conn.getLastModified();
+					conn.getInputStream().close();
+				} catch (Exception e) {
+					// unknown stamp: still keyed by name
+				}
+			}
+			sb.append(name).append('|').append(length).append('|').append(lastModified).append('\n');
+		}
+		byte[] digest = md.digest(sb.toString().getBytes(StandardCharsets.UTF_8));
+		StringBuilder key = new StringBuilder(digest.length * 2);
+		for (byte b : digest)
+			key.append(String.format("%02x", b & 0xFF));
+		return key.toString();
+	}
+
+	/**
+	 * Reads a cached atlas index.
+	 * @param dir the cache directory
+	 * @return the packer holding the cached regions, or null if the cache is missing or invalid
+	 */
+	private static SkinAtlasPacker readIndex(File dir) {
+		File indexFile = new File(dir, INDEX_FILENAME);
+		if (!indexFile.isFile())
+			return null;
+		SkinAtlasPacker packer = new SkinAtlasPacker(PAGE_SIZE, PADDING, MAX_PAGES);
+		try (BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(indexFile), StandardCharsets.UTF_8))) {
+			String[] header = in.readLine().split(" ");
+			if (!header[0].equals(INDEX_HEADER) || Integer.parseInt(header[1]) != FORMAT_VERSION)
+				return null;
+			int pageCount = Integer.parseInt(header[2]);
+			String line;
+			while ((line = in.readLine()) != null) {
+				String[] tokens = line.split("\t");
+				packer.addPacked(tokens[0],
+						Integer.parseInt(tokens[4]), Integer.parseInt(tokens[5]),
+						Integer.parseInt(tokens[1]), Integer.parseInt(tokens[2]), Integer.parseInt(tokens[3]));
+			}
+			if (packer.getPageCount() != pageCount)
+				return null;
+		} catch (IOException | RuntimeException e) {
+			Log.warn(String.format("Invalid skin atlas index '%s'.", indexFile.getAbsolutePath()), e);
+			return null;
+		}
+		for (int i = 0; i < packer.getPageCount(); i++) {
+			if (!new File(dir, String.format(PAGE_FILENAME_FORMAT, i)).isFile())
+				return null;
+		}
+		String error = packer.validate();
+		if (error != null) {
+			Log.warn(String.format("Invalid skin atlas index '%s': %s", indexFile.getAbsolutePath(), error));
+			return null;
+		}
+		return packer;
+	}
+
+	/**
+	 * Packs the images into atlas pages and writes them to the cache directory.
+	 * @param dir the cache directory
+	 * @param names the image file names
+	 * @return the packer holding the packed regions, or null if packing failed
+	 */
+	private static SkinAtlasPacker build(File dir, List<String> names) {
+		// read images
+		SkinAtlasPacker packer = new SkinAtlasPacker(PAGE_SIZE, PADDING, MAX_PAGES);
+		Map<String, BufferedImage> images = new HashMap<String, BufferedImage>();
+		for (String name : names) {
+			try (InputStream in = ResourceLoader.getResourceAsStream(name)) {
+				BufferedImage img = ImageIO.read(in);
+				if (img == null || !isPackable(img.getWidth(), img.getHeight()))
+					continue;
+				images.put(name, img);
+				packer.add(name, img.getWidth(), img.getHeight());
+			} catch (Exception e) {
+				Log.warn(String.format("Failed to read skin atlas image '%s'.", name), e);
+			}
+		}
+		if (images.isEmpty() || packer.pack() == 0)
+			return null;
+		String error = packer.validate();
+		if (error != null) {
+			ErrorHandler.error(String.format("Failed to pack skin atlas: %s", error), null, false);
+			return null;
+		}
+
+		// draw pages
+		BufferedImage[] pageImages = new BufferedImage[packer.getPageCount()];
+		for (int i = 0; i < pageImages.length; i++)
+			pageImages[i] = new BufferedImage(PAGE_SIZE, PAGE_SIZE, BufferedImage.TYPE_INT_ARGB);
+		for (SkinAtlasPacker.Region r : packer.getRegions()) {
+			if (!r.isPacked())
+				continue;
+			int[] pixels = images.get(r.name).getRGB(0, 0, r.width, r.height, null, 0, r.width);
+			pageImages[r.page].setRGB(r.x, r.y, r.width, r.height, pixels, 0, r.width);
+		}
+
+		// write cache (index last, so that it only exists for complete caches)
+		if (!dir.isDirectory() && !dir.mkdirs()) {
+			ErrorHandler.error(String.format("Failed to create skin atlas directory at '%s'.", dir.getAbsolutePath()), null, false);
+			return null;
+		}
+		try {
+			for (int i = 0; i < pageImages.length; i++)
+				ImageIO.write(pageImages[i], "png", new File(dir, String.format(PAGE_FILENAME_FORMAT, i)));
+			try (PrintWriter out = new PrintWriter(new OutputStreamWriter(
+					new FileOutputStream(new File(dir, INDEX_FILENAME)), StandardCharsets.UTF_8))) {
+				out.printf("%s %d %d\n", INDEX_HEADER, FORMAT_VERSION, packer.getPageCount());
+				for (SkinAtlasPacker.Region r : packer.getRegions()) {
+					if (r.isPacked())
+						out.printf("%s\t%d\t%d\t%d\t%d\t%d\n", r.name, r.page, r.x, r.y, r.width, r.height);
+				}
+			}
+		} catch (IOException e) {
+			ErrorHandler.error("Failed to write skin atlas cache.", e, false);
+			return null;
+		}
+		return packer;
+	}
+}
@@ -0,0 +1,245 @@
+/*
+ * opsu! - an open-source osu! client
+ * Copyright (C) 2014, 2015 Jeffrey Han
+ *
+ * opsu! is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * opsu! is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with opsu!.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package itdelatrisu.opsu.skins;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Packs rectangles into fixed-size atlas pages using shelf packing.
+ * <p>
+ * This class only deals with dimensions, so packing results can be computed
+ * and checked without a display (see {@link #validate()}).
+ */
+public class SkinAtlasPacker {
+	/** A packed rectangle. */
+	public static class Region {
+		/** The region name (usually the image file name). */
+		public final String name;
+
+		/** The region dimensions. */
+		public final int width, height;
+
+		/** The page index, or -1 if the region could not be packed. */
+		public int page = -1;
+
+		/** The region position within the page. */
+		public int x, y;
+
+		/**
+		 * Constructor.
+		 * @param name the region name
+		 * @param width the region width
+		 * @param height the region height
+		 */
+		public Region(String name, int width, int height) {
+			this.name = name;
+			this.width = width;
+			this.height = height;
+		}
+
+		/** Returns whether this region was placed on a page. */
+		public boolean isPacked() { return page >= 0; }
+
+		@Override
+		public String toString() {
+			return String.format("%s [page %d: %d,%d %dx%d]", name, page, x, y, width, height);
+		}
+	}
+
+	/** Open shelf on a page. */
+	private static class Shelf {
+		/** The shelf position and height. */
+		final int y, height;
+
+		/** The next free x coordinate. */
+		int x;
+
+		Shelf(int y, int height) {
+			this.y = y;
+			this.height = height;
+		}
+	}
+
+	/** Page width and height (square). */
+	private final int pageSize;
+
+	/** Empty pixels around each region, to avoid bleeding when filtering. */
+	private final int padding;
+
+	/** Maximum number of pages. */
+	private final int maxPages;
+
+	/** All added regions. */
+	private final List<Region> regions = new ArrayList<Region>();
+
+	/** Number of pages used after {@link #pack()}. */
+	private int pageCount = 0;
+
+	/**
+	 * Constructor.
+	 * @param pageSize the page width and height
+	 * @param padding the empty pixels around each region
+	 * @param maxPages the maximum number of pages
+	 */
+	public SkinAtlasPacker(int pageSize, int padding, int maxPages) {
+		this.pageSize = pageSize;
+		this.padding = padding;
+		this.maxPages = maxPages;
+	}
+
+	/**
+	 * Adds a rectangle to be packed.
+	 * @param name the region name
+	 * @param width the width
+	 * @param height the height
+	 * @return the region (positions are set by {@link #pack()})
+	 */
+	public Region add(String name, int width, int height) {
+		Region r = new Region(name, width, height);
+		regions.add(r);
+		return r;
+	}
+
+	/**
+	 * Adds an already placed rectangle (e.g. read from a cached index).
+	 * @param name the region name
+	 * @param width the width
+	 * @param height the height
+	 * @param page the page index
+	 * @param x the x coordinate within the page
+	 * @param y the y coordinate within the page
+	 * @return the region
+	 */
+	public Region addPacked(String name, int width, int height, int page, int x, int y) {
+		Region r = add(name, width, height);
+		r.page = page;
+		r.x = x;
+		r.y = y;
+		pageCount = Math.max(pageCount, page + 1);
+		return r;
+	}
+
+	/**
+	 * Places all added regions.
+	 * Regions are sorted by height and placed on shelves, opening new pages
+	 * as needed. Regions that do not fit are left unpacked.
+	 * @return the number of pages used
+	 */
+	public int pack() {
+		Region[] sorted = regions.toArray(new Region[regions.size()]);
+		Arrays.sort(sorted, new Comparator<Region>() {
+			@Override
+			public int compare(Region a, Region b) {
+				if (a.height != b.height)
+					return Integer.compare(b.height, a.height);
+				return Integer.compare(b.width, a.width);
+			}
+		});
+
+		List<List<Shelf>> pages = new ArrayList<List<Shelf>>();
+		for (Region r : sorted) {
+			r.page = -1;
+			int w = r.width + padding * 2, h = r.height + padding * 2;
+			if (w > pageSize || h > pageSize)
+				continue;
+			for (int p = 0; p < pages.size() && !r.isPacked(); p++)
+				place(r, pages.get(p), p, w, h);
+			if (!r.isPacked() && pages.size() < maxPages) {
+				List<Shelf> page = new ArrayList<Shelf>();
+				pages.add(page);
+				place(r, page, pages.size() - 1, w, h);
+			}
+		}
+		pageCount = pages.size();
+		return pageCount;
+	}
+
+	/**
+	 * Tries to place a region on a page, opening a new shelf if needed.
+	 * @param r the region
+	 * @param shelves the page shelves
+	 * @param page the page index
+	 * @param w the padded width
+	 * @param h the padded height
+	 */
+	private void place(Region r, List<Shelf> shelves, int page, int w, int h) {
+		for (Shelf shelf : shelves) {
+			if (h <= shelf.height && shelf.x + w <= pageSize) {
+				set(r, page, shelf.x, shelf.y);
+				shelf.x += w;
+				return;
+			}
+		}
+		int top = 0;
+		if (!shelves.isEmpty()) {
+			Shelf last = shelves.get(shelves.size() - 1);
+			top = last.y + last.height;
+		}
+		if (top + h > pageSize)
+			return;
+		Shelf shelf = new Shelf(top, h);
+		shelves.add(shelf);
+		set(r, page, 0, top);
+		shelf.x = w;
+	}
+
+	/** Sets the region position, offset by the padding. */
+	private void set(Region r, int page, int x, int y) {
+		r.page = page;
+		r.x = x + padding;
+		r.y = y + padding;
+	}
+
+	/** Returns all added regions. */
+	public List<Region> getRegions() { return regions; }
+
+	/** Returns the number of pages used after {@link #pack()}. */
+	public int getPageCount() { return pageCount; }
+
+	/** Returns the page width and height. */
+	public int getPageSize() { return pageSize; }
+
+	/**
+	 * Checks that all packed regions lie within their page and that no two
+	 * regions on the same page overlap.
+	 * @return null if valid, otherwise a description of the first problem
+	 */
+	public String validate() {
+		for (int i = 0; i < regions.size(); i++) {
+			Region a = regions.get(i);
+			if (!a.isPacked())
+				continue;
+			if (a.page >= pageCount || a.x < 0 || a.y < 0 ||
+			    a.x + a.width > pageSize || a.y + a.height > pageSize)
+				return String.format("Region out of bounds: %s", a);
+			for (int j = i + 1; j < regions.size(); j++) {
+				Region b = regions.get(j);
+				if (!b.isPacked() || b.page != a.page)
+					continue;
+				if (a.x < b.x + b.width && b.x < a.x + a.width &&
+				    a.y < b.y + b.height && b.y < a.y + a.height)
+					return String.format("Regions overlap: %s, %s", a, b);
+			}
+		}
+		return null;
+	}
+}
@@ -715,6 +715,11 @@ public class DownloadsMenu extends BasicGameState {
 										DownloadList.get().addNode(node);
 										node.getDownload().start();
 									}
+								} else {
+									// continue a cancelled or failed download
+									Download dl = DownloadList.get().getDownload(node.getID());
+									if (dl != null)
+										dl.retry();
 								}
 							}
 						} else {
@@ -814,6 +819,7 @@ public class DownloadsMenu extends BasicGameState {
 					case CANCELLED:
 					case COMPLETE:
 					case ERROR:
+						dl.discard();
 						node.clearDownload();
 						DownloadList.get().remove(index);
 						break;
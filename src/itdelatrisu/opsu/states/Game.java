@@ -21,6 +21,7 @@ package itdelatrisu.opsu.states;
 import itdelatrisu.opsu.ErrorHandler;
 import itdelatrisu.opsu.GameData;
 import itdelatrisu.opsu.GameImage;
+import itdelatrisu.opsu.GameJudge;
 import itdelatrisu.opsu.GameMod;
 import itdelatrisu.opsu.Opsu;
 import itdelatrisu.opsu.Options;
@@ -30,15 +31,14 @@ import itdelatrisu.opsu.audio.HitSound;
 import itdelatrisu.opsu.audio.MusicController;
 import itdelatrisu.opsu.audio.SoundController;
 import itdelatrisu.opsu.audio.SoundEffect;
+import itdelatrisu.opsu.audio.SoundMixer;
 import itdelatrisu.opsu.beatmap.Beatmap;
 import itdelatrisu.opsu.beatmap.BeatmapParser;
 import itdelatrisu.opsu.beatmap.HitObject;
-import itdelatrisu.opsu.beatmap.TimingPoint;
 import itdelatrisu.opsu.db.BeatmapDB;
 import itdelatrisu.opsu.db.ScoreDB;
 import itdelatrisu.opsu.downloads.Updater;
 import itdelatrisu.opsu.objects.Circle;
-import itdelatrisu.opsu.objects.DummyObject;
 import itdelatrisu.opsu.objects.GameObject;
 import itdelatrisu.opsu.objects.Slider;
 import itdelatrisu.opsu.objects.Spinner;
@@ -48,15 +48,16 @@ import itdelatrisu.opsu.render.FrameBufferCache;
 import itdelatrisu.opsu.replay.PlaybackSpeed;
 import itdelatrisu.opsu.replay.Replay;
 import itdelatrisu.opsu.replay.ReplayFrame;
+import itdelatrisu.opsu.replay.ReplayFrames;
 import itdelatrisu.opsu.ui.*;
 import itdelatrisu.opsu.ui.animations.AnimationEquation;
 
 import java.io.File;
+import java.util.ArrayList;
 import java.util.IdentityHashMap;
-import java.util.LinkedList;
-import java.util.Stack;
 
 import org.lwjgl.input.Keyboard;
+import org.lwjgl.input.Mouse;
 import org.lwjgl.opengl.Display;
 import org.newdawn.slick.Animation;
 import org.newdawn.slick.Color;
@@ -92,6 +93,27 @@ public class Game extends BasicGameState {
 		LOSE
 	}
 
+	/** Game state at a point in a replay, for seeking. */
+	private static class ReplayCheckpoint {
+		/** The index of the next replay frame to run. */
+		public int replayIndex;
+
+		/** The time of the last replay frame run. */
+		public int time;
+
+		/** Replay cursor coordinates. */
+		public int replayX, replayY;
+
+		/** Whether a replay key is pressed. */
+		public boolean replayKeyPressed;
+
+		/** Number of deaths ("Easy" mod). */
+		public byte deaths;
+
+		/** Judging and scoring state. */
+		public GameJudge.State judge;
+	}
+
 	/** Music fade-out time, in milliseconds. */
 	private static final int MUSIC_FADEOUT_TIME = 2000;
 
@@ -111,7 +133,7 @@ public class Game extends BasicGameState {
 	private static final int STACK_TIMEOUT = 1000;
 
 	/** Stack position offset modifier. */
-	private static final float STACK_OFFSET_MODIFIER = 0.05f;
+	public static final float STACK_OFFSET_MODIFIER = 0.05f;
 
 	/** The associated beatmap. */
 	private Beatmap beatmap;
@@ -119,12 +141,28 @@ public class Game extends BasicGameState {
 	/** The associated GameData object. */
 	private GameData data;
 
-	/** Current hit object index (in both hit object arrays). */
-	private int objectIndex = 0;
+	/** The hit object judge. */
+	private Judge judge;
 
 	/** The map's game objects, indexed by objectIndex. */
 	private GameObject[] gameObjects;
 
+	/** End index (exclusive) of the objects drawn in the last frame, starting at objectIndex. */
+	private int visibleObjectEnd = 0;
+
+	/** Number of follow point table entries per object. */
+	static final int FOLLOWPOINT_STRIDE = 5;
+
+	/**
+	 * Follow point geometry between each object and its predecessor, indexed
+	 * by object index * {@link #FOLLOWPOINT_STRIDE}: start x, start y,
+	 * x difference, y difference, angle (in degrees).
+	 */
+	private float[] followPoints;
+
+	/** Number of follow points before each object (0 if none are drawn). */
+	private int[] followPointCounts;
+
 	/** Delay time, in milliseconds, before song starts. */
 	private int leadInTime;
 
@@ -140,30 +178,15 @@ public class Game extends BasicGameState {
 	/** Time before the hit object time by which the objects have completely faded in the "Hidden" mod, in milliseconds. */
 	private int hiddenTimeDiff;
 
-	/** Time offsets for obtaining each hit result (indexed by HIT_* constants). */
-	private int[] hitResultOffset;
-
 	/** Current restart state. */
 	private Restart restart;
 
-	/** Current break index in breaks ArrayList. */
-	private int breakIndex;
-
-	/** Break start time (0 if not in break). */
-	private int breakTime = 0;
-
-	/** Whether the break sound has been played. */
-	private boolean breakSound;
+	/** Start time of the break whose section pass/fail sound has been played. */
+	private int breakSoundTime;
 
 	/** Skip button (displayed at song start, when necessary). */
 	private MenuButton skipButton;
 
-	/** Current timing point index in timingPoints ArrayList. */
-	private int timingPointIndex;
-
-	/** Current beat lengths (base value and inherited value). */
-	private float beatLengthBase, beatLength;
-
 	/** Whether the countdown sound has been played. */
 	private boolean
 		countdownReadySound, countdown3Sound, countdown1Sound,
@@ -217,20 +240,29 @@ public class Game extends BasicGameState {
 	/** The replay skip time, or -1 if none. */
 	private int replaySkipTime = -1;
 
-	/** The last replay frame time. */
-	private int lastReplayTime = 0;
-
-	/** The keys from the previous replay frame. */
-	private int lastReplayKeys = 0;
+	/** Game key events waiting to be handled at the time they happened. */
+	private final InputEventQueue inputEvents = new InputEventQueue();
 
-	/** The last game keys pressed. */
-	private int lastKeysPressed = ReplayFrame.KEY_NONE;
+	/** Converts the game key event times to track positions. */
+	private final GameJudge.TrackClock trackClock = new GameJudge.TrackClock() {
+		@Override
+		public int getPositionAt(long time) { return MusicController.getPositionAt(time); }
+	};
 
 	/** The previous game mod state (before the replay). */
 	private int previousMods = 0;
 
-	/** The list of current replay frames (for recording replays). */
-	private LinkedList<ReplayFrame> replayFrames;
+	/**
+	 * The current replay frames (for recording replays).
+	 * The first {@link #REPLAY_START_FRAMES} frames are reserved for the start/skip frames.
+	 */
+	private ReplayFrames replayFrames;
+
+	/** Number of frames reserved at the start of a recorded replay. */
+	private static final int REPLAY_START_FRAMES = 2;
+
+	/** Number of frames preallocated when recording a replay (about two minutes at 60 fps). */
+	private static final int REPLAY_INITIAL_CAPACITY = 8192;
 
 	/** The offscreen image rendered to. */
 	private Image offscreen;
@@ -253,6 +285,12 @@ public class Game extends BasicGameState {
 	/** Whether the game is currently seeking to a replay position. */
 	private boolean isSeeking;
 
+	/** Replay checkpoints (in frame order), so seeking only re-runs the frames after the closest one. */
+	private final ArrayList<ReplayCheckpoint> replayCheckpoints = new ArrayList<ReplayCheckpoint>();
+
+	/** Minimum time, in milliseconds, between replay checkpoints. */
+	private static final int REPLAY_CHECKPOINT_INTERVAL = 5000;
+
 	/** Music position bar coordinates and dimensions (for replay seeking). */
 	private float musicBarX, musicBarY, musicBarWidth, musicBarHeight;
 
@@ -266,6 +304,24 @@ public class Game extends BasicGameState {
 	private float epiImgY;
 	private int epiImgTime;
 
+	/** The last baked dance track, reused as long as its configuration matches. */
+	private DanceTrack danceTrack;
+
+	/** The baked dance track used for the current play, or null to dance live. */
+	private DanceTrack bakedDance;
+
+	/** The dance track being baked before the play starts, or null. */
+	private DanceBaker danceBaker;
+
+	/** The mirrored cursor coordinates, when using a baked dance track. */
+	private final Vec2f mirrorAutoPosition = new Vec2f();
+
+	/** The mirrored cursor coordinates, when the dance is not baked. */
+	private final float[] mirrorPoint = new float[2];
+
+	/** Time spent drawing the hit objects, and their mirrored copies. */
+	private final DrawTimer drawTimer = new DrawTimer();
+
 	/** Music position bar background colors. */
 	private static final Color
 		MUSICBAR_NORMAL = new Color(12, 9, 10, 0.25f),
@@ -287,6 +343,44 @@ public class Game extends BasicGameState {
 		sbOverlay = new SBOverlay(this);
 	}
 
+	/**
+	 * Drops the baked dance track, so the rest of the play is danced live
+	 * and the next play bakes it again (called when storyboard options change).
+	 */
+	public void invalidateDanceTrack() {
+		danceTrack = null;
+		bakedDance = null;
+	}
+
+	/**
+	 * Returns a key describing everything the baked dance track depends on.
+	 */
+	private String getDanceTrackKey() {
+		return String.format("%s|%dx%d|%d|%s|%s|%s",
+				beatmap.getFile().getPath(), Options.width, Options.height, GameMod.getModState(), Circle.diameter,
+				Options.GameOption.PIPPI_RADIUS_PERCENT.write(), sbOverlay.getOptionsKey());
+	}
+
+	/**
+	 * Takes the baked dance track (none if the bake was cancelled) and gives the dancer,
+	 * game objects and storyboard options back to the game.
+	 */
+	private void finishDanceBake() {
+		bakedDance = danceTrack = danceBaker.getTrack();
+		danceBaker = null;
+
+		// undo the object changes made while dancing, and rewind the dancer
+		for (int i = 0; i < gameObjects.length; i++)
+			gameObjects[i].updateStartEndPositions(beatmap.objects[i].getTime());
+		Dancer.instance.reset();
+		Dancer.instance.resetMoverDirection(beatmap.beatmapID);
+		Dancer.instance.pippi.reset();
+		int objectIndex = judge.getObjectIndex();
+		sbOverlay.reloadSBsettingsToIndex(objectIndex);
+		if (objectIndex > 0)
+			Dancer.instance.setObjectIndex(objectIndex);
+	}
+
 	public void setObjectIndex(int newObjIndex) {
 		try {
 			/*
@@ -324,13 +418,14 @@ public class Game extends BasicGameState {
 			int checkpoint = gameObjects[newObjIndex].getTime();
 			// skip to checkpoint
 			MusicController.setPosition(checkpoint);
+			int objectIndex = 0;
 			while (objectIndex < gameObjects.length && beatmap.objects[objectIndex].getTime() <= checkpoint) {
 				objectIndex++;
 			}
 			objectIndex--;
+			judge.skipTo(objectIndex);
 			Dancer.instance.setObjectIndex(objectIndex);
 			sbOverlay.updateIndex(objectIndex);
-			lastReplayTime = beatmap.objects[objectIndex].getTime();
 		} catch (SlickException e) {
 			e.printStackTrace();
 		}
@@ -361,6 +456,7 @@ public class Game extends BasicGameState {
 
 		// create the associated GameData object
 		data = new GameData(width, height);
+		judge = new Judge(data);
 	}
 
 	@Override
@@ -368,6 +464,8 @@ public class Game extends BasicGameState {
 			throws SlickException {
 		int width = container.getWidth();
 		int height = container.getHeight();
+		int objectIndex = judge.getObjectIndex();
+		int breakIndex = judge.getBreakIndex(), breakTime = judge.getBreakTime();
 		int trackPosition = MusicController.getPosition();
 		if (isLeadIn()) {
 			trackPosition -= leadInTime;
@@ -419,11 +517,26 @@ public class Game extends BasicGameState {
 		if (GameMod.FLASHLIGHT.isActive())
 			Graphics.setCurrent(g);
 
+		// "auto" mod: the baker thread owns the objects, dancer and storyboard until the track is done
+		if (danceBaker != null) {
+			String text = "Baking dance...";
+			Fonts.MEDIUM.drawString((width - Fonts.MEDIUM.getWidth(text)) / 2f,
+					(height - Fonts.MEDIUM.getLineHeight()) / 2f, text, Color.white);
+			UI.draw(g);
+			return;
+		}
+
 		// "auto" and "autopilot" mods: move cursor automatically
 		// TODO: this should really be in update(), not render()
 		autoMousePosition.set(width / 2, height / 2);
 		autoMousePressed = false;
-		if (GameMod.AUTO.isActive() || GameMod.AUTOPILOT.isActive()) {
+		if (bakedDance != null) {
+			bakedDance.getPoint(trackPosition, autoMousePosition);
+			bakedDance.getMirroredPoint(trackPosition, mirrorAutoPosition);
+			if (objectIndex < beatmap.objects.length - Dancer.instance.getPolyMoverFactoryMinBufferSize() &&
+			    trackPosition < gameObjects[objectIndex].getTime())
+				autoMousePressed = true;
+		} else if (GameMod.AUTO.isActive() || GameMod.AUTOPILOT.isActive()) {
 			Vec2f autoPoint;
 			if (objectIndex < beatmap.objects.length - Dancer.instance.getPolyMoverFactoryMinBufferSize()) {
 				Dancer d = Dancer.instance;
@@ -504,15 +617,15 @@ public class Game extends BasicGameState {
 				// show break start
 				if (data.getHealth() >= 50) {
 					GameImage.SECTION_PASS.getImage().drawCentered(width / 2f, height / 2f);
-					if (!breakSound) {
+					if (breakSoundTime != breakTime) {
 						SoundController.playSound(SoundEffect.SECTIONPASS);
-						breakSound = true;
+						breakSoundTime = breakTime;
 					}
 				} else {
 					GameImage.SECTION_FAIL.getImage().drawCentered(width / 2f, height / 2f);
-					if (!breakSound) {
+					if (breakSoundTime != breakTime) {
 						SoundController.playSound(SoundEffect.SECTIONFAIL);
-						breakSound = true;
+						breakSoundTime = breakTime;
 					}
 				}
 			} else if (breakLength >= 4000) {
@@ -655,12 +768,11 @@ public class Game extends BasicGameState {
 			UI.draw(g, replayX, replayY, replayKeyPressed);
 		else if (GameMod.AUTO.isActive()) {
 			UI.draw(g, (int) autoMousePosition.x, (int) autoMousePosition.y, autoMousePressed);
-			if (Dancer.mirror && GameMod.AUTO.isActive()) {
-				double dx = autoMousePosition.x - Options.width / 2d;
-				double dy = autoMousePosition.y - Options.height / 2d;
-				double d = Math.sqrt(dx * dx + dy * dy);
-				double a = Math.atan2(dy, dx) + Math.PI;
-				mirrorCursor.draw((int) (Math.cos(a) * d + Options.width / 2), (int) (Math.sin(a) * d + Options.height / 2), autoMousePressed);
+			if (Dancer.mirror && bakedDance != null)
+				mirrorCursor.draw((int) mirrorAutoPosition.x, (int) mirrorAutoPosition.y, autoMousePressed);
+			else if (Dancer.mirror && GameMod.AUTO.isActive()) {
+				float[] m = Utils.mirrorPoint(autoMousePosition.x, autoMousePosition.y, mirrorPoint);
+				mirrorCursor.draw((int) m[0], (int) m[1], autoMousePressed);
 			}
 		}
 		else if (GameMod.AUTOPILOT.isActive())
@@ -679,11 +791,20 @@ public class Game extends BasicGameState {
 	public void update(GameContainer container, StateBasedGame game, int delta)
 			throws SlickException {
 		UI.update(delta);
-		Pippi.update(delta);
+
+		// "auto" mod: wait for the dance track (the baker owns the dancer meanwhile)
+		if (danceBaker != null) {
+			if (!danceBaker.isStarted())
+				danceBaker.start();
+			if (!danceBaker.isDone())
+				return;
+			finishDanceBake();
+		}
+
+		Dancer.instance.pippi.update(delta);
 		if (epiImgTime > 0) {
 			epiImgTime -= delta;
 		}
-		yugecin.opsudance.spinners.Spinner.update(delta);
 		int mouseX = input.getMouseX(), mouseY = input.getMouseY();
 		sbOverlay.update(mouseX, mouseY);
 		skipButton.hoverUpdate(delta, mouseX, mouseY);
@@ -691,6 +812,9 @@ public class Game extends BasicGameState {
 			playbackSpeed.getButton().hoverUpdate(delta, mouseX, mouseY);
 		int trackPosition = MusicController.getPosition();
 
+		// game key events since the last frame
+		judge.processInputEvents(inputEvents, trackClock, trackPosition);
+
 		// returning from pause screen: must click previous mouse position
 		if (pauseTime > -1) {
 			// paused during lead-in or break, or "relax" or "autopilot": continue immediately
@@ -745,45 +869,34 @@ public class Game extends BasicGameState {
 
 		// normal game update
 		if (!isReplay)
-			addReplayFrameAndRun(mouseX, mouseY, lastKeysPressed, trackPosition);
+			judge.addFrameAndRun(mouseX, mouseY, judge.getKeys(), trackPosition);
 
 		// watching replay
 		else {
 			// out of frames, use previous data
-			if (replayIndex >= replay.frames.length)
-				updateGame(replayX, replayY, delta, MusicController.getPosition(), lastKeysPressed);
+			if (replayIndex >= replay.frames.size())
+				judge.update(replayX, replayY, delta, MusicController.getPosition(), judge.getKeys());
 
 			// seeking to a position earlier than original track position
-			if (isSeeking && replayIndex - 1 >= 1 && replayIndex < replay.frames.length &&
-			    trackPosition < replay.frames[replayIndex - 1].getTime()) {
+			// (unless a checkpoint close to the new position could be restored)
+			if (isSeeking && !seekReplayCheckpoint(trackPosition) &&
+			    replayIndex - 1 >= 1 && replayIndex < replay.frames.size() &&
+			    trackPosition < replay.frames.getTime(replayIndex - 1)) {
 				replayIndex = 0;
-				while (objectIndex >= 0) {
-					gameObjects[objectIndex].reset();
-					objectIndex--;
-				}
 
-				// reset game data
+				// reset game data (and the judged objects)
 				resetGameData();
-
-				// load the first timingPoint
-				if (!beatmap.timingPoints.isEmpty()) {
-					TimingPoint timingPoint = beatmap.timingPoints.get(0);
-					if (!timingPoint.isInherited()) {
-						setBeatLength(timingPoint, true);
-						timingPointIndex++;
-					}
-				}
 			}
 
 			// update and run replay frames
-			while (replayIndex < replay.frames.length && trackPosition >= replay.frames[replayIndex].getTime()) {
-				ReplayFrame frame = replay.frames[replayIndex];
-				replayX = frame.getScaledX();
-				replayY = frame.getScaledY();
-				replayKeyPressed = frame.isKeyPressed();
-				lastKeysPressed = frame.getKeys();
-				runReplayFrame(frame);
+			ReplayFrames frames = replay.frames;
+			while (replayIndex < frames.size() && trackPosition >= frames.getTime(replayIndex)) {
+				replayX = frames.getScaledX(replayIndex);
+				replayY = frames.getScaledY(replayIndex);
+				replayKeyPressed = frames.isKeyPressed(replayIndex);
+				judge.runFrame(frames.getTimeDiff(replayIndex), frames.getTime(replayIndex), replayX, replayY, frames.getKeys(replayIndex));
 				replayIndex++;
+				addReplayCheckpoint();
 			}
 			mouseX = replayX;
 			mouseY = replayY;
@@ -807,6 +920,8 @@ public class Game extends BasicGameState {
 	 * @param keys the keys that are pressed
 	 */
 	private void updateGame(int mouseX, int mouseY, int delta, int trackPosition, int keys) {
+		int objectIndex = judge.getObjectIndex();
+
 		// map complete!
 		boolean complete = objectIndex >= gameObjects.length;
 		if (GameMod.AUTO.isActive() && complete) {
@@ -831,11 +946,11 @@ public class Game extends BasicGameState {
 					data.setReplay(replay);
 				else if (replayFrames != null) {
 					// finalize replay frames with start/skip frames
-					if (!replayFrames.isEmpty())
-						replayFrames.getFirst().setTimeDiff(replaySkipTime * -1);
-					replayFrames.addFirst(ReplayFrame.getStartFrame(replaySkipTime));
-					replayFrames.addFirst(ReplayFrame.getStartFrame(0));
-					Replay r = data.getReplay(replayFrames.toArray(new ReplayFrame[replayFrames.size()]), beatmap);
+					if (replayFrames.size() > REPLAY_START_FRAMES)
+						replayFrames.setTimeDiff(REPLAY_START_FRAMES, replaySkipTime * -1);
+					replayFrames.set(0, ReplayFrame.getStartFrame(0));
+					replayFrames.set(1, ReplayFrame.getStartFrame(replaySkipTime));
+					Replay r = data.getReplay(replayFrames, beatmap);
 					if (r != null && !unranked)
 						r.save();
 				}
@@ -866,38 +981,9 @@ public class Game extends BasicGameState {
 			}
 		}
 
-		// timing points
-		if (timingPointIndex < beatmap.timingPoints.size()) {
-			TimingPoint timingPoint = beatmap.timingPoints.get(timingPointIndex);
-			if (trackPosition >= timingPoint.getTime()) {
-				setBeatLength(timingPoint, true);
-				timingPointIndex++;
-			}
-		}
-
-		// song beginning
-		if (objectIndex == 0 && trackPosition < beatmap.objects[0].getTime())
-			return;  // nothing to do here
-
-		// break periods
-		if (beatmap.breaks != null && breakIndex < beatmap.breaks.size()) {
-			int breakValue = beatmap.breaks.get(breakIndex);
-			if (breakTime > 0) {  // in a break period
-				if (trackPosition < breakValue)
-					return;
-				else {
-					// break is over
-					breakTime = 0;
-					breakIndex++;
-				}
-			} else if (trackPosition >= breakValue) {
-				// start a break
-				breakTime = breakValue;
-				breakSound = false;
-				breakIndex++;
-				return;
-			}
-		}
+		// timing points, song beginning and break periods
+		if (!judge.updateTiming(trackPosition))
+			return;
 
 		// pause game if focus lost
 		if (!container.hasFocus() && !GameMod.AUTO.isActive() && !isReplay) {
@@ -943,25 +1029,8 @@ public class Game extends BasicGameState {
 		}
 
 		// don't process hit results when already lost
-		if (restart != Restart.LOSE) {
-			// update objects (loop in unlikely event of any skipped indexes)
-			boolean keyPressed = keys != ReplayFrame.KEY_NONE;
-			while (objectIndex < gameObjects.length && trackPosition > beatmap.objects[objectIndex].getTime()) {
-				// check if we've already passed the next object's start time
-				boolean overlap = (objectIndex + 1 < gameObjects.length &&
-						trackPosition > beatmap.objects[objectIndex + 1].getTime() - hitResultOffset[GameData.HIT_50]);
-
-				// update hit object and check completion status
-				if (gameObjects[objectIndex].update(overlap, delta, mouseX, mouseY, keyPressed, trackPosition)) {
-					objectIndex++;  // done, so increment object index
-					sbOverlay.updateIndex(objectIndex);
-					if (objectIndex >= mirrorTo) {
-						Dancer.mirror = false;
-					}
-				} else
-					break;
-			}
-		}
+		if (restart != Restart.LOSE)
+			judge.updateObjects(mouseX, mouseY, delta, trackPosition, keys != ReplayFrame.KEY_NONE);
 	}
 
 	@Override
@@ -969,6 +1038,13 @@ public class Game extends BasicGameState {
 
 	@Override
 	public void keyPressed(int key, char c) {
+		if (danceBaker != null) {
+			// baking: only leaving works, after taking the dancer back from the baker
+			if (key != Input.KEY_ESCAPE)
+				return;
+			danceBaker.cancel();
+			finishDanceBake();
+		}
 
 		if (sbOverlay.keyPressed(key, c)) {
 			return;
@@ -986,7 +1062,7 @@ public class Game extends BasicGameState {
 			else if (key == Options.getGameKeyRight())
 				keys = ReplayFrame.KEY_K2;
 			if (keys != ReplayFrame.KEY_NONE)
-				gameKeyPressed(keys, mouseX, mouseY, trackPosition);
+				inputEvents.add(true, keys, mouseX, mouseY, Keyboard.getEventNanoseconds(), System.nanoTime());
 		}
 
 		switch (key) {
@@ -998,7 +1074,7 @@ public class Game extends BasicGameState {
 			}
 
 			// pause game
-			if (pauseTime < 0 && breakTime <= 0 && trackPosition >= beatmap.objects[0].getTime()) {
+			if (pauseTime < 0 && judge.getBreakTime() <= 0 && trackPosition >= beatmap.objects[0].getTime()) {
 				pausedMousePosition = new Vec2f(mouseX, mouseY);
 				pausePulse = 0f;
 			}
@@ -1057,11 +1133,12 @@ public class Game extends BasicGameState {
 					// skip to checkpoint
 					MusicController.setPosition(checkpoint);
 					MusicController.setPitch(GameMod.getSpeedMultiplier() * playbackSpeed.getModifier());
+					int objectIndex = 0;
 					while (objectIndex < gameObjects.length &&
 							beatmap.objects[objectIndex++].getTime() <= checkpoint)
 						;
 					objectIndex--;
-					lastReplayTime = beatmap.objects[objectIndex].getTime();
+					judge.skipTo(objectIndex);
 				} catch (SlickException e) {
 					ErrorHandler.error("Failed to load checkpoint.", e, false);
 				}
@@ -1091,22 +1168,22 @@ public class Game extends BasicGameState {
 			break;
 		case Input.KEY_M:
 			if (Dancer.mirror) {
-				mirrorTo = objectIndex;
+				mirrorTo = judge.getObjectIndex();
 				Dancer.mirror = false;
 			} else {
 				mirrorCursor.resetLocations();
-				mirrorFrom = objectIndex;
+				mirrorFrom = judge.getObjectIndex();
 				mirrorTo = gameObjects.length;
 				Dancer.mirror = true;
 			}
 			break;
 		case Input.KEY_P:
 			if (Dancer.mirror) {
-				mirrorTo = objectIndex;
+				mirrorTo = judge.getObjectIndex();
 				Dancer.mirror = false;
 			} else {
 				mirrorCursor.resetLocations();
-				mirrorFrom = objectIndex;
+				mirrorFrom = judge.getObjectIndex();
 				mirrorTo = mirrorFrom + 1;
 				Dancer.mirror = true;
 			}
@@ -1124,11 +1201,15 @@ public class Game extends BasicGameState {
 
 	@Override
 	public void mouseDragged(int oldx, int oldy, int newx, int newy) {
+		if (danceBaker != null)
+			return;
 		sbOverlay.mouseDragged(oldx, oldy, newx, newy);
 	}
 
 	@Override
 	public void mousePressed(int button, int x, int y) {
+		if (danceBaker != null)
+			return;
 		if (sbOverlay.mousePressed(button, x, y)) {
 			return;
 		}
@@ -1163,7 +1244,7 @@ public class Game extends BasicGameState {
 		// mouse wheel: pause the game
 		if (button == Input.MOUSE_MIDDLE_BUTTON && !Options.isMouseWheelDisabled()) {
 			int trackPosition = MusicController.getPosition();
-			if (pauseTime < 0 && breakTime <= 0 && trackPosition >= beatmap.objects[0].getTime()) {
+			if (pauseTime < 0 && judge.getBreakTime() <= 0 && trackPosition >= beatmap.objects[0].getTime()) {
 				pausedMousePosition = new Vec2f(x, y);
 				pausePulse = 0f;
 			}
@@ -1180,50 +1261,13 @@ public class Game extends BasicGameState {
 		else if (button == Input.MOUSE_RIGHT_BUTTON)
 			keys = ReplayFrame.KEY_M2;
 		if (keys != ReplayFrame.KEY_NONE)
-			gameKeyPressed(keys, x, y, MusicController.getPosition());
-	}
-
-	/**
-	 * Handles a game key pressed event.
-	 * @param keys the game keys pressed
-	 * @param x the mouse x coordinate
-	 * @param y the mouse y coordinate
-	 * @param trackPosition the track position
-	 */
-	private void gameKeyPressed(int keys, int x, int y, int trackPosition) {
-		// returning from pause screen
-		if (pauseTime > -1) {
-			double distance = Math.hypot(pausedMousePosition.x - x, pausedMousePosition.y - y);
-			int circleRadius = GameImage.HITCIRCLE.getImage().getWidth() / 2;
-			if (distance < circleRadius) {
-				// unpause the game
-				pauseTime = -1;
-				pausedMousePosition = null;
-				if (!isLeadIn())
-					MusicController.resume();
-			}
-			return;
-		}
-
-		// skip beginning
-		if (skipButton.contains(x, y)) {
-			if (skipIntro())
-				return;  // successfully skipped
-		}
-
-		// "auto" and "relax" mods: ignore user actions
-		if (GameMod.AUTO.isActive() || GameMod.RELAX.isActive())
-			return;
-
-		// send a game key press
-		if (!isReplay && keys != ReplayFrame.KEY_NONE) {
-			lastKeysPressed |= keys;  // set keys bits
-			addReplayFrameAndRun(x, y, lastKeysPressed, trackPosition);
-		}
+			inputEvents.add(true, keys, x, y, Mouse.getEventNanoseconds(), System.nanoTime());
 	}
 
 	@Override
 	public void mouseReleased(int button, int x, int y) {
+		if (danceBaker != null)
+			return;
 		if (sbOverlay.mouseReleased(button, x, y)) {
 			return;
 		}
@@ -1240,7 +1284,7 @@ public class Game extends BasicGameState {
 		else if (button == Input.MOUSE_RIGHT_BUTTON)
 			keys = ReplayFrame.KEY_M2;
 		if (keys != ReplayFrame.KEY_NONE)
-			gameKeyReleased(keys, x, y, MusicController.getPosition());
+			inputEvents.add(false, keys, x, y, Mouse.getEventNanoseconds(), System.nanoTime());
 	}
 
 	@Override
@@ -1251,25 +1295,13 @@ public class Game extends BasicGameState {
 		else if (key == Options.getGameKeyRight())
 			keys = ReplayFrame.KEY_K2;
 		if (keys != ReplayFrame.KEY_NONE)
-			gameKeyReleased(keys, input.getMouseX(), input.getMouseY(), MusicController.getPosition());
-	}
-
-	/**
-	 * Handles a game key released event.
-	 * @param keys the game keys released
-	 * @param x the mouse x coordinate
-	 * @param y the mouse y coordinate
-	 * @param trackPosition the track position
-	 */
-	private void gameKeyReleased(int keys, int x, int y, int trackPosition) {
-		if (!isReplay && keys != ReplayFrame.KEY_NONE && !isLeadIn() && pauseTime == -1) {
-			lastKeysPressed &= ~keys;  // clear keys bits
-			addReplayFrameAndRun(x, y, lastKeysPressed, trackPosition);
-		}
+			inputEvents.add(false, keys, input.getMouseX(), input.getMouseY(), Keyboard.getEventNanoseconds(), System.nanoTime());
 	}
 
 	@Override
 	public void mouseWheelMoved(int newValue) {
+		if (danceBaker != null)
+			return;
 		if (sbOverlay.mouseWheelMoved(newValue)) {
 			return;
 		}
@@ -1287,8 +1319,11 @@ public class Game extends BasicGameState {
 		if (beatmap == null || beatmap.objects == null)
 			throw new RuntimeException("Running game with no beatmap loaded.");
 
+		SimulationClock.instance.setFixedFrameRate(Dancer.fixedframerate);
 		Dancer.instance.reset();
-		MoverDirection.reset(beatmap.beatmapID);
+		Dancer.instance.resetMoverDirection(beatmap.beatmapID);
+		inputEvents.clear();
+		drawTimer.reset();
 
 		Slider.bpm = beatmap.bpmMin * GameMod.getSpeedMultiplier();
 
@@ -1335,69 +1370,18 @@ public class Game extends BasicGameState {
 			} else if (restart == Restart.REPLAY)
 				retries = 0;
 
-			gameObjects = new GameObject[beatmap.objects.length];
 			playbackSpeed = PlaybackSpeed.NORMAL;
 
-			// reset game data
-			resetGameData();
-
-			// load the first timingPoint for stacking
-			if (!beatmap.timingPoints.isEmpty()) {
-				TimingPoint timingPoint = beatmap.timingPoints.get(0);
-				if (!timingPoint.isInherited()) {
-					setBeatLength(timingPoint, true);
-					timingPointIndex++;
-				}
-			}
-
 			// initialize object maps
 			CursorColorOverrides.comboColors = ObjectColorOverrides.comboColors = beatmap.getComboColors();
-			for (int i = 0; i < beatmap.objects.length; i++) {
-				HitObject hitObject = beatmap.objects[i];
-
-				// is this the last note in the combo?
-				boolean comboEnd = false;
-				if (i + 1 >= beatmap.objects.length || beatmap.objects[i + 1].isNewCombo())
-					comboEnd = true;
-
-				// pass beatLength to hit objects
-				int hitObjectTime = hitObject.getTime();
-				while (timingPointIndex < beatmap.timingPoints.size()) {
-					TimingPoint timingPoint = beatmap.timingPoints.get(timingPointIndex);
-					if (timingPoint.getTime() > hitObjectTime)
-						break;
-					setBeatLength(timingPoint, false);
-					timingPointIndex++;
-				}
+			gameObjects = GameJudge.createGameObjects(beatmap, this, data);
+			judge.setBeatmap(beatmap, gameObjects);
 
-				try {
-					if (hitObject.isCircle())
-						gameObjects[i] = new Circle(hitObject, this, data, hitObject.getComboIndex(), comboEnd);
-					else if (hitObject.isSlider())
-						gameObjects[i] = new Slider(hitObject, this, data, hitObject.getComboIndex(), comboEnd);
-					else if (hitObject.isSpinner())
-						gameObjects[i] = new Spinner(hitObject, this, data);
-				} catch (Exception e) {
-					// try to handle the error gracefully: substitute in a dummy GameObject
-					ErrorHandler.error(String.format("Failed to create %s at index %d:\n%s",
-							hitObject.getTypeName(), i, hitObject.toString()), e, true);
-					gameObjects[i] = new DummyObject(hitObject);
-				}
-			}
+			// follow points (object positions are final now)
+			initFollowPoints();
 
-			// stack calculations
-			calculateStacks();
-
-			// load the first timingPoint
-			timingPointIndex = 0;
-			beatLengthBase = beatLength = 1;
-			if (!beatmap.timingPoints.isEmpty()) {
-				TimingPoint timingPoint = beatmap.timingPoints.get(0);
-				if (!timingPoint.isInherited()) {
-					setBeatLength(timingPoint, true);
-					timingPointIndex++;
-				}
-			}
+			// reset game data (also loads the first timing point)
+			resetGameData();
 
 			// unhide cursor for "auto" mod and replays
 			if (GameMod.AUTO.isActive() || isReplay)
@@ -1410,15 +1394,16 @@ public class Game extends BasicGameState {
 				replayY = container.getHeight() / 2;
 				replayKeyPressed = false;
 				replaySkipTime = -1;
-				for (replayIndex = 0; replayIndex < replay.frames.length; replayIndex++) {
-					ReplayFrame frame = replay.frames[replayIndex];
-					if (frame.getY() < 0) {  // skip time (?)
-						if (frame.getTime() >= 0 && replayIndex > 0)
-							replaySkipTime = frame.getTime();
-					} else if (frame.getTime() == 0) {
-						replayX = frame.getScaledX();
-						replayY = frame.getScaledY();
-						replayKeyPressed = frame.isKeyPressed();
+				replayCheckpoints.clear();
+				ReplayFrames frames = replay.frames;
+				for (replayIndex = 0; replayIndex < frames.size(); replayIndex++) {
+					if (frames.getY(replayIndex) < 0) {  // skip time (?)
+						if (frames.getTime(replayIndex) >= 0 && replayIndex > 0)
+							replaySkipTime = frames.getTime(replayIndex);
+					} else if (frames.getTime(replayIndex) == 0) {
+						replayX = frames.getScaledX(replayIndex);
+						replayY = frames.getScaledY(replayIndex);
+						replayKeyPressed = frames.isKeyPressed(replayIndex);
 					} else
 						break;
 				}
@@ -1426,14 +1411,11 @@ public class Game extends BasicGameState {
 
 			// initialize replay-recording structures
 			else {
-				lastKeysPressed = ReplayFrame.KEY_NONE;
 				replaySkipTime = -1;
-				replayFrames = new LinkedList<ReplayFrame>();
-				replayFrames.add(new ReplayFrame(0, 0, input.getMouseX(), input.getMouseY(), 0));
-			}
-
-			for (int i = 0; i < gameObjects.length; i++) {
-				gameObjects[i].updateStartEndPositions(beatmap.objects[i].getTime());
+				replayFrames = new ReplayFrames(REPLAY_INITIAL_CAPACITY);
+				for (int i = 0; i < REPLAY_START_FRAMES; i++)
+					replayFrames.add(0, 0, 0, 0, 0);  // set when the game ends
+				replayFrames.add(0, 0, input.getMouseX(), input.getMouseY(), 0);
 			}
 
 			leadInTime = beatmap.audioLeadIn + approachTime;
@@ -1463,10 +1445,21 @@ public class Game extends BasicGameState {
 			sbOverlay.updateIndex(0);
 		}
 
-		Pippi.reset();
+		Dancer.instance.pippi.reset();
 		mirrorFrom = 0;
 		mirrorTo = gameObjects.length;
 
+		// "auto" mod: use a baked dance track (started on the next update, after any seeking)
+		bakedDance = null;
+		danceBaker = null;
+		if (Dancer.bake && GameMod.AUTO.isActive() && !isReplay && gameObjects.length > 0) {
+			String key = getDanceTrackKey();
+			if (danceTrack != null && danceTrack.matches(key))
+				bakedDance = danceTrack;
+			else
+				danceBaker = new DanceBaker(key, gameObjects, sbOverlay, beatmap.beatmapID, -leadInTime);
+		}
+
 		skipButton.resetHover();
 		if (isReplay || GameMod.AUTO.isActive())
 			playbackSpeed.getButton().resetHover();
@@ -1478,8 +1471,18 @@ public class Game extends BasicGameState {
 			throws SlickException {
 //		container.setMouseGrabbed(false);
 
+		if (danceBaker != null) {
+			danceBaker.cancel();
+			finishDanceBake();
+		}
 		sbOverlay.leave();
+		SimulationClock.instance.setFixedFrameRate(0);
 		Dancer.instance.setGameObjects(null);
+		if (Options.isFPSCounterEnabled()) {
+			drawTimer.log();
+			SoundMixer.logStatistics();
+		}
+		inputEvents.clear();
 
 		Cursor.lastObjColor = Color.white;
 		Cursor.lastMirroredObjColor = Color.white;
@@ -1501,6 +1504,9 @@ public class Game extends BasicGameState {
 	 * @param trackPosition the track position
 	 */
 	private void drawHitObjects(Graphics g, int trackPosition) {
+		drawTimer.frame();
+		int objectIndex = judge.getObjectIndex();
+
 		// include previous object in follow points
 		int lastObjectIndex = -1;
 		if (objectIndex > 0 && objectIndex < beatmap.objects.length &&
@@ -1511,84 +1517,77 @@ public class Game extends BasicGameState {
 		if (loseState)
 			trackPosition = failTrackTime + (int) (System.currentTimeMillis() - failTime);
 
-		// get hit objects in reverse order, or else overlapping objects are unreadable
-		Stack<Integer> stack = new Stack<Integer>();
-		for (int index = objectIndex; index < gameObjects.length && beatmap.objects[index].getTime() < trackPosition + approachTime; index++) {
-			stack.add(index);
+		// update the visible object window [objectIndex, visibleObjectEnd)
+		visibleObjectEnd = updateVisibleObjectEnd(beatmap.objects, objectIndex, visibleObjectEnd, trackPosition + approachTime);
 
-			// draw follow points
+		// draw follow points
+		for (int index = objectIndex; index < visibleObjectEnd; index++) {
 			if (!Options.isFollowPointEnabled() || loseState)
-				continue;
+				break;
 			if (beatmap.objects[index].isSpinner()) {
 				lastObjectIndex = -1;
 				continue;
 			}
-			if (lastObjectIndex != -1 && !beatmap.objects[index].isNewCombo()) {
-				// calculate points
-				final int followPointInterval = container.getHeight() / 14;
+			int numPoints = followPointCounts[index];
+			if (lastObjectIndex != -1 && numPoints > 0) {
 				int lastObjectEndTime = gameObjects[lastObjectIndex].getEndTime() + 1;
 				int objectStartTime = beatmap.objects[index].getTime();
-				Vec2f startPoint = gameObjects[lastObjectIndex].getPointAt(lastObjectEndTime);
-				Vec2f endPoint = gameObjects[index].getPointAt(objectStartTime);
-				float xDiff = endPoint.x - startPoint.x;
-				float yDiff = endPoint.y - startPoint.y;
-				float dist = (float) Math.hypot(xDiff, yDiff);
-				int numPoints = (int) ((dist - GameImage.HITCIRCLE.getImage().getWidth()) / followPointInterval);
-				if (numPoints > 0) {
-					// set the image angle
-					Image followPoint = GameImage.FOLLOWPOINT.getImage();
-					float angle = (float) Math.toDegrees(Math.atan2(yDiff, xDiff));
-					followPoint.setRotation(angle);
-
-					// draw points
-					float progress = 0f, alpha = 1f;
-					if (lastObjectIndex < objectIndex)
-						progress = (float) (trackPosition - lastObjectEndTime) / (objectStartTime - lastObjectEndTime);
-					else {
-						alpha = Utils.clamp((1f - ((objectStartTime - trackPosition) / (float) approachTime)) * 2f, 0, 1);
-						followPoint.setAlpha(alpha);
-					}
+				int offset = index * FOLLOWPOINT_STRIDE;
+				float startX = followPoints[offset], startY = followPoints[offset + 1];
+				float xDiff = followPoints[offset + 2], yDiff = followPoints[offset + 3];
+
+				// set the image angle
+				Image followPoint = GameImage.FOLLOWPOINT.getImage();
+				followPoint.setRotation(followPoints[offset + 4]);
+
+				// draw points
+				float progress = 0f, alpha = 1f;
+				if (lastObjectIndex < objectIndex)
+					progress = (float) (trackPosition - lastObjectEndTime) / (objectStartTime - lastObjectEndTime);
+				else {
+					alpha = Utils.clamp((1f - ((objectStartTime - trackPosition) / (float) approachTime)) * 2f, 0, 1);
+					followPoint.setAlpha(alpha);
+				}
 
-					float step = 1f / (numPoints + 1);
-					float t = step;
-					for (int i = 0; i < numPoints; i++) {
-						float x = startPoint.x + xDiff * t;
-						float y = startPoint.y + yDiff * t;
-						float nextT = t + step;
-						if (lastObjectIndex < objectIndex) {  // fade the previous trail
-							if (progress < nextT) {
-								if (progress > t)
-									followPoint.setAlpha(1f - ((progress - t + step) / (step * 2f)));
-								else if (progress > t - step)
-									followPoint.setAlpha(1f - ((progress - (t - step)) / (step * 2f)));
-								else
-									followPoint.setAlpha(1f);
-								followPoint.drawCentered(x, y);
-							}
-						} else
+				float step = 1f / (numPoints + 1);
+				float t = step;
+				for (int i = 0; i < numPoints; i++) {
+					float x = startX + xDiff * t;
+					float y = startY + yDiff * t;
+					float nextT = t + step;
+					if (lastObjectIndex < objectIndex) {  // fade the previous trail
+						if (progress < nextT) {
+							if (progress > t)
+								followPoint.setAlpha(1f - ((progress - t + step) / (step * 2f)));
+							else if (progress > t - step)
+								followPoint.setAlpha(1f - ((progress - (t - step)) / (step * 2f)));
+							else
+								followPoint.setAlpha(1f);
 							followPoint.drawCentered(x, y);
-						t = nextT;
-					}
-					followPoint.setAlpha(1f);
+						}
+					} else
+						followPoint.drawCentered(x, y);
+					t = nextT;
 				}
+				followPoint.setAlpha(1f);
 			}
 			lastObjectIndex = index;
 		}
 
-		// draw hit objects
-		while (!stack.isEmpty()){
-			int idx = stack.pop();
+		// draw hit objects in reverse order, or else overlapping objects are unreadable
+		for (int idx = visibleObjectEnd - 1; idx >= objectIndex; idx--) {
 			GameObject gameObj = gameObjects[idx];
 
 			// normal case
 			if (!loseState) {
 				if (!Dancer.hideobjects) {
+					long start = System.nanoTime();
 					gameObj.draw(g, trackPosition, false);
+					long end = System.nanoTime();
+					drawTimer.addSingle(end - start);
 					if (Dancer.mirror && GameMod.AUTO.isActive() && idx < mirrorTo && idx >= mirrorFrom) {
-						g.pushTransform();
-						g.rotate(Options.width / 2f, Options.height / 2f, 180f);
 						gameObj.draw(g, trackPosition, true);
-						g.popTransform();
+						drawTimer.addMirror(System.nanoTime() - end);
 					}
 				}
 			}
@@ -1629,6 +1628,70 @@ public class Game extends BasicGameState {
 		}
 	}
 
+	/**
+	 * Computes the follow point geometry between all consecutive objects.
+	 * Must be called after the object positions are final (i.e. after stacking).
+	 */
+	private void initFollowPoints() {
+		followPoints = new float[gameObjects.length * FOLLOWPOINT_STRIDE];
+		followPointCounts = new int[gameObjects.length];
+		computeFollowPoints(beatmap.objects, gameObjects, container.getHeight() / 14,
+				GameImage.HITCIRCLE.getImage().getWidth(), followPoints, followPointCounts);
+	}
+
+	/**
+	 * Moves the end of the visible object window from its position in the
+	 * last frame: objects from {@code objectIndex} up to the returned index
+	 * start before {@code windowEndTime}.
+	 * @param objects the hit objects
+	 * @param objectIndex the index of the first object to draw
+	 * @param visibleObjectEnd the end index (exclusive) in the last frame
+	 * @param windowEndTime the track position plus the approach time
+	 * @return the new end index (exclusive)
+	 */
+	static int updateVisibleObjectEnd(HitObject[] objects, int objectIndex, int visibleObjectEnd, int windowEndTime) {
+		if (visibleObjectEnd < objectIndex)
+			visibleObjectEnd = objectIndex;
+		while (visibleObjectEnd > objectIndex && objects[visibleObjectEnd - 1].getTime() >= windowEndTime)
+			visibleObjectEnd--;
+		while (visibleObjectEnd < objects.length && objects[visibleObjectEnd].getTime() < windowEndTime)
+			visibleObjectEnd++;
+		return visibleObjectEnd;
+	}
+
+	/**
+	 * Fills the follow point table, see {@link #followPoints}.
+	 * @param objects the hit objects
+	 * @param gameObjects the game objects (stacked)
+	 * @param followPointInterval the distance between follow points
+	 * @param hitCircleWidth the hit circle image width
+	 * @param followPoints the table to fill ({@link #FOLLOWPOINT_STRIDE} entries per object)
+	 * @param followPointCounts the follow point counts to fill (one per object)
+	 */
+	static void computeFollowPoints(HitObject[] objects, GameObject[] gameObjects,
+			int followPointInterval, int hitCircleWidth, float[] followPoints, int[] followPointCounts) {
+		for (int i = 1; i < gameObjects.length; i++) {
+			HitObject hitObject = objects[i];
+			if (hitObject.isSpinner() || hitObject.isNewCombo() || objects[i - 1].isSpinner())
+				continue;
+			Vec2f startPoint = gameObjects[i - 1].getPointAt(gameObjects[i - 1].getEndTime() + 1);
+			Vec2f endPoint = gameObjects[i].getPointAt(hitObject.getTime());
+			float xDiff = endPoint.x - startPoint.x;
+			float yDiff = endPoint.y - startPoint.y;
+			float dist = (float) Math.hypot(xDiff, yDiff);
+			int numPoints = (int) ((dist - hitCircleWidth) / followPointInterval);
+			if (numPoints <= 0)
+				continue;
+			int offset = i * FOLLOWPOINT_STRIDE;
+			followPoints[offset] = startPoint.x;
+			followPoints[offset + 1] = startPoint.y;
+			followPoints[offset + 2] = xDiff;
+			followPoints[offset + 3] = yDiff;
+			followPoints[offset + 4] = (float) Math.toDegrees(Math.atan2(yDiff, xDiff));
+			followPointCounts[i] = numPoints;
+		}
+	}
+
 	/**
 	 * Loads all required data from a beatmap.
 	 * @param beatmap the beatmap to load
@@ -1650,12 +1713,9 @@ public class Game extends BasicGameState {
 	 */
 	public void resetGameData() {
 		data.clear();
-		objectIndex = 0;
-		breakIndex = 0;
-		breakTime = 0;
-		breakSound = false;
-		timingPointIndex = 0;
-		beatLengthBase = beatLength = 1;
+		judge.reset();
+		visibleObjectEnd = 0;
+		breakSoundTime = 0;
 		pauseTime = -1;
 		pausedMousePosition = null;
 		countdownReadySound = false;
@@ -1667,7 +1727,6 @@ public class Game extends BasicGameState {
 		deaths = 0;
 		deathTime = -1;
 		replayFrames = null;
-		lastReplayTime = 0;
 		autoMousePosition = new Vec2f();
 		autoMousePressed = false;
 		flashlightRadius = container.getHeight() * 2 / 3;
@@ -1682,7 +1741,7 @@ public class Game extends BasicGameState {
 	private synchronized boolean skipIntro() {
 		int firstObjectTime = beatmap.objects[0].getTime();
 		int trackPosition = MusicController.getPosition();
-		if (objectIndex == 0 && (trackPosition < firstObjectTime - SKIP_OFFSET) || isLeadIn()) {
+		if (judge.getObjectIndex() == 0 && (trackPosition < firstObjectTime - SKIP_OFFSET) || isLeadIn()) {
 			if (isLeadIn()) {
 				leadInTime = 0;
 				epiImgTime = 0;
@@ -1775,17 +1834,7 @@ public class Game extends BasicGameState {
 			approachTime = (int) (1200 - ((approachRate - 5) * 150));
 
 		// overallDifficulty (hit result time offsets)
-		hitResultOffset = new int[GameData.HIT_MAX];
-		hitResultOffset[GameData.HIT_300]  = (int) (79.5f - (overallDifficulty * 6));
-		hitResultOffset[GameData.HIT_100]  = (int) (139.5f - (overallDifficulty * 8));
-		hitResultOffset[GameData.HIT_50]   = (int) (199.5f - (overallDifficulty * 10));
-		hitResultOffset[GameData.HIT_MISS] = (int) (500 - (overallDifficulty * 10));
-		//final float mult = 0.608f;
-		//hitResultOffset[GameData.HIT_300]  = (int) ((128 - (overallDifficulty * 9.6)) * mult);
-		//hitResultOffset[GameData.HIT_100]  = (int) ((224 - (overallDifficulty * 12.8)) * mult);
-		//hitResultOffset[GameData.HIT_50]   = (int) ((320 - (overallDifficulty * 16)) * mult);
-		//hitResultOffset[GameData.HIT_MISS] = (int) ((1000 - (overallDifficulty * 10)) * mult);
-		data.setHitResultOffset(hitResultOffset);
+		data.setHitResultOffset(GameJudge.getHitResultOffsets(overallDifficulty));
 
 		// HPDrainRate (health change)
 		data.setDrainRate(HPDrainRate);
@@ -1839,41 +1888,6 @@ public class Game extends BasicGameState {
 	 */
 	public int getHiddenTimeDiff() { return hiddenTimeDiff; }
 
-	/**
-	 * Returns an array of hit result offset times, in milliseconds (indexed by GameData.HIT_* constants).
-	 */
-	public int[] getHitResultOffsets() { return hitResultOffset; }
-
-	/**
-	 * Returns the beat length.
-	 */
-	public float getBeatLength() { return beatLength; }
-
-	public float getBeatLengthBase() {
-		return beatLengthBase;
-	}
-
-	/**
-	 * Sets the beat length fields based on a given timing point.
-	 * @param timingPoint the timing point
-	 * @param setSampleSet whether to set the hit sample set based on the timing point
-	 */
-	private void setBeatLength(TimingPoint timingPoint, boolean setSampleSet) {
-		if (!timingPoint.isInherited())
-			beatLengthBase = beatLength = timingPoint.getBeatLength();
-		else
-			beatLength = beatLengthBase * timingPoint.getSliderMultiplier();
-		if (setSampleSet) {
-			HitSound.setDefaultSampleSet(timingPoint.getSampleType());
-			SoundController.setSampleVolume(timingPoint.getSampleVolume());
-		}
-	}
-
-	/**
-	 * Returns the slider multiplier given by the current timing point.
-	 */
-	public float getTimingPointMultiplier() { return beatLength / beatLengthBase; }
-
 	/**
 	 * Sets a replay to view, or resets the replay if null.
 	 * @param replay the replay
@@ -1893,81 +1907,150 @@ public class Game extends BasicGameState {
 	}
 
 	/**
-	 * Adds a replay frame to the list, if possible, and runs it.
-	 * @param x the cursor x coordinate
-	 * @param y the cursor y coordinate
-	 * @param keys the keys pressed
-	 * @param time the time of the replay Frame
+	 * Saves the game state as a replay checkpoint, if the previous one is
+	 * old enough and no hit object is in progress or about to be hit.
+	 * Called after running replay frame {@code replayIndex - 1}.
 	 */
-	public synchronized void addReplayFrameAndRun(int x, int y, int keys, int time){
-		// "auto" and "autopilot" mods: use automatic cursor coordinates
-		if (GameMod.AUTO.isActive() || GameMod.AUTOPILOT.isActive()) {
-			x = (int) autoMousePosition.x;
-			y = (int) autoMousePosition.y;
+	private void addReplayCheckpoint() {
+		if (judge.isComplete() || restart == Restart.LOSE || deathTime > -1)
+			return;
+		int time = replay.frames.getTime(replayIndex - 1);
+		if (!replayCheckpoints.isEmpty()) {
+			ReplayCheckpoint last = replayCheckpoints.get(replayCheckpoints.size() - 1);
+			if (replayIndex <= last.replayIndex || time < last.time + REPLAY_CHECKPOINT_INTERVAL)
+				return;
 		}
+		if (!judge.canSaveState(time))
+			return;
 
-		ReplayFrame frame = addReplayFrame(x, y, keys, time);
-		if (frame != null)
-			runReplayFrame(frame);
+		ReplayCheckpoint c = new ReplayCheckpoint();
+		c.replayIndex = replayIndex;
+		c.time = time;
+		c.replayX = replayX;
+		c.replayY = replayY;
+		c.replayKeyPressed = replayKeyPressed;
+		c.deaths = deaths;
+		c.judge = judge.saveState();
+		replayCheckpoints.add(c);
 	}
 
 	/**
-	 * Runs a replay frame.
-	 * @param frame the frame to run
+	 * Restores the last replay checkpoint at or before a track position,
+	 * if that is closer than the current replay frame.
+	 * @param trackPosition the track position being seeked to
+	 * @return true if a checkpoint was restored
 	 */
-	private void runReplayFrame(ReplayFrame frame){
-		int keys = frame.getKeys();
-		int replayX = frame.getScaledX();
-		int replayY = frame.getScaledY();
-		int deltaKeys = (keys & ~lastReplayKeys);  // keys that turned on
-		if (deltaKeys != ReplayFrame.KEY_NONE)  // send a key press
-			sendGameKeyPress(deltaKeys, replayX, replayY, frame.getTime());
-		else if (keys != lastReplayKeys)
-			;  // do nothing
-		else
-			updateGame(replayX, replayY, frame.getTimeDiff(), frame.getTime(), keys);
-		lastReplayKeys = keys;
+	private boolean seekReplayCheckpoint(int trackPosition) {
+		// the frame the update loop would stop at, and the last checkpoint before it
+		int target = replay.frames.indexAfter(trackPosition);
+		int low = 0, high = replayCheckpoints.size();
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (replayCheckpoints.get(mid).replayIndex > target)
+				high = mid;
+			else
+				low = mid + 1;
+		}
+		if (low == 0)
+			return false;
+		ReplayCheckpoint c = replayCheckpoints.get(low - 1);
+		if (c.replayIndex == replayIndex || (c.replayIndex < replayIndex && target >= replayIndex))
+			return false;  // current state is closer
+
+		// restore the judge (resets the objects after the checkpoint)
+		judge.restoreState(c.judge);
+		replayIndex = c.replayIndex;
+		replayX = c.replayX;
+		replayY = c.replayY;
+		replayKeyPressed = c.replayKeyPressed;
+		deaths = c.deaths;
+		Dancer.instance.setObjectIndex(judge.getObjectIndex());
+		sbOverlay.updateIndex(judge.getObjectIndex());
+		return true;
 	}
 
 	/**
-	 * Sends a game key press and updates the hit objects.
-	 * @param trackPosition the track position
-	 * @param x the cursor x coordinate
-	 * @param y the cursor y coordinate
-	 * @param keys the keys that are pressed
+	 * Judges the game: filters the game keys (pausing, skipping, mods), records
+	 * the replay frames when playing, and updates the game and the parts that
+	 * follow the object index.
 	 */
-	private void sendGameKeyPress(int keys, int x, int y, int trackPosition) {
-		if (objectIndex >= gameObjects.length)  // nothing to do here
-			return;
+	private class Judge extends GameJudge {
+		/**
+		 * Constructor.
+		 * @param data the associated GameData object
+		 */
+		public Judge(GameData data) { super(data); }
+
+		@Override
+		public void keyPressed(int keys, int x, int y, int trackPosition) {
+			// returning from pause screen
+			if (pauseTime > -1) {
+				double distance = Math.hypot(pausedMousePosition.x - x, pausedMousePosition.y - y);
+				int circleRadius = (int) Circle.diameter / 2;
+				if (distance < circleRadius) {
+					// unpause the game
+					pauseTime = -1;
+					pausedMousePosition = null;
+					if (!isLeadIn())
+						MusicController.resume();
+				}
+				return;
+			}
 
-		HitObject hitObject = beatmap.objects[objectIndex];
+			// skip beginning
+			if (skipButton.contains(x, y)) {
+				if (skipIntro())
+					return;  // successfully skipped
+			}
 
-		// circles
-		if (hitObject.isCircle() && gameObjects[objectIndex].mousePressed(x, y, trackPosition))
-			objectIndex++;  // circle hit
+			// "auto" and "relax" mods: ignore user actions
+			if (GameMod.AUTO.isActive() || GameMod.RELAX.isActive())
+				return;
 
-		// sliders
-		else if (hitObject.isSlider())
-			gameObjects[objectIndex].mousePressed(x, y, trackPosition);
-	}
+			// send a game key press
+			if (!isReplay)
+				super.keyPressed(keys, x, y, trackPosition);
+		}
 
-	/**
-	 * Adds a replay frame to the list, if possible.
-	 * @param x the cursor x coordinate
-	 * @param y the cursor y coordinate
-	 * @param keys the keys pressed
-	 * @param time the time of the replay frame
-	 * @return a ReplayFrame representing the data
-	 */
-	private ReplayFrame addReplayFrame(int x, int y, int keys, int time) {
-		int timeDiff = time - lastReplayTime;
-		lastReplayTime = time;
-		int cx = (int) ((x - HitObject.getXOffset()) / HitObject.getXMultiplier());
-		int cy = (int) ((y - HitObject.getYOffset()) / HitObject.getYMultiplier());
-		ReplayFrame frame = new ReplayFrame(timeDiff, time, cx, cy, keys);
-		if (replayFrames != null)
-			replayFrames.add(frame);
-		return frame;
+		@Override
+		public void keyReleased(int keys, int x, int y, int trackPosition) {
+			if (!isReplay && !isLeadIn() && pauseTime == -1)
+				super.keyReleased(keys, x, y, trackPosition);
+		}
+
+		/**
+		 * {@inheritDoc}
+		 * The frame is added to the recorded replay, with the cursor
+		 * coordinates rounded to osu!pixels like a saved replay has them.
+		 */
+		@Override
+		public synchronized void addFrameAndRun(int x, int y, int keys, int time) {
+			// "auto" and "autopilot" mods: use automatic cursor coordinates
+			if (GameMod.AUTO.isActive() || GameMod.AUTOPILOT.isActive()) {
+				x = (int) autoMousePosition.x;
+				y = (int) autoMousePosition.y;
+			}
+
+			int cx = (int) ((x - HitObject.getXOffset()) / HitObject.getXMultiplier());
+			int cy = (int) ((y - HitObject.getYOffset()) / HitObject.getYMultiplier());
+			if (replayFrames != null)
+				replayFrames.add(time - getLastFrameTime(), time, cx, cy, keys);
+			super.addFrameAndRun(
+					(int) (cx * HitObject.getXMultiplier() + HitObject.getXOffset()),
+					(int) (cy * HitObject.getYMultiplier() + HitObject.getYOffset()), keys, time);
+		}
+
+		@Override
+		public void update(int x, int y, int delta, int trackPosition, int keys) {
+			updateGame(x, y, delta, trackPosition, keys);
+		}
+
+		@Override
+		protected void objectIndexChanged(int objectIndex) {
+			sbOverlay.updateIndex(objectIndex);
+			if (objectIndex >= mirrorTo)
+				Dancer.mirror = false;
+		}
 	}
 
 	/**
@@ -1980,6 +2063,8 @@ public class Game extends BasicGameState {
 			return;
 
 		int width = container.getWidth(), height = container.getHeight();
+		int objectIndex = judge.getObjectIndex();
+		int breakIndex = judge.getBreakIndex(), breakTime = judge.getBreakTime();
 		boolean firstObject = (objectIndex == 0 && trackPosition < beatmap.objects[0].getTime());
 		if (isLeadIn()) {
 			// lead-in: expand area
@@ -2035,9 +2120,11 @@ public class Game extends BasicGameState {
 	/**
 	 * Performs stacking calculations on all hit objects, and updates their
 	 * positions if necessary.
+	 * @param beatmap the beatmap
+	 * @param gameObjects the game objects of the beatmap
 	 * @author peppy (https://gist.github.com/peppy/1167470)
 	 */
-	private void calculateStacks() {
+	public static void calculateStacks(Beatmap beatmap, GameObject[] gameObjects) {
 		// reverse pass for stack calculation
 		for (int i = gameObjects.length - 1; i > 0; i--) {
 			HitObject hitObjectI = beatmap.objects[i];
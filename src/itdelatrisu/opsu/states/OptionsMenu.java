@@ -109,7 +109,10 @@ public class OptionsMenu extends BasicGameState {
 			GameOption.CHECKPOINT,
 			GameOption.REPLAY_SEEKING,
 			GameOption.DISABLE_UPDATER,
-			GameOption.ENABLE_WATCH_SERVICE
+			GameOption.ENABLE_WATCH_SERVICE,
+			GameOption.MAX_DOWNLOADS,
+			GameOption.MAX_HOST_CONNECTIONS,
+			GameOption.DOWNLOAD_SEGMENTS
 		}),
 		DANCE ("Dance", new GameOption[] {
 			GameOption.DANCE_MOVER,
@@ -123,6 +126,8 @@ public class OptionsMenu extends BasicGameState {
 			GameOption.DANCE_CIRLCE_IN_SLOW_SLIDERS,
 			GameOption.DANCE_CIRLCE_IN_LAZY_SLIDERS,
 			GameOption.DANCE_MIRROR,
+			GameOption.DANCE_BAKE,
+			GameOption.DANCE_FIXED_FRAMERATE,
 		}),
 		DANCEDISP ("Dance display", new GameOption[] {
 			GameOption.DANCE_DRAW_APPROACH,
@@ -42,6 +42,7 @@ import org.newdawn.slick.Input;
 import org.newdawn.slick.SlickException;
 import org.newdawn.slick.state.BasicGameState;
 import org.newdawn.slick.state.StateBasedGame;
+import org.newdawn.slick.util.Log;
 
 /**
  * "Splash Screen" state.
@@ -70,6 +71,9 @@ public class Splash extends BasicGameState {
 	/** Logo alpha level. */
 	private AnimatedValue logoAlpha;
 
+	/** Time at which loading started (for logging the splash-to-menu time). */
+	private long startTime;
+
 	// game-related variables
 	private final int state;
 	private GameContainer container;
@@ -83,6 +87,7 @@ public class Splash extends BasicGameState {
 	public void init(GameContainer container, StateBasedGame game)
 			throws SlickException {
 		this.container = container;
+		this.startTime = System.currentTimeMillis();
 
 		// check if skin changed
 		if (Options.getSkin() != null)
@@ -170,6 +175,8 @@ public class Splash extends BasicGameState {
 
 		// change states when loading complete
 		if (finished && logoAlpha.getValue() >= 1f) {
+			Log.debug(String.format("Splash screen finished loading in %dms.", System.currentTimeMillis() - startTime));
+
 			// initialize song list
 			if (BeatmapSetList.get().size() > 0) {
 				BeatmapSetList.get().init();
@@ -26,15 +26,14 @@ import itdelatrisu.opsu.Utils;
 import itdelatrisu.opsu.skins.Skin;
 import itdelatrisu.opsu.ui.animations.AnimationEquation;
 
-import java.awt.Point;
 import java.nio.IntBuffer;
-import java.util.LinkedList;
 
 import org.lwjgl.BufferUtils;
 import org.lwjgl.LWJGLException;
 import org.newdawn.slick.*;
 import org.newdawn.slick.state.StateBasedGame;
 import yugecin.opsudance.Dancer;
+import yugecin.opsudance.SimulationClock;
 
 /**
  * Updates and draws the cursor.
@@ -44,7 +43,7 @@ public class Cursor {
 	private static org.lwjgl.input.Cursor emptyCursor;
 
 	/** Last cursor coordinates. */
-	private Point lastPosition;
+	private int lastX, lastY;
 
 	/** Cursor rotation angle. */
 	private static float cursorAngle = 0f;
@@ -62,7 +61,7 @@ public class Cursor {
 	private static final float CURSOR_SCALE_TIME = 125;
 
 	/** Stores all previous cursor locations to display a trail. */
-	private LinkedList<Point> trail = new LinkedList<Point>();
+	private CursorTrail trail = new CursorTrail();
 
 	// game-related variables
 	private static GameContainer container;
@@ -155,11 +154,11 @@ public class Cursor {
 		if (skin.isCursorExpanded()) {
 			if (lastCursorPressState != mousePressed) {
 				lastCursorPressState = mousePressed;
-				lastCursorPressTime = System.currentTimeMillis();
+				lastCursorPressTime = SimulationClock.instance.getMillis();
 			}
 
 			float cursorScaleChange = CURSOR_SCALE_CHANGE * AnimationEquation.IN_OUT_CUBIC.calc(
-					Utils.clamp(System.currentTimeMillis() - lastCursorPressTime, 0, CURSOR_SCALE_TIME) / CURSOR_SCALE_TIME);
+					Utils.clamp(SimulationClock.instance.getMillis() - lastCursorPressTime, 0, CURSOR_SCALE_TIME) / CURSOR_SCALE_TIME);
 			cursorScaleAnimated = 1f + ((mousePressed) ? cursorScaleChange : CURSOR_SCALE_CHANGE - cursorScaleChange);
 		}
 		float cursorScale = cursorScaleAnimated * Options.getCursorScale();
@@ -170,18 +169,20 @@ public class Cursor {
 
 		// TODO: use an image buffer
 		int removeCount = 0;
-		float FPSmod = Math.max(container.getFPS(), 1) / 30f;
+		int fps = SimulationClock.instance.isFixed() ? SimulationClock.instance.getFixedFrameRate() : container.getFPS();
+		float FPSmod = Math.max(fps, 1) / 30f;
 		if (newStyle) {
 			// new style: add all points between cursor movements
-			if ((lastPosition.x == 0 && lastPosition.y == 0) || !addCursorPoints(lastPosition.x, lastPosition.y, mouseX, mouseY)) {
-				trail.add(new Point(mouseX, mouseY));
+			if ((lastX == 0 && lastY == 0) || !trail.addLine(lastX, lastY, mouseX, mouseY)) {
+				trail.add(mouseX, mouseY);
 			}
-			lastPosition.move(mouseX, mouseY);
+			lastX = mouseX;
+			lastY = mouseY;
 
 			removeCount = (int) (trail.size() / (6 * FPSmod)) + 1;
 		} else {
 			// old style: sample one point at a time
-			trail.add(new Point(mouseX, mouseY));
+			trail.add(mouseX, mouseY);
 
 			int max = (int) (10 * FPSmod);
 			if (trail.size() > max)
@@ -193,8 +194,7 @@ public class Cursor {
 		}
 
 		// remove points from the lists
-		for (int i = 0; i < removeCount && !trail.isEmpty(); i++)
-			trail.remove();
+		trail.removeFirst(removeCount);
 
 		Color filter;
 		if (isMirrored) {
@@ -209,11 +209,11 @@ public class Cursor {
 		int cursorTrailWidth = cursorTrail.getWidth(), cursorTrailHeight = cursorTrail.getHeight();
 		float cursorTrailRotation = (skin.isCursorTrailRotated()) ? cursorAngle : 0;
 		cursorTrail.startUse();
-		for (Point p : trail) {
+		for (int i = 0, size = trail.size(); i < size; i++) {
 			alpha += t;
 			cursorTrail.setImageColor(filter.r, filter.g, filter.b, alpha);
 			cursorTrail.drawEmbedded(
-					p.x - (cursorTrailWidth / 2f), p.y - (cursorTrailHeight / 2f),
+					trail.getX(i) - (cursorTrailWidth / 2f), trail.getY(i) - (cursorTrailHeight / 2f),
 					cursorTrailWidth, cursorTrailHeight, cursorTrailRotation);
 		}
 		cursorTrail.drawEmbedded(
@@ -229,59 +229,6 @@ public class Cursor {
 			cursorMiddle.drawCentered(mouseX, mouseY, Dancer.onlycolortrail ? Color.white : filter);
 	}
 
-	/**
-	 * Adds all points between (x1, y1) and (x2, y2) to the cursor point lists.
-	 * @author http://rosettacode.org/wiki/Bitmap/Bresenham's_line_algorithm#Java
-	 */
-	private boolean addCursorPoints(int x1, int y1, int x2, int y2) {
-		// delta of exact value and rounded value of the dependent variable
-		boolean added = false;
-		int d = 0;
-		int dy = Math.abs(y2 - y1);
-		int dx = Math.abs(x2 - x1);
-
-		int dy2 = (dy << 1);  // slope scaling factors to avoid floating
-		int dx2 = (dx << 1);  // point
-		int ix = x1 < x2 ? 1 : -1;  // increment direction
-		int iy = y1 < y2 ? 1 : -1;
-
-		int k = 5;  // sample size
-		if (dy <= dx) {
-			for (int i = 0; ; i++) {
-				if (i == k) {
-					trail.add(new Point(x1, y1));
-					added = true;
-					i = 0;
-				}
-				if (x1 == x2)
-					break;
-				x1 += ix;
-				d += dy2;
-				if (d > dx) {
-					y1 += iy;
-					d -= dx2;
-				}
-			}
-		} else {
-			for (int i = 0; ; i++) {
-				if (i == k) {
-					trail.add(new Point(x1, y1));
-					added = true;
-					i = 0;
-				}
-				if (y1 == y2)
-					break;
-				y1 += iy;
-				d += dx2;
-				if (d > dy) {
-					x1 += ix;
-					d -= dy2;
-				}
-			}
-		}
-		return added;
-	}
-
 	/**
 	 * Rotates the cursor by a degree determined by a delta interval.
 	 * If the old style cursor is being used, this will do nothing.
@@ -314,7 +261,7 @@ public class Cursor {
 	 * Resets all cursor location data.
 	 */
 	public void resetLocations() {
-		lastPosition = new Point(0, 0);
+		lastX = lastY = 0;
 		trail.clear();
 	}
 
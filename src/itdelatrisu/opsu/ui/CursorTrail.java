@@ -0,0 +1,192 @@
+/*
+ * opsu! - an open-source osu! client
+ * Copyright (C) 2014, 2015 Jeffrey Han
+ *
+ * opsu! is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * opsu! is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with opsu!.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package itdelatrisu.opsu.ui;
+
+/**
+ * Ring buffer of cursor trail points.
+ * <p>
+ * Points are stored in primitive arrays, so adding and removing points does
+ * not allocate. The buffer only grows (by doubling) when more points are
+ * kept than it can hold, which stops happening once the trail length settles.
+ */
+public class CursorTrail {
+	/** Initial capacity. */
+	private static final int INITIAL_CAPACITY = 256;
+
+	/** Point coordinates. */
+	private int[] x, y;
+
+	/** Index of the oldest point. */
+	private int head = 0;
+
+	/** Number of points. */
+	private int size = 0;
+
+	/**
+	 * Constructor.
+	 */
+	public CursorTrail() {
+		this(INITIAL_CAPACITY);
+	}
+
+	/**
+	 * Constructor.
+	 * @param capacity the initial capacity
+	 */
+	public CursorTrail(int capacity) {
+		capacity = Math.max(capacity, 1);
+		x = new int[capacity];
+		y = new int[capacity];
+	}
+
+	/**
+	 * Adds a point to the end of the trail.
+	 * @param px the x coordinate
+	 * @param py the y coordinate
+	 */
+	public void add(int px, int py) {
+		if (size == x.length)
+			grow();
+		int i = (head + size) % x.length;
+		x[i] = px;
+		y[i] = py;
+		size++;
+	}
+
+	/**
+	 * Adds points between (x1, y1) and (x2, y2), sampling every few pixels.
+	 * @param x1 the start x coordinate
+	 * @param y1 the start y coordinate
+	 * @param x2 the end x coordinate
+	 * @param y2 the end y coordinate
+	 * @return true if any points were added
+	 * @author http://rosettacode.org/wiki/Bitmap/Bresenham's_line_algorithm#Java
+	 */
+	public boolean addLine(int x1, int y1, int x2, int y2) {
+		// delta of exact value and rounded value of the dependent variable
+		boolean added = false;
+		int d = 0;
+		int dy = Math.abs(y2 - y1);
+		int dx = Math.abs(x2 - x1);
+
+		int dy2 = (dy << 1);  // slope scaling factors to avoid floating
+		int dx2 = (dx << 1);  // point
+		int ix = x1 < x2 ? 1 : -1;  // increment direction
+		int iy = y1 < y2 ? 1 : -1;
+
+		int k = 5;  // sample size
+		if (dy <= dx) {
+			for (int i = 0; ; i++) {
+				if (i == k) {
+					add(x1, y1);
+					added = true;
+					i = 0;
+				}
+				if (x1 == x2)
+					break;
+				x1 += ix;
+				d += dy2;
+				if (d > dx) {
+					y1 += iy;
+					d -= dx2;
+				}
+			}
+		} else {
+			for (int i = 0; ; i++) {
+				if (i == k) {
+					add(x1, y1);
+					added = true;
+					i = 0;
+				}
+				if (y1 == y2)
+					break;
+				y1 += iy;
+				d += dx2;
+				if (d > dy) {
+					x1 += ix;
+					d -= dy2;
+				}
+			}
+		}
+		return added;
+	}
+
+	/**
+	 * Removes points from the start of the trail.
+	 * @param count the number of points to remove
+	 */
+	public void removeFirst(int count) {
+		if (count <= 0)
+			return;
+		if (count >= size) {
+			clear();
+			return;
+		}
+		head = (head + count) % x.length;
+		size -= count;
+	}
+
+	/**
+	 * Removes all points.
+	 */
+	public void clear() {
+		head = 0;
+		size = 0;
+	}
+
+	/** Returns the number of points. */
+	public int size() { return size; }
+
+	/** Returns whether the trail has no points. */
+	public boolean isEmpty() { return size == 0; }
+
+	/** Returns the x coordinate of the i-th oldest point. */
+	public int getX(int i) { return x[index(i)]; }
+
+	/** Returns the y coordinate of the i-th oldest point. */
+	public int getY(int i) { return y[index(i)]; }
+
+	/** Returns the current capacity. */
+	public int capacity() { return x.length; }
+
+	/**
+	 * Returns the array index of the i-th oldest point.
+	 * (No modulo: this is called twice per point and frame when drawing.)
+	 */
+	private int index(int i) {
+		int j = head + i;
+		return (j >= x.length) ? j - x.length : j;
+	}
+
+	/**
+	 * Doubles the capacity, moving the points to the start of the new arrays.
+	 */
+	private void grow() {
+		int capacity = x.length * 2;
+		int[] nx = new int[capacity], ny = new int[capacity];
+		for (int i = 0; i < size; i++) {
+			int j = (head + i) % x.length;
+			nx[i] = x[j];
+			ny[i] = y[j];
+		}
+		x = nx;
+		y = ny;
+		head = 0;
+	}
+}
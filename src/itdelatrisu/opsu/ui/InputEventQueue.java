@@ -0,0 +1,145 @@
+/*
+ * opsu! - an open-source osu! client
+ * Copyright (C) 2014, 2015 Jeffrey Han
+ *
+ * opsu! is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * opsu! is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with opsu!.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package itdelatrisu.opsu.ui;
+
+/**
+ * Queue of timestamped game key events.
+ * <p>
+ * Input events are only dispatched once per frame, when the input is
+ * polled, so the time at which they are handled can be up to a frame later
+ * than the time at which they happened. Events are queued here with their
+ * own timestamps instead, so they can be judged at the time they happened.
+ * <p>
+ * Event timestamps from the input library may use a different time base
+ * than {@link System#nanoTime()}. They are mapped onto it using the
+ * smallest delay observed between an event timestamp and the time at which
+ * the event was queued (slowly relaxed, to follow drift between the clocks).
+ */
+public class InputEventQueue {
+	/** Initial capacity. */
+	private static final int INITIAL_CAPACITY = 16;
+
+	/** Amount by which the time base offset is relaxed per event (in nanoseconds). */
+	private static final long OFFSET_RELAX = 1000L;
+
+	/** Whether each event is a press (true) or a release (false). */
+	private boolean[] pressed = new boolean[INITIAL_CAPACITY];
+
+	/** Game keys of each event. */
+	private int[] keys = new int[INITIAL_CAPACITY];
+
+	/** Cursor coordinates of each event. */
+	private int[] x = new int[INITIAL_CAPACITY], y = new int[INITIAL_CAPACITY];
+
+	/** Time of each event (in nanoseconds, {@link System#nanoTime()} time base). */
+	private long[] time = new long[INITIAL_CAPACITY];
+
+	/** Number of events. */
+	private int size = 0;
+
+	/** Offset from event timestamps to the {@link System#nanoTime()} time base. */
+	private long offset;
+
+	/** Whether the offset has been measured. */
+	private boolean hasOffset = false;
+
+	/**
+	 * Adds an event.
+	 * @param isPressed true for a key press, false for a key release
+	 * @param eventKeys the game keys
+	 * @param eventX the cursor x coordinate
+	 * @param eventY the cursor y coordinate
+	 * @param eventTime the event timestamp from the input library (in nanoseconds), or 0 if unknown
+	 * @param now the current time (in nanoseconds, from {@link System#nanoTime()})
+	 */
+	public void add(boolean isPressed, int eventKeys, int eventX, int eventY, long eventTime, long now) {
+		if (size == keys.length)
+			grow();
+		pressed[size] = isPressed;
+		keys[size] = eventKeys;
+		x[size] = eventX;
+		y[size] = eventY;
+		time[size] = toNanoTime(eventTime, now);
+		size++;
+	}
+
+	/**
+	 * Maps an event timestamp onto the {@link System#nanoTime()} time base.
+	 * @param eventTime the event timestamp (in nanoseconds), or 0 if unknown
+	 * @param now the current time (in nanoseconds)
+	 * @return the event time (never later than {@code now})
+	 */
+	public long toNanoTime(long eventTime, long now) {
+		if (eventTime <= 0)
+			return now;
+		long delay = now - eventTime;
+		if (!hasOffset || delay < offset) {
+			offset = delay;
+			hasOffset = true;
+		} else
+			offset = Math.min(delay, offset + OFFSET_RELAX);
+		return Math.min(eventTime + offset, now);
+	}
+
+	/** Returns the number of events. */
+	public int size() { return size; }
+
+	/** Returns whether the queue is empty. */
+	public boolean isEmpty() { return size == 0; }
+
+	/** Returns whether the i-th event is a key press (true) or a key release (false). */
+	public boolean isPressed(int i) { return pressed[i]; }
+
+	/** Returns the game keys of the i-th event. */
+	public int getKeys(int i) { return keys[i]; }
+
+	/** Returns the cursor x coordinate of the i-th event. */
+	public int getX(int i) { return x[i]; }
+
+	/** Returns the cursor y coordinate of the i-th event. */
+	public int getY(int i) { return y[i]; }
+
+	/** Returns the time of the i-th event (in nanoseconds, {@link System#nanoTime()} time base). */
+	public long getTime(int i) { return time[i]; }
+
+	/**
+	 * Removes all events (the time base offset is kept).
+	 */
+	public void clear() { size = 0; }
+
+	/**
+	 * Doubles the capacity.
+	 */
+	private void grow() {
+		int capacity = keys.length * 2;
+		boolean[] np = new boolean[capacity];
+		int[] nk = new int[capacity], nx = new int[capacity], ny = new int[capacity];
+		long[] nt = new long[capacity];
+		System.arraycopy(pressed, 0, np, 0, size);
+		System.arraycopy(keys, 0, nk, 0, size);
+		System.arraycopy(x, 0, nx, 0, size);
+		System.arraycopy(y, 0, ny, 0, size);
+		System.arraycopy(time, 0, nt, 0, size);
+		pressed = np;
+		keys = nk;
+		x = nx;
+		y = ny;
+		time = nt;
+	}
+}
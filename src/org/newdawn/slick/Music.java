@@ -398,6 +398,15 @@ public class Music {
 		}
 	}
 
+	/**
+	 * Get the pitch of the music as a factor of it's normal pitch
+	 *
+	 * @return The pitch the music is played at
+	 */
+	public float getPitch() {
+		return pitch;
+	}
+
 	/**
 	 * Get the individual volume of the music
 	 * @return The volume of this music, still effected by global SoundStore volume. 0 - 1, 1 is Max
@@ -0,0 +1,469 @@
+/*
+ * Copyright (c) 2013, Slick2D
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * - Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ * - Neither the name of the Slick2D nor the names of its contributors may be
+ *   used to endorse or promote products derived from this software without
+ *   specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.newdawn.slick.openal;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import org.newdawn.slick.util.Log;
+import org.newdawn.slick.util.ResourceLoader;
+
+/**
+ * Index of the frames in an MP3 file (byte offset and first sample of each
+ * frame), used to seek without decoding from the start of the file.
+ * <p>
+ * Indices are built by scanning the frame headers only (no decoding), and
+ * are cached on disk (if a cache directory is set) keyed by the file path,
+ * so the scan only happens the first time a track is opened.
+ */
+public class Mp3FrameIndex {
+	/** Cache file magic number. */
+	private static final int MAGIC = 0x4D504649;  // "MPFI"
+
+	/** Cache format version (change to invalidate old caches). */
+	private static final int FORMAT_VERSION = 1;
+
+	/** Bitrates (in kbps), indexed by [MPEG-1 ? 0 : 1][layer - 1][bitrate index]. */
+	private static final int[][][] BITRATES = {
+		{
+			{ 0, 32, 64, 96, 128, 160, 192, 224, 256, 288, 320, 352, 384, 416, 448 },
+			{ 0, 32, 48, 56, 64, 80, 96, 112, 128, 160, 192, 224, 256, 320, 384 },
+			{ 0, 32, 40, 48, 56, 64, 80, 96, 112, 128, 160, 192, 224, 256, 320 }
+		},
+		{
+			{ 0, 32, 48, 56, 64, 80, 96, 112, 128, 144, 160, 176, 192, 224, 256 },
+			{ 0, 8, 16, 24, 32, 40, 48, 56, 64, 80, 96, 112, 128, 144, 160 },
+			{ 0, 8, 16, 24, 32, 40, 48, 56, 64, 80, 96, 112, 128, 144, 160 }
+		}
+	};
+
+	/** Sample rates, indexed by [version bits][sample rate index]. */
+	private static final int[][] SAMPLE_RATES = {
+		{ 11025, 12000, 8000 },   // MPEG-2.5
+		null,                     // reserved
+		{ 22050, 24000, 16000 },  // MPEG-2
+		{ 44100, 48000, 32000 }   // MPEG-1
+	};
+
+	/** The directory in which indices are cached (null to disable caching). */
+	private static File cacheDir;
+
+	/** Byte offset of each frame. */
+	private final int[] offsets;
+
+	/** First sample (per channel) of each frame. */
+	private final int[] samples;
+
+	/** Number of frames. */
+	private final int frameCount;
+
+	/** Total number of samples (per channel). */
+	private final int sampleCount;
+
+	/**
+	 * Sets the directory in which indices are cached.
+	 * @param dir the cache directory, or null to disable caching
+	 */
+	public static void setCacheDir(File dir) { cacheDir = dir; }
+
+	/**
+	 * Returns the cached index for a resource, if one exists and is up to date.
+	 * @param ref the resource reference
+	 * @return the index, or null if not cached
+	 */
+	public static Mp3FrameIndex getCached(String ref) {
+		File file = new File(ref);
+		File indexFile = getCacheFile(file);
+		if (indexFile == null || !indexFile.isFile())
+			return null;
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile)))) {
+			if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION ||
+			    !in.readUTF().equals(file.getAbsolutePath()) ||
+			    in.readLong() != file.length() || in.readLong() != file.lastModified())
+				return null;
+			int frameCount = in.readInt();
+			int[] offsets = new int[frameCount], samples = new int[frameCount];
+			for (int i = 0; i < frameCount; i++) {
+				offsets[i] = in.readInt();
+				samples[i] = in.readInt();
+			}
+			return new Mp3FrameIndex(offsets, samples, frameCount, in.readInt());
+		} catch (IOException e) {
+			Log.warn(String.format("Failed to read MP3 frame index '%s'.", indexFile.getName()), e);
+			return null;
+		}
+	}
+
+	/**
+	 * Returns the index for a resource, loading it from the cache or
+	 * building (and caching) it if needed.
+	 * @param ref the resource reference
+	 * @return the index
+	 * @throws IOException if the resource could not be read
+	 */
+	public static Mp3FrameIndex get(String ref) throws IOException {
+		Mp3FrameIndex index = getCached(ref);
+		if (index != null)
+			return index;
+
+		try (InputStream in = ResourceLoader.getResourceAsStream(ref)) {
+			index = build(in);
+		}
+		File file = new File(ref);
+		File indexFile = getCacheFile(file);
+		if (indexFile != null) {
+			try {
+				index.write(indexFile, file);
+			} catch (IOException e) {
+				Log.warn(String.format("Failed to write MP3 frame index '%s'.", indexFile.getName()), e);
+			}
+		}
+		return index;
+	}
+
+	/**
+	 * Builds an index by scanning the frame headers of an MP3 stream.
+	 * Frames that do not follow a valid frame are only accepted if the next
+	 * frame header is also valid, to avoid syncing on junk data.
+	 * @param input the MP3 stream
+	 * @return the index
+	 * @throws IOException if an I/O error occurs
+	 */
+	public static Mp3FrameIndex build(InputStream input) throws IOException {
+		InputStream in = new BufferedInputStream(input, 0x10000);
+		int[] offsets = new int[4096], samples = new int[4096];
+		int frameCount = 0, sampleCount = 0;
+		long pos = 0;
+		byte[] header = new byte[10];
+
+		// skip ID3v2 tag
+		in.mark(header.length);
+		int read = readFully(in, header, 10);
+		if (read == 10 && header[0] == 'I' && header[1] == 'D' && header[2] == '3') {
+			long size = ((header[6] & 0x7F) << 21) | ((header[7] & 0x7F) << 14) |
+			            ((header[8] & 0x7F) << 7) | (header[9] & 0x7F);
+			if ((header[5] & 0x10) != 0)  // footer present
+				size += 10;
+			skipFully(in, size);
+			pos = 10 + size;
+		} else
+			in.reset();
+		if (readFully(in, header, 4) < 4)
+			return new Mp3FrameIndex(offsets, samples, 0, 0);
+
+		boolean synced = false;
+		int lastInfo = 0;
+		while (true) {
+			int info = parseHeader(header);
+			if (info != 0 && (!synced || sameStream(info, lastInfo)) &&
+			    (synced || nextHeaderMatches(in, info))) {
+				// frame found
+				if (frameCount == offsets.length) {
+					offsets = grow(offsets);
+					samples = grow(samples);
+				}
+				offsets[frameCount] = (int) pos;
+				samples[frameCount] = sampleCount;
+				frameCount++;
+				sampleCount += getSamplesPerFrame(info);
+				synced = true;
+				lastInfo = info;
+
+				long skip = getFrameLength(info) - 4;
+				if (skipFully(in, skip) < skip)
+					break;
+				pos += 4 + skip;
+				if (readFully(in, header, 4) < 4)
+					break;
+			} else {
+				// lost sync: slide by one byte
+				synced = false;
+				int b = in.read();
+				if (b < 0)
+					break;
+				header[0] = header[1];
+				header[1] = header[2];
+				header[2] = header[3];
+				header[3] = (byte) b;
+				pos++;
+			}
+		}
+		return new Mp3FrameIndex(offsets, samples, frameCount, sampleCount);
+	}
+
+	/**
+	 * Constructor.
+	 * @param offsets the byte offset of each frame
+	 * @param samples the first sample of each frame
+	 * @param frameCount the number of frames
+	 * @param sampleCount the total number of samples
+	 */
+	private Mp3FrameIndex(int[] offsets, int[] samples, int frameCount, int sampleCount) {
+		this.offsets = offsets;
+		this.samples = samples;
+		this.frameCount = frameCount;
+		this.sampleCount = sampleCount;
+	}
+
+	/** Returns the number of frames. */
+	public int getFrameCount() { return frameCount; }
+
+	/** Returns the total number of samples (per channel). */
+	public int getSampleCount() { return sampleCount; }
+
+	/** Returns the byte offset of a frame. */
+	public int getOffset(int frame) { return offsets[frame]; }
+
+	/** Returns the first sample (per channel) of a frame. */
+	public int getSample(int frame) { return samples[frame]; }
+
+	/**
+	 * Returns the frame containing a sample.
+	 * @param sample the sample position (per channel)
+	 * @return the frame index, or -1 if the index is empty
+	 */
+	public int findFrame(long sample) {
+		if (frameCount == 0)
+			return -1;
+		int lo = 0, hi = frameCount - 1;
+		while (lo < hi) {
+			int mid = (lo + hi + 1) >>> 1;
+			if (samples[mid] <= sample)
+				lo = mid;
+			else
+				hi = mid - 1;
+		}
+		return lo;
+	}
+
+	/**
+	 * Opens a decoder at the start of a frame. Decoding starts a few frames
+	 * earlier and their samples are discarded, so the decoder state (bit
+	 * reservoir, filter history) is the same as after decoding the stream
+	 * from its start.
+	 * @param in the MP3 stream, at its start (closed here on failure, else owned by the decoder)
+	 * @param frame the frame to open the decoder at
+	 * @param prerollFrames the number of frames to decode before it
+	 * @return the decoder, or null if it could not be opened at the frame
+	 * @throws IOException if an I/O error occurs
+	 */
+	public Mp3InputStream open(InputStream in, int frame, int prerollFrames) throws IOException {
+		int startFrame = Math.max(frame - prerollFrames, 0);
+		Mp3InputStream mp3 = null;
+		boolean opened = false;
+		try {
+			long offset = offsets[startFrame];
+			if (skipFully(in, offset) < offset)
+				return null;
+			try {
+				mp3 = new Mp3InputStream(in);
+			} catch (IOException e) {
+				return null;
+			}
+			if (frame > startFrame && !mp3.discardFrames(frame - startFrame - 1))
+				return null;
+			opened = true;
+			return mp3;
+		} finally {
+			if (!opened) {
+				if (mp3 != null)
+					mp3.close();
+				in.close();
+			}
+		}
+	}
+
+	/**
+	 * Writes the index to a cache file.
+	 * @param indexFile the cache file
+	 * @param file the indexed file
+	 * @throws IOException if an I/O error occurs
+	 */
+	private void write(File indexFile, File file) throws IOException {
+		File dir = indexFile.getParentFile();
+		if (!dir.isDirectory() && !dir.mkdirs())
+			throw new IOException(String.format("Failed to create directory '%s'.", dir.getAbsolutePath()));
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(indexFile)))) {
+			out.writeInt(MAGIC);
+			out.writeInt(FORMAT_VERSION);
+			out.writeUTF(file.getAbsolutePath());
+			out.writeLong(file.length());
+			out.writeLong(file.lastModified());
+			out.writeInt(frameCount);
+			for (int i = 0; i < frameCount; i++) {
+				out.writeInt(offsets[i]);
+				out.writeInt(samples[i]);
+			}
+			out.writeInt(sampleCount);
+		}
+	}
+
+	/**
+	 * Returns the cache file for an indexed file.
+	 * @param file the indexed file
+	 * @return the cache file, or null if caching is disabled or the file does not exist
+	 */
+	private static File getCacheFile(File file) {
+		if (cacheDir == null || !file.isFile())
+			return null;
+		try {
+			MessageDigest md = MessageDigest.getInstance("MD5");
+			byte[] digest = md.digest(file.getAbsolutePath().getBytes(StandardCharsets.UTF_8));
+			StringBuilder sb = new StringBuilder(digest.length * 2 + 4);
+			for (byte b : digest)
+				sb.append(String.format("%02x", b & 0xFF));
+			return new File(cacheDir, sb.append(".idx").toString());
+		} catch (NoSuchAlgorithmException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Parses an MPEG audio frame header.
+	 * @param h the header bytes
+	 * @return the header (as an int), or 0 if the header is invalid
+	 */
+	private static int parseHeader(byte[] h) {
+		if ((h[0] & 0xFF) != 0xFF || (h[1] & 0xE0) != 0xE0)
+			return 0;
+		int version = (h[1] >> 3) & 3, layer = (h[1] >> 1) & 3;
+		int bitrate = (h[2] >> 4) & 0xF, sampleRate = (h[2] >> 2) & 3;
+		if (version == 1 || layer == 0 || bitrate == 0 || bitrate == 15 || sampleRate == 3)
+			return 0;
+		return ((h[0] & 0xFF) << 24) | ((h[1] & 0xFF) << 16) | ((h[2] & 0xFF) << 8) | (h[3] & 0xFF);
+	}
+
+	/**
+	 * Returns whether two headers belong to the same stream (same version,
+	 * layer and sample rate).
+	 */
+	private static boolean sameStream(int a, int b) {
+		return (a & 0xFFFE0C00) == (b & 0xFFFE0C00);
+	}
+
+	/** Returns the frame length (in bytes) for a header. */
+	private static int getFrameLength(int info) {
+		int version = (info >> 19) & 3, layer = 4 - ((info >> 17) & 3);
+		int bitrate = BITRATES[(version == 3) ? 0 : 1][layer - 1][(info >> 12) & 0xF] * 1000;
+		int sampleRate = SAMPLE_RATES[version][(info >> 10) & 3];
+		int padding = (info >> 9) & 1;
+		if (layer == 1)
+			return (12 * bitrate / sampleRate + padding) * 4;
+		else if (layer == 3 && version != 3)
+			return 72 * bitrate / sampleRate + padding;
+		else
+			return 144 * bitrate / sampleRate + padding;
+	}
+
+	/** Returns the number of samples (per channel) in a frame for a header. */
+	private static int getSamplesPerFrame(int info) {
+		int version = (info >> 19) & 3, layer = 4 - ((info >> 17) & 3);
+		if (layer == 1)
+			return 384;
+		else if (layer == 3 && version != 3)
+			return 576;
+		else
+			return 1152;
+	}
+
+	/**
+	 * Checks whether the frame following the current one starts with a
+	 * matching header (or whether the stream ends), without consuming input.
+	 * @param in the stream, positioned right after the current header
+	 * @param info the current header
+	 */
+	private static boolean nextHeaderMatches(InputStream in, int info) throws IOException {
+		int skip = getFrameLength(info) - 4;
+		if (skip < 0 || !in.markSupported())
+			return false;
+		byte[] next = new byte[4];
+		in.mark(skip + 4);
+		try {
+			if (skipFully(in, skip) < skip)
+				return true;
+			int read = readFully(in, next, 4);
+			if (read < 4)
+				return true;
+			int nextInfo = parseHeader(next);
+			return nextInfo != 0 && sameStream(info, nextInfo);
+		} finally {
+			in.reset();
+		}
+	}
+
+	/**
+	 * Reads up to {@code len} bytes.
+	 * @return the number of bytes read
+	 */
+	private static int readFully(InputStream in, byte[] b, int len) throws IOException {
+		int n = 0;
+		while (n < len) {
+			int count = in.read(b, n, len - n);
+			if (count < 0)
+				break;
+			n += count;
+		}
+		return n;
+	}
+
+	/**
+	 * Skips up to {@code len} bytes.
+	 * @return the number of bytes skipped
+	 */
+	private static long skipFully(InputStream in, long len) throws IOException {
+		long n = 0;
+		while (n < len) {
+			long count = in.skip(len - n);
+			if (count <= 0) {
+				if (in.read() < 0)
+					break;
+				count = 1;
+			}
+			n += count;
+		}
+		return n;
+	}
+
+	/** Returns a copy of an array with twice the length. */
+	private static int[] grow(int[] a) {
+		int[] b = new int[a.length * 2];
+		System.arraycopy(a, 0, b, 0, a.length);
+		return b;
+	}
+}
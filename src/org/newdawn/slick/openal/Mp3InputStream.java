@@ -205,6 +205,35 @@ public class Mp3InputStream extends InputStream implements AudioInputStream {
 		return skipped;
 	}
 
+	/**
+	 * Decodes frames and discards their samples, leaving the stream at the
+	 * start of the next frame. Used after seeking to a frame boundary, to
+	 * rebuild the decoder state (bit reservoir, filter history) before the
+	 * frames that are actually played.
+	 * @param count the number of frames to decode
+	 * @return false if the end of the stream was reached
+	 */
+	boolean discardFrames(int count) {
+		for (int i = 0; i < count; i++) {
+			try {
+				header = bitstream.readFrame();
+				if (header == null) {
+					endOfStream = true;
+					return false;
+				}
+				buf.clear_buffer();
+				decoder.decodeFrame(header, bitstream);
+				bitstream.closeFrame();
+			} catch (DecoderException | BitstreamException e) {
+				Log.error(e);
+			}
+		}
+		buf.clear_buffer();
+		bufLen = 0;
+		bpos = 0;
+		return true;
+	}
+
 	@Override
 	public void close() throws IOException {
 		try {
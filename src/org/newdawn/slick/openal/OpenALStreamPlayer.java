@@ -32,6 +32,11 @@ import java.io.IOException;
 import java.net.URL;
 import java.nio.ByteBuffer;
 import java.nio.IntBuffer;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import org.lwjgl.BufferUtils;
 import org.lwjgl.Sys;
@@ -54,6 +59,29 @@ public class OpenALStreamPlayer {
 	public static final int BUFFER_COUNT = 20;  // 3
 	/** The size of the sections to stream from the stream */
 	private static final int sectionSize = 4096;  // 4096 * 20
+	/** The number of frames decoded (and discarded) before the target frame when seeking with the frame index */
+	private static final int SEEK_PREROLL_FRAMES = 10;
+	/** The number of bytes decoded ahead of playback by the decoder thread (~3 seconds at 44.1kHz stereo) */
+	private static final int DECODE_AHEAD_SIZE = 1 << 19;
+	/** Builds MP3 frame indices, one at a time (tracks opened while scrolling the song menu queue up) */
+	private static final ExecutorService indexExecutor = new ThreadPoolExecutor(
+		0, 1, 5, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+		new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r, "Mp3FrameIndex");
+				t.setDaemon(true);
+				return t;
+			}
+		}
+	);
+
+	/** Result of filling a buffer: the buffer was filled */
+	private static final int FILL_OK = 0;
+	/** Result of filling a buffer: no decoded data was ready yet */
+	private static final int FILL_STARVED = 1;
+	/** Result of filling a buffer: the stream has ended (or failed) */
+	private static final int FILL_END = 2;
 	
 	/** The buffer read from the data stream */
 	private byte[] buffer = new byte[sectionSize];
@@ -63,6 +91,12 @@ public class OpenALStreamPlayer {
 	private ByteBuffer bufferData = BufferUtils.createByteBuffer(sectionSize);
 	/** The buffer holding the names of the OpenAL buffer thats been fully played back */
 	private IntBuffer unqueued = BufferUtils.createIntBuffer(1);
+	/** The names of the OpenAL buffers waiting for decoded data */
+	private int[] starved = new int[BUFFER_COUNT];
+	/** The number of buffers waiting for decoded data */
+	private int starvedCount = 0;
+	/** The decoder thread, decoding the stream ahead of playback */
+	private StreamDecoder decoder = new StreamDecoder(DECODE_AHEAD_SIZE);
 	/** The source we're playing back on */
     private int source;
 	/** The number of buffers remaining */
@@ -79,6 +113,12 @@ public class OpenALStreamPlayer {
 	private URL url;
 	/** The pitch of the music */
 	private float pitch;
+	/** The MP3 frame index (null if not available) */
+	private volatile Mp3FrameIndex frameIndex;
+	/** True if the frame index has been requested */
+	private boolean frameIndexRequested = false;
+	/** True if the stream was closed (another track is played) */
+	private volatile boolean closed = false;
 	/** Position in seconds of the previously played buffers */
 //	private float positionOffset;
 
@@ -143,6 +183,7 @@ public class OpenALStreamPlayer {
 	 * @throws IOException Indicates a failure to open the underling resource
 	 */
 	private void initStreams() throws IOException {
+		decoder.detach();
 		if (audio != null) {
 			audio.close();
 		}
@@ -191,6 +232,37 @@ public class OpenALStreamPlayer {
 		
 	}
 	
+	/**
+	 * Loads the MP3 frame index from the cache, or builds it in the background
+	 * (seeks decode linearly until it is available). The index is not built
+	 * if the stream is closed before its turn comes.
+	 */
+	private void loadFrameIndex() {
+		if (frameIndexRequested || ref == null || !(audio instanceof Mp3InputStream))
+			return;
+
+		frameIndexRequested = true;
+		frameIndex = Mp3FrameIndex.getCached(ref);
+		if (frameIndex != null)
+			return;
+
+		final String ref = this.ref;
+		indexExecutor.execute(new Runnable() {
+			@Override
+			public void run() {
+				if (closed)
+					return;
+				try {
+					Mp3FrameIndex index = Mp3FrameIndex.get(ref);
+					if (!closed)
+						frameIndex = index;
+				} catch (IOException e) {
+					Log.warn(String.format("Failed to build MP3 frame index for '%s'.", ref), e);
+				}
+			}
+		});
+	}
+
 	/**
 	 * Get the source of this stream
 	 * 
@@ -222,6 +294,7 @@ public class OpenALStreamPlayer {
 	public synchronized void play(boolean loop) throws IOException {
 		this.loop = loop;
 		initStreams();
+		loadFrameIndex();
 		
 		done = false;
 
@@ -229,6 +302,7 @@ public class OpenALStreamPlayer {
 		
 		startPlayback();
 		syncStartTime = getTime();
+		decoder.attach(audio);
 	}
 	
 	/**
@@ -262,6 +336,12 @@ public class OpenALStreamPlayer {
 			return;
 		}
 
+		// retry the buffers that had no decoded data ready
+		int retryCount = starvedCount;
+		starvedCount = 0;
+		for (int i = 0; i < retryCount && !done; i++)
+			requeue(starved[i]);
+
 		int processed = AL10.alGetSourcei(source, AL10.AL_BUFFERS_PROCESSED);
 		while (processed > 0) {
 			unqueued.clear();
@@ -276,14 +356,7 @@ public class OpenALStreamPlayer {
 			if (musicLength > 0 && playedPos > musicLength)
 				playedPos -= musicLength;
 
-			if (stream(bufferIndex)) {
-				AL10.alSourceQueueBuffers(source, unqueued);
-			} else {
-				remainingBufferCount--;
-				if (remainingBufferCount == 0) {
-					done = true;
-				}
-			}
+			requeue(bufferIndex);
 			processed--;
 		}
 		
@@ -294,6 +367,31 @@ public class OpenALStreamPlayer {
 		}
 	}
 	
+	/**
+	 * Fill a processed buffer and queue it again, or keep it aside until
+	 * decoded data is ready
+	 * 
+	 * @param bufferId The ID of the buffer to fill
+	 */
+	private void requeue(int bufferId) {
+		switch (fill(bufferId)) {
+		case FILL_OK:
+			unqueued.clear();
+			unqueued.put(bufferId).flip();
+			AL10.alSourceQueueBuffers(source, unqueued);
+			break;
+		case FILL_STARVED:
+			starved[starvedCount++] = bufferId;
+			break;
+		default:
+			remainingBufferCount--;
+			if (remainingBufferCount == 0) {
+				done = true;
+			}
+			break;
+		}
+	}
+
 	/**
 	 * Stream some data from the audio stream to the buffer indicates by the ID
 	 * 
@@ -301,9 +399,22 @@ public class OpenALStreamPlayer {
 	 * @return True if another section was available
 	 */
 	public synchronized boolean stream(int bufferId) {
+		return fill(bufferId) == FILL_OK;
+	}
+
+	/**
+	 * Stream some data to the buffer indicates by the ID, from the decoder
+	 * thread if it is running or directly from the audio stream otherwise
+	 * 
+	 * @param bufferId The ID of the buffer to fill
+	 * @return FILL_OK, FILL_STARVED or FILL_END
+	 */
+	private int fill(int bufferId) {
 		try {
-			int count = audio.read(buffer);
-			if (count != -1) {
+			int count = decoder.isAttached() ? decoder.read(buffer, 0, buffer.length) : audio.read(buffer);
+			if (count == 0) {
+				return FILL_STARVED;
+			} else if (count != -1) {
 				streamPos += count;
 
 				bufferData.clear();
@@ -315,23 +426,24 @@ public class OpenALStreamPlayer {
 					AL10.alBufferData(bufferId, format, bufferData, audio.getRate());
 				} catch (OpenALException e) {
 					Log.error("Failed to loop buffer: "+bufferId+" "+format+" "+count+" "+audio.getRate(), e);
-					return false;
+					return FILL_END;
 				}
 			} else {
 				if (loop) {
 					musicLength = streamPos;
 					initStreams();
-					stream(bufferId);
+					fill(bufferId);
+					decoder.attach(audio);
 				} else {
 					done = true;
-					return false;
+					return FILL_END;
 				}
 			}
 			
-			return true;
+			return FILL_OK;
 		} catch (IOException e) {
 			Log.error(e);
-			return false;
+			return FILL_END;
 		}
 	}
 
@@ -345,26 +457,32 @@ public class OpenALStreamPlayer {
 		try {
 			long samplePos = (long) (position * sampleRate) * sampleSize;
 
-			if (streamPos > samplePos)
-				initStreams();
+			// take the stream back from the decoder thread (it may have read ahead)
+			streamPos += decoder.detach();
+
+			if (!seekIndexed(samplePos)) {
+				if (streamPos > samplePos)
+					initStreams();
 
-			long skipped = audio.skip(samplePos - streamPos);
-			if (skipped >= 0)
-				streamPos += skipped;
-			else
-				Log.warn("OpenALStreamPlayer: setPosition: failed to skip.");
+				long skipped = audio.skip(samplePos - streamPos);
+				if (skipped >= 0)
+					streamPos += skipped;
+				else
+					Log.warn("OpenALStreamPlayer: setPosition: failed to skip.");
 
-			while (streamPos + buffer.length < samplePos) {
-				int count = audio.read(buffer);
-				if (count != -1) {
-					streamPos += count;
-				} else {
-					if (loop) {
-						initStreams();
+				while (streamPos + buffer.length < samplePos) {
+					int count = audio.read(buffer);
+					if (count != -1) {
+						streamPos += count;
 					} else {
-						done = true;
+						if (loop) {
+							initStreams();
+							decoder.attach(audio);
+						} else {
+							done = true;
+						}
+						return false;
 					}
-					return false;
 				}
 			}
 
@@ -372,6 +490,7 @@ public class OpenALStreamPlayer {
 			syncStartTime = (long) (getTime() - (playedPos * 1000 / sampleSize / sampleRate) / pitch);
 
 			startPlayback(); 
+			decoder.attach(audio);
 
 			return true;
 		} catch (IOException e) {
@@ -380,11 +499,52 @@ public class OpenALStreamPlayer {
 		}
 	}
 
+	/**
+	 * Seeks using the MP3 frame index: reopens the stream at a frame shortly
+	 * before the target position and decodes forward from there.
+	 * Short forward seeks are left to the regular skip, which is cheaper.
+	 * 
+	 * @param samplePos The target position in bytes
+	 * @return True if the seek was performed
+	 * @throws IOException Indicates a failure to read from the stream
+	 */
+	private boolean seekIndexed(long samplePos) throws IOException {
+		Mp3FrameIndex index = frameIndex;
+		if (index == null || index.getFrameCount() == 0 || !(audio instanceof Mp3InputStream))
+			return false;
+		if (samplePos >= streamPos && samplePos - streamPos < (long) sampleRate * sampleSize)
+			return false;
+		long sample = samplePos / sampleSize;
+		if (sample >= index.getSampleCount())
+			return false;
+
+		int frame = index.findFrame(sample);
+		Mp3InputStream mp3 = index.open(ResourceLoader.getResourceAsStream(ref), frame, SEEK_PREROLL_FRAMES);
+		if (mp3 == null)
+			return false;
+		if (mp3.getRate() != sampleRate) {
+			mp3.close();
+			return false;
+		}
+
+		audio.close();
+		audio = mp3;
+		streamPos = (long) index.getSample(frame) * sampleSize;
+		while (streamPos < samplePos) {
+			int count = audio.read(buffer, 0, (int) Math.min(buffer.length, samplePos - streamPos));
+			if (count == -1)
+				break;
+			streamPos += count;
+		}
+		return true;
+	}
+
 	/**
 	 * Starts the streaming.
 	 */
 	private void startPlayback() {
 		removeBuffers();
+		starvedCount = 0;
 		AL10.alSourcei(source, AL10.AL_LOOPING, AL10.AL_FALSE);
 		AL10.alSourcef(source, AL10.AL_PITCH, pitch);
 
@@ -398,6 +558,46 @@ public class OpenALStreamPlayer {
 		AL10.alSourcePlay(source);
 	}
 
+	/**
+	 * Return the amount of audio decoded ahead of playback by the decoder thread
+	 * 
+	 * @return The decode-ahead depth in milliseconds
+	 */
+	public int getDecodeAheadTime() {
+		return bytesToMillis(decoder.getBufferedBytes());
+	}
+
+	/**
+	 * Return the lowest decode-ahead depth seen since playback started or
+	 * the last seek
+	 * 
+	 * @return The minimum decode-ahead depth in milliseconds
+	 */
+	public int getMinDecodeAheadTime() {
+		return bytesToMillis(decoder.getMinBufferedBytes());
+	}
+
+	/**
+	 * Return the number of times a buffer had to wait for the decoder thread
+	 * 
+	 * @return The number of underruns
+	 */
+	public int getUnderrunCount() {
+		return decoder.getUnderrunCount();
+	}
+
+	/**
+	 * Convert a number of PCM bytes to a duration
+	 * 
+	 * @param bytes The number of bytes
+	 * @return The duration in milliseconds
+	 */
+	private int bytesToMillis(int bytes) {
+		if (sampleRate <= 0 || sampleSize <= 0)
+			return 0;
+		return (int) ((long) bytes * 1000 / sampleSize / sampleRate);
+	}
+
 	/**
 	 * Return the current playing position in the sound
 	 * 
@@ -477,6 +677,8 @@ public class OpenALStreamPlayer {
 	 * Closes the stream.
 	 */
 	public void close() {
+		closed = true;
+		decoder.close();
 		if (audio != null) {
 			try {
 				audio.close();
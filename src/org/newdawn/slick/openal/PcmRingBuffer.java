@@ -0,0 +1,119 @@
+/*
+ * Copyright (c) 2013, Slick2D
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * - Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ * - Neither the name of the Slick2D nor the names of its contributors may be
+ *   used to endorse or promote products derived from this software without
+ *   specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.newdawn.slick.openal;
+
+/**
+ * Lock-free single-producer, single-consumer ring buffer of PCM bytes.
+ * <p>
+ * The producer only advances the write position and the consumer only
+ * advances the read position, so neither side ever blocks the other.
+ */
+class PcmRingBuffer {
+	/** The buffered data. */
+	private final byte[] data;
+
+	/** Capacity - 1 (the capacity is a power of two). */
+	private final int mask;
+
+	/** Total number of bytes written (only advanced by the producer). */
+	private volatile long writePos = 0;
+
+	/** Total number of bytes read (only advanced by the consumer). */
+	private volatile long readPos = 0;
+
+	/**
+	 * Constructor.
+	 * @param capacity the minimum capacity in bytes (rounded up to a power of two)
+	 */
+	public PcmRingBuffer(int capacity) {
+		int size = Integer.highestOneBit(Math.max(capacity, 2) - 1) << 1;
+		this.data = new byte[size];
+		this.mask = size - 1;
+	}
+
+	/** Returns the capacity in bytes. */
+	public int capacity() { return data.length; }
+
+	/** Returns the number of bytes ready to be read. */
+	public int available() { return (int) (writePos - readPos); }
+
+	/** Returns the number of bytes that can be written. */
+	public int free() { return data.length - available(); }
+
+	/**
+	 * Writes bytes into the buffer (producer side).
+	 * @param b the source array
+	 * @param off the offset in the source array
+	 * @param len the maximum number of bytes to write
+	 * @return the number of bytes written
+	 */
+	public int write(byte[] b, int off, int len) {
+		long w = writePos;
+		int n = Math.min(len, data.length - (int) (w - readPos));
+		if (n <= 0)
+			return 0;
+		int start = (int) (w & mask);
+		int first = Math.min(n, data.length - start);
+		System.arraycopy(b, off, data, start, first);
+		System.arraycopy(b, off + first, data, 0, n - first);
+		writePos = w + n;
+		return n;
+	}
+
+	/**
+	 * Reads bytes from the buffer (consumer side).
+	 * @param b the destination array
+	 * @param off the offset in the destination array
+	 * @param len the maximum number of bytes to read
+	 * @return the number of bytes read
+	 */
+	public int read(byte[] b, int off, int len) {
+		long r = readPos;
+		int n = Math.min(len, (int) (writePos - r));
+		if (n <= 0)
+			return 0;
+		int start = (int) (r & mask);
+		int first = Math.min(n, data.length - start);
+		System.arraycopy(data, start, b, off, first);
+		System.arraycopy(data, 0, b, off + first, n - first);
+		readPos = r + n;
+		return n;
+	}
+
+	/**
+	 * Discards all buffered bytes (consumer side).
+	 * @return the number of bytes discarded
+	 */
+	public int clear() {
+		long w = writePos;
+		int n = (int) (w - readPos);
+		readPos = w;
+		return n;
+	}
+}
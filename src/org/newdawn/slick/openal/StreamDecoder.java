@@ -0,0 +1,216 @@
+/*
+ * Copyright (c) 2013, Slick2D
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * - Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ * - Neither the name of the Slick2D nor the names of its contributors may be
+ *   used to endorse or promote products derived from this software without
+ *   specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.newdawn.slick.openal;
+
+import java.io.IOException;
+import java.util.concurrent.locks.LockSupport;
+
+import org.newdawn.slick.util.Log;
+
+/**
+ * Decodes an audio stream ahead of playback on a dedicated thread.
+ * <p>
+ * Decoded PCM is pushed into a {@link PcmRingBuffer}, so the consumer (the
+ * thread feeding OpenAL) only copies data that is already decoded. The
+ * consumer may take the stream back at any time with {@link #detach()}
+ * (e.g. to seek or loop), then hand it over again with {@link #attach}.
+ */
+class StreamDecoder implements Runnable {
+	/** Number of bytes decoded at a time. */
+	private static final int CHUNK_SIZE = 4096;
+
+	/** Time to wait when there is nothing to decode (in nanoseconds). */
+	private static final long IDLE_NANOS = 2000000L;
+
+	/** The decoded data. */
+	private final PcmRingBuffer ring;
+
+	/** The decode buffer. */
+	private final byte[] chunk = new byte[CHUNK_SIZE];
+
+	/** Guards the stream between the decoder thread and {@link #detach()}. */
+	private final Object lock = new Object();
+
+	/** The stream being decoded (null if detached). */
+	private volatile AudioInputStream stream;
+
+	/** True if the attached stream has no more data. */
+	private volatile boolean endOfStream = false;
+
+	/** The decoder thread. */
+	private Thread thread;
+
+	/** True while the decoder thread should keep running. */
+	private volatile boolean running = false;
+
+	/** Number of reads that found no decoded data while the stream had more. */
+	private volatile int underrunCount = 0;
+
+	/** Lowest number of buffered bytes seen by a read since the last attach. */
+	private volatile int minBuffered = Integer.MAX_VALUE;
+
+	/** Total number of bytes decoded. */
+	private volatile long decodedBytes = 0;
+
+	/**
+	 * Constructor.
+	 * @param capacity the decode-ahead capacity in bytes
+	 */
+	public StreamDecoder(int capacity) {
+		this.ring = new PcmRingBuffer(capacity);
+	}
+
+	/**
+	 * Hands a stream over to the decoder thread (starting it if needed).
+	 * @param audio the stream, positioned where decoding should start
+	 */
+	public void attach(AudioInputStream audio) {
+		synchronized (lock) {
+			ring.clear();
+			stream = audio;
+			endOfStream = false;
+			minBuffered = Integer.MAX_VALUE;
+		}
+		if (thread == null || !thread.isAlive()) {
+			running = true;
+			thread = new Thread(this, "StreamDecoder");
+			thread.setDaemon(true);
+			thread.setPriority(Thread.MAX_PRIORITY);
+			thread.start();
+		} else
+			LockSupport.unpark(thread);
+	}
+
+	/**
+	 * Takes the stream back from the decoder thread and discards any
+	 * decoded data. Blocks while a chunk is being decoded.
+	 * @return the number of bytes that were decoded but not read, i.e. how
+	 *         far the stream is ahead of the consumer
+	 */
+	public int detach() {
+		synchronized (lock) {
+			stream = null;
+			endOfStream = false;
+			return ring.clear();
+		}
+	}
+
+	/** Returns whether a stream is attached. */
+	public boolean isAttached() { return stream != null; }
+
+	/**
+	 * Reads decoded data (consumer side). Never blocks.
+	 * @param b the destination array
+	 * @param off the offset in the destination array
+	 * @param len the maximum number of bytes to read
+	 * @return the number of bytes read, 0 if no data is ready yet (underrun),
+	 *         or -1 if the stream has ended and all data was read
+	 */
+	public int read(byte[] b, int off, int len) {
+		boolean ended = endOfStream;  // check before reading, so no data written before the end is missed
+		int buffered = ring.available();
+		if (buffered < minBuffered)
+			minBuffered = buffered;
+		int n = ring.read(b, off, len);
+		if (n > 0) {
+			if (ring.free() >= CHUNK_SIZE && thread != null)
+				LockSupport.unpark(thread);
+			return n;
+		}
+		if (ended)
+			return -1;
+		underrunCount++;
+		return 0;
+	}
+
+	/**
+	 * Stops the decoder thread (the stream is not closed).
+	 */
+	public void close() {
+		detach();
+		running = false;
+		if (thread != null) {
+			LockSupport.unpark(thread);
+			try {
+				thread.join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			thread = null;
+		}
+	}
+
+	/** Returns the number of decoded bytes ready to be read. */
+	public int getBufferedBytes() { return ring.available(); }
+
+	/** Returns the decode-ahead capacity in bytes. */
+	public int getCapacity() { return ring.capacity(); }
+
+	/** Returns the lowest number of buffered bytes seen by a read since the last attach. */
+	public int getMinBufferedBytes() { return (minBuffered == Integer.MAX_VALUE) ? ring.available() : minBuffered; }
+
+	/** Returns the number of reads that found no decoded data. */
+	public int getUnderrunCount() { return underrunCount; }
+
+	/** Returns the total number of bytes decoded. */
+	public long getDecodedBytes() { return decodedBytes; }
+
+	@Override
+	public void run() {
+		while (running) {
+			if (!decodeChunk())
+				LockSupport.parkNanos(this, IDLE_NANOS);
+		}
+	}
+
+	/**
+	 * Decodes one chunk into the ring buffer, if a stream is attached and
+	 * there is room.
+	 * @return true if a chunk was decoded
+	 */
+	private boolean decodeChunk() {
+		synchronized (lock) {
+			if (stream == null || endOfStream || ring.free() < CHUNK_SIZE)
+				return false;
+			try {
+				int count = stream.read(chunk, 0, CHUNK_SIZE);
+				if (count < 0)
+					endOfStream = true;
+				else if (count > 0) {
+					ring.write(chunk, 0, count);
+					decodedBytes += count;
+				}
+			} catch (IOException e) {
+				Log.error(e);
+				endOfStream = true;
+			}
+			return true;
+		}
+	}
+}
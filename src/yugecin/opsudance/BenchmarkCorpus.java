@@ -0,0 +1,336 @@
+/*
+ * opsu!dance - fork of opsu! with cursordance auto
+ * Copyright (C) 2016 yugecin
+ *
+ * opsu!dance is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * opsu!dance is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with opsu!dance.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package yugecin.opsudance;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * A fixed set of generated beatmaps, so benchmarks and tests do not depend on the beatmaps
+ * that happen to be installed. The beatmaps are made from seeded {@link Random}s and only
+ * contain integers, so every version and machine writes the exact same files.
+ *
+ * - streams: 1/4 streams with varying spacing and curvature, some of them stacked
+ * - jumps: 1/2 jumps of all distances, back and forth jumps and jumps to the corners
+ * - sliders: every curve type with repeats and red anchors, at changing slider velocities
+ * - mixed: slow and fast circles, sliders, spinners, a break and a bpm change
+ */
+public class BenchmarkCorpus {
+
+	/** name of the (empty) audio file the beatmaps refer to */
+	public static final String AUDIO_FILENAME = "audio.mp3";
+
+	private static final int WIDTH = 512;
+	private static final int HEIGHT = 384;
+
+	private BenchmarkCorpus() {
+	}
+
+	/**
+	 * Writes the beatmaps and an empty audio file to a directory.
+	 * @param dir the directory, made if it does not exist
+	 * @return the beatmap files
+	 */
+	public static List<File> write(File dir) throws IOException {
+		if (!dir.isDirectory() && !dir.mkdirs()) {
+			throw new IOException("Failed to create " + dir.getAbsolutePath());
+		}
+		new FileOutputStream(new File(dir, AUDIO_FILENAME)).close();
+
+		List<File> files = new ArrayList<>();
+		files.add(streams().write(dir));
+		files.add(jumps().write(dir));
+		files.add(sliders().write(dir));
+		files.add(mixed().write(dir));
+		return files;
+	}
+
+	private static MapBuilder streams() {
+		MapBuilder map = new MapBuilder("streams", 1L, 333, 1.6f);
+		Random random = map.random;
+		for (int stream = 0; stream < 24; stream++) {
+			int notes = 8 + random.nextInt(17);
+			boolean stacked = stream % 4 == 3;
+			float spacing = stacked ? 0f : 10f + random.nextInt(41);
+			float x = 64 + random.nextInt(WIDTH - 128);
+			float y = 64 + random.nextInt(HEIGHT - 128);
+			double angle = random.nextDouble() * Math.PI * 2;
+			double turn = (random.nextDouble() - 0.5) * 0.6;
+			map.newCombo();
+			for (int i = 0; i < notes; i++) {
+				map.circle(x, y);
+				map.advance(1, 4);
+				float nx = x + (float) Math.cos(angle) * spacing;
+				float ny = y + (float) Math.sin(angle) * spacing;
+				if (!inBounds(nx, ny)) {
+					angle += Math.PI;
+					nx = x + (float) Math.cos(angle) * spacing;
+					ny = y + (float) Math.sin(angle) * spacing;
+				}
+				x = nx;
+				y = ny;
+				angle += turn;
+			}
+			map.advance(3, 4);
+		}
+		return map;
+	}
+
+	private static MapBuilder jumps() {
+		MapBuilder map = new MapBuilder("jumps", 2L, 300, 1.8f);
+		Random random = map.random;
+		float x = WIDTH / 2;
+		float y = HEIGHT / 2;
+		for (int i = 0; i < 300; i++) {
+			if (i % 8 == 0) {
+				map.newCombo();
+			}
+			if (i % 10 == 9) {
+				// corners, the movers have to stay inside the screen
+				x = (i / 10) % 2 == 0 ? 0 : WIDTH;
+				y = (i / 20) % 2 == 0 ? 0 : HEIGHT;
+			} else if (i % 40 >= 30 && i % 2 == 1) {
+				// back and forth
+				x = WIDTH - x;
+				y = HEIGHT - y;
+			} else {
+				float distance = 120 + random.nextInt(261);
+				float nx, ny;
+				do {
+					double angle = random.nextDouble() * Math.PI * 2;
+					nx = x + (float) Math.cos(angle) * distance;
+					ny = y + (float) Math.sin(angle) * distance;
+					distance *= 0.9f;
+				} while (!inBounds(nx, ny));
+				x = nx;
+				y = ny;
+			}
+			map.circle(x, y);
+			map.advance(i % 16 == 15 ? 2 : 1, 2);
+		}
+		return map;
+	}
+
+	private static MapBuilder sliders() {
+		MapBuilder map = new MapBuilder("sliders", 3L, 400, 1.8f);
+		Random random = map.random;
+		char[] types = { 'L', 'P', 'B', 'C' };
+		float[] velocities = { 1f, 0.5f, 0.75f, 1.5f, 2f };
+		for (int i = 0; i < 160; i++) {
+			if (i % 8 == 0) {
+				map.sliderVelocity(velocities[(i / 8) % velocities.length]);
+				map.newCombo();
+			}
+			char type = types[i % types.length];
+			int points = type == 'L' ? 2 : type == 'P' ? 3 : 4 + random.nextInt(3);
+			float[] xs = new float[points];
+			float[] ys = new float[points];
+			xs[0] = 64 + random.nextInt(WIDTH - 128);
+			ys[0] = 64 + random.nextInt(HEIGHT - 128);
+			for (int p = 1; p < points; p++) {
+				float nx, ny;
+				do {
+					double angle = random.nextDouble() * Math.PI * 2;
+					float distance = 40 + random.nextInt(81);
+					nx = xs[p - 1] + (float) Math.cos(angle) * distance;
+					ny = ys[p - 1] + (float) Math.sin(angle) * distance;
+				} while (!inBounds(nx, ny));
+				xs[p] = nx;
+				ys[p] = ny;
+			}
+			if (type == 'P') {
+				// keep the middle point away from the line between the others, or the circle is huge
+				float dx = xs[2] - xs[0];
+				float dy = ys[2] - ys[0];
+				float scale = 40f / Math.max(1f, (float) Math.hypot(dx, dy));
+				xs[1] = Math.min(WIDTH, Math.max(0, (xs[0] + xs[2]) / 2 - dy * scale));
+				ys[1] = Math.min(HEIGHT, Math.max(0, (ys[0] + ys[2]) / 2 + dx * scale));
+			}
+			if (type == 'B' && i % 8 < 4) {
+				// red anchor: the same point twice splits the curve
+				xs[2] = xs[1];
+				ys[2] = ys[1];
+			}
+			map.slider(type, xs, ys, 1 + random.nextInt(3));
+			map.advance(1, 2);
+			if (i % 2 == 1) {
+				map.circle(64 + random.nextInt(WIDTH - 128), 64 + random.nextInt(HEIGHT - 128));
+				map.advance(1, 1);
+			}
+		}
+		return map;
+	}
+
+	private static MapBuilder mixed() {
+		MapBuilder map = new MapBuilder("mixed", 4L, 350, 1.4f);
+		Random random = map.random;
+		for (int i = 0; i < 320; i++) {
+			if (i == 160) {
+				map.breakPeriod(6000);
+				map.beatLength(260);
+			}
+			if (i % 6 == 0) {
+				map.newCombo();
+			}
+			float x = 32 + random.nextInt(WIDTH - 64);
+			float y = 32 + random.nextInt(HEIGHT - 64);
+			if (i % 40 == 39) {
+				map.spinner(4);
+				map.advance(1, 1);
+			} else if (i % 5 == 4) {
+				float ex = 32 + random.nextInt(WIDTH - 64);
+				float ey = 32 + random.nextInt(HEIGHT - 64);
+				map.slider('B', new float[] { x, (x + ex) / 2 + 40, ex }, new float[] { y, (y + ey) / 2 - 40, ey }, 1);
+				map.advance(1, 2);
+			} else {
+				map.circle(x, y);
+				// slow parts next to fast ones
+				map.advance(1, i % 20 < 10 ? 1 : 2);
+			}
+		}
+		return map;
+	}
+
+	private static boolean inBounds(float x, float y) {
+		return x >= 0 && x <= WIDTH && y >= 0 && y <= HEIGHT;
+	}
+
+	/**
+	 * Writes the objects of one beatmap at increasing times, keeping track of the timing.
+	 */
+	private static class MapBuilder {
+
+		final String name;
+		final Random random;
+		final float sliderMultiplier;
+		final StringBuilder events = new StringBuilder();
+		final StringBuilder timingPoints = new StringBuilder();
+		final StringBuilder objects = new StringBuilder();
+
+		int time = 1000;
+		int beatLength;
+		int velocity = -100;
+		boolean newCombo = true;
+
+		MapBuilder(String name, long seed, int beatLength, float sliderMultiplier) {
+			this.name = name;
+			this.random = new Random(seed);
+			this.sliderMultiplier = sliderMultiplier;
+			beatLength(beatLength);
+		}
+
+		void beatLength(int beatLength) {
+			this.beatLength = beatLength;
+			velocity = -100;
+			timingPoints.append(time).append(',').append(beatLength).append(",4,1,0,60,1,0\n");
+		}
+
+		void sliderVelocity(float multiplier) {
+			velocity = -Math.round(100 / multiplier);
+			timingPoints.append(time).append(',').append(velocity).append(",4,1,0,60,0,0\n");
+		}
+
+		void advance(int beats, int divisor) {
+			time += beatLength * beats / divisor;
+		}
+
+		void newCombo() {
+			newCombo = true;
+		}
+
+		private int type(int type) {
+			if (newCombo) {
+				type |= 4;
+				newCombo = false;
+			}
+			return type;
+		}
+
+		void circle(float x, float y) {
+			objects.append(Math.round(x)).append(',').append(Math.round(y)).append(',').append(time)
+				.append(',').append(type(1)).append(",0\n");
+		}
+
+		/**
+		 * Adds a slider and advances to its end.
+		 */
+		void slider(char curveType, float[] xs, float[] ys, int repeat) {
+			float length = 0f;
+			for (int i = 1; i < xs.length; i++) {
+				length += Math.hypot(xs[i] - xs[i - 1], ys[i] - ys[i - 1]);
+			}
+			// a bezier curve is shorter than its control points, the others are at least as long
+			int pixelLength = Math.max(10, Math.round(length * (curveType == 'B' ? 0.5f : 0.9f)));
+			objects.append(Math.round(xs[0])).append(',').append(Math.round(ys[0])).append(',').append(time)
+				.append(',').append(type(2)).append(",0,").append(curveType);
+			for (int i = 1; i < xs.length; i++) {
+				objects.append('|').append(Math.round(xs[i])).append(':').append(Math.round(ys[i]));
+			}
+			objects.append(',').append(repeat).append(',').append(pixelLength).append('\n');
+			float pixelsPerBeat = sliderMultiplier * 100f * 100f / -velocity;
+			time += (int) Math.ceil(pixelLength / pixelsPerBeat * beatLength * repeat);
+		}
+
+		/**
+		 * Adds a spinner and advances to its end.
+		 */
+		void spinner(int beats) {
+			int end = time + beatLength * beats;
+			objects.append("256,192,").append(time).append(',').append(type(8)).append(",0,").append(end).append('\n');
+			time = end;
+		}
+
+		void breakPeriod(int duration) {
+			events.append("2,").append(time + beatLength).append(',').append(time + duration - beatLength).append('\n');
+			time += duration;
+			newCombo = true;
+		}
+
+		File write(File dir) throws IOException {
+			File file = new File(dir, String.format("MoverBenchmark - corpus (generated) [%s].osu", name));
+			try (Writer writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8")) {
+				writer.write("osu file format v14\n\n");
+				writer.write("[General]\n");
+				writer.write("AudioFilename: " + AUDIO_FILENAME + "\n");
+				writer.write("AudioLeadIn: 0\nPreviewTime: -1\nCountdown: 0\nSampleSet: Normal\nStackLeniency: 0.7\nMode: 0\n\n");
+				writer.write("[Metadata]\n");
+				writer.write("Title:" + name + "\nArtist:MoverBenchmark\nCreator:MoverBenchmark\nVersion:" + name + "\n\n");
+				writer.write("[Difficulty]\n");
+				writer.write("HPDrainRate:5\nCircleSize:4\nOverallDifficulty:8\nApproachRate:9\n");
+				writer.write("SliderMultiplier:" + sliderMultiplier + "\nSliderTickRate:1\n\n");
+				writer.write("[Events]\n");
+				writer.write(events.toString());
+				writer.write("\n[TimingPoints]\n");
+				writer.write(timingPoints.toString());
+				writer.write("\n[Colours]\n");
+				writer.write("Combo1 : 255,192,0\nCombo2 : 0,202,0\nCombo3 : 18,124,255\nCombo4 : 242,24,57\n\n");
+				writer.write("[HitObjects]\n");
+				writer.write(objects.toString());
+			}
+			return file;
+		}
+
+	}
+
+}
@@ -80,6 +80,8 @@ public enum CursorColorOverrides {
 
 	public static float hue;
 
+	private static final HueColors hueColors = new HueColors();
+
 	CursorColorOverrides(String displayText, int nr) {
 		this.displayText = displayText;
 		this.nr = nr;
@@ -111,12 +113,12 @@ public enum CursorColorOverrides {
 
 	private static Color nextRainbowColor() {
 		hue += Dancer.rgbcursorhueinc / 1000f;
-		return new Color(java.awt.Color.getHSBColor(hue / 360f, 1.0f, 1.0f).getRGB());
+		return hueColors.get(hue);
 	}
 
 	private static Color nextMirrorRainbowColor() {
 		hue += Dancer.rgbcursorhueinc / 1000f;
-		return new Color(java.awt.Color.getHSBColor((hue + 180f) / 360f, 1.0f, 1.0f).getRGB());
+		return hueColors.get(hue + 180f);
 	}
 
 }
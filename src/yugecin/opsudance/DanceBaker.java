@@ -0,0 +1,176 @@
+/*
+ * opsu!dance - fork of opsu! with cursordance auto
+ * Copyright (C) 2016 yugecin
+ *
+ * opsu!dance is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * opsu!dance is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with opsu!dance.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package yugecin.opsudance;
+
+import itdelatrisu.opsu.ErrorHandler;
+import itdelatrisu.opsu.Options;
+import itdelatrisu.opsu.Utils;
+import itdelatrisu.opsu.objects.GameObject;
+import itdelatrisu.opsu.objects.curves.Vec2f;
+import yugecin.opsudance.ui.SBOverlay;
+
+/**
+ * Evaluates the whole dance of a beatmap into a {@link DanceTrack}, on a background thread
+ * ({@link #start()}) or on the calling thread ({@link #bake()}).
+ *
+ * The dance is stepped the same way the game steps it in "auto" mod, but with a fixed
+ * timestep, so the result does not depend on the frame rate and is the same on every run.
+ * While baking, the {@link Dancer}, the game objects and the storyboard options are owned by the
+ * baker thread: the game must not touch (or draw) them until {@link #isDone()} or {@link #cancel()}.
+ */
+public class DanceBaker {
+
+	private final Dancer dancer;
+	private final GameObject[] gameObjects;
+	private final SBOverlay sbOverlay;
+	private final int beatmapID;
+	private final DanceTrack track;
+
+	private Thread thread;
+	private volatile boolean done;
+	private volatile boolean cancelled;
+	private boolean failed;
+
+	/**
+	 * Bakes with {@link Dancer#instance}.
+	 * @see #DanceBaker(Dancer, String, GameObject[], SBOverlay, int, int)
+	 */
+	public DanceBaker(String key, GameObject[] gameObjects, SBOverlay sbOverlay, int beatmapID, int startTime) {
+		this(Dancer.instance, key, gameObjects, sbOverlay, beatmapID, startTime);
+	}
+
+	/**
+	 * @param dancer the dancer, its game objects must be set to gameObjects
+	 * @param key the configuration key, see {@link DanceTrack#matches(String)}
+	 * @param gameObjects the game objects, at least one
+	 * @param sbOverlay the storyboard overlay, to apply the options of each object (may be null)
+	 * @param beatmapID the beatmap ID, to seed the mover direction
+	 * @param startTime the track position the game starts at (negative during lead-in)
+	 */
+	public DanceBaker(Dancer dancer, String key, GameObject[] gameObjects, SBOverlay sbOverlay, int beatmapID, int startTime) {
+		this.dancer = dancer;
+		this.gameObjects = gameObjects;
+		this.sbOverlay = sbOverlay;
+		this.beatmapID = beatmapID;
+		int endTime = gameObjects[gameObjects.length - 1].getEndTime() + DanceTrack.STEP;
+		track = new DanceTrack(key, Math.min(startTime, gameObjects[0].getTime()), endTime);
+	}
+
+	public void start() {
+		if (thread != null) {
+			return;
+		}
+		thread = new Thread("DanceBaker") {
+			@Override
+			public void run() {
+				try {
+					bake();
+				} catch (Exception e) {
+					failed = true;
+					done = true;
+					ErrorHandler.error("Failed to bake the dance track.", e, true);
+				}
+			}
+		};
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	public boolean isStarted() {
+		return thread != null;
+	}
+
+	public boolean isDone() {
+		return done;
+	}
+
+	/**
+	 * Stops baking and waits for the baker thread, after which the caller owns the dancer again.
+	 * The track of a cancelled bake is not usable.
+	 */
+	public void cancel() {
+		cancelled = true;
+		if (thread == null) {
+			return;
+		}
+		boolean interrupted = false;
+		while (thread.isAlive()) {
+			try {
+				thread.join();
+			} catch (InterruptedException e) {
+				interrupted = true;
+			}
+		}
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * @return the baked track, or null if baking failed or was cancelled (only valid once {@link #isDone()})
+	 */
+	public DanceTrack getTrack() {
+		return (failed || cancelled) ? null : track;
+	}
+
+	/**
+	 * Bakes the track on the calling thread.
+	 */
+	public void bake() {
+		dancer.reset();
+		dancer.resetMoverDirection(beatmapID);
+		dancer.pippi.reset();
+		if (sbOverlay != null) {
+			sbOverlay.updateIndex(0);
+		}
+
+		float[] mirror = new float[2];
+		int objectIndex = 0;
+		for (int i = 0, n = track.size(); i < n && !cancelled; i++) {
+			int time = track.getTime(i);
+			dancer.pippi.update(DanceTrack.STEP);
+
+			// in "auto" mod, objects are done as soon as the track position passes their end
+			while (objectIndex < gameObjects.length && time > gameObjects[objectIndex].getEndTime()) {
+				objectIndex++;
+				if (sbOverlay != null) {
+					sbOverlay.updateIndex(objectIndex);
+				}
+			}
+
+			float x, y;
+			if (objectIndex < gameObjects.length - dancer.getPolyMoverFactoryMinBufferSize()) {
+				dancer.update(time, objectIndex);
+				x = dancer.x;
+				y = dancer.y;
+			} else if (objectIndex > 0) {
+				// last object
+				Vec2f point = gameObjects[objectIndex - 1].getPointAt(time);
+				x = point.x;
+				y = point.y;
+			} else {
+				x = Options.width / 2;
+				y = Options.height / 2;
+			}
+			Utils.mirrorPoint(x, y, mirror);
+			track.set(i, x, y, mirror[0], mirror[1]);
+		}
+		done = true;
+	}
+
+}
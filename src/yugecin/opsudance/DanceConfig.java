@@ -0,0 +1,62 @@
+/*
+ * opsu!dance - fork of opsu! with cursordance auto
+ * Copyright (C) 2016 yugecin
+ *
+ * opsu!dance is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * opsu!dance is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with opsu!dance.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package yugecin.opsudance;
+
+import yugecin.opsudance.spinners.Spinner;
+
+/**
+ * Settings that change the path of a {@link Dancer}.
+ * Every dancer reads its own config, so dancers with different settings can run side by side.
+ */
+public class DanceConfig {
+
+	public MoverDirection moverDirection = MoverDirection.RANDOM;
+	public boolean lazySliders;
+	public boolean onlyCircleStacks;
+	public int circleStream = 58;
+	/** time per spinner point in ms, at least {@link Spinner#MIN_DELAY} */
+	public int spinnerDelay = Spinner.MIN_DELAY;
+
+	public boolean pippiEnabled;
+	public int pippiRadiusPercent = 100;
+	public int pippiAngleInc = 10;
+	public int pippiAngleSliderInc = 50;
+	public boolean pippiPreventWobblyStreams = true;
+	public boolean pippiFollowcircleExpand = true;
+	public boolean pippiCircleSlowSliders;
+	public boolean pippiCircleLazySliders;
+
+	public DanceConfig copy() {
+		DanceConfig copy = new DanceConfig();
+		copy.moverDirection = moverDirection;
+		copy.lazySliders = lazySliders;
+		copy.onlyCircleStacks = onlyCircleStacks;
+		copy.circleStream = circleStream;
+		copy.spinnerDelay = spinnerDelay;
+		copy.pippiEnabled = pippiEnabled;
+		copy.pippiRadiusPercent = pippiRadiusPercent;
+		copy.pippiAngleInc = pippiAngleInc;
+		copy.pippiAngleSliderInc = pippiAngleSliderInc;
+		copy.pippiPreventWobblyStreams = pippiPreventWobblyStreams;
+		copy.pippiFollowcircleExpand = pippiFollowcircleExpand;
+		copy.pippiCircleSlowSliders = pippiCircleSlowSliders;
+		copy.pippiCircleLazySliders = pippiCircleLazySliders;
+		return copy;
+	}
+
+}
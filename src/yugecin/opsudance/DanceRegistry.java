@@ -0,0 +1,75 @@
+/*
+ * opsu!dance - fork of opsu! with cursordance auto
+ * Copyright (C) 2016 yugecin
+ *
+ * opsu!dance is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * opsu!dance is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with opsu!dance.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package yugecin.opsudance;
+
+import org.newdawn.slick.util.Log;
+import yugecin.opsudance.movers.factories.MoverFactory;
+import yugecin.opsudance.movers.slidermovers.SliderMoverController;
+import yugecin.opsudance.spinners.Spinner;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+
+/**
+ * Finds the mover factories, spinners and slider movers with {@link ServiceLoader}.
+ * The built-in ones are listed in META-INF/services, a plugin jar on the classpath can add its own
+ * by listing them in the same files. Every call makes new instances, so each {@link Dancer} has its own.
+ */
+public class DanceRegistry {
+
+	private DanceRegistry() {}
+
+	public static MoverFactory[] newMoverFactories() {
+		List<MoverFactory> list = load(MoverFactory.class);
+		return list.toArray(new MoverFactory[list.size()]);
+	}
+
+	public static Spinner[] newSpinners() {
+		List<Spinner> list = load(Spinner.class);
+		return list.toArray(new Spinner[list.size()]);
+	}
+
+	public static SliderMoverController[] newSliderMovers() {
+		List<SliderMoverController> list = load(SliderMoverController.class);
+		return list.toArray(new SliderMoverController[list.size()]);
+	}
+
+	private static <T> List<T> load(Class<T> type) {
+		List<T> list = new ArrayList<>();
+		Iterator<T> iterator = ServiceLoader.load(type, DanceRegistry.class.getClassLoader()).iterator();
+		while (true) {
+			try {
+				if (!iterator.hasNext()) {
+					break;
+				}
+				list.add(iterator.next());
+			} catch (ServiceConfigurationError e) {
+				// skip the broken provider, the others can still be used
+				Log.warn(String.format("Failed to load a %s.", type.getSimpleName()), e);
+			}
+		}
+		if (list.isEmpty()) {
+			throw new IllegalStateException(String.format("No %s found, is META-INF/services on the classpath?", type.getSimpleName()));
+		}
+		return list;
+	}
+
+}
@@ -0,0 +1,455 @@
+/*
+ * opsu!dance - fork of opsu! with cursordance auto
+ * Copyright (C) 2016 yugecin
+ *
+ * opsu!dance is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * opsu!dance is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with opsu!dance.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package yugecin.opsudance;
+
+import itdelatrisu.opsu.GameData;
+import itdelatrisu.opsu.GameJudge;
+import itdelatrisu.opsu.Options;
+import itdelatrisu.opsu.beatmap.Beatmap;
+import itdelatrisu.opsu.beatmap.BeatmapParser;
+import itdelatrisu.opsu.beatmap.HitObject;
+import itdelatrisu.opsu.objects.Circle;
+import itdelatrisu.opsu.objects.GameObject;
+import itdelatrisu.opsu.objects.curves.Vec2f;
+import itdelatrisu.opsu.replay.Replay;
+import itdelatrisu.opsu.replay.ReplayFrame;
+import itdelatrisu.opsu.replay.ReplayFrames;
+import itdelatrisu.opsu.states.Game;
+import org.newdawn.slick.util.Log;
+
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Command line tool that dances beatmaps without a display and saves the cursor paths as .osr replays.
+ *
+ * Usage: {@code java -cp opsu-dance.jar yugecin.opsudance.DanceReplayExporter [options] [beatmaps]}
+ * where beatmaps are .osu files or directories (searched one level deep, like the songs folder),
+ * or are listed in a file passed with {@code -beatmaps}.
+ * Without beatmaps, the whole beatmap directory is exported. Dance settings come from the
+ * configuration file, unless overridden with the options below.
+ *
+ * The dancer itself has no global state, but the screen size, {@link Circle#diameter} and the
+ * {@link HitObject} scaling are set per beatmap, so a process only dances one beatmap at a time.
+ * To use more cores, the beatmaps are split over worker processes.
+ */
+public class DanceReplayExporter {
+
+	private static final String USAGE =
+		"options:\n" +
+		"  -o <dir>              output directory (default: the replay directory)\n" +
+		"  -mover <index>        mover, see -list\n" +
+		"  -spinner <index>      spinner, see -list\n" +
+		"  -slidermover <index>  slider mover, see -list\n" +
+		"  -size <width>x<height>  screen size the dance is calculated for (default: 1920x1080)\n" +
+		"  -player <name>        player name in the replays\n" +
+		"  -jobs <n>             number of worker processes (default: number of processors)\n" +
+		"  -beatmaps <file>      file listing beatmaps or directories, one per line\n" +
+		"  -list                 list the movers, spinners and slider movers\n";
+
+	/** time between two replay frames, in ms */
+	private static final int FRAME_INTERVAL = 16;
+
+	/** minimum time a key is held for an object, in ms */
+	private static final int KEY_PRESS_TIME = 50;
+
+	private File outputDir;
+	private int moverIndex = -1;
+	private int spinnerIndex = -1;
+	private int sliderMoverIndex = -1;
+	private int width = 1920;
+	private int height = 1080;
+	private String playerName = "opsu!dance";
+	private int jobs = Runtime.getRuntime().availableProcessors();
+
+	DanceReplayExporter() {
+	}
+
+	/**
+	 * Exporter with the default settings, writing to the given directory.
+	 */
+	DanceReplayExporter(File outputDir) {
+		this.outputDir = outputDir;
+	}
+
+	public static void main(String[] args) {
+		System.exit(new DanceReplayExporter().run(args));
+	}
+
+	private int run(String[] args) {
+		Options.parseOptions();
+		Options.loadSkin();
+
+		List<String> passedOptions = new ArrayList<>();
+		List<File> beatmaps = new ArrayList<>();
+		boolean beatmapArgs = false;
+		try {
+			for (int i = 0; i < args.length; i++) {
+				String arg = args[i];
+				if (arg.equals("-list")) {
+					printList();
+					return 0;
+				}
+				if (!arg.startsWith("-")) {
+					addBeatmaps(beatmaps, new File(arg));
+					beatmapArgs = true;
+					continue;
+				}
+				if (i + 1 >= args.length) {
+					throw new IllegalArgumentException("missing value for " + arg);
+				}
+				String value = args[++i];
+				if (arg.equals("-jobs")) {
+					jobs = Integer.parseInt(value);
+					continue;
+				}
+				if (arg.equals("-o")) {
+					outputDir = new File(value);
+					continue;
+				}
+				if (arg.equals("-beatmaps")) {
+					addBeatmapList(beatmaps, new File(value));
+					beatmapArgs = true;
+					continue;
+				}
+				switch (arg) {
+					case "-mover": moverIndex = parseIndex(value, Dancer.instance.moverFactories.length); break;
+					case "-spinner": spinnerIndex = parseIndex(value, Dancer.instance.spinners.length); break;
+					case "-slidermover": sliderMoverIndex = parseIndex(value, Dancer.instance.sliderMovers.length); break;
+					case "-player": playerName = value; break;
+					case "-size":
+						String[] size = value.split("x");
+						width = Integer.parseInt(size[0]);
+						height = Integer.parseInt(size[1]);
+						break;
+					default:
+						throw new IllegalArgumentException("unknown option " + arg);
+				}
+				passedOptions.add(arg);
+				passedOptions.add(value);
+			}
+		} catch (RuntimeException e) {
+			System.err.println(e.getMessage());
+			System.err.print(USAGE);
+			return 2;
+		} catch (IOException e) {
+			System.err.println("Failed to read the beatmap list: " + e.getMessage());
+			return 1;
+		}
+
+		if (!beatmapArgs) {
+			addBeatmaps(beatmaps, Options.getBeatmapDir());
+		}
+		if (outputDir == null) {
+			outputDir = Options.getReplayDir();
+		}
+		if (!outputDir.isDirectory() && !outputDir.mkdirs()) {
+			System.err.println("Failed to create output directory " + outputDir.getAbsolutePath());
+			return 1;
+		}
+
+		if (jobs > 1 && beatmaps.size() > 1) {
+			return runWorkers(passedOptions, beatmaps);
+		}
+
+		int failed = 0;
+		for (File file : beatmaps) {
+			try {
+				export(file);
+			} catch (Exception e) {
+				Log.error("Failed to export " + file.getAbsolutePath(), e);
+				failed++;
+			}
+		}
+		System.out.println(String.format("exported %d of %d beatmaps", beatmaps.size() - failed, beatmaps.size()));
+		return failed == 0 ? 0 : 1;
+	}
+
+	private static int parseIndex(String value, int length) {
+		int index = Integer.parseInt(value);
+		if (index < 0 || index >= length) {
+			throw new IllegalArgumentException("index out of range: " + value);
+		}
+		return index;
+	}
+
+	private static void printList() {
+		System.out.println("movers:");
+		for (int i = 0; i < Dancer.instance.moverFactories.length; i++) {
+			System.out.println("  " + i + ": " + Dancer.instance.moverFactories[i]);
+		}
+		System.out.println("spinners:");
+		for (int i = 0; i < Dancer.instance.spinners.length; i++) {
+			System.out.println("  " + i + ": " + Dancer.instance.spinners[i]);
+		}
+		System.out.println("slider movers:");
+		for (int i = 0; i < Dancer.instance.sliderMovers.length; i++) {
+			System.out.println("  " + i + ": " + Dancer.instance.sliderMovers[i]);
+		}
+	}
+
+	static void addBeatmaps(List<File> beatmaps, File file) {
+		if (file.isFile()) {
+			beatmaps.add(file);
+			return;
+		}
+		File[] files = file.listFiles();
+		if (files == null) {
+			Log.warn("Not a beatmap or directory: " + file.getAbsolutePath());
+			return;
+		}
+		Arrays.sort(files);
+		FilenameFilter osuFilter = new FilenameFilter() {
+			@Override
+			public boolean accept(File dir, String name) {
+				return name.toLowerCase().endsWith(".osu");
+			}
+		};
+		for (File f : files) {
+			if (f.isDirectory()) {
+				File[] osuFiles = f.listFiles(osuFilter);
+				if (osuFiles != null) {
+					Arrays.sort(osuFiles);
+					beatmaps.addAll(Arrays.asList(osuFiles));
+				}
+			} else if (osuFilter.accept(file, f.getName())) {
+				beatmaps.add(f);
+			}
+		}
+	}
+
+	/**
+	 * Adds the beatmaps listed in a file, one file or directory per line.
+	 */
+	static void addBeatmapList(List<File> beatmaps, File list) throws IOException {
+		for (String line : Files.readAllLines(list.toPath(), StandardCharsets.UTF_8)) {
+			line = line.trim();
+			if (!line.isEmpty()) {
+				addBeatmaps(beatmaps, new File(line));
+			}
+		}
+	}
+
+	/**
+	 * Splits the beatmaps over worker processes, running this tool with the same options.
+	 * Each worker gets its beatmaps in a temporary list file, since the paths of a whole
+	 * beatmap directory would not fit on a command line.
+	 */
+	private int runWorkers(List<String> passedOptions, List<File> beatmaps) {
+		int workerCount = Math.min(jobs, beatmaps.size());
+		List<Process> workers = new ArrayList<>();
+		List<File> lists = new ArrayList<>();
+		try {
+			for (int w = 0; w < workerCount; w++) {
+				List<String> paths = new ArrayList<>();
+				for (int i = w; i < beatmaps.size(); i += workerCount) {
+					paths.add(beatmaps.get(i).getAbsolutePath());
+				}
+				File list = File.createTempFile("opsu-dance-beatmaps", ".txt");
+				lists.add(list);
+				Files.write(list.toPath(), paths, StandardCharsets.UTF_8);
+				workers.add(new ProcessBuilder(workerCommand(passedOptions, list)).inheritIO().start());
+			}
+			int exitCode = 0;
+			for (Process worker : workers) {
+				if (worker.waitFor() != 0) {
+					exitCode = 1;
+				}
+			}
+			return exitCode;
+		} catch (IOException | InterruptedException e) {
+			Log.error("Failed to run the worker processes.", e);
+			for (Process worker : workers) {
+				worker.destroy();
+			}
+			return 1;
+		} finally {
+			for (File list : lists) {
+				if (!list.delete()) {
+					list.deleteOnExit();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns the command running a worker on the beatmaps in the given list file, with the
+	 * options and JVM arguments (e.g. the heap size and library path) of this process.
+	 */
+	List<String> workerCommand(List<String> passedOptions, File beatmapList) {
+		List<String> command = new ArrayList<>();
+		command.add(new File(new File(System.getProperty("java.home"), "bin"), "java").getAbsolutePath());
+		for (String arg : ManagementFactory.getRuntimeMXBean().getInputArguments()) {
+			// a debugger agent would try to listen on the same port
+			if (!arg.startsWith("-agentlib:jdwp") && !arg.startsWith("-Xrunjdwp")) {
+				command.add(arg);
+			}
+		}
+		command.add("-cp");
+		command.add(System.getProperty("java.class.path"));
+		command.add(DanceReplayExporter.class.getName());
+		command.addAll(passedOptions);
+		command.add("-o");
+		command.add(outputDir.getAbsolutePath());
+		command.add("-jobs");
+		command.add("1");
+		command.add("-beatmaps");
+		command.add(beatmapList.getAbsolutePath());
+		return command;
+	}
+
+	File export(File file) throws IOException {
+		Beatmap beatmap = BeatmapParser.parseFile(file);
+		if (beatmap == null || beatmap.objects == null || beatmap.objects.length == 0) {
+			throw new IOException("no hit objects");
+		}
+
+		Options.width = width;
+		Options.height = height;
+		HitObject.init(width, height);
+		GameData data = new GameData(width, height);
+		GameObject[] gameObjects = createGameObjects(beatmap, data);
+
+		Dancer dancer = Dancer.instance;
+		if (moverIndex != -1) {
+			dancer.setMoverFactoryIndex(moverIndex);
+		}
+		if (spinnerIndex != -1) {
+			dancer.setSpinnerIndex(spinnerIndex);
+		}
+		if (sliderMoverIndex != -1) {
+			dancer.setSliderMoverIndex(sliderMoverIndex);
+		}
+		dancer.setGameObjects(gameObjects);
+		DanceBaker baker = new DanceBaker(file.getPath(), gameObjects, null, beatmap.beatmapID, 0);
+		baker.bake();
+		dancer.setGameObjects(null);
+
+		// the hit counts, score and combo are what the game would give when playing the replay
+		ReplayFrames frames = createFrames(gameObjects, baker.getTrack());
+		judge(beatmap, gameObjects, data, frames);
+		Replay replay = data.getReplay(frames, beatmap);
+		replay.beatmapHash = (beatmap.md5Hash == null) ? "" : beatmap.md5Hash;
+		replay.playerName = playerName;
+
+		String name = file.getName();
+		File out = new File(outputDir, name.substring(0, name.length() - ".osu".length()) + ".osr");
+		replay.write(out);
+		System.out.println(out.getAbsolutePath());
+		return out;
+	}
+
+	/**
+	 * Plays the frames like the game plays a replay, scoring into the given data.
+	 */
+	static void judge(Beatmap beatmap, GameObject[] gameObjects, GameData data, ReplayFrames frames) {
+		GameJudge judge = new GameJudge(data);
+		judge.setBeatmap(beatmap, gameObjects);
+		judge.reset();
+		for (int i = 0; i < frames.size(); i++) {
+			if (frames.getY(i) < 0) {
+				// start frames
+				continue;
+			}
+			judge.runFrame(frames.getTimeDiff(i), frames.getTime(i), frames.getScaledX(i), frames.getScaledY(i), frames.getKeys(i));
+		}
+	}
+
+	/**
+	 * Creates the game objects like {@link Game} does, without a game, images or sounds.
+	 */
+	static GameObject[] createGameObjects(Beatmap beatmap) {
+		return createGameObjects(beatmap, null);
+	}
+
+	/**
+	 * Creates the game objects like {@link Game} does, scoring into the given data (if not null).
+	 */
+	static GameObject[] createGameObjects(Beatmap beatmap, GameData data) {
+		GameJudge.initHeadless(beatmap, data);
+		ObjectColorOverrides.comboColors = beatmap.getComboColors();
+		ObjectColorOverrides.reset(beatmap.beatmapID);
+		return GameJudge.createGameObjects(beatmap, null, data);
+	}
+
+	/**
+	 * Samples the track into replay frames. Objects are clicked with alternating keys,
+	 * with extra frames on every key change so the clicks land exactly on time.
+	 */
+	private static ReplayFrames createFrames(GameObject[] gameObjects, DanceTrack track) {
+		// key events: (time << 2) | (key << 1) | (pressed ? 1 : 0), sorted
+		long[] events = new long[gameObjects.length * 2];
+		for (int i = 0; i < gameObjects.length; i++) {
+			GameObject o = gameObjects[i];
+			int press = Math.max(o.getTime(), 0);
+			int release = Math.max(o.getEndTime(), press + KEY_PRESS_TIME);
+			if (i + 2 < gameObjects.length) {
+				// the next object with the same key needs a fresh click
+				release = Math.min(release, gameObjects[i + 2].getTime() - 1);
+			}
+			release = Math.max(release, press + 1);
+			int key = i & 1;
+			events[i * 2] = ((long) press << 2) | (key << 1) | 1;
+			events[i * 2 + 1] = ((long) release << 2) | (key << 1);
+		}
+		Arrays.sort(events);
+		int endTime = (int) (events[events.length - 1] >> 2) + FRAME_INTERVAL;
+
+		ReplayFrames frames = new ReplayFrames();
+		frames.add(ReplayFrame.getStartFrame(0));
+		frames.add(ReplayFrame.getStartFrame(-1));
+		Vec2f point = new Vec2f();
+		int[] held = new int[2];
+		int event = 0;
+		int lastTime = -1;
+		for (int time = 0; time <= endTime; ) {
+			while (event < events.length && (events[event] >> 2) <= time) {
+				held[(int) (events[event] >> 1) & 1] += ((events[event] & 1) == 1) ? 1 : -1;
+				event++;
+			}
+			int keys = ReplayFrame.KEY_NONE;
+			if (held[0] > 0) {
+				keys |= ReplayFrame.KEY_K1;
+			}
+			if (held[1] > 0) {
+				keys |= ReplayFrame.KEY_K2;
+			}
+			track.getPoint(time, point);
+			float x = (point.x - HitObject.getXOffset()) / HitObject.getXMultiplier();
+			float y = (point.y - HitObject.getYOffset()) / HitObject.getYMultiplier();
+			frames.add(time - lastTime, time, x, y, keys);
+			lastTime = time;
+
+			// next frame: the next key change or the next regular frame, whichever comes first
+			int next = time + FRAME_INTERVAL;
+			if (event < events.length) {
+				next = Math.min(next, (int) (events[event] >> 2));
+			}
+			time = next;
+		}
+		return frames;
+	}
+
+}
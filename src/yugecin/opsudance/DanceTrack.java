@@ -0,0 +1,102 @@
+/*
+ * opsu!dance - fork of opsu! with cursordance auto
+ * Copyright (C) 2016 yugecin
+ *
+ * opsu!dance is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * opsu!dance is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with opsu!dance.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package yugecin.opsudance;
+
+import itdelatrisu.opsu.objects.curves.Vec2f;
+
+/**
+ * Cursor dance path sampled at a fixed timestep, see {@link DanceBaker}.
+ * Lookups interpolate between samples, times outside the track are clamped.
+ */
+public class DanceTrack {
+
+	/** time between two samples, in ms */
+	public static final int STEP = 2;
+
+	private final String key;
+	private final int startTime;
+	private final int size;
+
+	private final float[] x;
+	private final float[] y;
+	private final float[] mirrorX;
+	private final float[] mirrorY;
+
+	/**
+	 * @param key the configuration this track was baked with
+	 * @param startTime time of the first sample
+	 * @param endTime time up to which samples are needed
+	 */
+	public DanceTrack(String key, int startTime, int endTime) {
+		this.key = key;
+		this.startTime = startTime;
+		size = (endTime - startTime + STEP - 1) / STEP + 1;
+		x = new float[size];
+		y = new float[size];
+		mirrorX = new float[size];
+		mirrorY = new float[size];
+	}
+
+	void set(int index, float x, float y, float mirrorX, float mirrorY) {
+		this.x[index] = x;
+		this.y[index] = y;
+		this.mirrorX[index] = mirrorX;
+		this.mirrorY[index] = mirrorY;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public int getStartTime() {
+		return startTime;
+	}
+
+	public int getTime(int index) {
+		return startTime + index * STEP;
+	}
+
+	/**
+	 * @return true if this track was baked with the given configuration
+	 */
+	public boolean matches(String key) {
+		return this.key.equals(key);
+	}
+
+	public Vec2f getPoint(int time, Vec2f out) {
+		return interpolate(x, y, time, out);
+	}
+
+	public Vec2f getMirroredPoint(int time, Vec2f out) {
+		return interpolate(mirrorX, mirrorY, time, out);
+	}
+
+	private Vec2f interpolate(float[] xs, float[] ys, int time, Vec2f out) {
+		int offset = time - startTime;
+		if (offset <= 0) {
+			return out.set(xs[0], ys[0]);
+		}
+		int index = offset / STEP;
+		if (index >= size - 1) {
+			return out.set(xs[size - 1], ys[size - 1]);
+		}
+		float t = (offset - index * STEP) / (float) STEP;
+		return out.set(xs[index] + (xs[index + 1] - xs[index]) * t, ys[index] + (ys[index + 1] - ys[index]) * t);
+	}
+
+}
@@ -17,12 +17,7 @@
  */
 package yugecin.opsudance;
 
-import awlex.ospu.movers.factories.CenterSpiralMoverFactory;
-import awlex.ospu.movers.factories.SpiralMoverFactory;
-import awlex.ospu.polymover.factory.ArcFactory;
-import awlex.ospu.polymover.factory.LinearFactory;
 import awlex.ospu.polymover.factory.PolyMoverFactory;
-import awlex.ospu.spinners.SpiralSpinner;
 import itdelatrisu.opsu.Options;
 import itdelatrisu.opsu.Utils;
 import itdelatrisu.opsu.audio.MusicController;
@@ -34,53 +29,21 @@ import itdelatrisu.opsu.objects.curves.Vec2f;
 import yugecin.opsudance.movers.LinearMover;
 import yugecin.opsudance.movers.Mover;
 import yugecin.opsudance.movers.factories.*;
-import yugecin.opsudance.movers.slidermovers.DefaultSliderMoverController;
-import yugecin.opsudance.movers.slidermovers.InheritedSliderMoverController;
 import yugecin.opsudance.movers.slidermovers.SliderMoverController;
 import yugecin.opsudance.spinners.*;
 
-public class Dancer {
-
-	public static MoverFactory[] moverFactories = new MoverFactory[] {
-		new AutoMoverFactory(),
-		new AutoEllipseMoverFactory(),
-		new CircleMoverFactory(),
-		new HalfCircleMoverFactory(),
-		new HalfEllipseMoverFactory(),
-		new HalfLowEllipseMoverFactory(),
-		new JumpMoverFactory(),
-		new LinearMoverFactory(),
-		new QuartCircleMoverFactory(),
-		new SpiralMoverFactory(),
-		new CenterSpiralMoverFactory(),
-		new LinearFactory(),
-		new ArcFactory(),
-	};
-
-	public static Spinner[] spinners = new Spinner[] {
-		new RektSpinner(),
-		new BeamSpinner(),
-		new CircleSpinner(),
-		new DonutSpinner(),
-		new CubeSpinner(),
-		new HalfCircleSpinner(),
-		new IlluminatiSpinner(),
-		new LessThanThreeSpinner(),
-		new RektCircleSpinner(),
-		new ApproachCircleSpinner(),
-		new SpiralSpinner(),
-		new FivePointStarSpinner(),
-		new FivePointStarApproachSpinner(),
-	};
+import java.util.Random;
 
-	public static SliderMoverController[] sliderMovers = new SliderMoverController[] {
-		new DefaultSliderMoverController(),
-		new InheritedSliderMoverController(),
-	};
+/**
+ * Moves the cursor from object to object.
+ * A dancer has its own movers, spinners, slider movers and {@link Pippi}, all reading its {@link DanceConfig},
+ * so more than one can dance at the same time (each needs its own game objects, movers and spinners
+ * change the start and end of the objects they move between).
+ */
+public class Dancer {
 
-	public static Dancer instance = new Dancer();
+	public static Dancer instance = new Dancer(new DanceConfig());
 
-	public static boolean multipoint = false;
 	public static boolean mirror = false; // this should really get its own place somewhere...
 	public static boolean drawApproach = true; // this should really get its own place somewhere...
 	public static boolean removebg = true; // this should really get its own place somewhere...
@@ -91,46 +54,78 @@ public class Dancer {
 	public static CursorColorOverrides cursorColorOverride = CursorColorOverrides.NONE;
 	public static CursorColorOverrides cursorColorMirrorOverride = CursorColorOverrides.NONE;
 	public static int rgbcursorhueinc = 100; // this should really get its own place somewhere...
-	public static MoverDirection moverDirection = MoverDirection.RANDOM;
 	public static boolean hideobjects = false;
 	public static int cursortraillength = 20;
 	public static boolean hidewatermark = false;
 	public static boolean onlycolortrail = false;
+	public static boolean bake = false;
+	public static int fixedframerate = 0;
 
-	private int dir;
 	public static final GameObject d = new DummyObject();
 
+	public final DanceConfig config;
+	public final MoverFactory[] moverFactories;
+	public final Spinner[] spinners;
+	public final SliderMoverController[] sliderMovers;
+	public final Pippi pippi;
+
+	private int dir;
+	private int time;
+	private Random directionRandom = new Random(0);
+
 	private GameObject[] gameObjects;
 	private int objectIndex;
 
 	private MoverFactory moverFactory;
 	private Mover mover;
 	private Spinner spinner;
-	public static SliderMoverController sliderMoverController;
+	private SliderMoverController sliderMoverController;
+	private boolean multipoint;
 
 	private int moverFactoryIndex;
 	private int spinnerIndex;
+	private int sliderMoverIndex;
 
 	public float x;
 	public float y;
+	private final double[] polyPoint = new double[2];
 
 	private boolean isCurrentLazySlider;
 
-	public static boolean LAZY_SLIDERS;
-
-	public Dancer() {
+	public Dancer(DanceConfig config) {
+		this.config = config;
+		moverFactories = DanceRegistry.newMoverFactories();
+		for (MoverFactory factory : moverFactories) {
+			factory.setConfig(config);
+		}
+		spinners = DanceRegistry.newSpinners();
+		sliderMovers = DanceRegistry.newSliderMovers();
+		pippi = new Pippi(this, config);
 		moverFactory = moverFactories[0];
 		spinner = spinners[0];
 		sliderMoverController = sliderMovers[0];
 	}
 
+	/**
+	 * Seeds the random mover direction, so a beatmap is danced the same way every time.
+	 */
+	public void resetMoverDirection(int beatmapID) {
+		directionRandom = new Random(beatmapID);
+	}
+
 	public void reset() {
 		isCurrentLazySlider = false;
 		objectIndex = -1;
 		dir = 1;
+		time = 0;
 		for (Spinner s : spinners) {
 			s.init();
 		}
+		for (MoverFactory factory : moverFactories) {
+			if (factory instanceof PolyMoverFactory) {
+				((PolyMoverFactory) factory).reset();
+			}
+		}
 	}
 
 	public int getSpinnerIndex() {
@@ -145,6 +140,18 @@ public class Dancer {
 		spinner = spinners[spinnerIndex];
 	}
 
+	public int getSliderMoverIndex() {
+		return sliderMoverIndex;
+	}
+
+	public void setSliderMoverIndex(int sliderMoverIndex) {
+		if (sliderMoverIndex < 0 || sliderMoverIndex >= sliderMovers.length) {
+			sliderMoverIndex = 0;
+		}
+		this.sliderMoverIndex = sliderMoverIndex;
+		sliderMoverController = sliderMovers[sliderMoverIndex];
+	}
+
 	public int getMoverFactoryIndex() {
 		return moverFactoryIndex;
 	}
@@ -156,8 +163,9 @@ public class Dancer {
 		this.moverFactoryIndex = moverFactoryIndex;
 		moverFactory = moverFactories[moverFactoryIndex];
 		multipoint = moverFactory.isMultiPoint();
+		planMovers();
 		// to prevent crashes when changing mover in storyboard, create mover now
-		createNewMover();
+		createNewMover(time);
 	}
 
 	public int getPolyMoverFactoryMinBufferSize() {
@@ -169,15 +177,26 @@ public class Dancer {
 
 	public void setGameObjects(GameObject[] objs) {
 		this.gameObjects = objs;
+		planMovers();
+	}
+
+	private void planMovers() {
+		for (MoverFactory factory : moverFactories) {
+			// keep plans of other factories, the storyboard may switch back to them
+			if (factory instanceof AutoMoverFactory && (factory == moverFactory || gameObjects == null)) {
+				((AutoMoverFactory) factory).plan(gameObjects);
+			}
+		}
 	}
 
 	public void setObjectIndex(int objectIndex) {
 		this.objectIndex = objectIndex;
 		// storyboard
-		createNewMover();
+		createNewMover(MusicController.getPosition());
 	}
 
 	public void update(int time, int objectIndex) {
+		this.time = time;
 		GameObject p;
 		if (objectIndex == 0) {
 			p = d;
@@ -194,13 +213,13 @@ public class Dancer {
 			this.objectIndex = objectIndex;
 			if (objectIndex == 0) {
 				if (c.isSpinner()) {
-					double[] spinnerStartPoint = spinner.getPoint();
+					double[] spinnerStartPoint = spinner.getPoint(0, config.spinnerDelay, 0d);
 					c.start.set((float) spinnerStartPoint[0], (float) spinnerStartPoint[1]);
 				}
 			}
 			isCurrentLazySlider = false;
 			// detect lazy sliders, should work pretty good
-			if (c.isSlider() && LAZY_SLIDERS && Utils.distance(c.start.x, c.start.y, c.end.x, c.end.y) <= Circle.diameter * 0.8f) {
+			if (c.isSlider() && config.lazySliders && Utils.distance(c.start.x, c.start.y, c.end.x, c.end.y) <= Circle.diameter * 0.8f) {
 				Slider s = (Slider) c;
 				Vec2f mid = s.getCurve().pointAt(1f);
 				if (s.getRepeats() == 1 || Utils.distance(c.start.x, c.start.y, mid.x, mid.y) <= Circle.diameter * 0.8f) {
@@ -210,20 +229,20 @@ public class Dancer {
 					}
 				}
 			}
-			dir = moverDirection.getDirection(dir);
+			dir = config.moverDirection.getDirection(dir, directionRandom);
 			if (c.isSpinner()) {
-				double[] spinnerStartPoint = spinner.getPoint();
+				double[] spinnerStartPoint = spinner.getPoint(0, config.spinnerDelay, 0d);
 				c.start = new Vec2f((float) spinnerStartPoint[0], (float) spinnerStartPoint[1]);
 			}
 
-			createNewMover();
+			createNewMover(time);
 		}
 
 		if (time < c.getTime()) {
 			if (!p.isSpinner() || !c.isSpinner()) {
 				double[] point;
 				if (multipoint) {
-					point = ((PolyMoverFactory) moverFactory).getPointAt(time);
+					point = ((PolyMoverFactory) moverFactory).getPointAt(time, polyPoint);
 				} else {
 					point = mover.getPointAt(time);
 				}
@@ -232,8 +251,8 @@ public class Dancer {
 			}
 		} else {
 			if (c.isSpinner()) {
-				Spinner.PROGRESS = (double) (time - c.getTime()) / (double) (c.getEndTime() - c.getTime());
-				double[] point = spinner.getPoint();
+				double progress = (double) (time - c.getTime()) / (double) (c.getEndTime() - c.getTime());
+				double[] point = spinner.getPoint(time - c.getTime(), config.spinnerDelay, progress);
 				x = (float) point[0];
 				y = (float) point[1];
 				c.end = new Vec2f(x, y);
@@ -246,12 +265,12 @@ public class Dancer {
 				y = point.y;
 			}
 		}
-		Pippi.dance(time, c, isCurrentLazySlider);
+		pippi.dance(time, c, isCurrentLazySlider);
 		x = Utils.clamp(x, 10, Options.width - 10);
 		y = Utils.clamp(y, 10, Options.height - 10);
 	}
 
-	private void createNewMover() {
+	private void createNewMover(int time) {
 		if (gameObjects == null) {
 			return;
 		}
@@ -272,7 +291,7 @@ public class Dancer {
 		if (objectIndex > 0) {
 			p = gameObjects[objectIndex - 1];
 		}
-		GameObject[] e = sliderMoverController.process(p, c, MusicController.getPosition());
+		GameObject[] e = sliderMoverController.process(p, c, time);
 		p = e[0];
 		c = e[1];
 		if (mover == null || p == d) {
@@ -0,0 +1,74 @@
+/*
+ * opsu!dance - fork of opsu! with cursordance auto
+ * Copyright (C) 2016 yugecin
+ *
+ * opsu!dance is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * opsu!dance is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with opsu!dance.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package yugecin.opsudance;
+
+import org.newdawn.slick.util.Log;
+
+/**
+ * Adds up the time spent drawing the hit objects, and their mirrored copies, to compare the cost
+ * of mirror mode against drawing the objects once.
+ * This is the time on the render thread (submitting the draw calls), not the time the GPU needs.
+ */
+public class DrawTimer {
+
+	private int frames;
+	private int mirroredFrames;
+	private long singleTime;
+	private long mirrorTime;
+	private boolean mirroredFrame;
+
+	public void reset() {
+		frames = mirroredFrames = 0;
+		singleTime = mirrorTime = 0;
+		mirroredFrame = false;
+	}
+
+	public void frame() {
+		frames++;
+		mirroredFrame = false;
+	}
+
+	public void addSingle(long nanos) {
+		singleTime += nanos;
+	}
+
+	public void addMirror(long nanos) {
+		mirrorTime += nanos;
+		if (!mirroredFrame) {
+			mirroredFrame = true;
+			mirroredFrames++;
+		}
+	}
+
+	/**
+	 * Logs the average times per frame, if anything was drawn.
+	 */
+	public void log() {
+		if (frames == 0) {
+			return;
+		}
+		String msg = String.format("Drawing hit objects took %.3f ms per frame (%d frames)",
+			singleTime / 1e6 / frames, frames);
+		if (mirroredFrames > 0) {
+			msg += String.format(", their mirrored copies %.3f ms per mirrored frame (%d frames)",
+				mirrorTime / 1e6 / mirroredFrames, mirroredFrames);
+		}
+		Log.info(msg + ".");
+	}
+
+}
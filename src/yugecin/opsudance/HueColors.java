@@ -0,0 +1,51 @@
+/*
+ * opsu!dance - fork of opsu! with cursordance auto
+ * Copyright (C) 2016 yugecin
+ *
+ * opsu!dance is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * opsu!dance is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with opsu!dance.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package yugecin.opsudance;
+
+import org.newdawn.slick.Color;
+
+/**
+ * Fully saturated colors for every tenth of a degree of hue, so the rainbow overrides don't have
+ * to convert from HSB and allocate a color for every object or frame.
+ * The colors are shared like the combo colors: objects set the alpha before drawing. The cursor
+ * draws with the alpha of its color, so it uses its own table.
+ */
+public class HueColors {
+
+	private static final int STEPS_PER_DEGREE = 10;
+
+	private final Color[] colors = new Color[360 * STEPS_PER_DEGREE];
+
+	public HueColors() {
+		for (int i = 0; i < colors.length; i++) {
+			colors[i] = new Color(java.awt.Color.HSBtoRGB(i / (float) colors.length, 1f, 1f));
+		}
+	}
+
+	/**
+	 * @param hue the hue in degrees, any value
+	 */
+	public Color get(float hue) {
+		int index = (int) (hue * STEPS_PER_DEGREE + 0.5f) % colors.length;
+		if (index < 0) {
+			index += colors.length;
+		}
+		return colors[index];
+	}
+
+}
@@ -0,0 +1,500 @@
+/*
+ * opsu!dance - fork of opsu! with cursordance auto
+ * Copyright (C) 2016 yugecin
+ *
+ * opsu!dance is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * opsu!dance is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with opsu!dance.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package yugecin.opsudance;
+
+import awlex.ospu.polymover.factory.PolyMoverFactory;
+import itdelatrisu.opsu.Options;
+import itdelatrisu.opsu.beatmap.Beatmap;
+import itdelatrisu.opsu.beatmap.BeatmapParser;
+import itdelatrisu.opsu.beatmap.HitObject;
+import itdelatrisu.opsu.downloads.Updater;
+import itdelatrisu.opsu.objects.Circle;
+import itdelatrisu.opsu.objects.GameObject;
+import itdelatrisu.opsu.objects.curves.Vec2f;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.newdawn.slick.util.Log;
+import yugecin.opsudance.movers.Mover;
+import yugecin.opsudance.movers.factories.AutoMoverFactory;
+import yugecin.opsudance.movers.factories.MoverFactory;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Command line tool that dances a fixed set of beatmaps with every mover and writes the
+ * cost and path quality of each mover as JSON, to compare movers and versions.
+ *
+ * Usage: {@code java -cp opsu-dance.jar yugecin.opsudance.MoverBenchmark [options] [beatmaps]}
+ * where beatmaps are .osu files or directories, like {@link DanceReplayExporter}. Without beatmaps
+ * the generated {@link BenchmarkCorpus} is used, so results of other machines and versions compare.
+ *
+ * Per mover:
+ * - getPointAt: the movers between all object pairs are made first, then sampled over
+ *   and over, the time and allocated bytes per call are measured after some warmup rounds.
+ * - plan: the time {@link AutoMoverFactory} takes to plan the movers of the beatmaps. This is done
+ *   before the dance is measured, the planner thread would otherwise run while it is.
+ * - dance: the whole beatmap is baked like {@link DanceBaker} does, the time and allocated
+ *   bytes per step are measured.
+ * - path: velocity and acceleration of the baked path (px/ms and px/ms^2), excursions to the
+ *   edge of the screen (the dancer clamps the cursor 10px inside it, so a sample on that border
+ *   means the mover went off-screen), and jumps of more than a circle radius in one step at
+ *   the start or end of an object. Spinners are left out.
+ */
+public class MoverBenchmark {
+
+	private static final String USAGE =
+		"usage: MoverBenchmark [options] [beatmaps]\n" +
+		"options:\n" +
+		"  -o <file>             output file (default: standard output)\n" +
+		"  -size <width>x<height>  screen size the dance is calculated for (default: 1920x1080)\n" +
+		"  -rounds <n>           measured rounds of getPointAt calls (default: 10)\n" +
+		"  -warmup <n>           unmeasured rounds before that (default: 3)\n" +
+		"without beatmaps, a fixed set of generated beatmaps is used\n";
+
+	/** getPointAt calls per mover per round */
+	private static final int SAMPLES_PER_MOVER = 16;
+
+	/** distance from the edge of the screen the dancer clamps the cursor to, see {@link Dancer#update(int, int)} */
+	private static final float EDGE = 10f;
+
+	private File outputFile;
+	private int width = 1920;
+	private int height = 1080;
+	private int rounds = 10;
+	private int warmup = 3;
+
+	private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+	private final boolean allocationSupported;
+
+	public static void main(String[] args) {
+		System.exit(new MoverBenchmark().run(args));
+	}
+
+	private MoverBenchmark() {
+		boolean supported = false;
+		if (threads instanceof com.sun.management.ThreadMXBean) {
+			com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) threads;
+			if (bean.isThreadAllocatedMemorySupported()) {
+				bean.setThreadAllocatedMemoryEnabled(true);
+				supported = bean.isThreadAllocatedMemoryEnabled();
+			}
+		}
+		allocationSupported = supported;
+	}
+
+	private int run(String[] args) {
+		Options.parseOptions();
+		Options.loadSkin();
+
+		List<File> beatmaps = new ArrayList<>();
+		try {
+			for (int i = 0; i < args.length; i++) {
+				String arg = args[i];
+				if (!arg.startsWith("-")) {
+					DanceReplayExporter.addBeatmaps(beatmaps, new File(arg));
+					continue;
+				}
+				if (i + 1 >= args.length) {
+					throw new IllegalArgumentException("missing value for " + arg);
+				}
+				String value = args[++i];
+				switch (arg) {
+					case "-o": outputFile = new File(value); break;
+					case "-rounds": rounds = Math.max(1, Integer.parseInt(value)); break;
+					case "-warmup": warmup = Math.max(0, Integer.parseInt(value)); break;
+					case "-size":
+						String[] size = value.split("x");
+						width = Integer.parseInt(size[0]);
+						height = Integer.parseInt(size[1]);
+						break;
+					default:
+						throw new IllegalArgumentException("unknown option " + arg);
+				}
+			}
+		} catch (RuntimeException e) {
+			System.err.println(e.getMessage());
+			System.err.print(USAGE);
+			return 2;
+		}
+		boolean corpus = beatmaps.isEmpty();
+		if (corpus) {
+			try {
+				File dir = Files.createTempDirectory("moverbenchmark").toFile();
+				dir.deleteOnExit();
+				beatmaps = BenchmarkCorpus.write(dir);
+				new File(dir, BenchmarkCorpus.AUDIO_FILENAME).deleteOnExit();
+				for (File file : beatmaps) {
+					file.deleteOnExit();
+				}
+			} catch (IOException e) {
+				Log.error("Failed to write the beatmap corpus", e);
+				return 1;
+			}
+		}
+
+		List<Beatmap> parsed = new ArrayList<>();
+		JSONArray beatmapsJson = new JSONArray();
+		for (File file : beatmaps) {
+			Beatmap beatmap = BeatmapParser.parseFile(file);
+			if (beatmap == null || beatmap.objects == null || beatmap.objects.length == 0) {
+				Log.warn("Skipping beatmap without hit objects: " + file.getAbsolutePath());
+				continue;
+			}
+			parsed.add(beatmap);
+			JSONObject beatmapJson = new JSONObject();
+			beatmapJson.put("file", file.getName());
+			beatmapJson.put("md5", beatmap.md5Hash == null ? JSONObject.NULL : beatmap.md5Hash);
+			beatmapJson.put("objects", beatmap.objects.length);
+			beatmapsJson.put(beatmapJson);
+		}
+		if (parsed.isEmpty()) {
+			System.err.println("no beatmaps with hit objects");
+			return 1;
+		}
+
+		Options.width = width;
+		Options.height = height;
+		HitObject.init(width, height);
+
+		JSONArray moversJson = new JSONArray();
+		int moverCount = Dancer.instance.moverFactories.length;
+		for (int i = 0; i < moverCount; i++) {
+			MoverResult result = new MoverResult();
+			for (Beatmap beatmap : parsed) {
+				benchmark(beatmap, i, result);
+			}
+			JSONObject moverJson = result.toJSON();
+			moverJson.put("index", i);
+			moverJson.put("name", Dancer.instance.moverFactories[i].toString());
+			moversJson.put(moverJson);
+			System.err.println(String.format("%d/%d %s", i + 1, moverCount, Dancer.instance.moverFactories[i]));
+		}
+
+		JSONObject json = new JSONObject();
+		json.put("build", Updater.get().getBuildDate());
+		json.put("java", System.getProperty("java.version"));
+		json.put("width", width);
+		json.put("height", height);
+		json.put("step", DanceTrack.STEP);
+		json.put("rounds", rounds);
+		json.put("warmup", warmup);
+		json.put("allocationSupported", allocationSupported);
+		json.put("corpus", corpus);
+		json.put("beatmaps", beatmapsJson);
+		json.put("movers", moversJson);
+
+		try {
+			if (outputFile == null) {
+				System.out.println(json.toString(2));
+			} else {
+				try (Writer writer = new OutputStreamWriter(new FileOutputStream(outputFile), "UTF-8")) {
+					writer.write(json.toString(2));
+					writer.write('\n');
+				}
+			}
+		} catch (IOException e) {
+			Log.error("Failed to write " + outputFile.getAbsolutePath(), e);
+			return 1;
+		}
+		return 0;
+	}
+
+	private void benchmark(Beatmap beatmap, int moverIndex, MoverResult result) {
+		// a new dancer and new objects for every mover, movers change the objects they move between
+		Dancer dancer = new Dancer(Dancer.instance.config.copy());
+		dancer.setSpinnerIndex(Dancer.instance.getSpinnerIndex());
+		dancer.setSliderMoverIndex(Dancer.instance.getSliderMoverIndex());
+		dancer.setMoverFactoryIndex(moverIndex);
+		GameObject[] gameObjects = DanceReplayExporter.createGameObjects(beatmap);
+
+		MoverFactory factory = dancer.moverFactories[moverIndex];
+		if (factory instanceof AutoMoverFactory) {
+			// setGameObjects keeps this plan instead of starting the planner thread
+			long start = System.nanoTime();
+			((AutoMoverFactory) factory).planNow(gameObjects);
+			result.planNanos += System.nanoTime() - start;
+		}
+		dancer.setGameObjects(gameObjects);
+		DanceBaker baker = new DanceBaker(dancer, "", gameObjects, null, beatmap.beatmapID, 0);
+		long bytes = allocatedBytes();
+		long start = System.nanoTime();
+		baker.bake();
+		result.danceNanos += System.nanoTime() - start;
+		result.danceBytes += allocatedBytes() - bytes;
+		dancer.setGameObjects(null);
+		DanceTrack track = baker.getTrack();
+		result.danceSteps += track.size();
+		measurePath(gameObjects, track, result);
+
+		if (factory.isMultiPoint()) {
+			measurePolyMover((PolyMoverFactory) factory, gameObjects, result);
+		} else {
+			measureMovers(factory, gameObjects, result);
+		}
+	}
+
+	private void measureMovers(MoverFactory factory, GameObject[] gameObjects, MoverResult result) {
+		Mover[] movers = new Mover[gameObjects.length];
+		int[] from = new int[gameObjects.length];
+		int[] duration = new int[gameObjects.length];
+		int count = 0;
+		long start = System.nanoTime();
+		for (int i = 1; i < gameObjects.length; i++) {
+			GameObject p = gameObjects[i - 1];
+			GameObject c = gameObjects[i];
+			if (!p.isSpinner() && !c.isSpinner() && c.getTime() > p.getEndTime()) {
+				movers[count] = factory.create(p, c, (i & 1) == 0 ? 1 : -1);
+				from[count] = p.getEndTime();
+				duration[count] = c.getTime() - p.getEndTime();
+				count++;
+			}
+		}
+		result.createNanos += System.nanoTime() - start;
+		result.createCalls += count;
+		if (count == 0) {
+			return;
+		}
+
+		double sink = 0d;
+		for (int round = -warmup; round < rounds; round++) {
+			long bytes = allocatedBytes();
+			start = System.nanoTime();
+			for (int m = 0; m < count; m++) {
+				for (int i = 0; i < SAMPLES_PER_MOVER; i++) {
+					sink += movers[m].getPointAt(from[m] + duration[m] * i / SAMPLES_PER_MOVER)[0];
+				}
+			}
+			if (round >= 0) {
+				result.pointNanos += System.nanoTime() - start;
+				result.pointBytes += allocatedBytes() - bytes;
+				result.pointCalls += count * SAMPLES_PER_MOVER;
+			}
+		}
+		result.sink += sink;
+	}
+
+	private void measurePolyMover(PolyMoverFactory factory, GameObject[] gameObjects, MoverResult result) {
+		// the factory keeps one set of movers, so the movers are made again every round
+		int last = gameObjects.length - factory.getMaxBufferSize();
+		double[] point = new double[2];
+		double sink = 0d;
+		for (int round = -warmup; round < rounds; round++) {
+			long createNanos = 0;
+			long pointNanos = 0;
+			long bytes = allocatedBytes();
+			int calls = 0;
+			int creates = 0;
+			for (int i = 1; i <= last; i++) {
+				GameObject p = gameObjects[i - 1];
+				GameObject c = gameObjects[i];
+				if (p.isSpinner() || c.isSpinner() || c.getTime() <= p.getEndTime()) {
+					continue;
+				}
+				long start = System.nanoTime();
+				factory.create(gameObjects, i - 1);
+				long created = System.nanoTime();
+				int from = p.getEndTime();
+				int duration = c.getTime() - from;
+				for (int j = 0; j < SAMPLES_PER_MOVER; j++) {
+					sink += factory.getPointAt(from + duration * j / SAMPLES_PER_MOVER, point)[0];
+				}
+				createNanos += created - start;
+				pointNanos += System.nanoTime() - created;
+				calls += SAMPLES_PER_MOVER;
+				creates++;
+			}
+			if (round >= 0) {
+				// creating allocates the movers, those bytes are counted for getPointAt too
+				result.pointBytes += allocatedBytes() - bytes;
+				result.pointNanos += pointNanos;
+				result.pointCalls += calls;
+				result.createNanos += createNanos;
+				result.createCalls += creates;
+			}
+		}
+		result.sink += sink;
+	}
+
+	/**
+	 * Spinners are skipped, their path is the same for every mover.
+	 */
+	private void measurePath(GameObject[] gameObjects, DanceTrack track, MoverResult result) {
+		// times objects start or end, where the dancer switches between movers and objects
+		int[] boundaries = new int[gameObjects.length * 2];
+		for (int i = 0; i < gameObjects.length; i++) {
+			boundaries[i * 2] = gameObjects[i].getTime();
+			boundaries[i * 2 + 1] = gameObjects[i].getEndTime();
+		}
+		Arrays.sort(boundaries);
+		float jumpDistance = Circle.diameter / 2f;
+
+		Vec2f point = new Vec2f();
+		float px = 0f, py = 0f;
+		float vx = 0f, vy = 0f;
+		boolean hasPrevious = false;
+		boolean hasVelocity = false;
+		boolean onEdge = false;
+		int boundary = 0;
+		int objectIndex = 0;
+		for (int i = 0, n = track.size(); i < n; i++) {
+			int time = track.getTime(i);
+			boolean atBoundary = false;
+			while (boundary < boundaries.length && boundaries[boundary] <= time) {
+				atBoundary |= boundaries[boundary] > time - DanceTrack.STEP;
+				boundary++;
+			}
+			while (objectIndex < gameObjects.length - 1 && gameObjects[objectIndex].getEndTime() < time) {
+				objectIndex++;
+			}
+			GameObject o = gameObjects[objectIndex];
+			if (o.isSpinner() && o.getTime() <= time && time <= o.getEndTime()) {
+				hasPrevious = hasVelocity = onEdge = false;
+				continue;
+			}
+
+			track.getPoint(time, point);
+			boolean edge = point.x <= EDGE || point.y <= EDGE || point.x >= width - EDGE || point.y >= height - EDGE;
+			if (edge) {
+				result.edgeSamples++;
+				if (!onEdge) {
+					result.edgeExcursions++;
+				}
+			}
+			onEdge = edge;
+			if (hasPrevious) {
+				float dx = point.x - px;
+				float dy = point.y - py;
+				float distance = (float) Math.sqrt(dx * dx + dy * dy);
+				if (atBoundary) {
+					result.maxBoundaryJump = Math.max(result.maxBoundaryJump, distance);
+					if (distance > jumpDistance) {
+						result.discontinuities++;
+					}
+					hasVelocity = false;
+				} else {
+					float nvx = dx / DanceTrack.STEP;
+					float nvy = dy / DanceTrack.STEP;
+					result.maxVelocity = Math.max(result.maxVelocity, distance / DanceTrack.STEP);
+					if (hasVelocity) {
+						float ax = (nvx - vx) / DanceTrack.STEP;
+						float ay = (nvy - vy) / DanceTrack.STEP;
+						result.maxAcceleration = Math.max(result.maxAcceleration, (float) Math.sqrt(ax * ax + ay * ay));
+					}
+					vx = nvx;
+					vy = nvy;
+					hasVelocity = true;
+				}
+			}
+			px = point.x;
+			py = point.y;
+			hasPrevious = true;
+		}
+	}
+
+	/**
+	 * @return bytes allocated by this thread so far, or 0 if the JVM does not support measuring it
+	 */
+	private long allocatedBytes() {
+		if (!allocationSupported) {
+			return 0;
+		}
+		return ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+
+	/**
+	 * Measurements of one mover, summed over all beatmaps.
+	 */
+	private class MoverResult {
+
+		long pointNanos;
+		long pointBytes;
+		long pointCalls;
+		long createNanos;
+		long createCalls;
+		long planNanos;
+		long danceNanos;
+		long danceBytes;
+		long danceSteps;
+
+		float maxVelocity;
+		float maxAcceleration;
+		float maxBoundaryJump;
+		int discontinuities;
+		int edgeExcursions;
+		int edgeSamples;
+
+		/** keeps the sampled points alive, so the calls are not optimized away */
+		double sink;
+
+		JSONObject toJSON() {
+			JSONObject point = new JSONObject();
+			point.put("calls", pointCalls);
+			point.put("nsPerCall", perCall(pointNanos, pointCalls));
+			point.put("bytesPerCall", allocationSupported ? perCall(pointBytes, pointCalls) : JSONObject.NULL);
+			point.put("bytesPerSecond", allocationSupported ? perSecond(pointBytes, pointNanos) : JSONObject.NULL);
+
+			JSONObject create = new JSONObject();
+			create.put("calls", createCalls);
+			create.put("nsPerCall", perCall(createNanos, createCalls));
+
+			JSONObject plan = new JSONObject();
+			plan.put("nanos", planNanos);
+
+			JSONObject dance = new JSONObject();
+			dance.put("steps", danceSteps);
+			dance.put("nsPerStep", perCall(danceNanos, danceSteps));
+			dance.put("bytesPerSecond", allocationSupported ? perSecond(danceBytes, danceNanos) : JSONObject.NULL);
+
+			JSONObject path = new JSONObject();
+			path.put("maxVelocity", maxVelocity);
+			path.put("maxAcceleration", maxAcceleration);
+			path.put("edgeExcursions", edgeExcursions);
+			path.put("edgeSamples", edgeSamples);
+			path.put("discontinuities", discontinuities);
+			path.put("maxBoundaryJump", maxBoundaryJump);
+
+			JSONObject json = new JSONObject();
+			json.put("getPointAt", point);
+			json.put("create", create);
+			json.put("plan", plan);
+			json.put("dance", dance);
+			json.put("path", path);
+			return json;
+		}
+
+		private double perCall(long total, long calls) {
+			return calls == 0 ? 0d : (double) total / calls;
+		}
+
+		private double perSecond(long total, long nanos) {
+			return nanos == 0 ? 0d : total * 1e9d / nanos;
+		}
+
+	}
+
+}
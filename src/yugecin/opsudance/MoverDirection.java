@@ -23,25 +23,25 @@ public enum MoverDirection {
 
 	LEFT ("Left", 0) {
 		@Override
-		public int getDirection(int currentDirection) {
+		public int getDirection(int currentDirection, Random rand) {
 			return 1;
 		}
 	},
 	RIGHT ("Right", 1) {
 		@Override
-		public int getDirection(int currentDirection) {
+		public int getDirection(int currentDirection, Random rand) {
 			return -1;
 		}
 	},
 	ALTERNATE ("Alternate", 2) {
 		@Override
-		public int getDirection(int currentDirection) {
+		public int getDirection(int currentDirection, Random rand) {
 			return currentDirection * -1;
 		}
 	},
 	RANDOM ("Random", 3) {
 		@Override
-		public int getDirection(int currentDirection) {
+		public int getDirection(int currentDirection, Random rand) {
 			if (rand.nextInt(2) == 1) {
 				return currentDirection * -1;
 			}
@@ -52,18 +52,12 @@ public enum MoverDirection {
 	public String displayName;
 	public int nr;
 
-	private static Random rand;
-
 	MoverDirection(String displayName, int nr) {
 		this.displayName = displayName;
 		this.nr = nr;
 	}
 
-	public static void reset(int mapID) {
-		rand = new Random(mapID);
-	}
-
-	public abstract int getDirection(int currentDirection);
+	public abstract int getDirection(int currentDirection, Random rand);
 
 	@Override
 	public String toString() {
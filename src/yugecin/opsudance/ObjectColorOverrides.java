@@ -75,6 +75,8 @@ public enum ObjectColorOverrides {
 
 	public static float hue;
 
+	private static final HueColors hueColors = new HueColors();
+
 	ObjectColorOverrides(String displayText, int nr) {
 		this.displayText = displayText;
 		this.nr = nr;
@@ -95,11 +97,11 @@ public enum ObjectColorOverrides {
 
 	private static Color nextRainbowColor() {
 		hue += Dancer.rgbhueinc / 10f;
-		return new Color(java.awt.Color.getHSBColor(hue / 360f, 1.0f, 1.0f).getRGB());
+		return hueColors.get(hue);
 	}
 
 	private static Color nextMirrorRainbowColor() {
-		return new Color(java.awt.Color.getHSBColor((hue + 180f) / 360f, 1.0f, 1.0f).getRGB());
+		return hueColors.get(hue + 180f);
 	}
 
 
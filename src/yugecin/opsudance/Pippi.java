@@ -23,50 +23,51 @@ import itdelatrisu.opsu.objects.Slider;
 
 public class Pippi {
 
-	private static double angle = 0;
-	private static int currentdelta;
 	private static final int targetdelta = 4;
 
-	public static boolean enabled = false;
-	private static int radiusPercent;
-	public static int angleInc = 10;
-	public static int angleSliderInc = 50;
-	public static boolean preventWobblyStreams = true;
-	public static boolean followcircleExpand = true;
-	public static boolean circleSlowSliders = false;
-	public static boolean circleLazySliders = false;
+	private final Dancer dancer;
+	private final DanceConfig config;
 
-	private static double pippirad;
-	private static double pippiminrad;
-	private static double pippimaxrad;
-	private static GameObject previous;
+	private double angle = 0;
+	private int currentdelta;
 
-	public static void setRadiusPercent(int radiusPercent) {
-		Pippi.radiusPercent = radiusPercent;
+	private double pippirad;
+	private double pippiminrad;
+	private double pippimaxrad;
+	private GameObject previous;
+
+	public Pippi(Dancer dancer, DanceConfig config) {
+		this.dancer = dancer;
+		this.config = config;
+	}
+
+	public void setRadiusPercent(int radiusPercent) {
+		config.pippiRadiusPercent = radiusPercent;
 		pippiminrad = pippirad = (Circle.diameter / 2d - 10d) * radiusPercent / 100d;
 	}
 
-	public static void reset() {
+	public void reset() {
 		angle = 0;
 		currentdelta = 0;
-		setRadiusPercent(radiusPercent);
+		previous = null;
+		setRadiusPercent(config.pippiRadiusPercent);
 		pippimaxrad = Circle.diameter - 10d;
 	}
 
-	public static void dance(int time, GameObject c, boolean isCurrentLazySlider) {
-		boolean slowSlider = circleSlowSliders && c.isSlider() && (((((Slider) c).pixelLength < 200 || c.getEndTime() - c.getTime() > 400)) || isCurrentLazySlider);
+	public void dance(int time, GameObject c, boolean isCurrentLazySlider) {
+		boolean slowSlider = config.pippiCircleSlowSliders && c.isSlider() && (((((Slider) c).pixelLength < 200 || c.getEndTime() - c.getTime() > 400)) || isCurrentLazySlider);
 		if (!slowSlider) {
-			slowSlider = circleLazySliders && isCurrentLazySlider;
+			slowSlider = config.pippiCircleLazySliders && isCurrentLazySlider;
 		}
-		if ((!enabled || c.isSpinner()) && !slowSlider) {
+		if ((!config.pippiEnabled || c.isSpinner()) && !slowSlider) {
 			return;
 		}
 		if (currentdelta >= targetdelta && c != previous) {
 			currentdelta = 0;
 			if (c.isSlider() && c.getTime() < time) {
-				angle += angleSliderInc / 1800d * Math.PI;
+				angle += config.pippiAngleSliderInc / 1800d * Math.PI;
 				if (!slowSlider) {
-					if (followcircleExpand) {
+					if (config.pippiFollowcircleExpand) {
 						if (c.getEndTime() - time < 40 && pippirad > pippimaxrad) {
 							pippirad -= 5d;
 						} else if (time - c.getTime() > 10 && c.getEndTime() - c.getTime() > 600 && pippirad < pippimaxrad) {
@@ -75,29 +76,29 @@ public class Pippi {
 					}
 				}
 			} else if (!c.isSpinner()) {
-				if (followcircleExpand && pippirad != pippiminrad) {
+				if (config.pippiFollowcircleExpand && pippirad != pippiminrad) {
 					pippirad = pippiminrad;
 				}
-				angle += angleInc / 1800d * Math.PI;
+				angle += config.pippiAngleInc / 1800d * Math.PI;
 			}
 			// don't inc on long movements
 			if (c.getTime() - time > 400) {
 				previous = c;
 			}
 		}
-		Dancer.instance.x += pippirad * Math.cos(angle);
-		Dancer.instance.y += pippirad * Math.sin(angle);
+		dancer.x += pippirad * Math.cos(angle);
+		dancer.y += pippirad * Math.sin(angle);
 		if (slowSlider) {
-			c.end.set(Dancer.instance.x,Dancer.instance.y);
+			c.end.set(dancer.x, dancer.y);
 		}
 	}
 
-	public static void update(int delta) {
+	public void update(int delta) {
 		currentdelta += delta;
 	}
 
-	public static boolean shouldPreventWobblyStream(double distance) {
-		return enabled && distance < Circle.diameter * 0.93f && preventWobblyStreams;
+	public static boolean shouldPreventWobblyStream(DanceConfig config, double distance) {
+		return config.pippiEnabled && distance < Circle.diameter * 0.93f && config.pippiPreventWobblyStreams;
 	}
 
 }
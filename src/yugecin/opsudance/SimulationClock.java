@@ -0,0 +1,110 @@
+/*
+ * opsu!dance - fork of opsu! with cursordance auto
+ * Copyright (C) 2016 yugecin
+ *
+ * opsu!dance is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * opsu!dance is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with opsu!dance.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package yugecin.opsudance;
+
+import itdelatrisu.opsu.audio.MusicController;
+
+/**
+ * The time the game runs on, advanced once per frame by the container.
+ *
+ * Normally this follows the wall clock. With a fixed frame rate, every frame advances the time by
+ * exactly one frame, however long rendering it took, and the music position follows this clock
+ * instead of the audio (which is not played). Frames then only depend on the frame number, so a
+ * recording can be rendered slower than real time, and the same frames come out on every run.
+ * The time values use the {@link System#nanoTime()} time base, so they can be passed to the
+ * {@link itdelatrisu.opsu.audio.MusicClock}.
+ */
+public class SimulationClock {
+
+	public static final SimulationClock instance = new SimulationClock();
+
+	/** frames per second, or 0 to follow the wall clock */
+	private int fixedFrameRate;
+
+	/** frames since the fixed frame rate was set */
+	private long frame;
+
+	/** time of the first fixed frame (in nanoseconds) */
+	private long baseTime;
+
+	/** time of the current frame (in nanoseconds) */
+	private long time = System.nanoTime();
+
+	/**
+	 * Sets the fixed frame rate, and starts counting frames from the current time.
+	 * @param fps the frames per second, or 0 to follow the wall clock again
+	 */
+	public void setFixedFrameRate(int fps) {
+		fps = Math.max(fps, 0);
+		if (fps == fixedFrameRate) {
+			return;
+		}
+		fixedFrameRate = fps;
+		frame = 0;
+		baseTime = time = System.nanoTime();
+		MusicController.setFixedTimestep(fps > 0);
+	}
+
+	public int getFixedFrameRate() {
+		return fixedFrameRate;
+	}
+
+	public boolean isFixed() {
+		return fixedFrameRate > 0;
+	}
+
+	/**
+	 * Advances the clock to the next frame.
+	 * @param realDelta the time since the last frame on the wall clock (in ms)
+	 * @return the time to update the game with (in ms), the deltas of fixed frames add up to
+	 *         the exact time (e.g. 16, 17, 17 for 60 fps)
+	 */
+	public int nextFrame(int realDelta) {
+		if (fixedFrameRate == 0) {
+			time = System.nanoTime();
+			return realDelta;
+		}
+		int delta = (int) ((frame + 1) * 1000 / fixedFrameRate - frame * 1000 / fixedFrameRate);
+		frame++;
+		time = baseTime + frame * 1000000000L / fixedFrameRate;
+		return delta;
+	}
+
+	/**
+	 * @return the time of the current frame (in nanoseconds)
+	 */
+	public long getTime() {
+		return time;
+	}
+
+	/**
+	 * @return the time of the current frame (in ms)
+	 */
+	public long getMillis() {
+		return time / 1000000L;
+	}
+
+	/**
+	 * @return the current time (in nanoseconds): the wall clock, or the time of the current frame
+	 *         with a fixed frame rate
+	 */
+	public long now() {
+		return fixedFrameRate == 0 ? System.nanoTime() : time;
+	}
+
+}
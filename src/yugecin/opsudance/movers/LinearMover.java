@@ -27,11 +27,14 @@ public class LinearMover extends Mover {
 
 	@Override
 	public double[] getPointAt(int time) {
+		return getPointAt(time, new double[2]);
+	}
+
+	public double[] getPointAt(int time, double[] out) {
 		double t = getT(time);
-		return new double[] {
-			startX + (endX - startX) * t,
-			startY + (endY - startY) * t
-		};
+		out[0] = startX + (endX - startX) * t;
+		out[1] = startY + (endY - startY) * t;
+		return out;
 	}
 
 	@Override
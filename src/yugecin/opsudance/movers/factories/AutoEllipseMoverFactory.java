@@ -19,32 +19,33 @@ package yugecin.opsudance.movers.factories;
 
 import itdelatrisu.opsu.objects.GameObject;
 import yugecin.opsudance.movers.HalfEllipseMover;
-import yugecin.opsudance.movers.Mover;
 
 public class AutoEllipseMoverFactory extends AutoMoverFactory {
 
+	/** 0.8^40 is about 0.0001, the ellipse is a straight line by then */
+	private static final int MAX_TRIES = 40;
+
 	@Override
-	protected Mover donext(GameObject start, GameObject end, int dir, int dt, double velocity) {
+	protected long donext(GameObject start, GameObject end, int dir, int dt, double velocity) {
 		float mod = (float)dt / /*110f*/ 90f;
 		HalfEllipseMover m1 = new HalfEllipseMover(start, end, dir);
 		HalfEllipseMover m2 = new HalfEllipseMover(start, end, -dir);
-		for( ; ; )
+		// no ellipse is in bounds when the start or end is not, which happens after some spinners
+		for( int i = 0; i < MAX_TRIES; i++ )
 		{
 			m1.setMod( mod );
 			m2.setMod( mod );
-			if( inbounds( m1 ) )
+			if( inbounds( m1, start, end ) )
 			{
-				super.m = m1;
-				break;
+				return choice( HALF_ELLIPSE, dir, mod );
 			}
-			if( inbounds( m2 ) )
+			if( inbounds( m2, start, end ) )
 			{
-				super.m = m2;
-				break;
+				return choice( HALF_ELLIPSE, -dir, mod );
 			}
 			mod *= .8d;
 		}
-		return super.m;
+		return choice( LINEAR, dir, 0d );
 	}
 
 	@Override
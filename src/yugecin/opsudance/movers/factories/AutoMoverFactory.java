@@ -17,61 +17,153 @@
  */
 package yugecin.opsudance.movers.factories;
 
+import itdelatrisu.opsu.ErrorHandler;
 import itdelatrisu.opsu.Options;
 import itdelatrisu.opsu.Utils;
 import itdelatrisu.opsu.beatmap.HitObject;
 import itdelatrisu.opsu.objects.Circle;
 import itdelatrisu.opsu.objects.GameObject;
+import yugecin.opsudance.DanceConfig;
 import yugecin.opsudance.Pippi;
 import yugecin.opsudance.movers.*;
 
+import java.util.IdentityHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Picks a mover that stays in bounds, depending on the distance and time between the objects.
+ *
+ * Trying the candidates is too slow to do on the frame an object is hit in dense streams,
+ * so {@link #plan(GameObject[])} decides for all object pairs of a beatmap on a background thread.
+ * Plans run one after another on that thread; a plan that is superseded stops (or never starts).
+ * A choice is packed in a long, see {@link #choice(int, int, double)}: the mover type, the direction
+ * and the mod of the ellipse movers. {@link #create(GameObject, GameObject, int)} only decides by
+ * itself for pairs that are not planned (yet), or when the settings changed since planning.
+ */
 public class AutoMoverFactory implements MoverFactory {
 
-	public static boolean ONLY_CIRCLE_STACKS = false;
-	public static int CIRCLE_STREAM = 58;
-	private int starttime;
-	private int endtime;
-	protected Mover m;
+	protected static final int LINEAR = 1;
+	protected static final int CIRCLE = 2;
+	protected static final int HALF_ELLIPSE = 3;
+	protected static final int HALF_CIRCLE = 4;
+	protected static final int QUART_CIRCLE = 5;
+
+	/** runs the plans, one at a time; the thread exits when idle */
+	private static final ExecutorService planner = new ThreadPoolExecutor(
+		0, 1, 5, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+		new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r, "MoverPlanner");
+				t.setDaemon(true);
+				return t;
+			}
+		}
+	);
+
+	private DanceConfig config = new DanceConfig();
+	private volatile Plan plan;
+
+	@Override
+	public void setConfig(DanceConfig config) {
+		this.config = config;
+	}
 
 	@Override
 	public Mover create(GameObject start, GameObject end, int dir) {
+		Plan plan = this.plan;
+		long choice = 0;
+		if (plan != null) {
+			choice = plan.get(start, end, dir);
+		}
+		if (choice == 0) {
+			choice = decide(start, end, dir);
+		}
+		return instantiate(choice, start, end);
+	}
+
+	/**
+	 * Starts planning the movers for a beatmap in the background, the previous plan is dropped.
+	 * @param objects the objects of the beatmap, or null to only drop the previous plan
+	 */
+	public void plan(GameObject[] objects) {
+		Plan previous = this.plan;
+		if (previous != null && previous.objects == objects) {
+			return;
+		}
+		if (objects == null) {
+			this.plan = null;
+			return;
+		}
+		final Plan plan = new Plan(objects);
+		this.plan = plan;
+		planner.execute(new Runnable() {
+			@Override
+			public void run() {
+				if (AutoMoverFactory.this.plan != plan) {
+					return;
+				}
+				try {
+					plan.fill();
+				} catch (Exception e) {
+					plan.discard();
+					ErrorHandler.error("Failed to plan the movers.", e, true);
+				}
+			}
+		});
+	}
+
+	/**
+	 * Plans the movers for a beatmap on the calling thread, the previous plan is dropped.
+	 * A following {@link #plan(GameObject[])} with the same objects keeps this plan, so no
+	 * planning is queued, which keeps planning out of measurements of the dance itself.
+	 * @param objects the objects of the beatmap
+	 */
+	public void planNow(GameObject[] objects) {
+		Plan plan = new Plan(objects);
+		this.plan = plan;
+		plan.fill();
+	}
+
+	protected long decide(GameObject start, GameObject end, int dir) {
 		int dt = end.getTime() - start.getEndTime();
 		double distance = Utils.distance(start.end.x, start.end.y, end.start.x, end.start.y);
 
 		// linear if very fast
 		if (dt < 40) {
-			return new LinearMover(start, end, dir);
+			return choice(LINEAR, dir, 0d);
 		}
 
 		// stacked: circles if not too quick
-		if (distance < Circle.diameter && ((dt > CIRCLE_STREAM && !ONLY_CIRCLE_STACKS) || distance < HitObject.getStackOffset() * 5.2f)) { // TODO get the correct multiplier for stackoffsets
-			return new CircleMover(start, end, dir);
+		if (distance < Circle.diameter && ((dt > config.circleStream && !config.onlyCircleStacks) || distance < HitObject.getStackOffset() * 5.2f)) { // TODO get the correct multiplier for stackoffsets
+			return choice(CIRCLE, dir, 0d);
 		}
 
-		if (Pippi.shouldPreventWobblyStream(distance)) {
-			return new LinearMover(start, end, dir);
+		if (Pippi.shouldPreventWobblyStream(config, distance)) {
+			return choice(LINEAR, dir, 0d);
 		}
 
-		starttime = start.getEndTime();
-		endtime = end.getTime();
-
 		double velocity = distance / dt;
 		return donext(start, end, dir, dt, velocity);
 	}
 
-	protected Mover donext(GameObject start, GameObject end, int dir, int dt, double velocity) {
+	protected long donext(GameObject start, GameObject end, int dir, int dt, double velocity) {
 		if( velocity < 4d )
 		{
 			// ellips, if in bounds
-			if( inbounds( new HalfEllipseMover( start, end, dir ) ) ) return m;
-			if( inbounds( new HalfEllipseMover( start, end, -dir ) ) ) return m;
+			if( inbounds( new HalfEllipseMover( start, end, dir ), start, end ) ) return choice( HALF_ELLIPSE, dir, 2d );
+			if( inbounds( new HalfEllipseMover( start, end, -dir ), start, end ) ) return choice( HALF_ELLIPSE, -dir, 2d );
 		}
 
 		if( velocity < 5.5d )
 		{
 			// halfcircle, if in bounds
-			if( inbounds( new HalfCircleMover( start, end, dir ) ) ) return m;
-			if( inbounds( new HalfCircleMover( start, end, -dir ) ) ) return m;
+			if( inbounds( new HalfCircleMover( start, end, dir ), start, end ) ) return choice( HALF_CIRCLE, dir, 0d );
+			if( inbounds( new HalfCircleMover( start, end, -dir ), start, end ) ) return choice( HALF_CIRCLE, -dir, 0d );
 		}
 
 		if( velocity < 7d )
@@ -80,23 +172,51 @@ public class AutoMoverFactory implements MoverFactory {
 			HalfEllipseMover m;
 			m = new HalfEllipseMover(start, end, dir);
 			m.setMod(0.5d);
-			if( inbounds(m) ) return m;
+			if( inbounds(m, start, end) ) return choice( HALF_ELLIPSE, dir, 0.5d );
 			m = new HalfEllipseMover(start, end, -dir);
 			m.setMod(0.5d);
-			if( inbounds(m) ) return m;
+			if( inbounds(m, start, end) ) return choice( HALF_ELLIPSE, -dir, 0.5d );
 		}
 
 		// quart circle
-		Mover last = new QuartCircleMover( start, end, dir );
-		if( inbounds( last ) ) return m;
-		if( inbounds( new QuartCircleMover( start, end, -dir ) ) ) return m;
-		return last;
+		if( inbounds( new QuartCircleMover( start, end, dir ), start, end ) ) return choice( QUART_CIRCLE, dir, 0d );
+		if( inbounds( new QuartCircleMover( start, end, -dir ), start, end ) ) return choice( QUART_CIRCLE, -dir, 0d );
+		return choice( QUART_CIRCLE, dir, 0d );
+	}
+
+	/**
+	 * @param type the mover type
+	 * @param dir the direction of the mover
+	 * @param mod the mod of a half ellipse mover
+	 * @return the choice, never 0
+	 */
+	protected static long choice(int type, int dir, double mod) {
+		return ((long) Float.floatToIntBits((float) mod) << 32) | (dir < 0 ? 0x100 : 0) | type;
+	}
+
+	private static Mover instantiate(long choice, GameObject start, GameObject end) {
+		int dir = (choice & 0x100) != 0 ? -1 : 1;
+		switch ((int) (choice & 0xFF)) {
+			case LINEAR:
+				return new LinearMover(start, end, dir);
+			case CIRCLE:
+				return new CircleMover(start, end, dir);
+			case HALF_ELLIPSE:
+				HalfEllipseMover m = new HalfEllipseMover(start, end, dir);
+				m.setMod(Float.intBitsToFloat((int) (choice >>> 32)));
+				return m;
+			case HALF_CIRCLE:
+				return new HalfCircleMover(start, end, dir);
+			default:
+				return new QuartCircleMover(start, end, dir);
+		}
 	}
 
 	@SuppressWarnings("SimplifiableIfStatement")
-	protected boolean inbounds(Mover m )
+	protected boolean inbounds(Mover m, GameObject start, GameObject end)
 	{
-		this.m = m;
+		int starttime = start.getEndTime();
+		int endtime = end.getTime();
 		if (!checkBounds(m.getPointAt((int) (starttime + (endtime - starttime) * 0.3)))) return false;
 		if (!checkBounds(m.getPointAt((int) (starttime + (endtime - starttime) * 0.7)))) return false;
 		return checkBounds(m.getPointAt((int) (starttime + (endtime - starttime) * 0.5)));
@@ -112,4 +232,84 @@ public class AutoMoverFactory implements MoverFactory {
 		return "Auto decide";
 	}
 
+	/**
+	 * The choices for a beatmap, two per object pair (i - 1, i): one for each direction.
+	 * Pairs with spinners are never planned, their positions are only known while playing.
+	 */
+	private class Plan {
+
+		private final GameObject[] objects;
+		private final IdentityHashMap<GameObject, Integer> indices;
+		private final long[] choices;
+		/** amount of objects whose pair is planned, written after the choices */
+		private volatile int planned;
+
+		private final boolean onlyCircleStacks;
+		private final int circleStream;
+		private final boolean preventWobblyStreams;
+		private final float diameter;
+		private final int width;
+		private final int height;
+
+		Plan(GameObject[] objects) {
+			this.objects = objects;
+			indices = new IdentityHashMap<>(objects.length);
+			for (int i = 0; i < objects.length; i++) {
+				indices.put(objects[i], i);
+			}
+			choices = new long[objects.length * 2];
+			onlyCircleStacks = config.onlyCircleStacks;
+			circleStream = config.circleStream;
+			preventWobblyStreams = config.pippiEnabled && config.pippiPreventWobblyStreams;
+			diameter = Circle.diameter;
+			width = Options.width;
+			height = Options.height;
+		}
+
+		void fill() {
+			for (int i = 1; i < objects.length && AutoMoverFactory.this.plan == this; i++) {
+				GameObject start = objects[i - 1];
+				GameObject end = objects[i];
+				if (!start.isSpinner() && !end.isSpinner()) {
+					choices[i * 2] = decide(start, end, 1);
+					choices[i * 2 + 1] = decide(start, end, -1);
+				}
+				planned = i + 1;
+			}
+			if (!isValid()) {
+				// settings changed while planning, some choices may be made with the old ones
+				discard();
+			}
+		}
+
+		void discard() {
+			planned = 0;
+		}
+
+		private boolean isValid() {
+			return onlyCircleStacks == config.onlyCircleStacks
+				&& circleStream == config.circleStream
+				&& preventWobblyStreams == (config.pippiEnabled && config.pippiPreventWobblyStreams)
+				&& diameter == Circle.diameter
+				&& width == Options.width
+				&& height == Options.height;
+		}
+
+		/**
+		 * @return the planned choice, or 0 if there is none
+		 */
+		long get(GameObject start, GameObject end, int dir) {
+			int planned = this.planned;
+			if (!isValid()) {
+				return 0;
+			}
+			Integer index = indices.get(end);
+			if (index == null || index == 0 || index >= planned || objects[index - 1] != start) {
+				return 0;
+			}
+			return choices[index * 2 + (dir < 0 ? 1 : 0)];
+		}
+
+	}
+
 }
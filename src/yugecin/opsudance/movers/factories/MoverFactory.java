@@ -18,8 +18,13 @@
 package yugecin.opsudance.movers.factories;
 
 import itdelatrisu.opsu.objects.GameObject;
+import yugecin.opsudance.DanceConfig;
 import yugecin.opsudance.movers.Mover;
 
+/**
+ * Makes the movers between two objects. Implementations are found by {@link yugecin.opsudance.DanceRegistry}
+ * and need a public no-arg constructor.
+ */
 public interface MoverFactory {
 
 	Mover create(GameObject start, GameObject end, int dir);
@@ -28,4 +33,10 @@ public interface MoverFactory {
 		return false;
 	}
 
+	/**
+	 * Called by the owning {@link yugecin.opsudance.Dancer}, before any mover is made.
+	 */
+	default void setConfig(DanceConfig config) {
+	}
+
 }
@@ -17,33 +17,11 @@
  */
 package yugecin.opsudance.spinners;
 
-import itdelatrisu.opsu.Options;
-
-public class ApproachCircleSpinner extends Spinner {
-
-	private int ang = 0;
-
-	private double[] point = new double[2];
+public class ApproachCircleSpinner extends CircleSpinner {
 
 	@Override
-	public void init()
-	{
-		ang = 0;
-	}
-
-	@Override
-	public double[] getPoint()
-	{
-		if (waitForDelay()) {
-			ang += 15;
-		}
-
-		double rad = Options.width / 4.0f * (1d - Spinner.PROGRESS);
-
-		point[0] = Options.width / 2.0f + rad * Math.sin(ang / 180d * Math.PI);
-		point[1] = Options.height / 2.0f - rad * Math.cos(ang / 180d * Math.PI);
-
-		return point;
+	protected double getScale(double progress) {
+		return 1d - progress;
 	}
 
 	@Override
@@ -21,54 +21,51 @@ import itdelatrisu.opsu.Options;
 
 public class BeamSpinner extends Spinner {
 
-	private double ang = 0;
-	private double[] point;
-	private int index;
+	/** the beam turns 0.3 degrees every 4 points */
+	private static final int POINTS = 1200 * 4;
 
-	@Override
-	public void init()
-	{
-		ang = 0;
-		index = 0;
-		point = new double[2];
-	}
+	private double ang;
+	private double[] point = new double[2];
 
 	@Override
-	public double[] getPoint()
+	public void init()
 	{
-		if (!waitForDelay()) {
-			return point;
-		}
-
-		index = ++index % 4;
+		double[] xs = new double[POINTS];
+		double[] ys = new double[POINTS];
 		final int MOD = 60;
+		for (int i = 0; i < POINTS; i++) {
+			int step = i + 1;
+			int index = step % 4;
+			ang = 0.3d * (step / 4);
 
-		point[0] = Options.width / 2d;
-		point[1] = Options.height / 2d;
+			point[0] = Options.width / 2d;
+			point[1] = Options.height / 2d;
 
-		if( index == 0 )
-		{
-			add( MOD, 90 );
-			add( MOD, 180 );
-		}
-		else if( index == 1 )
-		{
-			add( MOD, 90 );
-			add( Options.height / 2 * 0.8d, 0 );
-		}
-		else if( index == 2 )
-		{
-			add( MOD, -90 );
-			add( Options.height / 2 * 0.8d, 0 );
-		}
-		else if( index == 3 )
-		{
-			add( MOD, -90 );
-			add( MOD, 180 );
-			ang += 0.3;
-		}
+			if( index == 0 )
+			{
+				add( MOD, 90 );
+				add( MOD, 180 );
+			}
+			else if( index == 1 )
+			{
+				add( MOD, 90 );
+				add( Options.height / 2 * 0.8d, 0 );
+			}
+			else if( index == 2 )
+			{
+				add( MOD, -90 );
+				add( Options.height / 2 * 0.8d, 0 );
+			}
+			else if( index == 3 )
+			{
+				add( MOD, -90 );
+				add( MOD, 180 );
+			}
 
-		return point;
+			xs[i] = point[0];
+			ys[i] = point[1];
+		}
+		init(xs, ys, 0);
 	}
 
 	private void add( double rad, double ang )
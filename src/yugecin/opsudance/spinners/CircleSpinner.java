@@ -21,29 +21,19 @@ import itdelatrisu.opsu.Options;
 
 public class CircleSpinner extends Spinner {
 
-	private int ang = 0;
-
-	private double[] point = new double[2];
-
 	@Override
 	public void init()
 	{
-		ang = 0;
-	}
-
-	@Override
-	public double[] getPoint()
-	{
-		if (waitForDelay()) {
-			ang += 15;
-		}
-
+		double[][] points = new double[24][];
 		double rad = Options.width / 4.0f;
-
-		point[0] = Options.width / 2.0f + rad * Math.sin(ang / 180d * Math.PI);
-		point[1] = Options.height / 2.0f - rad * Math.cos(ang / 180d * Math.PI);
-
-		return point;
+		for (int i = 0; i < points.length; i++) {
+			int ang = i * 15;
+			points[i] = new double[] {
+				Options.width / 2.0f + rad * Math.sin(ang / 180d * Math.PI),
+				Options.height / 2.0f - rad * Math.cos(ang / 180d * Math.PI)
+			};
+		}
+		init(points);
 	}
 
 	@Override
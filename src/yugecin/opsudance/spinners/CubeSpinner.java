@@ -41,61 +41,48 @@ public class CubeSpinner extends Spinner {
 		{ -1, -1, 1 },
 	};
 
-	private int azi = 0;
-	private int alt = 73;
-
-	public double azimuth = 15.0d;
-	public double altitude = 95.0d;
-
-	private double size = 0;
-
-	private int index = 0;
-
-	private double[] point = new double[2];
+	/** points per turn, the cube view changes after every turn */
+	private static final int TURN = 16;
+	/** the first turn is an intro, after that the views repeat every 360 turns */
+	private static final int POINTS = TURN + 360 * TURN;
 
 	@Override
 	public void init()
 	{
-		azi = 0;
-		alt = 73;
-	}
-
-	@Override
-	public double[] getPoint()
-	{
-		if(waitForDelay() && ++index >= 16 )
-		{
-			index = 0;
-			azimuth += 2.0d;
-			altitude += 6.0d;
-			size += 15d;
-			//size = 0;
-			azi += 5;
-			alt += 9;
-			azimuth = 30d * Math.cos( azi / 180d * Math.PI );
-			altitude = 30d * Math.cos( alt / 180d * Math.PI );
+		double[] xs = new double[POINTS];
+		double[] ys = new double[POINTS];
+		double azimuth = 15.0d;
+		double altitude = 95.0d;
+		double size = 0;
+		for (int turn = 0; turn * TURN < POINTS; turn++) {
+			if (turn > 0) {
+				size = 15d * turn;
+				azimuth = 30d * Math.cos( 5 * turn / 180d * Math.PI );
+				altitude = 30d * Math.cos( (73 + 9 * turn) / 180d * Math.PI );
+			}
+
+			double theta = Math.PI * azimuth / 180.0d;
+			double phi = Math.PI * altitude / 180.0d;
+
+			double cosT = Math.cos( theta ), sinT = Math.sin(theta );
+			double cosP = Math.cos( phi ), sinP = Math.sin( phi );
+
+			double scale = Options.width / (3.0f + 0.5f * Math.cos(size / 180f * Math.PI));
+
+			for (int index = 0; index < TURN; index++) {
+				double x = cosT * points[index][0] + sinT * points[index][2];
+				double y = -sinT * sinP * points[index][0] + cosP * points[index][1] + cosT * sinP * points[index][2];
+
+				// fix depth
+				double z = cosT * cosP * points[index][2] - sinT * cosP * points[index][0] - sinP * points[index][1];
+				x *= 3.0d / ( z + 3.0d + 5.0d + 0.5 );
+				y *= 3.0d / ( z + 3.0d + 5.0d + 0.5 );
+
+				xs[turn * TURN + index] = (int) ( Options.width / 2.0f + scale * x );
+				ys[turn * TURN + index] = (int) ( Options.height / 2.0f - scale * y );
+			}
 		}
-
-		double theta = Math.PI * azimuth / 180.0d;
-		double phi = Math.PI * altitude / 180.0d;
-
-		double cosT = Math.cos( theta ), sinT = Math.sin(theta );
-		double cosP = Math.cos( phi ), sinP = Math.sin( phi );
-
-		double x = cosT * points[index][0] + sinT * points[index][2];
-		double y = -sinT * sinP * points[index][0] + cosP * points[index][1] + cosT * sinP * points[index][2];
-
-		// fix depth
-		double z = cosT * cosP * points[index][2] - sinT * cosP * points[index][0] - sinP * points[index][1];
-		x *= 3.0d / ( z + 3.0d + 5.0d + 0.5 );
-		y *= 3.0d / ( z + 3.0d + 5.0d + 0.5 );
-
-		double scale = Options.width / (3.0f + 0.5f * Math.cos(size / 180f * Math.PI));
-		//double scale = Options.width / (3.0f + -1f * ((float)(Options.s.ElapsedMilliseconds % Options.beatTimeMs)/(float)Options.beatTimeMs));
-		point[0] = (int) ( Options.width / 2.0f + scale * x );
-		point[1] = (int) ( Options.height / 2.0f - scale * y );
-
-		return point;
+		init(xs, ys, TURN);
 	}
 
 	@Override
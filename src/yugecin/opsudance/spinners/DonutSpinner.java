@@ -21,29 +21,22 @@ import itdelatrisu.opsu.Options;
 
 public class DonutSpinner extends Spinner {
 
-	private int ang = 0;
-
-	private double[] point = new double[2];
+	/** 142 steps of 15 radians are (almost exactly) 339 full turns */
+	private static final int POINTS = 142;
 
 	@Override
 	public void init()
 	{
-		ang = 0;
-	}
-
-	@Override
-	public double[] getPoint()
-	{
-		if (waitForDelay()) {
-			ang += 15;
-		}
-
+		double[][] points = new double[POINTS][];
 		double rad = Options.width / 4.0f;
-
-		point[0] = Options.width / 2.0f + rad * Math.sin(ang);
-		point[1] = Options.height / 2.0f - rad * Math.cos(ang);
-
-		return point;
+		for (int i = 0; i < POINTS; i++) {
+			int ang = i * 15;
+			points[i] = new double[] {
+				Options.width / 2.0f + rad * Math.sin(ang),
+				Options.height / 2.0f - rad * Math.cos(ang)
+			};
+		}
+		init(points);
 	}
 
 	@Override
@@ -17,35 +17,11 @@
  */
 package yugecin.opsudance.spinners;
 
-import itdelatrisu.opsu.Options;
-
-public class FivePointStarApproachSpinner extends Spinner {
-
-	final double angleIncRads = Math.PI * 36d / 180d;
-	double ang;
-	final double[] point = new double[2];
-	boolean odd;
-
-	@Override
-	public void init() {
-		ang = -Math.PI / 2d;
-		odd = true;
-	}
+public class FivePointStarApproachSpinner extends FivePointStarSpinner {
 
 	@Override
-	public double[] getPoint() {
-		if (waitForDelay()) {
-			ang += angleIncRads;
-			odd = !odd;
-		}
-
-		double rad = Options.width / 4.0f * (1d - Spinner.PROGRESS);
-		if (!odd) {
-			rad /= 3d;
-		}
-		point[0] = Options.width / 2d + Math.cos(ang) * rad;
-		point[1] = Options.height / 2d + Math.sin(ang) * rad;
-		return point;
+	protected double getScale(double progress) {
+		return 1d - progress;
 	}
 
 	@Override
@@ -21,34 +21,30 @@ import itdelatrisu.opsu.Options;
 
 public class HalfCircleSpinner extends Spinner {
 
-	private int ang = 0;
-	private double[] point = new double[2];
-	private int skipang = 180;
+	/** the first 2 points are an intro, after that every half circle starts 1 degree earlier: 360 * 14 points */
+	private static final int INTRO = 2;
+	private static final int POINTS = INTRO + 360 * 14;
 
 	@Override
 	public void init()
 	{
-		ang = 0;
-		skipang = 180;
-	}
-
-	@Override
-	public double[] getPoint()
-	{
-		if (waitForDelay()) {
-			ang += 15;
+		double[] xs = new double[POINTS];
+		double[] ys = new double[POINTS];
+		int ang = 0;
+		int skipang = 180;
+		for (int i = 0; i < POINTS; i++) {
+			if (i > 0) {
+				ang += 15;
+			}
+			if( ang > skipang - 160 )
+			{
+				ang = skipang;
+				skipang += 359;
+			}
+			xs[i] = Options.width / 2.0d + Options.height / 2 * 0.8d * Math.cos(ang/180d*Math.PI);
+			ys[i] = Options.height / 2.0d + Options.height / 2 * 0.8d * Math.sin(ang/180d*Math.PI);
 		}
-
-		if( ang > skipang - 160 )
-		{
-			ang = skipang;
-			skipang += 359;
-		}
-
-		point[0] = Options.width / 2.0d + Options.height / 2 * 0.8d * Math.cos(ang/180d*Math.PI);
-		point[1] = Options.height / 2.0d + Options.height / 2 * 0.8d * Math.sin(ang/180d*Math.PI);
-
-		return point;
+		init(xs, ys, INTRO);
 	}
 
 	@Override
@@ -21,33 +21,20 @@ import itdelatrisu.opsu.Options;
 
 public class LessThanThreeSpinner extends Spinner {
 
-	private int angle = 0;
-
 	@Override
 	public void init()
 	{
-
-	}
-
-	@Override
-	public double[] getPoint()
-	{
-		if (waitForDelay()) {
-			angle += 18;
+		// 0 to 360 degrees, inclusive
+		double[][] points = new double[21][];
+		for (int i = 0; i < points.length; i++) {
+			double theta = i * 18 / 180d * Math.PI;
+			double r = 2 - 2 * Math.sin( theta ) + Math.sin( theta ) * Math.sqrt( Math.abs( Math.cos( theta ) ) ) / ( Math.sin( theta ) + 1.4 );
+			points[i] = new double[] {
+				Options.width / 2d + Math.cos( theta ) * r * 100,
+				Options.height / 2d - ( Math.sin( theta ) * r * 100 + 100 )
+			};
 		}
-		if( angle > 360 ) angle = 0;
-		double theta = angle / 180d * Math.PI;
-		double[] pos = new double[] {
-			Options.width / 2d,
-			Options.height / 2d
-		};
-
-		double r = 2 - 2 * Math.sin( theta ) + Math.sin( theta ) * Math.sqrt( Math.abs( Math.cos( theta ) ) ) / ( Math.sin( theta ) + 1.4 );
-
-		pos[0] += Math.cos( theta ) * r * 100;
-		pos[1] -= Math.sin( theta ) * r * 100 + 100;
-
-		return pos;
+		init(points);
 	}
 
 	@Override
@@ -21,61 +21,28 @@ import itdelatrisu.opsu.Options;
 
 public class RektCircleSpinner extends Spinner {
 
-	private double[] point;
-	private int index;
-	private int pos;
-	private double size;
-	private int delay = 0;
+	private static final int INC = 50;
 
 	@Override
 	public void init()
 	{
-		index = 0;
-		size = Options.height * 0.8d;
-		point = new double[2];
-	}
-
-	@Override
-	public double[] getPoint()
-	{
-		if (!waitForDelay()) {
-			return point;
+		double size = Options.height * 0.8d;
+		// one round of 4 points per pos, the first round (pos 0) is not repeated
+		int rounds = (int) (size / INC) + 1;
+		double[] xs = new double[rounds * 4];
+		double[] ys = new double[rounds * 4];
+		int i = 0;
+		for (int pos = 0; pos <= size; pos += INC) {
+			xs[i] = Options.width / 2d + size / 2d - pos;
+			ys[i++] = Options.height / 2d - size / 2d;
+			xs[i] = Options.width / 2 - size / 2;
+			ys[i++] = Options.height / 2 - size / 2 + pos;
+			xs[i] = Options.width / 2 - size / 2 + pos;
+			ys[i++] = Options.height / 2 + size / 2;
+			xs[i] = Options.width / 2 + size / 2;
+			ys[i++] = Options.height / 2 + size / 2 - pos;
 		}
-		delay = 0;
-
-		final int INC = 50;
-
-		if( index == 0 )
-		{
-			point[0] = Options.width / 2d + size / 2d - pos;
-			point[1] = Options.height / 2d - size / 2d;
-			index++;
-		}
-		else if( index == 1 )
-		{
-			point[0] = Options.width / 2 - size / 2;
-			point[1] = Options.height / 2 - size / 2 + pos;
-			index++;
-		}
-		else if( index == 2 )
-		{
-			point[0] = Options.width / 2 - size / 2 + pos;
-			point[1] = Options.height / 2 + size / 2;
-			index++;
-		}
-		else if( index == 3 )
-		{
-			point[0] = Options.width / 2 + size / 2;
-			point[1] = Options.height / 2 + size / 2 - pos;
-			pos += INC;
-			if( pos > size )
-			{
-				pos = INC;
-			}
-			index = 0;
-		}
-
-		return point;
+		init(xs, ys, 4);
 	}
 
 	@Override
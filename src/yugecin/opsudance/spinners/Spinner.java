@@ -17,39 +17,91 @@
  */
 package yugecin.opsudance.spinners;
 
+import itdelatrisu.opsu.Options;
+
+/**
+ * A spinner is a loop of points that is walked through at one point per delay ms.
+ * The loop is computed once in {@link #init()}, after that the position is a pure function of
+ * the time since the start of the spinner, so it does not depend on the frame rate.
+ */
 public abstract class Spinner {
 
-	private double[][] points;
+	/** shortest time per point in ms, about one frame at 60fps (a delay of 0 used to mean one point per frame) */
+	public static final int MIN_DELAY = 16;
+
+	/** points as offsets from the center of the screen */
+	private double[] xs;
+	private double[] ys;
 	private int length;
-	private int index;
-	private static int delay;
-	public static int DELAY = 3;
-	public static double PROGRESS;
+	/** index the loop continues at after the last point */
+	private int loopStart;
+
+	private final double[] point = new double[2];
 
 	public abstract void init();
 
 	protected final void init(double[][] points) {
-		this.points = points;
-		this.length = points.length;
+		double[] xs = new double[points.length];
+		double[] ys = new double[points.length];
+		for (int i = 0; i < points.length; i++) {
+			xs[i] = points[i][0];
+			ys[i] = points[i][1];
+		}
+		init(xs, ys, 0);
 	}
 
-	public double[] getPoint() {
-		if (waitForDelay()) {
-			index = ++index % length;
+	/**
+	 * @param xs x coordinates of the points, on screen
+	 * @param ys y coordinates of the points, on screen
+	 * @param loopStart index the loop continues at after the last point (0 unless the first points are an intro)
+	 */
+	protected final void init(double[] xs, double[] ys, int loopStart) {
+		double midx = Options.width / 2d;
+		double midy = Options.height / 2d;
+		for (int i = 0; i < xs.length; i++) {
+			xs[i] -= midx;
+			ys[i] -= midy;
 		}
-		return points[index];
+		this.xs = xs;
+		this.ys = ys;
+		this.length = xs.length;
+		this.loopStart = loopStart;
 	}
 
-	public boolean waitForDelay() {
-		if (delay >= DELAY) {
-			delay = 0;
-			return true;
+	/**
+	 * @param time time since the start of the spinner in ms
+	 * @param delay time per point in ms, at least {@link #MIN_DELAY} is used
+	 * @param progress how far the spinner is, from 0 to 1
+	 * @return the point, the returned array is reused by the next call
+	 */
+	public double[] getPoint(int time, int delay, double progress) {
+		delay = Math.max(delay, MIN_DELAY);
+		if (time < 0) {
+			time = 0;
 		}
-		return false;
+		int step = time / delay;
+		double t = (double) (time - step * delay) / delay;
+		int a = wrap(step);
+		int b = wrap(step + 1);
+		double scale = getScale(progress);
+		point[0] = Options.width / 2d + (xs[a] + (xs[b] - xs[a]) * t) * scale;
+		point[1] = Options.height / 2d + (ys[a] + (ys[b] - ys[a]) * t) * scale;
+		return point;
+	}
+
+	/**
+	 * @param progress how far the spinner is, from 0 to 1
+	 * @return factor the distance to the center of the screen is multiplied by
+	 */
+	protected double getScale(double progress) {
+		return 1d;
 	}
 
-	public static void update(int delta) {
-		delay += delta;
+	private int wrap(int step) {
+		if (step < length) {
+			return step;
+		}
+		return loopStart + (step - loopStart) % (length - loopStart);
 	}
 
 }
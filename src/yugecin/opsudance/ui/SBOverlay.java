@@ -17,11 +17,14 @@
  */
 package yugecin.opsudance.ui;
 
+import itdelatrisu.opsu.ErrorHandler;
 import itdelatrisu.opsu.Options;
 import itdelatrisu.opsu.audio.MusicController;
+import itdelatrisu.opsu.beatmap.Beatmap;
 import itdelatrisu.opsu.objects.GameObject;
 import itdelatrisu.opsu.states.Game;
 import itdelatrisu.opsu.ui.Fonts;
+import itdelatrisu.opsu.ui.UI;
 import org.newdawn.slick.Color;
 import org.newdawn.slick.GameContainer;
 import org.newdawn.slick.Graphics;
@@ -29,11 +32,11 @@ import org.newdawn.slick.Input;
 import org.newdawn.slick.state.StateBasedGame;
 import yugecin.opsudance.ObjectColorOverrides;
 
-import java.util.ArrayList;
+import java.io.File;
+import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
 
-@SuppressWarnings("unchecked")
 public class SBOverlay {
 
 	public static boolean isActive = false;
@@ -46,7 +49,7 @@ public class SBOverlay {
 
 	private int speed;
 	private GameObject[] gameObjects;
-	private HashMap[] optionsMap;
+	private final SBTimeline timeline;
 	private HashMap<Options.GameOption, String> initialOptions;
 
 	private int index;
@@ -58,9 +61,13 @@ public class SBOverlay {
 		this.game = game;
 		options = new OptionsOverlay(this);
 		initialOptions = new HashMap<>();
+		timeline = new SBTimeline();
 	}
 
+	private Input input;
+
 	public void init(GameContainer container, Input input, int width, int height) {
+		this.input = input;
 		this.width = width;
 		this.height = height;
 		speed = 10;
@@ -78,11 +85,12 @@ public class SBOverlay {
 		Fonts.SMALL.drawString(10, height - 50 - lh, "Menu: N", Color.cyan);
 		Fonts.SMALL.drawString(10, height - 50 - lh * 2, "HIDE: H", Color.cyan);
 		Fonts.SMALL.drawString(10, height - 50 - lh * 3, "obj: J " + index + " K", Color.cyan);
+		Fonts.SMALL.drawString(10, height - 50 - lh * 4, "save SB: shift+s, load SB: shift+l", Color.cyan);
 		g.setColor(Color.red);
-		if (index < optionsMap.length && optionsMap[index] != null) {
+		Map<Options.GameOption, String> changes = timeline.getChanges(index);
+		if (changes != null) {
 			int i = 0;
-			for (Object o : optionsMap[index].entrySet()) {
-				Map.Entry<Options.GameOption, String> option = (Map.Entry<Options.GameOption, String>) o;
+			for (Map.Entry<Options.GameOption, String> option : changes.entrySet()) {
 				Fonts.SMALL.drawString(10, 50 + i * lh, option.getKey().getName(), Color.cyan);
 				Fonts.SMALL.drawString(250, 50 + i * lh, option.getKey().getValueString(), Color.cyan);
 				g.fillRect(0, 50 + i * lh + lh / 4, 10, 10);
@@ -148,6 +156,12 @@ public class SBOverlay {
 			index++;
 			setMusicPosition();
 			updateIndex(index);
+		} else if (key == Input.KEY_S && isShiftDown()) {
+			saveStoryboard();
+			return true;
+		} else if (key == Input.KEY_L && isShiftDown()) {
+			loadStoryboard();
+			return true;
 		} else if (key == Input.KEY_ESCAPE && menu) {
 			menu = false;
 			if (speed != 0) {
@@ -158,17 +172,62 @@ public class SBOverlay {
 		return false;
 	}
 
+	private boolean isShiftDown() {
+		return input.isKeyDown(Input.KEY_LSHIFT) || input.isKeyDown(Input.KEY_RSHIFT);
+	}
+
 	private void goBackOneSBIndex() {
-		if (index + 1 < optionsMap.length && optionsMap[index + 1] != null) {
-			// new options on previous index, so to revert then we have to reload them all to this point..
+		if (timeline.hasChanges(index + 1)) {
+			// new options on previous index, so to revert then we have to reload the state at this point..
 			reloadSBsettingsToIndex(index);
 		}
 	}
 
-	private void reloadSBsettingsToIndex(final int index) {
-		for (int i = 0; i <= index; i++) {
-			updateIndex(i);
+	public void reloadSBsettingsToIndex(final int index) {
+		this.index = index;
+		for (Map.Entry<Options.GameOption, String> option : timeline.getStateAt(index).entrySet()) {
+			option.getKey().read(option.getValue());
+			readOption(option.getKey());
+		}
+	}
+
+	private File getStoryboardFile() {
+		Beatmap beatmap = MusicController.getBeatmap();
+		if (beatmap == null) {
+			return null;
+		}
+		String name = beatmap.md5Hash != null ? beatmap.md5Hash : beatmap.getFile().getName();
+		return new File(Options.STORYBOARD_DIR, name + ".sbt");
+	}
+
+	private void saveStoryboard() {
+		File file = getStoryboardFile();
+		if (file == null) {
+			return;
+		}
+		try {
+			timeline.write(file, gameObjects.length);
+			UI.sendBarNotification("Storyboard saved.");
+		} catch (IOException e) {
+			ErrorHandler.error("Failed to save storyboard.", e, false);
+		}
+	}
+
+	private void loadStoryboard() {
+		File file = getStoryboardFile();
+		if (file == null || !file.isFile()) {
+			UI.sendBarNotification("No saved storyboard for this beatmap.");
+			return;
+		}
+		try {
+			timeline.read(file, gameObjects.length);
+		} catch (IOException e) {
+			ErrorHandler.error("Failed to load storyboard.", e, false);
+			return;
 		}
+		reloadSBsettingsToIndex(index);
+		game.invalidateDanceTrack();
+		UI.sendBarNotification("Storyboard loaded.");
 	}
 
 	private void setMusicPosition() {
@@ -183,24 +242,28 @@ public class SBOverlay {
 
 	public void setGameObjects(GameObject[] gameObjects) {
 		if (this.gameObjects.length != gameObjects.length) {
-			optionsMap = new HashMap[gameObjects.length];
+			timeline.clear();
 		}
-		if (optionsMap.length > 0) {
+		if (gameObjects.length > 0) {
 			// copy all current settings in first obj map
-			optionsMap[0] = new HashMap<>();
 			for (Options.GameOption o : options.getSavedOptionList()) {
-				optionsMap[0].put(o, o.write());
+				timeline.put(0, o, o.write());
 			}
 		}
 		this.gameObjects = gameObjects;
 	}
 
 	public void saveOption(Options.GameOption option) {
-		if (optionsMap[index] == null) {
-			optionsMap[index] = new HashMap<>();
-		}
-		optionsMap[index].put(option, option.write());
+		timeline.put(index, option, option.write());
 		readOption(option);
+		game.invalidateDanceTrack();
+	}
+
+	/**
+	 * @return a key describing all the options of all objects, for {@link yugecin.opsudance.DanceTrack}
+	 */
+	public String getOptionsKey() {
+		return timeline.getKey();
 	}
 
 	public boolean mousePressed(int button, int x, int y) {
@@ -213,13 +276,9 @@ public class SBOverlay {
 
 	public void updateIndex(int index) {
 		this.index = index;
-		if (index >= optionsMap.length) {
-			return;
-		}
-		HashMap options = optionsMap[index];
-		if (options != null) {
-			for (Object o : options.entrySet()) {
-				Map.Entry<Options.GameOption, String> next = (Map.Entry<Options.GameOption, String>) o;
+		Map<Options.GameOption, String> changes = timeline.getChanges(index);
+		if (changes != null) {
+			for (Map.Entry<Options.GameOption, String> next : changes.entrySet()) {
 				next.getKey().read(next.getValue());
 				readOption(next.getKey());
 			}
@@ -230,18 +289,17 @@ public class SBOverlay {
 		if (menu) {
 			return options.mouseReleased(button, x, y);
 		}
-		if (x > 10 || index >= optionsMap.length || optionsMap[index] == null) {
+		Map<Options.GameOption, String> changes = timeline.getChanges(index);
+		if (x > 10 || changes == null) {
 			return false;
 		}
 		int lh = Fonts.SMALL.getLineHeight();
 		int ypos = 50 + lh / 4;
-		for (Object o : optionsMap[index].entrySet()) {
+		for (Options.GameOption option : changes.keySet()) {
 			if (y >= ypos && y <= ypos + 10) {
-				optionsMap[index].remove(((Map.Entry<Options.GameOption, String>) o).getKey());
-				if (optionsMap[index].size() == 0) {
-					optionsMap[index] = null;
-				}
+				timeline.remove(index, option);
 				reloadSBsettingsToIndex(index);
+				game.invalidateDanceTrack();
 				return true;
 			}
 			ypos += lh;
@@ -0,0 +1,267 @@
+/*
+ * opsu!dance - fork of opsu! with cursordance auto
+ * Copyright (C) 2016 yugecin
+ *
+ * opsu!dance is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * opsu!dance is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with opsu!dance.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package yugecin.opsudance.ui;
+
+import itdelatrisu.opsu.Options.GameOption;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Storyboard option changes, sorted by object index.
+ * Every {@link #CHECKPOINT_INTERVAL} objects with changes the full state is remembered, so the
+ * options at any object are one checkpoint plus the changes of at most that many objects.
+ */
+public class SBTimeline {
+
+	/** number of objects with changes between two checkpoints */
+	private static final int CHECKPOINT_INTERVAL = 16;
+
+	/** "SBTL" */
+	private static final int MAGIC = 0x5342544C;
+	private static final int VERSION = 1;
+
+	private final TreeMap<Integer, EnumMap<GameOption, String>> changes = new TreeMap<>();
+	private final TreeMap<Integer, EnumMap<GameOption, String>> checkpoints = new TreeMap<>();
+	private boolean checkpointsValid = true;
+
+	/**
+	 * @return the options changed at the object, or null if none
+	 */
+	public Map<GameOption, String> getChanges(int index) {
+		return changes.get(index);
+	}
+
+	public boolean hasChanges(int index) {
+		return changes.containsKey(index);
+	}
+
+	public void put(int index, GameOption option, String value) {
+		EnumMap<GameOption, String> options = changes.get(index);
+		if (options == null) {
+			options = new EnumMap<>(GameOption.class);
+			changes.put(index, options);
+		}
+		options.put(option, value);
+		checkpointsValid = false;
+	}
+
+	public void remove(int index, GameOption option) {
+		EnumMap<GameOption, String> options = changes.get(index);
+		if (options == null) {
+			return;
+		}
+		options.remove(option);
+		if (options.isEmpty()) {
+			changes.remove(index);
+		}
+		checkpointsValid = false;
+	}
+
+	public void clear() {
+		changes.clear();
+		checkpointsValid = false;
+	}
+
+	/**
+	 * @return the value of every option that was set at or before the object
+	 */
+	public Map<GameOption, String> getStateAt(int index) {
+		if (!checkpointsValid) {
+			updateCheckpoints();
+		}
+		EnumMap<GameOption, String> state = new EnumMap<>(GameOption.class);
+		Map.Entry<Integer, EnumMap<GameOption, String>> checkpoint = checkpoints.floorEntry(index);
+		Map<Integer, EnumMap<GameOption, String>> delta;
+		if (checkpoint == null) {
+			delta = changes.headMap(index, true);
+		} else {
+			state.putAll(checkpoint.getValue());
+			delta = changes.subMap(checkpoint.getKey(), false, index, true);
+		}
+		for (EnumMap<GameOption, String> options : delta.values()) {
+			state.putAll(options);
+		}
+		return state;
+	}
+
+	private void updateCheckpoints() {
+		checkpoints.clear();
+		EnumMap<GameOption, String> state = new EnumMap<>(GameOption.class);
+		int count = 0;
+		for (Map.Entry<Integer, EnumMap<GameOption, String>> entry : changes.entrySet()) {
+			state.putAll(entry.getValue());
+			if (++count % CHECKPOINT_INTERVAL == 0) {
+				checkpoints.put(entry.getKey(), new EnumMap<>(state));
+			}
+		}
+		checkpointsValid = true;
+	}
+
+	/**
+	 * @return a key describing all changes
+	 */
+	public String getKey() {
+		StringBuilder key = new StringBuilder();
+		for (Map.Entry<Integer, EnumMap<GameOption, String>> entry : changes.entrySet()) {
+			key.append(entry.getKey()).append('{');
+			for (Map.Entry<GameOption, String> option : entry.getValue().entrySet()) {
+				key.append(option.getKey().name()).append('=').append(option.getValue()).append(';');
+			}
+			key.append('}');
+		}
+		return key.toString();
+	}
+
+	/**
+	 * Writes the changes to a file: a gzipped table of option names, followed by the objects
+	 * with changes as index deltas and (name id, value) pairs.
+	 * @param file the file to write to
+	 * @param objectCount the amount of objects in the beatmap, to check when reading
+	 */
+	public void write(File file, int objectCount) throws IOException {
+		File dir = file.getParentFile();
+		if (dir != null && !dir.isDirectory() && !dir.mkdirs()) {
+			throw new IOException("Failed to create directory " + dir.getAbsolutePath());
+		}
+
+		List<GameOption> names = new ArrayList<>();
+		HashMap<GameOption, Integer> ids = new HashMap<>();
+		for (EnumMap<GameOption, String> options : changes.values()) {
+			for (GameOption option : options.keySet()) {
+				if (!ids.containsKey(option)) {
+					ids.put(option, names.size());
+					names.add(option);
+				}
+			}
+		}
+
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(new FileOutputStream(file))))) {
+			out.writeInt(MAGIC);
+			out.writeByte(VERSION);
+			writeVarInt(out, objectCount);
+			writeVarInt(out, names.size());
+			for (GameOption option : names) {
+				out.writeUTF(option.name());
+			}
+			writeVarInt(out, changes.size());
+			int lastIndex = 0;
+			for (Map.Entry<Integer, EnumMap<GameOption, String>> entry : changes.entrySet()) {
+				writeVarInt(out, entry.getKey() - lastIndex);
+				lastIndex = entry.getKey();
+				writeVarInt(out, entry.getValue().size());
+				for (Map.Entry<GameOption, String> option : entry.getValue().entrySet()) {
+					writeVarInt(out, ids.get(option.getKey()));
+					out.writeUTF(option.getValue());
+				}
+			}
+		}
+	}
+
+	/**
+	 * Replaces the changes with the ones in a file written by {@link #write(File, int)}.
+	 * Options that do not exist anymore are skipped.
+	 * @param file the file to read
+	 * @param objectCount the amount of objects in the beatmap
+	 * @throws IOException if the file could not be read or was made for a different amount of objects
+	 */
+	public void read(File file, int objectCount) throws IOException {
+		TreeMap<Integer, EnumMap<GameOption, String>> changes = new TreeMap<>();
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new GZIPInputStream(new FileInputStream(file))))) {
+			if (in.readInt() != MAGIC) {
+				throw new IOException("Not a storyboard file.");
+			}
+			int version = in.readUnsignedByte();
+			if (version != VERSION) {
+				throw new IOException(String.format("Unsupported storyboard version %d.", version));
+			}
+			int fileObjectCount = readVarInt(in);
+			if (fileObjectCount != objectCount) {
+				throw new IOException(String.format("Storyboard was made for %d objects, this beatmap has %d.", fileObjectCount, objectCount));
+			}
+			GameOption[] names = new GameOption[readVarInt(in)];
+			for (int i = 0; i < names.length; i++) {
+				String name = in.readUTF();
+				try {
+					names[i] = GameOption.valueOf(name);
+				} catch (IllegalArgumentException e) {
+					names[i] = null;
+				}
+			}
+			int index = 0;
+			for (int i = readVarInt(in); i > 0; i--) {
+				index += readVarInt(in);
+				EnumMap<GameOption, String> options = new EnumMap<>(GameOption.class);
+				for (int j = readVarInt(in); j > 0; j--) {
+					int id = readVarInt(in);
+					String value = in.readUTF();
+					if (id >= names.length) {
+						throw new IOException("Corrupt storyboard file.");
+					}
+					if (names[id] != null) {
+						options.put(names[id], value);
+					}
+				}
+				if (!options.isEmpty() && index < objectCount) {
+					changes.put(index, options);
+				}
+			}
+		}
+		this.changes.clear();
+		this.changes.putAll(changes);
+		checkpointsValid = false;
+	}
+
+	private static void writeVarInt(DataOutputStream out, int value) throws IOException {
+		while ((value & ~0x7F) != 0) {
+			out.writeByte((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		out.writeByte(value);
+	}
+
+	private static int readVarInt(DataInputStream in) throws IOException {
+		int value = 0;
+		for (int shift = 0; shift < 32; shift += 7) {
+			int b = in.readUnsignedByte();
+			value |= (b & 0x7F) << shift;
+			if ((b & 0x80) == 0) {
+				if (value < 0) {
+					throw new IOException("Corrupt storyboard file.");
+				}
+				return value;
+			}
+		}
+		throw new IOException("Corrupt storyboard file.");
+	}
+
+}
@@ -0,0 +1,234 @@
+package awlex.ospu.polymover;
+
+import static java.lang.Math.*;
+import static org.junit.Assert.*;
+
+import itdelatrisu.opsu.beatmap.HitObject;
+import itdelatrisu.opsu.objects.DummyObject;
+import itdelatrisu.opsu.objects.GameObject;
+import itdelatrisu.opsu.objects.curves.Vec2f;
+import yugecin.opsudance.movers.LinearMover;
+
+import java.util.Random;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Checks the poly movers against the way they worked before they stopped allocating: the closed
+ * form circumcircle of {@link ArcMover} against the Jama solve it replaced, and {@link LineMover}
+ * against a new {@link LinearMover} on every call.
+ */
+public class PolyMoverTest {
+
+	@BeforeClass
+	public static void init() {
+		HitObject.init(1920, 1080);
+	}
+
+	private static GameObject object(double x, double y, int time) {
+		GameObject o = new DummyObject(new HitObject("0,0," + time + ",1,0"));
+		o.updateStartEndPositions(time);
+		o.start = o.end = new Vec2f((float) x, (float) y);
+		return o;
+	}
+
+	/**
+	 * The ArcMover circle as it was computed with Jama: solve the 3x3 system
+	 * {@code [1 -x -y] [c a b]' = -(x^2 + y^2)} for the three points with
+	 * Matrix.solve, an LU decomposition with partial pivoting (copied below).
+	 */
+	private static class JamaArc {
+		final GameObject p1, middle, p2;
+		final double xm, ym, r, alpha, beta, gamma;
+
+		JamaArc(GameObject p1, GameObject middle, GameObject p2) {
+			this.p1 = p1;
+			this.middle = middle;
+			this.p2 = p2;
+			double[] m = solve(new double[][] {
+				{ 1, -p1.end.x, -p1.end.y },
+				{ 1, -middle.start.x, -middle.start.y },
+				{ 1, -p2.start.x, -p2.start.y }
+			}, new double[] {
+				-(pow(p1.end.x, 2) + pow(p1.end.y, 2)),
+				-(pow(middle.start.x, 2) + pow(middle.start.y, 2)),
+				-(pow(p2.start.x, 2) + pow(p2.start.y, 2))
+			});
+			xm = m[1] * 0.5;
+			ym = m[2] * 0.5;
+			r = sqrt(pow(xm, 2) + pow(ym, 2) - m[0]);
+			alpha = atan2(p1.end.y - ym, p1.end.x - xm);
+			beta = atan2(middle.start.y - ym, middle.start.x - xm);
+			gamma = atan2(p2.start.y - ym, p2.start.x - xm);
+		}
+
+		double[] getPointAt(int time) {
+			double angle;
+			if (time < middle.getTime()) {
+				double percent = ((double) time - p1.getEndTime()) / ((middle.getTime() - p1.getEndTime()));
+				angle = alpha + (beta - alpha) * percent;
+			} else {
+				angle = beta + (gamma - beta) * ((double) time - middle.getTime()) / (p2.getTime() - middle.getTime());
+			}
+			return new double[] { xm + r * cos(angle), ym + r * sin(angle) };
+		}
+
+		/** Jama's LUDecomposition and LUDecomposition.solve, for one column. */
+		static double[] solve(double[][] a, double[] b) {
+			int n = a.length;
+			double[][] lu = new double[n][];
+			for (int i = 0; i < n; i++)
+				lu[i] = a[i].clone();
+			int[] piv = new int[n];
+			for (int i = 0; i < n; i++)
+				piv[i] = i;
+			double[] col = new double[n];
+			for (int j = 0; j < n; j++) {
+				for (int i = 0; i < n; i++)
+					col[i] = lu[i][j];
+				for (int i = 0; i < n; i++) {
+					double[] row = lu[i];
+					int kmax = min(i, j);
+					double s = 0.0;
+					for (int k = 0; k < kmax; k++)
+						s += row[k] * col[k];
+					row[j] = col[i] -= s;
+				}
+				int p = j;
+				for (int i = j + 1; i < n; i++) {
+					if (abs(col[i]) > abs(col[p]))
+						p = i;
+				}
+				if (p != j) {
+					double[] t = lu[p];
+					lu[p] = lu[j];
+					lu[j] = t;
+					int k = piv[p];
+					piv[p] = piv[j];
+					piv[j] = k;
+				}
+				if (lu[j][j] != 0.0) {
+					for (int i = j + 1; i < n; i++)
+						lu[i][j] /= lu[j][j];
+				}
+			}
+			for (int j = 0; j < n; j++) {
+				if (lu[j][j] == 0)
+					throw new RuntimeException("Matrix is singular.");
+			}
+			double[] x = new double[n];
+			for (int i = 0; i < n; i++)
+				x[i] = b[piv[i]];
+			for (int k = 0; k < n; k++) {
+				for (int i = k + 1; i < n; i++)
+					x[i] -= x[k] * lu[i][k];
+			}
+			for (int k = n - 1; k >= 0; k--) {
+				x[k] /= lu[k][k];
+				for (int i = 0; i < k; i++)
+					x[i] -= x[k] * lu[i][k];
+			}
+			return x;
+		}
+	}
+
+	/** Random objects on a 1920x1080 screen, 50 to 500 ms apart. */
+	private static GameObject[] randomObjects(Random random, int count) {
+		GameObject[] objects = new GameObject[count];
+		int time = 0;
+		for (int i = 0; i < count; i++) {
+			objects[i] = object(random.nextInt(1920 * 8) / 8d, random.nextInt(1080 * 8) / 8d, time);
+			time += 50 + random.nextInt(451);
+		}
+		return objects;
+	}
+
+	@Test
+	public void matchesJamaSolve() {
+		Random random = new Random(42);
+		GameObject[] objects = randomObjects(random, 100002);
+		double[] point = new double[2];
+		int arcs = 0;
+		for (int i = 0; i + 2 < objects.length; i++) {
+			GameObject p1 = objects[i], middle = objects[i + 1], p2 = objects[i + 2];
+			if (!ArcMover.canCricleExistBetweenItems(p1, middle, p2))
+				continue;
+			JamaArc expected = new JamaArc(p1, middle, p2);
+			ArcMover arc = new ArcMover(p1, middle, p2);
+			arcs++;
+
+			// the error of both solves grows with the radius (nearly collinear points)
+			double tolerance = 1e-9 * (1 + expected.r);
+			for (int time = p1.getEndTime(); time <= p2.getTime(); time += 7) {
+				double[] e = expected.getPointAt(time);
+				arc.getPointAt(time, point);
+				if (abs(e[0] - point[0]) > tolerance || abs(e[1] - point[1]) > tolerance) {
+					fail(String.format("objects %d at %d ms: jama %f,%f closed form %f,%f (r %f)",
+							i, time, e[0], e[1], point[0], point[1], expected.r));
+				}
+			}
+		}
+		assertTrue(arcs > 99000);
+	}
+
+	@Test
+	public void lineMoverMatchesNewMovers() {
+		GameObject[] objects = randomObjects(new Random(3), 3);
+		LineMover mover = new LineMover(objects, 3);
+		double[] point = new double[2];
+		for (int time = -100; time <= objects[2].getTime() + 100; time++) {
+			// as LineMover did before: a new mover for the second segment on every call
+			GameObject start = objects[0], end = objects[1];
+			if (objects[1].getEndTime() < time) {
+				start = objects[1];
+				end = objects[2];
+			}
+			double[] expected = new LinearMover(start, end, 1).getPointAt(time);
+			mover.getPointAt(time, point);
+			assertEquals(expected[0], point[0], 0);
+			assertEquals(expected[1], point[1], 0);
+		}
+	}
+
+	@Test
+	public void rejectsCollinearPoints() {
+		// Jama threw on these (singular matrix), the factory then used a LineMover
+		assertFalse(ArcMover.canCricleExistBetweenItems(object(0, 0, 0), object(100, 100, 100), object(200, 200, 200)));
+		assertFalse(ArcMover.canCricleExistBetweenItems(object(10, 10, 0), object(10, 10, 100), object(300, 20, 200)));
+		assertFalse(ArcMover.canCricleExistBetweenItems(object(10, 10, 0), object(300, 20, 100), object(10, 10, 200)));
+
+		// nearly collinear: Jama gave a circle with a radius of millions of pixels
+		GameObject p1 = object(100, 500, 0), middle = object(700, 500.0001, 100), p2 = object(1300, 500, 200);
+		assertTrue(new JamaArc(p1, middle, p2).r > 1e6);
+		assertFalse(ArcMover.canCricleExistBetweenItems(p1, middle, p2));
+
+		assertTrue(ArcMover.canCricleExistBetweenItems(object(100, 500, 0), object(700, 520, 100), object(1300, 500, 200)));
+	}
+
+	/**
+	 * Times creating an arc (solving its circle) and getting one point from it, both ways.
+	 * Prints the result, the times are only compared loosely since the test machine may be busy.
+	 */
+	@Test
+	public void benchmark() {
+		GameObject[] objects = randomObjects(new Random(7), 10002);
+		double sink = 0;
+		long jamaTime = Long.MAX_VALUE, closedTime = Long.MAX_VALUE;
+		for (int round = 0; round < 20; round++) {
+			long start = System.nanoTime();
+			for (int i = 0; i + 2 < objects.length; i++)
+				sink += new JamaArc(objects[i], objects[i + 1], objects[i + 2]).getPointAt(0)[0];
+			jamaTime = min(jamaTime, System.nanoTime() - start);
+
+			start = System.nanoTime();
+			for (int i = 0; i + 2 < objects.length; i++)
+				sink += new ArcMover(objects[i], objects[i + 1], objects[i + 2]).getPointAt(0, new double[2])[0];
+			closedTime = min(closedTime, System.nanoTime() - start);
+		}
+		int n = objects.length - 2;
+		System.out.println(String.format("ArcMover: closed form %.1f ns per arc, Jama solve %.1f ns per arc (%s)",
+				(double) closedTime / n, (double) jamaTime / n, sink != 0 ? "ok" : "?"));
+		assertTrue(closedTime < jamaTime * 2);
+	}
+}
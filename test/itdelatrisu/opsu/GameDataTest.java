@@ -0,0 +1,137 @@
+/*
+ * opsu! - an open-source osu! client
+ * Copyright (C) 2014, 2015 Jeffrey Han
+ *
+ * opsu! is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * opsu! is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with opsu!.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package itdelatrisu.opsu;
+
+import static org.junit.Assert.*;
+
+import itdelatrisu.opsu.beatmap.Beatmap;
+import itdelatrisu.opsu.beatmap.BeatmapParser;
+import itdelatrisu.opsu.beatmap.HitObject;
+import itdelatrisu.opsu.objects.GameObject;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import yugecin.opsudance.BenchmarkCorpus;
+import yugecin.opsudance.Dancer;
+import yugecin.opsudance.ObjectColorOverrides;
+
+/**
+ * Checks that judging auto play does not allocate once the hit result and
+ * hit error lists are warmed up, with and without mirrored cursors.
+ */
+public class GameDataTest {
+	private static final int WIDTH = 1024, HEIGHT = 768;
+
+	/** Number of measured plays of the circles. */
+	private static final int ROUNDS = 200;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private GameObject[] gameObjects;
+	private GameData data;
+	private boolean autoWasActive, mirrorWas;
+
+	@Before
+	public void setUp() throws IOException {
+		File file = BenchmarkCorpus.write(folder.newFolder()).get(0);
+		Beatmap beatmap = BeatmapParser.parseFile(file);
+		Options.width = WIDTH;
+		Options.height = HEIGHT;
+		HitObject.init(WIDTH, HEIGHT);
+		data = new GameData(WIDTH, HEIGHT);
+		GameJudge.initHeadless(beatmap, data);
+		ObjectColorOverrides.comboColors = beatmap.getComboColors();
+		ObjectColorOverrides.reset(beatmap.beatmapID);
+		gameObjects = GameJudge.createGameObjects(beatmap, null, data);
+
+		autoWasActive = GameMod.AUTO.isActive();
+		if (!autoWasActive)
+			GameMod.AUTO.toggle(false);
+		mirrorWas = Dancer.mirror;
+	}
+
+	@After
+	public void tearDown() {
+		if (GameMod.AUTO.isActive() != autoWasActive)
+			GameMod.AUTO.toggle(false);
+		Dancer.mirror = mirrorWas;
+	}
+
+	/** Returns the bytes allocated by this thread so far. */
+	private static long allocatedBytes() {
+		return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean()).getCurrentThreadAllocatedBytes();
+	}
+
+	/**
+	 * Lets auto play hit every circle, removing expired results as the game
+	 * does every frame.
+	 * @return the number of hits
+	 */
+	private int play() {
+		int hits = 0, time = 0;
+		for (GameObject o : gameObjects) {
+			if (!o.isCircle())
+				continue;
+			time = o.getTime();
+			data.removeExpiredResults(time);
+			if (o.update(false, 16, 0, 0, false, time))
+				hits++;
+		}
+		data.removeExpiredResults(time + GameData.HITRESULT_TIME);
+		assertEquals(0, data.getHitResultListSize());
+		return hits;
+	}
+
+	/** Plays the circles a few times, then measures the bytes allocated per hit. */
+	private double bytesPerHit() {
+		for (int i = 0; i < 20; i++)
+			play();
+		int hits = 0;
+		long start = allocatedBytes();
+		for (int i = 0; i < ROUNDS; i++)
+			hits += play();
+		long bytes = allocatedBytes() - start;
+		assertTrue(hits > 0);
+		return (double) bytes / hits;
+	}
+
+	@Test
+	public void normalPlayDoesNotAllocate() {
+		Dancer.mirror = false;
+		double bytes = bytesPerHit();
+		System.out.println(String.format("GameData: %.2f bytes per hit", bytes));
+		assertTrue(bytes < 1);
+	}
+
+	@Test
+	public void mirroredPlayDoesNotAllocate() {
+		Dancer.mirror = true;
+		double bytes = bytesPerHit();
+		System.out.println(String.format("GameData: %.2f bytes per hit (mirrored)", bytes));
+		assertTrue(bytes < 1);
+	}
+}
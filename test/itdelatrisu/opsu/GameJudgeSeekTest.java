@@ -0,0 +1,258 @@
+/*
+ * opsu! - an open-source osu! client
+ * Copyright (C) 2014, 2015 Jeffrey Han
+ *
+ * opsu! is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * opsu! is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with opsu!.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package itdelatrisu.opsu;
+
+import static org.junit.Assert.*;
+
+import itdelatrisu.opsu.beatmap.Beatmap;
+import itdelatrisu.opsu.beatmap.BeatmapParser;
+import itdelatrisu.opsu.beatmap.HitObject;
+import itdelatrisu.opsu.objects.GameObject;
+import itdelatrisu.opsu.objects.curves.Vec2f;
+import itdelatrisu.opsu.replay.Replay;
+import itdelatrisu.opsu.replay.ReplayFrame;
+import itdelatrisu.opsu.replay.ReplayFrames;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import yugecin.opsudance.BenchmarkCorpus;
+import yugecin.opsudance.ObjectColorOverrides;
+
+/**
+ * Seeks a replay through saved judge states, like the game does, and checks
+ * that the scoring matches playing the replay from the start.
+ */
+public class GameJudgeSeekTest {
+	private static final int WIDTH = 1024, HEIGHT = 768;
+
+	/** Minimum time between saved states (like the game's replay checkpoints). */
+	private static final int STATE_INTERVAL = 2000;
+
+	/** Number of seeks per replay. */
+	private static final int SEEKS = 300;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	/** A saved state and the index of the next frame to run. */
+	private static class Checkpoint {
+		final int frameIndex;
+		final GameJudge.State state;
+
+		Checkpoint(int frameIndex, GameJudge.State state) {
+			this.frameIndex = frameIndex;
+			this.state = state;
+		}
+	}
+
+	private Beatmap beatmap;
+	private GameObject[] gameObjects;
+	private GameData data;
+	private GameJudge judge;
+
+	/** Loads a beatmap and creates a judge for it. */
+	private void load(File file) {
+		beatmap = BeatmapParser.parseFile(file);
+		Options.width = WIDTH;
+		Options.height = HEIGHT;
+		HitObject.init(WIDTH, HEIGHT);
+		data = new GameData(WIDTH, HEIGHT);
+		GameJudge.initHeadless(beatmap, data);
+		ObjectColorOverrides.comboColors = beatmap.getComboColors();
+		ObjectColorOverrides.reset(beatmap.beatmapID);
+		gameObjects = GameJudge.createGameObjects(beatmap, null, data);
+		judge = new GameJudge(data);
+		judge.setBeatmap(beatmap, gameObjects);
+		judge.reset();
+	}
+
+	/**
+	 * Makes up a play: hits with random timing errors, some misses, early
+	 * slider releases and a shaky cursor, in frames of 10 to 20 ms.
+	 */
+	private ReplayFrames play(long seed) {
+		Random random = new Random(seed);
+
+		// key events: time, keys, pressed
+		List<int[]> events = new ArrayList<int[]>();
+		for (int i = 0; i < gameObjects.length; i++) {
+			if (random.nextInt(20) == 0)
+				continue;  // no press
+			int key = (i % 2 == 0) ? ReplayFrame.KEY_K1 : ReplayFrame.KEY_K2;
+			GameObject o = gameObjects[i];
+			int press, release;
+			if (o.isCircle()) {
+				press = o.getTime() + random.nextInt(161) - 80;
+				release = press + 20 + random.nextInt(60);
+			} else {
+				press = o.getTime() + random.nextInt(81) - 40;
+				release = (random.nextInt(5) == 0) ? (o.getTime() + o.getEndTime()) / 2 : o.getEndTime() + 10;
+			}
+			events.add(new int[] { press, key, 1 });
+			events.add(new int[] { Math.max(release, press + 1), key, 0 });
+		}
+
+		// frame times: regular frames and one on every key event
+		int endTime = gameObjects[gameObjects.length - 1].getEndTime() + 1000;
+		List<Integer> times = new ArrayList<Integer>();
+		for (int time = 16; time < endTime; time += 10 + random.nextInt(11))
+			times.add(time);
+		for (int[] e : events)
+			times.add(e[0]);
+		Integer[] sorted = times.toArray(new Integer[times.size()]);
+		Arrays.sort(sorted);
+
+		ReplayFrames frames = new ReplayFrames();
+		int lastTime = 0, objectIndex = 0;
+		boolean aimOff = false;
+		for (int t : sorted) {
+			if (t <= lastTime)
+				continue;
+			int keys = ReplayFrame.KEY_NONE;
+			for (int[] e : events) {
+				if (e[0] <= t) {
+					if (e[2] == 1)
+						keys |= e[1];
+					else
+						keys &= ~e[1];
+				}
+			}
+			while (objectIndex < gameObjects.length - 1 && gameObjects[objectIndex].getEndTime() < t) {
+				objectIndex++;
+				aimOff = random.nextInt(25) == 0;
+			}
+			Vec2f p = gameObjects[objectIndex].getPointAt(t);
+			float x = HitObject.unscaleX(p.x) + random.nextInt(9) - 4 + (aimOff ? 80 : 0);
+			float y = HitObject.unscaleY(p.y) + random.nextInt(9) - 4;
+			frames.add(t - lastTime, t, x, y, keys);
+			lastTime = t;
+		}
+		return frames;
+	}
+
+	/** Writes the frames to a replay file and loads them back. */
+	private ReplayFrames roundTrip(ReplayFrames frames) throws IOException {
+		Replay replay = new Replay();
+		replay.mode = Beatmap.MODE_OSU;
+		replay.beatmapHash = "";
+		replay.playerName = "test";
+		replay.replayHash = "";
+		replay.timestamp = new Date();
+		replay.frames = frames;
+		File file = folder.newFile();
+		replay.write(file);
+
+		Replay loaded = new Replay(file);
+		loaded.load();
+		assertEquals(frames.size(), loaded.frames.size());
+		return loaded.frames;
+	}
+
+	/** Runs a replay frame. */
+	private void run(ReplayFrames frames, int i) {
+		judge.runFrame(frames.getTimeDiff(i), frames.getTime(i), frames.getScaledX(i), frames.getScaledY(i), frames.getKeys(i));
+	}
+
+	/** Returns the scoring state compared after each frame. */
+	private String snapshot() {
+		StringBuilder sb = new StringBuilder();
+		sb.append("object ").append(judge.getObjectIndex());
+		sb.append(", score ").append(data.getScore());
+		sb.append(", combo ").append(data.getComboStreak()).append('/').append(data.getComboMax());
+		sb.append(", health ").append(data.getHealth());
+		sb.append(", hits");
+		for (int result = 0; result < GameData.HIT_MAX; result++)
+			sb.append(' ').append(data.getHitResultCount(result));
+		return sb.toString();
+	}
+
+	/**
+	 * Plays the replay once from the start, saving states like the game does,
+	 * then seeks to random frames (backwards and forwards, from wherever the
+	 * last seek ended) and compares the scoring with the first play.
+	 */
+	private void checkSeeking(File beatmapFile, long seed) throws IOException {
+		load(beatmapFile);
+		ReplayFrames frames = roundTrip(play(seed));
+
+		// play from the start
+		String[] expected = new String[frames.size()];
+		List<Checkpoint> checkpoints = new ArrayList<Checkpoint>();
+		int lastCheckpointTime = Integer.MIN_VALUE;
+		for (int i = 0; i < frames.size(); i++) {
+			run(frames, i);
+			expected[i] = snapshot();
+			int time = frames.getTime(i);
+			if (time >= lastCheckpointTime + STATE_INTERVAL && judge.canSaveState(time)) {
+				checkpoints.add(new Checkpoint(i + 1, judge.saveState()));
+				lastCheckpointTime = time;
+			}
+		}
+		assertTrue(judge.isComplete());
+		assertFalse(checkpoints.isEmpty());
+
+		// seek: restore the last state at or before the target, or start over
+		Random random = new Random(seed);
+		int next = frames.size();
+		for (int n = 0; n < SEEKS; n++) {
+			int target = random.nextInt(frames.size());
+			Checkpoint c = null;
+			for (Checkpoint checkpoint : checkpoints) {
+				if (checkpoint.frameIndex <= target + 1)
+					c = checkpoint;
+			}
+			if (next > target + 1 || (c != null && c.frameIndex > next)) {
+				if (c != null) {
+					judge.restoreState(c.state);
+					next = c.frameIndex;
+				} else {
+					judge.reset();
+					data.clear();
+					next = 0;
+				}
+			}
+			for (; next <= target; next++)
+				run(frames, next);
+			assertEquals(String.format("seek %d to frame %d (time %d)", n, target, frames.getTime(target)),
+					expected[target], snapshot());
+		}
+
+		// and play to the end from the last seek
+		for (; next < frames.size(); next++)
+			run(frames, next);
+		assertEquals(expected[frames.size() - 1], snapshot());
+	}
+
+	@Test
+	public void seeksLikeLinearPlay() throws IOException {
+		List<File> corpus = BenchmarkCorpus.write(folder.newFolder());
+		long seed = 1;
+		for (File file : corpus)
+			checkSeeking(file, seed++);
+	}
+}
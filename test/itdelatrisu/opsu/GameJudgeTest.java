@@ -0,0 +1,218 @@
+/*
+ * opsu! - an open-source osu! client
+ * Copyright (C) 2014, 2015 Jeffrey Han
+ *
+ * opsu! is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * opsu! is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with opsu!.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package itdelatrisu.opsu;
+
+import static org.junit.Assert.*;
+
+import itdelatrisu.opsu.beatmap.Beatmap;
+import itdelatrisu.opsu.beatmap.BeatmapParser;
+import itdelatrisu.opsu.beatmap.HitObject;
+import itdelatrisu.opsu.objects.GameObject;
+import itdelatrisu.opsu.objects.curves.Vec2f;
+import itdelatrisu.opsu.replay.ReplayFrame;
+import itdelatrisu.opsu.ui.InputEventQueue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import yugecin.opsudance.ObjectColorOverrides;
+
+public class GameJudgeTest {
+	private static final int WIDTH = 1024, HEIGHT = 768;
+
+	/** OD 5: 300 within 49ms, 100 within 99ms, 50 within 149ms. */
+	private static final String BEATMAP =
+		"osu file format v14\n\n" +
+		"[General]\nAudioFilename: audio.mp3\nAudioLeadIn: 0\nPreviewTime: -1\nCountdown: 0\nSampleSet: Normal\nStackLeniency: 0.7\nMode: 0\n\n" +
+		"[Metadata]\nTitle:judge\nArtist:test\nCreator:test\nVersion:judge\n\n" +
+		"[Difficulty]\nHPDrainRate:5\nCircleSize:4\nOverallDifficulty:5\nApproachRate:9\nSliderMultiplier:1.4\nSliderTickRate:1\n\n" +
+		"[Events]\n\n" +
+		"[TimingPoints]\n0,500,4,1,0,60,1,0\n\n" +
+		"[Colours]\nCombo1 : 255,192,0\nCombo2 : 0,202,0\n\n" +
+		"[HitObjects]\n" +
+		"100,100,1000,5,0\n" +
+		"200,100,1500,1,0\n" +
+		"300,100,2000,1,0\n" +
+		"400,100,2500,1,0\n" +
+		"100,300,3000,6,0,L|240:300,1,140\n";
+
+	/** Track positions are milliseconds since the event time origin. */
+	private static final GameJudge.TrackClock CLOCK = new GameJudge.TrackClock() {
+		@Override
+		public int getPositionAt(long time) { return (int) (time / 1000000L); }
+	};
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private Beatmap beatmap;
+	private GameObject[] gameObjects;
+	private GameData data;
+	private GameJudge judge;
+	private InputEventQueue events;
+
+	/** Game key events that have not happened yet: pressed, keys, x, y, time. */
+	private List<int[]> pending;
+
+	@Before
+	public void setUp() throws IOException {
+		File dir = folder.newFolder();
+		new FileOutputStream(new File(dir, "audio.mp3")).close();
+		File file = new File(dir, "judge.osu");
+		try (Writer writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8")) {
+			writer.write(BEATMAP);
+		}
+		beatmap = BeatmapParser.parseFile(file);
+
+		Options.width = WIDTH;
+		Options.height = HEIGHT;
+		HitObject.init(WIDTH, HEIGHT);
+		data = new GameData(WIDTH, HEIGHT);
+		GameJudge.initHeadless(beatmap, data);
+		ObjectColorOverrides.comboColors = beatmap.getComboColors();
+		ObjectColorOverrides.reset(beatmap.beatmapID);
+		gameObjects = GameJudge.createGameObjects(beatmap, null, data);
+		judge = new GameJudge(data);
+		judge.setBeatmap(beatmap, gameObjects);
+		judge.reset();
+		events = new InputEventQueue();
+		pending = new ArrayList<int[]>();
+	}
+
+	/** Adds a game key event at a track position, on the position of an object. */
+	private void event(boolean pressed, int keys, int time, int objectIndex) {
+		Vec2f p = gameObjects[objectIndex].getPointAt(time);
+		pending.add(new int[] { pressed ? 1 : 0, keys, (int) p.x, (int) p.y, time });
+	}
+
+	/** Queues the events that happened up to a track position, and lets the judge handle them. */
+	private void processEvents(int trackPosition) {
+		for (Iterator<int[]> iter = pending.iterator(); iter.hasNext(); ) {
+			int[] e = iter.next();
+			if (e[4] <= trackPosition) {
+				long time = e[4] * 1000000L;
+				events.add(e[0] == 1, e[1], e[2], e[3], time, time);
+				iter.remove();
+			}
+		}
+		judge.processInputEvents(events, CLOCK, trackPosition);
+		assertEquals(0, events.size());
+	}
+
+	/** Runs frames up to a track position, the cursor following the current object. */
+	private void runFrames(int from, int to, int frameTime) {
+		for (int time = from; time <= to; time += frameTime) {
+			processEvents(time);
+			Vec2f p = gameObjects[Math.min(judge.getObjectIndex(), gameObjects.length - 1)].getPointAt(time);
+			judge.addFrameAndRun((int) p.x, (int) p.y, judge.getKeys(), time);
+		}
+	}
+
+	@Test
+	public void judgesEventsAtTheirOwnTime() {
+		event(true, ReplayFrame.KEY_K1, 1000, 0);     // on time: 300
+		event(false, ReplayFrame.KEY_K1, 1040, 0);
+		event(true, ReplayFrame.KEY_K2, 1570, 1);     // 70ms late: 100
+		event(false, ReplayFrame.KEY_K2, 1600, 1);
+
+		// one long frame: the presses are still judged at the time they happened
+		processEvents(1990);
+		assertEquals(2, judge.getObjectIndex());
+		assertEquals(1, data.getHitResultCount(GameData.HIT_300));
+		assertEquals(1, data.getHitResultCount(GameData.HIT_100));
+		assertEquals(2, data.getComboStreak());
+		assertEquals(1600, judge.getLastFrameTime());
+	}
+
+	@Test
+	public void clampsEventsToTheFrames() {
+		runFrames(0, 1392, 16);
+
+		// happened before the last frame was run (e.g. a late input thread): judged at the last frame
+		event(true, ReplayFrame.KEY_K1, 1300, 1);
+		processEvents(1460);
+		assertEquals(1392, judge.getLastFrameTime());
+
+		// clock ahead of the track position: judged at the track position
+		event(false, ReplayFrame.KEY_K1, 1600, 1);
+		long time = 1600 * 1000000L;
+		int[] e = pending.remove(0);
+		events.add(false, e[1], e[2], e[3], time, time);
+		judge.processInputEvents(events, CLOCK, 1460);
+		assertEquals(1460, judge.getLastFrameTime());
+	}
+
+	@Test
+	public void judgesWholeBeatmap() {
+		event(true, ReplayFrame.KEY_K1, 1010, 0);     // 300
+		event(false, ReplayFrame.KEY_K1, 1050, 0);
+		event(true, ReplayFrame.KEY_K2, 1440, 1);     // 60ms early: 100
+		event(false, ReplayFrame.KEY_K2, 1480, 1);
+		event(true, ReplayFrame.KEY_K1, 2500, 3);     // circle 3 missed, circle 4: 300
+		event(false, ReplayFrame.KEY_K1, 2540, 3);
+		event(true, ReplayFrame.KEY_M1, 3005, 4);     // slider held to the end
+		event(false, ReplayFrame.KEY_M1, 3900, 4);
+		runFrames(0, 5000, 16);
+
+		assertTrue(judge.isComplete());
+		assertEquals(3, data.getHitResultCount(GameData.HIT_300));
+		assertEquals(1, data.getHitResultCount(GameData.HIT_100));
+		assertEquals(1, data.getHitResultCount(GameData.HIT_MISS));
+		assertEquals(3, data.getComboMax());  // circle 4, slider head and end
+		assertTrue(data.getScore() > 0);
+	}
+
+	@Test
+	public void missesWithoutInput() {
+		runFrames(0, 5000, 16);
+		assertTrue(judge.isComplete());
+		assertEquals(0, data.getHitResultCount(GameData.HIT_300));
+		assertEquals(5, data.getHitResultCount(GameData.HIT_MISS));
+		assertEquals(0, data.getComboMax());
+	}
+
+	@Test
+	public void restoresSavedState() {
+		event(true, ReplayFrame.KEY_K1, 1000, 0);
+		event(false, ReplayFrame.KEY_K1, 1040, 0);
+		runFrames(0, 1040, 16);
+		assertTrue(judge.canSaveState(1040));
+		GameJudge.State state = judge.saveState();
+		long score = data.getScore();
+
+		runFrames(1056, 5000, 16);
+		assertTrue(judge.isComplete());
+
+		judge.restoreState(state);
+		assertEquals(1, judge.getObjectIndex());
+		assertEquals(score, data.getScore());
+		assertEquals(1, data.getComboStreak());
+		assertEquals(0, data.getHitResultCount(GameData.HIT_MISS));
+	}
+}
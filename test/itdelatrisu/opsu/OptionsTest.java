@@ -0,0 +1,81 @@
+/*
+ * opsu! - an open-source osu! client
+ * Copyright (C) 2014, 2015 Jeffrey Han
+ *
+ * opsu! is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * opsu! is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with opsu!.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package itdelatrisu.opsu;
+
+import static org.junit.Assert.*;
+
+import itdelatrisu.opsu.Options.GameOption;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import yugecin.opsudance.Dancer;
+import yugecin.opsudance.spinners.Spinner;
+
+public class OptionsTest {
+	private int spinnerDelay;
+
+	@Before
+	public void setUp() {
+		spinnerDelay = GameOption.DANCE_SPINNER_DELAY.getIntegerValue();
+	}
+
+	@After
+	public void tearDown() {
+		GameOption.DANCE_SPINNER_DELAY.read(Integer.toString(spinnerDelay));
+	}
+
+	/** Reads options file lines, then returns the spinner delay. */
+	private static int readSpinnerDelay(String... lines) throws IOException {
+		GameOption.DANCE_SPINNER_DELAY.read("50");
+		StringBuilder sb = new StringBuilder("# opsu! configuration\n");
+		for (String line : lines)
+			sb.append(line).append('\n');
+		Options.readOptions(new BufferedReader(new StringReader(sb.toString())));
+		int delay = GameOption.DANCE_SPINNER_DELAY.getIntegerValue();
+		assertEquals(delay, Dancer.instance.config.spinnerDelay);
+		return delay;
+	}
+
+	@Test
+	public void readsSpinnerDelay() throws IOException {
+		assertEquals(30, readSpinnerDelay("SpinnerStepTime = 30"));
+		assertEquals(50, readSpinnerDelay());
+	}
+
+	@Test
+	public void convertsLegacySpinnerDelay() throws IOException {
+		// tenths of a ms, at least the smallest delay
+		assertEquals(Spinner.MIN_DELAY, readSpinnerDelay("SpinnerDelay = 0"));
+		assertEquals(Spinner.MIN_DELAY, readSpinnerDelay("SpinnerDelay = 100"));
+		assertEquals(20, readSpinnerDelay("SpinnerDelay = 200"));
+		assertEquals(GameOption.DANCE_SPINNER_DELAY.getMaxValue(), readSpinnerDelay("SpinnerDelay = 5000"));
+		assertEquals(50, readSpinnerDelay("SpinnerDelay = x"));
+	}
+
+	@Test
+	public void newSpinnerDelayWins() throws IOException {
+		assertEquals(30, readSpinnerDelay("SpinnerDelay = 200", "SpinnerStepTime = 30"));
+		assertEquals(30, readSpinnerDelay("SpinnerStepTime = 30", "SpinnerDelay = 200"));
+	}
+}
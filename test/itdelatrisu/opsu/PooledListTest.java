@@ -0,0 +1,146 @@
+/*
+ * opsu! - an open-source osu! client
+ * Copyright (C) 2014, 2015 Jeffrey Han
+ *
+ * opsu! is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * opsu! is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with opsu!.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package itdelatrisu.opsu;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class PooledListTest {
+	private static class Entry {
+		int value;
+		boolean recycled;
+	}
+
+	/** A list counting the created and recycled entries. */
+	private static class EntryList extends PooledList<Entry> {
+		int created = 0, recycled = 0;
+
+		@Override
+		protected Entry create() {
+			created++;
+			return new Entry();
+		}
+
+		@Override
+		protected void recycle(Entry item) {
+			item.recycled = true;
+			recycled++;
+		}
+
+		Entry add(int value) {
+			Entry e = add();
+			e.value = value;
+			e.recycled = false;
+			return e;
+		}
+	}
+
+	/** Checks that the list holds the values, in order. */
+	private static void assertValues(List<Integer> expected, EntryList list) {
+		assertEquals(expected.size(), list.size());
+		for (int i = 0; i < list.size(); i++) {
+			assertEquals((int) expected.get(i), list.get(i).value);
+			assertFalse(list.get(i).recycled);
+		}
+	}
+
+	@Test
+	public void retainKeepsOrder() {
+		EntryList list = new EntryList();
+		List<Integer> expected = new ArrayList<Integer>();
+		for (int i = 0; i < 10; i++) {
+			list.add(i);
+			expected.add(i);
+		}
+
+		// drop the odd values
+		for (int i = 0, size = list.size(); i < size; i++)
+			list.retain(i, list.get(i).value % 2 == 0);
+		list.endRetain();
+		for (int i = expected.size() - 1; i >= 0; i--) {
+			if (expected.get(i) % 2 != 0)
+				expected.remove(i);
+		}
+		assertValues(expected, list);
+		assertEquals(5, list.recycled);
+		assertEquals(8, list.getLast().value);
+	}
+
+	@Test
+	public void reusesRemovedEntries() {
+		EntryList list = new EntryList();
+		for (int i = 0; i < 10; i++)
+			list.add(i);
+		IdentityHashMap<Entry, Boolean> entries = new IdentityHashMap<Entry, Boolean>();
+		for (int i = 0; i < list.size(); i++)
+			entries.put(list.get(i), true);
+
+		// remove the first half, then add as many: no new entries
+		for (int i = 0, size = list.size(); i < size; i++)
+			list.retain(i, i >= 5);
+		list.endRetain();
+		for (int i = 10; i < 15; i++)
+			assertTrue(entries.containsKey(list.add(i)));
+		assertEquals(10, list.created);
+
+		// the same after a clear
+		list.clear();
+		assertTrue(list.isEmpty());
+		assertEquals(15, list.recycled);
+		for (int i = 0; i < 10; i++)
+			assertTrue(entries.containsKey(list.add(i)));
+		assertEquals(10, list.created);
+	}
+
+	@Test
+	public void randomFilteringMatchesArrayList() {
+		Random random = new Random(5);
+		EntryList list = new EntryList();
+		List<Integer> expected = new ArrayList<Integer>();
+		int next = 0, maxSize = 0;
+		for (int n = 0; n < 2000; n++) {
+			int add = random.nextInt(8);
+			for (int i = 0; i < add; i++, next++) {
+				list.add(next);
+				expected.add(next);
+			}
+			maxSize = Math.max(maxSize, expected.size());
+
+			// keep each with some chance, as expiring hit results do
+			List<Integer> kept = new ArrayList<Integer>();
+			for (int i = 0, size = list.size(); i < size; i++) {
+				boolean keep = random.nextInt(4) != 0;
+				list.retain(i, keep);
+				if (keep)
+					kept.add(expected.get(i));
+			}
+			list.endRetain();
+			expected = kept;
+			assertValues(expected, list);
+		}
+
+		// never more entries than were alive at once
+		assertEquals(maxSize, list.created);
+	}
+}
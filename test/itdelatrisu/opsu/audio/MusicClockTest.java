@@ -0,0 +1,245 @@
+/*
+ * opsu! - an open-source osu! client
+ * Copyright (C) 2014, 2015 Jeffrey Han
+ *
+ * opsu! is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * opsu! is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with opsu!.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package itdelatrisu.opsu.audio;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Drives the music clock with a simulated audio position: advancing in
+ * buffer-sized steps with jitter, like the one reported by OpenAL.
+ */
+public class MusicClockTest {
+	/** Nanoseconds per millisecond. */
+	private static final long MS = 1000000L;
+
+	/** Step of the reported audio position: 1024 frames at 44.1kHz (in ms). */
+	private static final double STEP = 1024 * 1000.0 / 44100;
+
+	/** Largest allowed speed correction, as in MusicClock. */
+	private static final double MAX_CORRECTION = 0.05;
+
+	/** A simulated audio source. */
+	private static class FakeSource implements MusicClock.Source {
+		final Random random;
+		final double jitter;
+
+		/** The actual playback position (in ms). */
+		double position = 0;
+
+		float pitch = 1f;
+
+		/**
+		 * Constructor.
+		 * @param seed the seed of the jitter
+		 * @param jitter the maximum jitter (in ms), or 0 to report the exact position
+		 */
+		FakeSource(long seed, double jitter) {
+			this.random = new Random(seed);
+			this.jitter = jitter;
+		}
+
+		/** Plays for some time. */
+		void advance(long nanos) { position += nanos / (double) MS * pitch; }
+
+		@Override
+		public float getPosition() {
+			if (jitter == 0)
+				return (float) (position / 1000);
+			double reported = Math.floor(position / STEP) * STEP + (random.nextDouble() * 2 - 1) * jitter;
+			return (float) (Math.max(reported, 0) / 1000);
+		}
+
+		@Override
+		public float getPitch() { return pitch; }
+	}
+
+	/** Plays frames on a clock, checking every frame. */
+	private static class Player {
+		final FakeSource source;
+		final MusicClock clock;
+		final Random random = new Random(7);
+		long now = 1000 * MS;
+
+		/** Pitch the clock ran at since the last frame (a change is seen at the next update). */
+		float pitch;
+
+		/** Largest distance from the actual position since the last {@link #resetError()} (in ms). */
+		double maxError = 0;
+
+		Player(FakeSource source) {
+			this.source = source;
+			this.clock = new MusicClock(source);
+			this.pitch = source.pitch;
+			clock.update(now);
+		}
+
+		/**
+		 * Plays frames of 10 to 20ms. Between snaps, the clock must not go back
+		 * and must run at the pitch, within the speed correction.
+		 */
+		void play(long nanos) {
+			for (long end = now + nanos; now < end; ) {
+				long frame = (10 + random.nextInt(11)) * MS;
+				double before = clock.getPosition();
+				int snaps = clock.getSnapCount();
+				now += frame;
+				source.advance(frame);
+				clock.update(now);
+				double step = clock.getPosition() - before, expected = frame / (double) MS * pitch;
+				if (clock.getSnapCount() == snaps) {
+					assertTrue(String.format("went back by %.3fms", -step), step >= 0);
+					assertTrue(String.format("step %.3fms, expected %.3fms", step, expected),
+							step <= expected * (1 + MAX_CORRECTION) + 1e-6 && step >= expected * (1 - MAX_CORRECTION) - 1e-6);
+				}
+				pitch = source.pitch;
+				maxError = Math.max(maxError, Math.abs(clock.getPosition() - source.position));
+			}
+		}
+
+		void resetError() { maxError = 0; }
+	}
+
+	@Test
+	public void followsExactPosition() {
+		Player player = new Player(new FakeSource(1, 0));
+		player.play(60000 * MS);
+		MusicClock clock = player.clock;
+		assertEquals(0, clock.getSnapCount());
+		assertTrue(player.maxError < 0.01);
+		assertTrue(Math.abs(clock.getMeanDrift()) < 0.01);
+		assertTrue(clock.getMaxDrift() < 0.01);
+		assertTrue(clock.getJitter() < 0.01);
+	}
+
+	@Test
+	public void smoothsJitter() {
+		Player player = new Player(new FakeSource(2, 3));
+		player.play(2000 * MS);
+		player.resetError();
+		player.clock.resetStatistics();
+		player.play(60000 * MS);
+		MusicClock clock = player.clock;
+
+		// one sample at the first frame 50ms after the last; none far enough off to snap
+		assertTrue(clock.getSampleCount() > 60000 / 70 && clock.getSampleCount() <= 60000 / 50);
+		assertEquals(0, clock.getSnapCount());
+
+		// the reported position is late by half a step on average, and spread
+		// over a step plus the jitter: the clock follows it without that spread
+		double spread = Math.sqrt(STEP * STEP / 12 + 3 * 3 / 3.0);
+		assertTrue(String.format("mean drift %.2fms", clock.getMeanDrift()), Math.abs(clock.getMeanDrift()) < 2);
+		assertTrue(String.format("jitter %.2fms", clock.getJitter()), clock.getJitter() > spread * 0.7 && clock.getJitter() < spread * 1.5);
+		assertTrue(String.format("max drift %.2fms", clock.getMaxDrift()), clock.getMaxDrift() < STEP + 3 + 5);
+		assertTrue(String.format("error %.2fms", player.maxError), player.maxError < STEP + 10);
+	}
+
+	@Test
+	public void followsPitchChange() {
+		FakeSource source = new FakeSource(3, 3);
+		Player player = new Player(source);
+		player.play(5000 * MS);
+		source.pitch = 1.5f;
+		player.play(5000 * MS);
+		source.pitch = 0.75f;
+		player.resetError();
+		player.play(5000 * MS);
+		assertEquals(0, player.clock.getSnapCount());
+		assertTrue(String.format("error %.2fms", player.maxError), player.maxError < STEP + 10);
+	}
+
+	@Test
+	public void snapsAfterSeek() {
+		FakeSource source = new FakeSource(4, 3);
+		Player player = new Player(source);
+		player.play(5000 * MS);
+
+		// forward, then back: each snaps at the next sample
+		source.position += 1000;
+		player.play(100 * MS);
+		assertEquals(1, player.clock.getSnapCount());
+		source.position -= 3000;
+		player.play(100 * MS);
+		assertEquals(2, player.clock.getSnapCount());
+		assertEquals(source.position, player.clock.getPosition(), STEP + 10);
+
+		// below the snap threshold: corrected smoothly
+		source.position += 60;
+		player.resetError();
+		player.play(5000 * MS);
+		assertEquals(2, player.clock.getSnapCount());
+		assertEquals(source.position, player.clock.getPosition(), STEP + 10);
+
+		// invalidated on a seek: snaps on the next update (not counted)
+		source.position += 5000;
+		player.clock.invalidate();
+		assertTrue(player.clock.isInvalid());
+		player.now += 16 * MS;
+		player.clock.update(player.now);
+		assertFalse(player.clock.isInvalid());
+		assertEquals(source.position, player.clock.getPosition(), STEP + 3);
+		assertEquals(2, player.clock.getSnapCount());
+	}
+
+	@Test
+	public void fixedModeIgnoresAudio() {
+		FakeSource a = new FakeSource(5, 3), b = new FakeSource(6, 30);
+		b.position = 99999;
+		MusicClock clockA = new MusicClock(a), clockB = new MusicClock(b);
+		long now = 0;
+		for (MusicClock clock : new MusicClock[] { clockA, clockB }) {
+			clock.setFixed(true);
+			assertTrue(clock.isFixed());
+			clock.invalidate(1234);
+			clock.update(now);
+			assertEquals(1234, clock.getPosition(), 0);
+		}
+
+		// positions only depend on the update times
+		Random random = new Random(8);
+		for (int i = 0; i < 1000; i++) {
+			long frame = (10 + random.nextInt(11)) * MS;
+			now += frame;
+			a.advance(frame);
+			b.advance(frame * 3);
+			double before = clockA.getPosition();
+			clockA.update(now);
+			clockB.update(now);
+			assertEquals(before + frame / (double) MS, clockA.getPosition(), 1e-6);
+			assertEquals(clockA.getPosition(), clockB.getPosition(), 0);
+		}
+		assertEquals(0, clockA.getSampleCount());
+		assertEquals(0, clockB.getSampleCount());
+
+		// snapping to a given position, or to the audio position without one
+		clockA.invalidate(500);
+		clockA.update(now);
+		assertEquals(500, clockA.getPosition(), 0);
+		clockA.invalidate();
+		clockA.update(now);
+		assertEquals(a.position, clockA.getPosition(), STEP + 3);
+
+		// back to following the audio position
+		clockB.setFixed(false);
+		clockB.update(now);
+		assertEquals(b.position, clockB.getPosition(), STEP + 30);
+	}
+}
@@ -0,0 +1,190 @@
+/*
+ * opsu! - an open-source osu! client
+ * Copyright (C) 2014, 2015 Jeffrey Han
+ *
+ * opsu! is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * opsu! is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with opsu!.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package itdelatrisu.opsu.audio;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.net.URL;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import javax.sound.sampled.AudioFileFormat;
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.UnsupportedAudioFileException;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Checks the decoded sound cache, and compares loading a skin's worth of
+ * sounds by decoding them with reading them from the cache.
+ */
+public class SoundCacheTest {
+	/** Number of sound files in a skin (effects and hit sounds of all sample sets). */
+	private static final int SKIN_SOUNDS = SoundEffect.SIZE + HitSound.SIZE * HitSound.SampleSet.SIZE;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	/** Writes a WAV file of noise. */
+	private static File writeWav(File file, float sampleRate, int channels, int frames, long seed) throws IOException {
+		byte[] pcm = new byte[frames * channels * 2];
+		new Random(seed).nextBytes(pcm);
+		AudioFormat format = new AudioFormat(sampleRate, 16, channels, true, false);
+		AudioSystem.write(new AudioInputStream(new ByteArrayInputStream(pcm), format, frames), AudioFileFormat.Type.WAVE, file);
+		return file;
+	}
+
+	/** Decodes a file as SoundController does on a cache miss. */
+	private static SoundSample decode(File file) throws IOException {
+		try {
+			return SoundSample.decode(file.getAbsolutePath(), AudioSystem.getAudioInputStream(file));
+		} catch (UnsupportedAudioFileException e) {
+			throw new IOException(e);
+		}
+	}
+
+	private static URL url(File file) throws IOException { return file.toURI().toURL(); }
+
+	/** Returns the only file in a directory. */
+	private static File onlyFile(File dir) {
+		File[] files = dir.listFiles();
+		assertEquals(1, files.length);
+		return files[0];
+	}
+
+	@Test
+	public void roundTrip() throws IOException {
+		File dir = folder.newFolder();
+		for (int channels = 1; channels <= 2; channels++) {
+			for (float rate : new float[] { 22050, 44100 }) {
+				File wav = writeWav(folder.newFile(), rate, channels, 5000, channels);
+				String ref = wav.getAbsolutePath();
+				assertNull(SoundCache.load(dir, ref, url(wav)));
+				SoundSample sample = decode(wav);
+				SoundCache.store(dir, ref, url(wav), sample);
+				SoundSample cached = SoundCache.load(dir, ref, url(wav));
+				assertNotNull(cached);
+				assertArrayEquals(sample.getData(), cached.getData());
+			}
+		}
+	}
+
+	@Test
+	public void cacheFileIsNotHeldOpen() throws IOException {
+		File dir = folder.newFolder();
+		File wav = writeWav(folder.newFile(), 44100, 2, 1000, 1);
+		SoundCache.store(dir, wav.getAbsolutePath(), url(wav), decode(wav));
+		File file = onlyFile(dir);
+		assertNotNull(SoundCache.load(dir, wav.getAbsolutePath(), url(wav)));
+
+		// replace and delete, as store and prune do
+		File moved = new File(dir, "moved");
+		assertTrue(file.renameTo(moved));
+		assertTrue(moved.renameTo(file));
+		assertTrue(file.delete());
+	}
+
+	@Test
+	public void rejectsDamagedFiles() throws IOException {
+		File dir = folder.newFolder();
+		File wav = writeWav(folder.newFile(), 44100, 2, 1000, 1);
+		SoundCache.store(dir, wav.getAbsolutePath(), url(wav), decode(wav));
+		try (RandomAccessFile raf = new RandomAccessFile(onlyFile(dir), "rw")) {
+			raf.setLength(raf.length() - 1);
+		}
+		assertNull(SoundCache.load(dir, wav.getAbsolutePath(), url(wav)));
+	}
+
+	@Test
+	public void changedSourceMisses() throws IOException {
+		File dir = folder.newFolder();
+		File wav = writeWav(folder.newFile(), 44100, 2, 1000, 1);
+		SoundCache.store(dir, wav.getAbsolutePath(), url(wav), decode(wav));
+		writeWav(wav, 44100, 2, 2000, 2);
+		assertNull(SoundCache.load(dir, wav.getAbsolutePath(), url(wav)));
+	}
+
+	@Test
+	public void prunesStaleAndLeastRecentlyUsed() throws IOException {
+		File dir = folder.newFolder();
+		long now = System.currentTimeMillis() / 1000 * 1000;
+		File[] files = new File[5];
+		for (int i = 0; i < files.length; i++) {
+			files[i] = new File(dir, i + ".pcm");
+			try (RandomAccessFile raf = new RandomAccessFile(files[i], "rw")) {
+				raf.setLength(1000);
+			}
+			assertTrue(files[i].setLastModified(now - TimeUnit.HOURS.toMillis(i)));
+		}
+		assertTrue(files[4].setLastModified(now - TimeUnit.DAYS.toMillis(60)));
+		File tmp = new File(dir, "0.pcm.tmp");
+		assertTrue(tmp.createNewFile());
+
+		// stale entry and temporary file
+		SoundCache.prune(dir, Long.MAX_VALUE, now);
+		assertFalse(files[4].exists());
+		assertFalse(tmp.exists());
+		for (int i = 0; i < 4; i++)
+			assertTrue(files[i].exists());
+
+		// size limit: the most recently used entries are kept
+		SoundCache.prune(dir, 2500, now);
+		assertTrue(files[0].exists());
+		assertTrue(files[1].exists());
+		assertFalse(files[2].exists());
+		assertFalse(files[3].exists());
+	}
+
+	@Test
+	public void loadingTime() throws IOException {
+		// a skin's worth of short 22.05kHz mono and 44.1kHz stereo sounds
+		File skin = folder.newFolder(), dir = folder.newFolder();
+		File[] wavs = new File[SKIN_SOUNDS];
+		for (int i = 0; i < wavs.length; i++) {
+			boolean stereo = i % 2 == 0;
+			wavs[i] = writeWav(new File(skin, i + ".wav"), stereo ? 44100 : 22050, stereo ? 2 : 1, stereo ? 20000 : 10000, i);
+		}
+		long decodeTime = Long.MAX_VALUE, cacheTime = Long.MAX_VALUE;
+		for (int round = 0; round < 10; round++) {
+			long start = System.nanoTime();
+			for (File wav : wavs)
+				assertNotNull(decode(wav));
+			decodeTime = Math.min(decodeTime, System.nanoTime() - start);
+
+			if (round == 0) {
+				for (File wav : wavs)
+					SoundCache.store(dir, wav.getAbsolutePath(), url(wav), decode(wav));
+			}
+			start = System.nanoTime();
+			for (File wav : wavs)
+				assertNotNull(SoundCache.load(dir, wav.getAbsolutePath(), url(wav)));
+			cacheTime = Math.min(cacheTime, System.nanoTime() - start);
+		}
+		System.out.println(String.format("SoundCache: %d sounds decoded in %.2fms, read from the cache in %.2fms",
+				wavs.length, decodeTime / 1e6, cacheTime / 1e6));
+		assertTrue(cacheTime < decodeTime * 2);
+	}
+}
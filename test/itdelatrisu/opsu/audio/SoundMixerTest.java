@@ -0,0 +1,147 @@
+/*
+ * opsu! - an open-source osu! client
+ * Copyright (C) 2014, 2015 Jeffrey Han
+ *
+ * opsu! is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * opsu! is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with opsu!.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package itdelatrisu.opsu.audio;
+
+import static org.junit.Assert.*;
+
+import itdelatrisu.opsu.audio.SoundMixer.RecordingSink;
+
+import org.junit.Test;
+
+public class SoundMixerTest {
+	/** Returns a sample of {@code frames} frames with the same value in both channels. */
+	private static SoundSample constant(String name, int frames, int value) {
+		short[] data = new short[frames * 2];
+		for (int i = 0; i < data.length; i++)
+			data[i] = (short) value;
+		return new SoundSample(name, data);
+	}
+
+	@Test
+	public void mixesVoices() {
+		RecordingSink sink = new RecordingSink(false);
+		SoundMixer mixer = new SoundMixer(sink);
+		mixer.play(constant("a", SoundMixer.BUFFER_FRAMES + 10, 1000), 1f);
+		mixer.play(constant("b", 10, 2000), 0.5f);
+		mixer.mix();
+		mixer.mix();
+
+		short[] out = sink.getSamples();
+		assertEquals(SoundMixer.BUFFER_FRAMES * 4, out.length);
+		assertEquals(2000, out[0]);
+		assertEquals(2000, out[19]);
+		assertEquals(1000, out[20]);
+		assertEquals(1000, out[SoundMixer.BUFFER_FRAMES * 2 + 19]);
+		assertEquals(0, out[SoundMixer.BUFFER_FRAMES * 2 + 20]);
+		assertEquals(0, mixer.getVoiceCount());
+		assertEquals(2, mixer.getTriggerCount());
+	}
+
+	@Test
+	public void clipsLoudMixes() {
+		RecordingSink sink = new RecordingSink(false);
+		SoundMixer mixer = new SoundMixer(sink);
+		SoundSample loud = constant("loud", 4, 30000), quiet = constant("quiet", 4, -30000);
+		mixer.play(loud, 1f);
+		mixer.play(loud, 1f);
+		mixer.mix();
+		mixer.play(quiet, 1f);
+		mixer.play(quiet, 1f);
+		mixer.mix();
+
+		short[] out = sink.getSamples();
+		assertEquals(Short.MAX_VALUE, out[0]);
+		assertEquals(Short.MIN_VALUE, out[SoundMixer.BUFFER_FRAMES * 2]);
+	}
+
+	@Test
+	public void stopsVoicesOfSample() {
+		RecordingSink sink = new RecordingSink(false);
+		SoundMixer mixer = new SoundMixer(sink);
+		SoundSample a = constant("a", SoundMixer.BUFFER_FRAMES * 4, 100), b = constant("b", SoundMixer.BUFFER_FRAMES * 4, 10);
+		mixer.play(a, 1f);
+		mixer.play(a, 1f);
+		mixer.play(b, 1f);
+		mixer.mix();
+		assertEquals(3, mixer.getVoiceCount());
+		mixer.stop(a);
+		mixer.mix();
+		assertEquals(1, mixer.getVoiceCount());
+
+		short[] out = sink.getSamples();
+		assertEquals(210, out[0]);
+		assertEquals(10, out[SoundMixer.BUFFER_FRAMES * 2]);
+	}
+
+	@Test
+	public void ignoresSilentTriggers() {
+		SoundMixer mixer = new SoundMixer(new RecordingSink(false));
+		mixer.play(constant("a", 10, 100), 0f);
+		mixer.play(null, 1f);
+		mixer.mix();
+		assertEquals(0, mixer.getTriggerCount());
+	}
+
+	@Test
+	public void dropsTriggersWhenQueueIsFull() {
+		RecordingSink sink = new RecordingSink(false);
+		SoundMixer mixer = new SoundMixer(sink);
+		SoundSample a = constant("a", 10, 1);
+		for (int i = 0; i < 300; i++)
+			mixer.play(a, 1f);
+		assertEquals(300 - 256, mixer.getDroppedCommands());
+		mixer.mix();
+		assertEquals(256, mixer.getTriggerCount());
+		assertEquals(256, sink.getSamples()[0]);
+
+		// the queue is usable again after being drained
+		mixer.play(a, 1f);
+		mixer.mix();
+		assertEquals(257, mixer.getTriggerCount());
+	}
+
+	@Test
+	public void measuresTriggerLatencyAndMixTime() throws Exception {
+		RecordingSink sink = new RecordingSink(true);
+		SoundMixer mixer = new SoundMixer(sink);
+		mixer.start();
+		assertTrue(sink.isOpen());
+
+		// hit sound-like load: many short overlapping voices
+		SoundSample sample = constant("hit", SoundMixer.SAMPLE_RATE / 5, 100);
+		int triggers = 200;
+		for (int i = 0; i < triggers; i++) {
+			mixer.play(sample, 0.1f);
+			Thread.sleep(2);
+		}
+		Thread.sleep(50);
+		mixer.stop();
+		assertFalse(sink.isOpen());
+
+		double cycle = SoundMixer.BUFFER_FRAMES * 1e9 / SoundMixer.SAMPLE_RATE;
+		System.out.printf("SoundMixer: %d cycles, mix time avg %.3fms max %.3fms, " +
+				"trigger latency avg %.3fms max %.3fms (cycle %.3fms)%n",
+				mixer.getMixCycles(), mixer.getAverageMixTime() / 1e6, mixer.getMaxMixTime() / 1e6,
+				mixer.getAverageTriggerLatency() / 1e6, mixer.getMaxTriggerLatency() / 1e6, cycle / 1e6);
+		assertEquals(triggers, mixer.getTriggerCount());
+		assertEquals(0, mixer.getDroppedCommands());
+		// a trigger waits at most for the cycle being written; the mix itself must be far shorter than a cycle
+		assertTrue(mixer.getAverageMixTime() < cycle / 4);
+		assertTrue(mixer.getAverageTriggerLatency() < cycle * 2);
+	}
+}
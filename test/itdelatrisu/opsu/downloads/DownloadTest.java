@@ -0,0 +1,374 @@
+/*
+ * opsu! - an open-source osu! client
+ * Copyright (C) 2014, 2015 Jeffrey Han
+ *
+ * opsu! is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * opsu! is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with opsu!.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package itdelatrisu.opsu.downloads;
+
+import static org.junit.Assert.*;
+
+import itdelatrisu.opsu.Options;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.Random;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Runs downloads against a local HTTP server.
+ * <ul>
+ * <li>/norange: no range support</li>
+ * <li>/range: ranges with ETag "v1", honouring If-Range</li>
+ * <li>/flaky: like /range, but drops the first responses after a third of the body</li>
+ * <li>/failsegment: like /range, but fails the first request of the second of 4 segments</li>
+ * <li>/missing: 404</li>
+ * </ul>
+ */
+public class DownloadTest {
+	private static final String ETAG = "\"v1\"";
+
+	/** The file served. */
+	private static final byte[] DATA = new byte[10 * 1024 * 1024 + 12345];
+
+	private static HttpServer server;
+
+	/** The requests: path, range and If-Range. */
+	private static final List<String> log = Collections.synchronizedList(new ArrayList<String>());
+
+	/** Number of /flaky and /failsegment responses left to break. */
+	private static final AtomicInteger failuresLeft = new AtomicInteger();
+
+	/** Number of requests being served, and the most at the same time. */
+	private static final AtomicInteger concurrent = new AtomicInteger(), maxConcurrent = new AtomicInteger();
+
+	/** Number of body bytes sent. */
+	private static final AtomicLong served = new AtomicLong();
+
+	/** Delay after each 64 KB sent, in ms. */
+	private static volatile int slowDelay = 0;
+
+	private int maxDownloads, maxHostConnections, downloadSegments;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private File dir;
+
+	@BeforeClass
+	public static void startServer() throws IOException {
+		new Random(1).nextBytes(DATA);
+		server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 50);
+		server.setExecutor(Executors.newCachedThreadPool());
+		server.createContext("/", new HttpHandler() {
+			@Override
+			public void handle(HttpExchange ex) throws IOException {
+				int c = concurrent.incrementAndGet();
+				synchronized (maxConcurrent) {
+					if (c > maxConcurrent.get())
+						maxConcurrent.set(c);
+				}
+				boolean[] counted = { true };
+				try {
+					serve(ex, counted);
+				} catch (IOException e) {
+					// dropped, or closed by the client
+				} finally {
+					if (counted[0])
+						concurrent.decrementAndGet();
+					ex.close();
+				}
+			}
+		});
+		server.start();
+	}
+
+	@AfterClass
+	public static void stopServer() {
+		server.stop(0);
+	}
+
+	@Before
+	public void setUp() throws IOException {
+		dir = folder.newFolder();
+		maxDownloads = Options.getMaxDownloads();
+		maxHostConnections = Options.getMaxHostConnections();
+		downloadSegments = Options.getDownloadSegments();
+		log.clear();
+		failuresLeft.set(0);
+		maxConcurrent.set(0);
+		served.set(0);
+		slowDelay = 0;
+	}
+
+	@After
+	public void tearDown() {
+		Options.GameOption.MAX_DOWNLOADS.setValue(maxDownloads);
+		Options.GameOption.MAX_HOST_CONNECTIONS.setValue(maxHostConnections);
+		Options.GameOption.DOWNLOAD_SEGMENTS.setValue(downloadSegments);
+	}
+
+	/**
+	 * Serves a request, see the class description.
+	 * @param counted whether the request is still counted in {@link #concurrent}
+	 */
+	private static void serve(HttpExchange ex, boolean[] counted) throws IOException {
+		String path = ex.getRequestURI().getPath();
+		String range = ex.getRequestHeaders().getFirst("Range");
+		String ifRange = ex.getRequestHeaders().getFirst("If-Range");
+		log.add(path + ((range != null) ? " " + range : "") + ((ifRange != null) ? " if " + ifRange : ""));
+		if (path.startsWith("/missing")) {
+			ex.sendResponseHeaders(404, -1);
+			return;
+		}
+
+		Headers h = ex.getResponseHeaders();
+		long from = 0, to = DATA.length - 1;
+		int code = 200;
+		if (!path.startsWith("/norange")) {
+			h.set("Accept-Ranges", "bytes");
+			h.set("ETag", ETAG);
+			if (range != null && (ifRange == null || ifRange.equals(ETAG))) {
+				String[] r = range.substring("bytes=".length()).split("-", -1);
+				from = Long.parseLong(r[0]);
+				if (!r[1].isEmpty())
+					to = Math.min(Long.parseLong(r[1]), to);
+				if (from >= DATA.length) {
+					h.set("Content-Range", "bytes */" + DATA.length);
+					ex.sendResponseHeaders(416, -1);
+					return;
+				}
+				if (path.startsWith("/failsegment") && from == DATA.length / 4 && failuresLeft.getAndDecrement() > 0) {
+					ex.sendResponseHeaders(500, -1);
+					return;
+				}
+				code = 206;
+				h.set("Content-Range", String.format("bytes %d-%d/%d", from, to, DATA.length));
+			}
+		}
+
+		long length = to - from + 1;
+		ex.sendResponseHeaders(code, length);
+		OutputStream out = ex.getResponseBody();
+		boolean drop = path.startsWith("/flaky") && failuresLeft.getAndDecrement() > 0;
+		long limit = drop ? length / 3 : length;
+		for (long pos = 0; pos < limit; ) {
+			int n = (int) Math.min(64 * 1024, limit - pos);
+			if (pos + n == length) {
+				// the client may open its next connection as soon as it has the body
+				concurrent.decrementAndGet();
+				counted[0] = false;
+			}
+			out.write(DATA, (int) (from + pos), n);
+			served.addAndGet(n);
+			pos += n;
+			if (slowDelay > 0) {
+				try {
+					Thread.sleep(slowDelay);
+				} catch (InterruptedException e) {}
+			}
+		}
+		out.flush();
+		if (drop)
+			throw new IOException("dropped");
+		out.close();
+	}
+
+	private String url(String path) {
+		return String.format("http://127.0.0.1:%d%s", server.getAddress().getPort(), path);
+	}
+
+	private Download download(String path, String name) {
+		return new Download(url(path), new File(dir, name).getPath(), name + ".osz");
+	}
+
+	/** Waits for a download to end. */
+	private static void waitFor(Download d) throws InterruptedException {
+		long end = System.currentTimeMillis() + 60000;
+		while (d.isActive() && System.currentTimeMillis() < end)
+			Thread.sleep(20);
+		assertFalse("download timed out", d.isActive());
+	}
+
+	/** Runs a download to its end and returns it. */
+	private Download run(String path, String name) throws InterruptedException {
+		Download d = download(path, name);
+		d.start();
+		waitFor(d);
+		return d;
+	}
+
+	/** Checks that a download completed with the served file, and left nothing behind. */
+	private void assertComplete(Download d, String name) throws IOException {
+		assertEquals(Download.Status.COMPLETE, d.getStatus());
+		assertEquals(DATA.length, d.contentLength());
+		assertArrayEquals(DATA, Files.readAllBytes(new File(dir, name + ".osz").toPath()));
+		assertFalse(new File(dir, name + ".part").exists());
+		assertFalse(new File(dir, name + ".part.info").exists());
+	}
+
+	/** Writes a partially downloaded file and its info. */
+	private void writePart(String name, int size, String path, long length, String validator) throws IOException {
+		Files.write(new File(dir, name + ".part").toPath(), Arrays.copyOf(DATA, size));
+		Properties props = new Properties();
+		props.setProperty("url", url(path));
+		props.setProperty("length", Long.toString(length));
+		props.setProperty("validator", validator);
+		try (OutputStream out = new FileOutputStream(new File(dir, name + ".part.info"))) {
+			props.store(out, null);
+		}
+	}
+
+	@Test
+	public void downloadsWithoutRanges() throws Exception {
+		Options.GameOption.DOWNLOAD_SEGMENTS.setValue(4);
+		Options.GameOption.MAX_HOST_CONNECTIONS.setValue(8);
+		assertComplete(run("/norange/a", "a"), "a");
+		assertEquals(1, log.size());
+	}
+
+	@Test
+	public void downloadsInSegments() throws Exception {
+		Options.GameOption.DOWNLOAD_SEGMENTS.setValue(4);
+		Options.GameOption.MAX_HOST_CONNECTIONS.setValue(8);
+		assertComplete(run("/range/b", "b"), "b");
+		assertEquals(4, log.size());
+		assertEquals("/range/b", log.get(0));
+		for (String request : log.subList(1, log.size()))
+			assertTrue(request, request.endsWith(" if " + ETAG));
+	}
+
+	@Test
+	public void resumesDroppedTransfer() throws Exception {
+		failuresLeft.set(1);
+		assertComplete(run("/flaky/c", "c"), "c");
+		assertEquals(2, log.size());
+		assertTrue(log.get(1), log.get(1).startsWith("/flaky/c bytes=") && log.get(1).endsWith(" if " + ETAG));
+	}
+
+	@Test
+	public void resumesAfterCancel() throws Exception {
+		slowDelay = 10;
+		Download d = download("/range/d", "d");
+		d.start();
+		while (d.readSoFar() < 1000000 && d.isActive())
+			Thread.sleep(10);
+		d.cancel();
+		Thread.sleep(300);
+		assertEquals(Download.Status.CANCELLED, d.getStatus());
+		long part = new File(dir, "d.part").length();
+		assertTrue(part > 0 && part < DATA.length);
+		assertTrue(new File(dir, "d.part.info").exists());
+
+		slowDelay = 0;
+		d.retry();
+		waitFor(d);
+		assertComplete(d, "d");
+		assertEquals(String.format("/range/d bytes=%d- if %s", part, ETAG), log.get(log.size() - 1));
+	}
+
+	@Test
+	public void doesNotRetryMissingFile() throws Exception {
+		assertEquals(Download.Status.ERROR, run("/missing/e", "e").getStatus());
+		assertEquals(1, log.size());
+	}
+
+	@Test
+	public void limitsSimultaneousDownloads() throws Exception {
+		Options.GameOption.MAX_DOWNLOADS.setValue(2);
+		Options.GameOption.MAX_HOST_CONNECTIONS.setValue(8);
+		slowDelay = 5;
+		List<Download> downloads = new ArrayList<Download>();
+		for (int i = 0; i < 5; i++) {
+			Download d = download("/range/f" + i, "f" + i);
+			downloads.add(d);
+			d.start();
+		}
+		for (int i = 0; i < 5; i++) {
+			waitFor(downloads.get(i));
+			assertComplete(downloads.get(i), "f" + i);
+		}
+		assertEquals(2, maxConcurrent.get());
+	}
+
+	@Test
+	public void limitsConnectionsPerHost() throws Exception {
+		Options.GameOption.MAX_DOWNLOADS.setValue(5);
+		Options.GameOption.MAX_HOST_CONNECTIONS.setValue(1);
+		Options.GameOption.DOWNLOAD_SEGMENTS.setValue(4);
+		slowDelay = 5;
+		List<Download> downloads = new ArrayList<Download>();
+		for (int i = 0; i < 3; i++) {
+			Download d = download("/range/g" + i, "g" + i);
+			downloads.add(d);
+			d.start();
+		}
+		for (int i = 0; i < 3; i++) {
+			waitFor(downloads.get(i));
+			assertComplete(downloads.get(i), "g" + i);
+		}
+		assertEquals(1, maxConcurrent.get());
+	}
+
+	@Test
+	public void stopsOtherSegmentsOnFailure() throws Exception {
+		Options.GameOption.DOWNLOAD_SEGMENTS.setValue(4);
+		Options.GameOption.MAX_HOST_CONNECTIONS.setValue(8);
+		failuresLeft.set(1);
+		slowDelay = 5;
+		assertComplete(run("/failsegment/h", "h"), "h");
+
+		// the bytes after the failed segment are fetched again on retry: the
+		// segments still running must not have been downloaded to the end
+		assertTrue(String.format("%d bytes sent for %d", served.get(), DATA.length), served.get() < DATA.length * 5L / 4);
+	}
+
+	@Test
+	public void restartsChangedFile() throws Exception {
+		writePart("i", 5000, "/range/i", 999, "\"old\"");
+		assertComplete(run("/range/i", "i"), "i");
+		assertEquals(Arrays.asList("/range/i bytes=5000- if \"old\""), log);
+	}
+
+	@Test
+	public void finishesCompletePart() throws Exception {
+		writePart("j", DATA.length, "/range/j", DATA.length, ETAG);
+		assertComplete(run("/range/j", "j"), "j");
+		assertEquals(Arrays.asList(String.format("/range/j bytes=%d- if %s", DATA.length, ETAG)), log);
+	}
+}
@@ -0,0 +1,208 @@
+/*
+ * opsu! - an open-source osu! client
+ * Copyright (C) 2014, 2015 Jeffrey Han
+ *
+ * opsu! is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * opsu! is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with opsu!.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package itdelatrisu.opsu.replay;
+
+import static org.junit.Assert.*;
+
+import itdelatrisu.opsu.io.OsuWriter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.text.NumberFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.Random;
+
+import lzma.streams.LzmaOutputStream;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Checks that Replay.write produces the same file as the previous writer,
+ * which formatted the data with String.format and DecimalFormat.
+ */
+public class ReplayTest {
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	/** Returns a value like the ones in replays: rounded to a few bits, or not at all. */
+	private static float value(Random random, float min, float max) {
+		float v = min + random.nextFloat() * (max - min);
+		switch (random.nextInt(4)) {
+		case 0: return Math.round(v);
+		case 1: return Math.round(v * 8) / 8f;
+		case 2: return (float) (Math.round(v * 100000.0) / 100000.0);
+		default: return v;
+		}
+	}
+
+	/** Creates a replay with random frames and life data. */
+	private static Replay randomReplay(long seed, int frameCount) {
+		Random random = new Random(seed);
+		Replay replay = new Replay();
+		replay.mode = 0;
+		replay.version = 20140721;
+		replay.beatmapHash = "d41d8cd98f00b204e9800998ecf8427e";
+		replay.playerName = "Guest";
+		replay.replayHash = "0123456789abcdef0123456789abcdef";
+		replay.hit300 = 812;
+		replay.hit100 = 31;
+		replay.hit50 = 2;
+		replay.geki = 130;
+		replay.katu = 17;
+		replay.miss = 4;
+		replay.score = 4123456;
+		replay.combo = 612;
+		replay.perfect = false;
+		replay.mods = 72;
+		replay.timestamp = new Date(1445000000000L);
+		replay.seed = -random.nextInt(100000);
+
+		replay.lifeFrames = new LifeFrame[frameCount / 50];
+		for (int i = 0; i < replay.lifeFrames.length; i++)
+			replay.lifeFrames[i] = new LifeFrame(i * 2000, (i == 0) ? 1f : value(random, 0f, 1f));
+
+		if (frameCount > 0) {
+			replay.frames = new ReplayFrames();
+			int time = 0;
+			for (int i = 0; i < frameCount; i++) {
+				int diff = (i == 0) ? 0 : random.nextInt(40);
+				time += diff;
+				float x = (i % 1000 == 999) ? -value(random, 0, 1e-4f) : value(random, -200f, 712f);
+				float y = (i % 1000 == 500) ? value(random, 1e9f, 1e10f) : value(random, -200f, 584f);
+				replay.frames.add(diff, time, x, y, random.nextInt(16));
+			}
+		}
+		return replay;
+	}
+
+	/** Encodes a replay the way Replay.save did before it streamed the data (in an English locale). */
+	private static byte[] oldEncoding(Replay replay) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		OsuWriter writer = new OsuWriter(out);
+		DecimalFormatSymbols symbols = DecimalFormatSymbols.getInstance(Locale.ENGLISH);
+
+		// header
+		writer.write(replay.mode);
+		writer.write(replay.version);
+		writer.write(replay.beatmapHash);
+		writer.write(replay.playerName);
+		writer.write(replay.replayHash);
+		writer.write(replay.hit300);
+		writer.write(replay.hit100);
+		writer.write(replay.hit50);
+		writer.write(replay.geki);
+		writer.write(replay.katu);
+		writer.write(replay.miss);
+		writer.write(replay.score);
+		writer.write(replay.combo);
+		writer.write(replay.perfect);
+		writer.write(replay.mods);
+
+		// life data
+		StringBuilder sb = new StringBuilder();
+		if (replay.lifeFrames != null) {
+			NumberFormat nf = new DecimalFormat("##.##", symbols);
+			for (LifeFrame frame : replay.lifeFrames)
+				sb.append(String.format(Locale.ENGLISH, "%d|%s,", frame.getTime(), nf.format(frame.getPercentage())));
+		}
+		writer.write(sb.toString());
+
+		// timestamp
+		writer.write(replay.timestamp);
+
+		// LZMA-encoded replay data
+		ReplayFrames frames = replay.frames;
+		if (frames != null && !frames.isEmpty()) {
+			NumberFormat nf = new DecimalFormat("###.#####", symbols);
+			sb = new StringBuilder();
+			for (int i = 0; i < frames.size(); i++) {
+				sb.append(String.format(Locale.ENGLISH, "%d|%s|%s|%d,",
+						frames.getTimeDiff(i), nf.format(frames.getX(i)),
+						nf.format(frames.getY(i)), frames.getKeys(i)));
+			}
+			sb.append(String.format(Locale.ENGLISH, "%s|0|0|%d", Replay.SEED_STRING, replay.seed));
+			ByteArrayOutputStream bout = new ByteArrayOutputStream();
+			LzmaOutputStream compressedOut = new LzmaOutputStream.Builder(bout).useMediumDictionarySize().build();
+			compressedOut.write(sb.toString().getBytes(StandardCharsets.US_ASCII));
+			compressedOut.close();
+			byte[] compressed = bout.toByteArray();
+			writer.write(compressed.length);
+			writer.write(compressed);
+		} else
+			writer.write(0);
+		writer.close();
+		return out.toByteArray();
+	}
+
+	/** Writes a replay with Replay.write and returns the file contents. */
+	private byte[] write(Replay replay) throws IOException {
+		File file = folder.newFile();
+		replay.write(file);
+		return Files.readAllBytes(file.toPath());
+	}
+
+	@Test
+	public void matchesOldEncoding() throws IOException {
+		for (int frameCount : new int[] { 1, 100, 20000 }) {
+			Replay replay = randomReplay(frameCount, frameCount);
+			assertArrayEquals("frames: " + frameCount, oldEncoding(replay), write(replay));
+		}
+	}
+
+	@Test
+	public void matchesOldEncodingWithoutFrames() throws IOException {
+		Replay replay = randomReplay(3, 0);
+		assertArrayEquals(oldEncoding(replay), write(replay));
+		replay.frames = new ReplayFrames();
+		assertArrayEquals(oldEncoding(replay), write(replay));
+	}
+
+	@Test
+	public void overwritesLongerFile() throws IOException {
+		File file = folder.newFile();
+		randomReplay(4, 5000).write(file);
+		Replay replay = randomReplay(5, 100);
+		replay.write(file);
+		assertArrayEquals(oldEncoding(replay), Files.readAllBytes(file.toPath()));
+	}
+
+	@Test
+	public void readsBack() throws IOException {
+		Replay replay = randomReplay(6, 3000);
+		File file = folder.newFile();
+		replay.write(file);
+		Replay loaded = new Replay(file);
+		loaded.load();
+		assertEquals(replay.score, loaded.score);
+		assertEquals(replay.seed, loaded.seed);
+		assertEquals(replay.lifeFrames.length, loaded.lifeFrames.length);
+		assertEquals(replay.frames.size(), loaded.frames.size());
+		for (int i = 0; i < replay.frames.size(); i++) {
+			assertEquals(replay.frames.getTimeDiff(i), loaded.frames.getTimeDiff(i));
+			assertEquals(replay.frames.getKeys(i), loaded.frames.getKeys(i));
+		}
+	}
+}
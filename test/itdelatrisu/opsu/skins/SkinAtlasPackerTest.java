@@ -0,0 +1,154 @@
+/*
+ * opsu! - an open-source osu! client
+ * Copyright (C) 2014, 2015 Jeffrey Han
+ *
+ * opsu! is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * opsu! is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with opsu!.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package itdelatrisu.opsu.skins;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class SkinAtlasPackerTest {
+	private static final int PAGE_SIZE = 2048, PADDING = 2, MAX_PAGES = 4;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	/** Adds random skin-like images (up to the largest packable size). */
+	private static SkinAtlasPacker randomPacker(long seed, int count) {
+		Random random = new Random(seed);
+		SkinAtlasPacker packer = new SkinAtlasPacker(PAGE_SIZE, PADDING, MAX_PAGES);
+		for (int i = 0; i < count; i++) {
+			int w = 1 + random.nextInt(random.nextBoolean() ? 128 : SkinAtlas.MAX_IMAGE_SIZE);
+			int h = 1 + random.nextInt(random.nextBoolean() ? 128 : SkinAtlas.MAX_IMAGE_SIZE);
+			packer.add("image" + i, w, h);
+		}
+		return packer;
+	}
+
+	/** Checks that packed regions keep at least the padding between each other and the page edges. */
+	private static void assertPadded(SkinAtlasPacker packer) {
+		for (SkinAtlasPacker.Region a : packer.getRegions()) {
+			if (!a.isPacked())
+				continue;
+			assertTrue(a.toString(), a.x >= PADDING && a.y >= PADDING);
+			assertTrue(a.toString(), a.x + a.width + PADDING <= PAGE_SIZE && a.y + a.height + PADDING <= PAGE_SIZE);
+			for (SkinAtlasPacker.Region b : packer.getRegions()) {
+				if (a == b || !b.isPacked() || a.page != b.page)
+					continue;
+				boolean apart =
+					a.x + a.width + PADDING * 2 <= b.x || b.x + b.width + PADDING * 2 <= a.x ||
+					a.y + a.height + PADDING * 2 <= b.y || b.y + b.height + PADDING * 2 <= a.y;
+				assertTrue(a + ", " + b, apart);
+			}
+		}
+	}
+
+	@Test
+	public void packsWithoutOverlap() {
+		for (long seed = 1; seed <= 20; seed++) {
+			SkinAtlasPacker packer = randomPacker(seed, 60);
+			int pages = packer.pack();
+			assertTrue(pages >= 1 && pages <= MAX_PAGES);
+			assertEquals(pages, packer.getPageCount());
+			assertNull(packer.validate());
+			assertPadded(packer);
+			for (SkinAtlasPacker.Region r : packer.getRegions())
+				assertTrue(r.toString(), r.isPacked());
+		}
+	}
+
+	@Test
+	public void validateFindsOverlap() {
+		SkinAtlasPacker packer = new SkinAtlasPacker(PAGE_SIZE, PADDING, MAX_PAGES);
+		packer.addPacked("a", 100, 100, 0, 10, 10);
+		packer.addPacked("b", 100, 100, 0, 109, 109);
+		assertNotNull(packer.validate());
+
+		// the same place on another page is fine
+		packer = new SkinAtlasPacker(PAGE_SIZE, PADDING, MAX_PAGES);
+		packer.addPacked("a", 100, 100, 0, 10, 10);
+		packer.addPacked("b", 100, 100, 1, 10, 10);
+		assertNull(packer.validate());
+	}
+
+	@Test
+	public void validateFindsOutOfBounds() {
+		SkinAtlasPacker packer = new SkinAtlasPacker(PAGE_SIZE, PADDING, MAX_PAGES);
+		packer.addPacked("a", 100, 100, 0, PAGE_SIZE - 99, 0);
+		assertNotNull(packer.validate());
+	}
+
+	@Test
+	public void stopsAtMaxPages() {
+		// each page holds 3x3 of these: 40 do not fit on 4 pages
+		SkinAtlasPacker packer = new SkinAtlasPacker(PAGE_SIZE, PADDING, MAX_PAGES);
+		for (int i = 0; i < 40; i++)
+			packer.add("image" + i, 600, 600);
+		assertEquals(MAX_PAGES, packer.pack());
+		assertNull(packer.validate());
+		assertPadded(packer);
+		int packed = 0;
+		for (SkinAtlasPacker.Region r : packer.getRegions()) {
+			if (r.isPacked()) {
+				assertTrue(r.page < MAX_PAGES);
+				packed++;
+			}
+		}
+		assertEquals(MAX_PAGES * 9, packed);
+	}
+
+	@Test
+	public void skipsTooLargeImages() {
+		assertTrue(SkinAtlas.isPackable(SkinAtlas.MAX_IMAGE_SIZE, SkinAtlas.MAX_IMAGE_SIZE));
+		assertFalse(SkinAtlas.isPackable(SkinAtlas.MAX_IMAGE_SIZE + 1, 1));
+		assertFalse(SkinAtlas.isPackable(1, SkinAtlas.MAX_IMAGE_SIZE + 1));
+
+		// larger than a page (with padding): left unpacked
+		SkinAtlasPacker packer = new SkinAtlasPacker(PAGE_SIZE, PADDING, MAX_PAGES);
+		SkinAtlasPacker.Region small = packer.add("small", 10, 10);
+		SkinAtlasPacker.Region large = packer.add("large", PAGE_SIZE - PADDING, 10);
+		assertEquals(1, packer.pack());
+		assertTrue(small.isPacked());
+		assertFalse(large.isPacked());
+	}
+
+	@Test
+	public void repacksTheSame() {
+		SkinAtlasPacker a = randomPacker(7, 80), b = randomPacker(7, 80);
+		assertEquals(a.pack(), b.pack());
+		for (int i = 0; i < a.getRegions().size(); i++)
+			assertEquals(a.getRegions().get(i).toString(), b.getRegions().get(i).toString());
+	}
+
+	@Test
+	public void prunesOtherCaches() throws IOException {
+		File root = folder.newFolder();
+		File keep = new File(root, "keep"), old = new File(root, "old");
+		assertTrue(keep.mkdir() && old.mkdir());
+		assertTrue(new File(keep, "page0.png").createNewFile());
+		assertTrue(new File(old, "page0.png").createNewFile());
+		SkinAtlas.pruneCache(keep);
+		assertTrue(new File(keep, "page0.png").isFile());
+		assertFalse(old.exists());
+	}
+}
@@ -0,0 +1,241 @@
+/*
+ * opsu! - an open-source osu! client
+ * Copyright (C) 2014, 2015 Jeffrey Han
+ *
+ * opsu! is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * opsu! is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with opsu!.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package itdelatrisu.opsu.states;
+
+import static org.junit.Assert.*;
+
+import itdelatrisu.opsu.GameData;
+import itdelatrisu.opsu.GameJudge;
+import itdelatrisu.opsu.Options;
+import itdelatrisu.opsu.beatmap.Beatmap;
+import itdelatrisu.opsu.beatmap.BeatmapParser;
+import itdelatrisu.opsu.beatmap.HitObject;
+import itdelatrisu.opsu.objects.GameObject;
+import itdelatrisu.opsu.objects.curves.Vec2f;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Stack;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import yugecin.opsudance.BenchmarkCorpus;
+import yugecin.opsudance.ObjectColorOverrides;
+
+/**
+ * Checks the visible object window and follow point table of
+ * Game.drawHitObjects against the per-frame scan they replaced, over a
+ * recorded sequence of track positions (with seeks), with drawing stubbed.
+ */
+public class GameTest {
+	private static final int WIDTH = 1024, HEIGHT = 768;
+
+	/** Follow point spacing and hit circle size, as in game. */
+	private static final int FOLLOWPOINT_INTERVAL = HEIGHT / 14, HITCIRCLE_WIDTH = 90;
+
+	/** Frames per recorded sequence. */
+	private static final int FRAMES = 20000;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private Beatmap beatmap;
+	private GameObject[] gameObjects;
+	private float[] followPoints;
+	private int[] followPointCounts;
+
+	/** Loads a beatmap and fills the follow point table. */
+	private void load(File file) {
+		beatmap = BeatmapParser.parseFile(file);
+		Options.width = WIDTH;
+		Options.height = HEIGHT;
+		HitObject.init(WIDTH, HEIGHT);
+		GameData data = new GameData(WIDTH, HEIGHT);
+		GameJudge.initHeadless(beatmap, data);
+		ObjectColorOverrides.comboColors = beatmap.getComboColors();
+		ObjectColorOverrides.reset(beatmap.beatmapID);
+		gameObjects = GameJudge.createGameObjects(beatmap, null, data);
+		followPoints = new float[gameObjects.length * Game.FOLLOWPOINT_STRIDE];
+		followPointCounts = new int[gameObjects.length];
+		Game.computeFollowPoints(beatmap.objects, gameObjects, FOLLOWPOINT_INTERVAL, HITCIRCLE_WIDTH, followPoints, followPointCounts);
+	}
+
+	/**
+	 * Records a play: frames of 10 to 20 ms, with a seek every few seconds,
+	 * and the object index the judge would be at (first object not ended).
+	 * @return the track position and object index of each frame
+	 */
+	private int[][] record(long seed) {
+		Random random = new Random(seed);
+		int endTime = gameObjects[gameObjects.length - 1].getEndTime() + 1000;
+		int[][] frames = new int[FRAMES][2];
+		int time = -1000;
+		for (int f = 0; f < FRAMES; f++) {
+			if (random.nextInt(300) == 0 || time > endTime)
+				time = random.nextInt(endTime);
+			else
+				time += 10 + random.nextInt(11);
+			int objectIndex = 0;
+			while (objectIndex < gameObjects.length && gameObjects[objectIndex].getEndTime() < time)
+				objectIndex++;
+			frames[f][0] = time;
+			frames[f][1] = objectIndex;
+		}
+		return frames;
+	}
+
+	/** Index of the previous object to draw follow points from, as in drawHitObjects. */
+	private int lastObjectIndex(int objectIndex, int trackPosition) {
+		if (objectIndex > 0 && objectIndex < beatmap.objects.length &&
+		    trackPosition < beatmap.objects[objectIndex].getTime() && !beatmap.objects[objectIndex - 1].isSpinner())
+			return objectIndex - 1;
+		return -1;
+	}
+
+	/**
+	 * The old drawHitObjects scan: a stack of visible objects and the follow
+	 * points computed every frame.
+	 * @param out the drawn objects and follow points
+	 */
+	private void oldFrame(int trackPosition, int objectIndex, int approachTime, List<Float> out) {
+		int lastObjectIndex = lastObjectIndex(objectIndex, trackPosition);
+		Stack<Integer> stack = new Stack<Integer>();
+		for (int index = objectIndex; index < gameObjects.length && beatmap.objects[index].getTime() < trackPosition + approachTime; index++) {
+			stack.add(index);
+			if (beatmap.objects[index].isSpinner()) {
+				lastObjectIndex = -1;
+				continue;
+			}
+			if (lastObjectIndex != -1 && !beatmap.objects[index].isNewCombo()) {
+				int lastObjectEndTime = gameObjects[lastObjectIndex].getEndTime() + 1;
+				int objectStartTime = beatmap.objects[index].getTime();
+				Vec2f startPoint = gameObjects[lastObjectIndex].getPointAt(lastObjectEndTime);
+				Vec2f endPoint = gameObjects[index].getPointAt(objectStartTime);
+				float xDiff = endPoint.x - startPoint.x;
+				float yDiff = endPoint.y - startPoint.y;
+				float dist = (float) Math.hypot(xDiff, yDiff);
+				int numPoints = (int) ((dist - HITCIRCLE_WIDTH) / FOLLOWPOINT_INTERVAL);
+				if (numPoints > 0) {
+					out.add((float) Math.toDegrees(Math.atan2(yDiff, xDiff)));
+					float step = 1f / (numPoints + 1);
+					float t = step;
+					for (int i = 0; i < numPoints; i++) {
+						out.add(startPoint.x + xDiff * t);
+						out.add(startPoint.y + yDiff * t);
+						t += step;
+					}
+				}
+			}
+			lastObjectIndex = index;
+		}
+		while (!stack.isEmpty())
+			out.add((float) -stack.pop());
+	}
+
+	/**
+	 * The new drawHitObjects scan: the window moved from the last frame, and
+	 * the follow point table.
+	 * @param out the drawn objects and follow points
+	 * @return the new window end
+	 */
+	private int newFrame(int trackPosition, int objectIndex, int approachTime, int visibleObjectEnd, List<Float> out) {
+		int lastObjectIndex = lastObjectIndex(objectIndex, trackPosition);
+		visibleObjectEnd = Game.updateVisibleObjectEnd(beatmap.objects, objectIndex, visibleObjectEnd, trackPosition + approachTime);
+		for (int index = objectIndex; index < visibleObjectEnd; index++) {
+			if (beatmap.objects[index].isSpinner()) {
+				lastObjectIndex = -1;
+				continue;
+			}
+			int numPoints = followPointCounts[index];
+			if (lastObjectIndex != -1 && numPoints > 0) {
+				int offset = index * Game.FOLLOWPOINT_STRIDE;
+				float startX = followPoints[offset], startY = followPoints[offset + 1];
+				float xDiff = followPoints[offset + 2], yDiff = followPoints[offset + 3];
+				out.add(followPoints[offset + 4]);
+				float step = 1f / (numPoints + 1);
+				float t = step;
+				for (int i = 0; i < numPoints; i++) {
+					out.add(startX + xDiff * t);
+					out.add(startY + yDiff * t);
+					t += step;
+				}
+			}
+			lastObjectIndex = index;
+		}
+		for (int idx = visibleObjectEnd - 1; idx >= objectIndex; idx--)
+			out.add((float) -idx);
+		return visibleObjectEnd;
+	}
+
+	@Test
+	public void matchesPerFrameScan() throws IOException {
+		List<File> corpus = BenchmarkCorpus.write(folder.newFolder());
+		long seed = 1;
+		for (File file : corpus) {
+			load(file);
+			int[][] frames = record(seed++);
+			for (int approachTime : new int[] { 450, 1200, 1800 }) {
+				int visibleObjectEnd = 0;
+				List<Float> expected = new ArrayList<Float>(), actual = new ArrayList<Float>();
+				for (int f = 0; f < frames.length; f++) {
+					expected.clear();
+					actual.clear();
+					oldFrame(frames[f][0], frames[f][1], approachTime, expected);
+					visibleObjectEnd = newFrame(frames[f][0], frames[f][1], approachTime, visibleObjectEnd, actual);
+					assertEquals(String.format("%s, frame %d at %d", file.getName(), f, frames[f][0]), expected, actual);
+				}
+			}
+		}
+	}
+
+	@Test
+	public void benchmark() throws IOException {
+		List<File> corpus = BenchmarkCorpus.write(folder.newFolder());
+		load(corpus.get(0));
+		int[][] frames = record(1);
+		int approachTime = 1200;
+		List<Float> sink = new ArrayList<Float>();
+		long oldTime = Long.MAX_VALUE, newTime = Long.MAX_VALUE, drawn = 0;
+		for (int round = 0; round < 10; round++) {
+			long start = System.nanoTime();
+			for (int[] frame : frames) {
+				sink.clear();
+				oldFrame(frame[0], frame[1], approachTime, sink);
+				drawn += sink.size();
+			}
+			oldTime = Math.min(oldTime, System.nanoTime() - start);
+
+			start = System.nanoTime();
+			int visibleObjectEnd = 0;
+			for (int[] frame : frames) {
+				sink.clear();
+				visibleObjectEnd = newFrame(frame[0], frame[1], approachTime, visibleObjectEnd, sink);
+				drawn -= sink.size();
+			}
+			newTime = Math.min(newTime, System.nanoTime() - start);
+		}
+		System.out.println(String.format("Game.drawHitObjects: window and table %.1f ns per frame, per-frame scan %.1f ns per frame (%s)",
+				(double) newTime / FRAMES, (double) oldTime / FRAMES, drawn == 0 ? "ok" : "?"));
+		assertTrue(newTime < oldTime);
+	}
+}
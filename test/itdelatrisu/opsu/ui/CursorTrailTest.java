@@ -0,0 +1,200 @@
+/*
+ * opsu! - an open-source osu! client
+ * Copyright (C) 2014, 2015 Jeffrey Han
+ *
+ * opsu! is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * opsu! is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with opsu!.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package itdelatrisu.opsu.ui;
+
+import static org.junit.Assert.*;
+
+import java.awt.Point;
+import java.lang.management.ManagementFactory;
+import java.util.LinkedList;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Checks the cursor trail ring buffer against the linked list of points it
+ * replaced, and compares their cost per frame.
+ */
+public class CursorTrailTest {
+	/** Trail lengths to benchmark (the trail length option goes up to 400). */
+	private static final int[] LENGTHS = { 20, 200, 2000 };
+
+	/** Number of frames per benchmark round. */
+	private static final int FRAMES = 20000;
+
+	/** The trail as it was kept before: a linked list of points. */
+	private static class ListTrail {
+		final LinkedList<Point> trail = new LinkedList<Point>();
+
+		/** Adds all points between (x1, y1) and (x2, y2) (the old Cursor.addCursorPoints). */
+		boolean addLine(int x1, int y1, int x2, int y2) {
+			boolean added = false;
+			int d = 0;
+			int dy = Math.abs(y2 - y1);
+			int dx = Math.abs(x2 - x1);
+			int dy2 = (dy << 1);
+			int dx2 = (dx << 1);
+			int ix = x1 < x2 ? 1 : -1;
+			int iy = y1 < y2 ? 1 : -1;
+			int k = 5;
+			if (dy <= dx) {
+				for (int i = 0; ; i++) {
+					if (i == k) {
+						trail.add(new Point(x1, y1));
+						added = true;
+						i = 0;
+					}
+					if (x1 == x2)
+						break;
+					x1 += ix;
+					d += dy2;
+					if (d > dx) {
+						y1 += iy;
+						d -= dx2;
+					}
+				}
+			} else {
+				for (int i = 0; ; i++) {
+					if (i == k) {
+						trail.add(new Point(x1, y1));
+						added = true;
+						i = 0;
+					}
+					if (y1 == y2)
+						break;
+					y1 += iy;
+					d += dx2;
+					if (d > dy) {
+						x1 += ix;
+						d -= dy2;
+					}
+				}
+			}
+			return added;
+		}
+	}
+
+	/** Cursor position at a frame: circles with a changing radius. */
+	private static int mouseX(int frame) { return 512 + (int) (300 * Math.cos(frame * 0.05) * Math.sin(frame * 0.003)); }
+	private static int mouseY(int frame) { return 384 + (int) (300 * Math.sin(frame * 0.05) * Math.sin(frame * 0.003)); }
+
+	/** Runs a frame on the ring buffer like Cursor.draw, returning a checksum of the drawn points. */
+	private static long frame(CursorTrail trail, int frame, int length) {
+		int x = mouseX(frame), y = mouseY(frame);
+		if (frame == 0 || !trail.addLine(mouseX(frame - 1), mouseY(frame - 1), x, y))
+			trail.add(x, y);
+		trail.removeFirst(trail.size() - length);
+		long sum = 0;
+		for (int i = 0, size = trail.size(); i < size; i++)
+			sum += trail.getX(i) * 31 + trail.getY(i);
+		return sum;
+	}
+
+	/** Runs a frame on the linked list like the old Cursor.draw. */
+	private static long frame(ListTrail list, int frame, int length) {
+		int x = mouseX(frame), y = mouseY(frame);
+		if (frame == 0 || !list.addLine(mouseX(frame - 1), mouseY(frame - 1), x, y))
+			list.trail.add(new Point(x, y));
+		for (int i = 0, n = list.trail.size() - length; i < n && !list.trail.isEmpty(); i++)
+			list.trail.remove();
+		long sum = 0;
+		for (Point p : list.trail)
+			sum += p.x * 31 + p.y;
+		return sum;
+	}
+
+	/** Returns the bytes allocated by this thread so far. */
+	private static long allocatedBytes() {
+		return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean()).getCurrentThreadAllocatedBytes();
+	}
+
+	@Test
+	public void matchesLinkedList() {
+		for (int length : LENGTHS) {
+			CursorTrail trail = new CursorTrail(4);
+			ListTrail list = new ListTrail();
+			for (int f = 0; f < 5000; f++) {
+				assertEquals(frame(list, f, length), frame(trail, f, length));
+				assertEquals(list.trail.size(), trail.size());
+			}
+			int i = 0;
+			for (Point p : list.trail) {
+				assertEquals(p.x, trail.getX(i));
+				assertEquals(p.y, trail.getY(i));
+				i++;
+			}
+		}
+	}
+
+	@Test
+	public void wrapsAndGrows() {
+		CursorTrail trail = new CursorTrail(4);
+		int next = 0, first = 0;
+		Random random = new Random(3);
+		for (int n = 0; n < 1000; n++) {
+			int add = random.nextInt(6);
+			for (int i = 0; i < add; i++, next++)
+				trail.add(next, -next);
+			int remove = random.nextInt(6);
+			trail.removeFirst(remove);
+			first = Math.min(first + remove, next);
+			if (trail.isEmpty())
+				first = next;
+			assertEquals(next - first, trail.size());
+			for (int i = 0; i < trail.size(); i++) {
+				assertEquals(first + i, trail.getX(i));
+				assertEquals(-(first + i), trail.getY(i));
+			}
+		}
+		assertTrue(trail.capacity() <= 64);
+	}
+
+	@Test
+	public void benchmark() {
+		for (int length : LENGTHS) {
+			long listTime = Long.MAX_VALUE, ringTime = Long.MAX_VALUE;
+			long listBytes = Long.MAX_VALUE, ringBytes = Long.MAX_VALUE;
+			long sink = 0;
+			for (int round = 0; round < 5; round++) {
+				ListTrail list = new ListTrail();
+				long bytes = allocatedBytes(), start = System.nanoTime();
+				for (int f = 0; f < FRAMES; f++)
+					sink += frame(list, f, length);
+				listTime = Math.min(listTime, System.nanoTime() - start);
+				listBytes = Math.min(listBytes, allocatedBytes() - bytes);
+
+				// warm up the buffer to the trail length, then measure the steady state
+				CursorTrail trail = new CursorTrail();
+				for (int f = 0; f < 1000; f++)
+					sink += frame(trail, f, length);
+				bytes = allocatedBytes();
+				start = System.nanoTime();
+				for (int f = 1000; f < 1000 + FRAMES; f++)
+					sink += frame(trail, f, length);
+				ringTime = Math.min(ringTime, System.nanoTime() - start);
+				ringBytes = Math.min(ringBytes, allocatedBytes() - bytes);
+			}
+			System.out.println(String.format(
+					"CursorTrail (length %d): ring buffer %.1f ns, %.1f bytes per frame; linked list %.1f ns, %.1f bytes per frame (%s)",
+					length, (double) ringTime / FRAMES, (double) ringBytes / FRAMES,
+					(double) listTime / FRAMES, (double) listBytes / FRAMES, sink != 0 ? "ok" : "?"));
+			assertTrue(ringBytes < FRAMES);
+			assertTrue(ringTime < listTime * 2);
+		}
+	}
+}
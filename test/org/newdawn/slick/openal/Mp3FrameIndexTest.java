@@ -0,0 +1,228 @@
+/*
+ * Copyright (c) 2013, Slick2D
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * - Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ * - Neither the name of the Slick2D nor the names of its contributors may be
+ *   used to endorse or promote products derived from this software without
+ *   specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.newdawn.slick.openal;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class Mp3FrameIndexTest {
+	/** Frames in the test stream. */
+	private static final int FRAMES = 200;
+
+	/** Frame preroll used by the stream player. */
+	private static final int PREROLL = 10;
+
+	private static byte[] mp3;
+	private static byte[] pcm;
+	private static Mp3FrameIndex index;
+
+	/** Writes bits most significant first. */
+	private static class BitWriter {
+		private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		private int current, count;
+
+		void write(int value, int bits) {
+			for (int i = bits - 1; i >= 0; i--) {
+				current = (current << 1) | ((value >>> i) & 1);
+				if (++count == 8) {
+					out.write(current);
+					current = count = 0;
+				}
+			}
+		}
+
+		int bitLength() { return out.size() * 8 + count; }
+
+		byte[] toByteArray() {
+			if (count > 0)
+				write(0, 8 - count);
+			return out.toByteArray();
+		}
+	}
+
+	/**
+	 * Builds an MPEG-1 layer III stream (44.1kHz, 128kbps, stereo) with
+	 * pseudo-random spectra, coded in the count1 region only (table B, no
+	 * scale factors), so no encoder is needed. The main data of a frame often
+	 * starts in the previous frames (bit reservoir), like in encoded files.
+	 */
+	private static byte[] buildStream(long seed) {
+		Random random = new Random(seed);
+		ByteArrayOutputStream stream = new ByteArrayOutputStream();
+		stream.write('I'); stream.write('D'); stream.write('3');  // empty ID3v2 tag
+		stream.write(new byte[] { 3, 0, 0, 0, 0, 0, 0 }, 0, 7);
+
+		ByteArrayOutputStream reservoir = new ByteArrayOutputStream();  // main data slots of all frames
+		int slotsBefore = 0, dataEnd = 0;
+		for (int f = 0; f < FRAMES; f++) {
+			int padding = (f % 3 == 0) ? 1 : 0;
+			int slots = 144 * 128000 / 44100 + padding - 4 - 32;
+
+			// main data: 2 granules x 2 channels
+			BitWriter data = new BitWriter();
+			int[] lengths = new int[4];
+			for (int gc = 0; gc < 4; gc++) {
+				int start = data.bitLength();
+				int quads = 10 + random.nextInt(30);
+				for (int q = 0; q < quads; q++) {
+					int code = random.nextInt(16);
+					data.write(code, 4);
+					for (int bit = 3; bit >= 0; bit--) {
+						if (((code >>> bit) & 1) == 0)  // table B: inverted bits, 0 means a value of 1
+							data.write(random.nextInt(2), 1);
+					}
+				}
+				lengths[gc] = data.bitLength() - start;
+			}
+			byte[] mainData = data.toByteArray();
+
+			// place the main data as far back as the reservoir allows
+			int begin = Math.max(dataEnd, slotsBefore - 511);
+			int mainDataBegin = (f == 0) ? 0 : slotsBefore - begin;
+			if (f == 0)
+				begin = 0;
+			while (reservoir.size() < begin)
+				reservoir.write(0);
+			reservoir.write(mainData, 0, mainData.length);
+			dataEnd = begin + mainData.length;
+			while (reservoir.size() < slotsBefore + slots)
+				reservoir.write(0);
+
+			// header and side information
+			BitWriter side = new BitWriter();
+			side.write(0xFFFB, 16);
+			side.write(0x90 | (padding << 1), 8);
+			side.write(0x00, 8);
+			side.write(mainDataBegin, 9);
+			side.write(0, 3);  // private bits
+			side.write(0, 8);  // scfsi
+			for (int gc = 0; gc < 4; gc++) {
+				side.write(lengths[gc], 12);  // part2_3_length
+				side.write(0, 9);             // big_values
+				side.write(180 + random.nextInt(10), 8);  // global_gain
+				side.write(0, 4);             // scalefac_compress: no scale factors
+				side.write(0, 1);             // window_switching_flag
+				side.write(0, 15);            // table_select
+				side.write(0, 4);             // region0_count
+				side.write(0, 3);             // region1_count
+				side.write(0, 1);             // preflag
+				side.write(0, 1);             // scalefac_scale
+				side.write(1, 1);             // count1table_select: table B
+			}
+			byte[] header = side.toByteArray();
+			stream.write(header, 0, header.length);
+			byte[] all = reservoir.toByteArray();
+			stream.write(all, slotsBefore, slots);
+			slotsBefore += slots;
+			if (dataEnd > slotsBefore)
+				throw new IllegalStateException("main data does not fit");
+		}
+		return stream.toByteArray();
+	}
+
+	/** Reads a stream until its end. */
+	private static byte[] readAll(InputStream in) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] buf = new byte[4096];
+		int read;
+		while ((read = in.read(buf)) != -1)
+			out.write(buf, 0, read);
+		return out.toByteArray();
+	}
+
+	@BeforeClass
+	public static void decode() throws IOException {
+		mp3 = buildStream(12345);
+		index = Mp3FrameIndex.build(new ByteArrayInputStream(mp3));
+		try (Mp3InputStream in = new Mp3InputStream(new ByteArrayInputStream(mp3))) {
+			pcm = readAll(in);
+		}
+	}
+
+	@Test
+	public void indexesAllFrames() {
+		assertEquals(FRAMES, index.getFrameCount());
+		assertEquals(FRAMES * 1152, index.getSampleCount());
+		assertEquals(10, index.getOffset(0));
+		assertEquals(FRAMES * 1152 * 4, pcm.length);
+		assertEquals(199, index.findFrame(FRAMES * 1152 - 1));
+		assertEquals(1, index.findFrame(1152));
+	}
+
+	@Test
+	public void linearDecodeIsNotSilent() {
+		int nonZero = 0;
+		for (byte b : pcm) {
+			if (b != 0)
+				nonZero++;
+		}
+		assertTrue(nonZero > pcm.length / 2);
+	}
+
+	@Test
+	public void indexedSeekMatchesLinearDecode() throws IOException {
+		int[] frames = { 0, 1, 5, PREROLL, PREROLL + 1, 37, 100, 150, FRAMES - 2, FRAMES - 1 };
+		for (int frame : frames) {
+			Mp3InputStream in = index.open(new ByteArrayInputStream(mp3), frame, PREROLL);
+			assertNotNull(in);
+			byte[] seeked;
+			try {
+				seeked = readAll(in);
+			} finally {
+				in.close();
+			}
+			int offset = index.getSample(frame) * 4;
+			byte[] expected = Arrays.copyOfRange(pcm, offset, pcm.length);
+			assertArrayEquals(String.format("PCM after seeking to frame %d", frame), expected, seeked);
+		}
+	}
+
+	@Test
+	public void openFailsPastTheEnd() throws IOException {
+		final boolean[] closed = new boolean[1];
+		InputStream truncated = new ByteArrayInputStream(Arrays.copyOf(mp3, index.getOffset(50))) {
+			@Override
+			public void close() throws IOException {
+				closed[0] = true;
+				super.close();
+			}
+		};
+		assertNull(index.open(truncated, 100, PREROLL));
+		assertTrue("the stream must be closed when the decoder cannot be opened", closed[0]);
+	}
+}
@@ -0,0 +1,237 @@
+/*
+ * Copyright (c) 2013, Slick2D
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * - Redistributions of source code must retain the above copyright notice,
+ *   this list of conditions and the following disclaimer.
+ * - Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ * - Neither the name of the Slick2D nor the names of its contributors may be
+ *   used to endorse or promote products derived from this software without
+ *   specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.newdawn.slick.openal;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Checks the decode-ahead ring buffer and the decoder thread feeding it,
+ * with a generated stream instead of a decoder.
+ */
+public class StreamDecoderTest {
+	/** Decode-ahead capacity used by the decoder tests. */
+	private static final int CAPACITY = 16384;
+
+	/** Number of seeks, and the bytes read between them. */
+	private static final int SEEKS = 30, SEEK_INTERVAL = 100000;
+
+	/** Returns the byte at a position of the generated stream. */
+	private static byte byteAt(long pos) {
+		return (byte) (pos * 31 + (pos >>> 8) * 7 + (pos >>> 16));
+	}
+
+	/** A seekable stream of generated bytes, read in chunks of random size. */
+	private static class FakeStream implements AudioInputStream {
+		final long length;
+		final Random random;
+		long position = 0;
+		int reads = 0;
+
+		FakeStream(long length, long seed) {
+			this.length = length;
+			this.random = new Random(seed);
+		}
+
+		@Override
+		public int getChannels() { return 2; }
+
+		@Override
+		public int getRate() { return 44100; }
+
+		@Override
+		public int read() throws IOException {
+			byte[] b = new byte[1];
+			return (read(b, 0, 1) < 0) ? -1 : b[0] & 0xFF;
+		}
+
+		@Override
+		public int read(byte[] data) throws IOException { return read(data, 0, data.length); }
+
+		@Override
+		public int read(byte[] data, int ofs, int len) throws IOException {
+			reads++;
+			if (position >= length)
+				return -1;
+			int count = (int) Math.min(1 + random.nextInt(len), length - position);
+			for (int i = 0; i < count; i++)
+				data[ofs + i] = byteAt(position++);
+			return count;
+		}
+
+		@Override
+		public boolean atEnd() { return position >= length; }
+
+		@Override
+		public void close() throws IOException {}
+
+		@Override
+		public long skip(long n) throws IOException {
+			long skipped = Math.min(n, length - position);
+			position += skipped;
+			return skipped;
+		}
+	}
+
+	/** Waits until a condition holds, failing after a few seconds. */
+	private interface Condition { boolean holds(); }
+	private static void await(Condition condition) throws InterruptedException {
+		long end = System.currentTimeMillis() + 5000;
+		while (!condition.holds()) {
+			assertTrue("timed out", System.currentTimeMillis() < end);
+			Thread.sleep(1);
+		}
+	}
+
+	@Test
+	public void ringWrapsAround() {
+		PcmRingBuffer ring = new PcmRingBuffer(100);
+		assertEquals(128, ring.capacity());
+		Random random = new Random(2);
+		byte[] buf = new byte[300];
+		long written = 0, read = 0;
+		for (int n = 0; n < 20000; n++) {
+			int len = random.nextInt(200);
+			for (int i = 0; i < len; i++)
+				buf[i] = byteAt(written + i);
+			int w = ring.write(buf, 0, len);
+			assertEquals(Math.min(len, ring.capacity() - (int) (written - read)), w);
+			written += w;
+
+			int off = random.nextInt(100);
+			int r = ring.read(buf, off, random.nextInt(200));
+			for (int i = 0; i < r; i++)
+				assertEquals(byteAt(read + i), buf[off + i]);
+			read += r;
+			assertEquals(written - read, ring.available());
+			assertEquals(ring.capacity(), ring.available() + ring.free());
+		}
+		assertTrue(written > ring.capacity() * 100);
+		assertEquals((int) (written - read), ring.clear());
+		assertEquals(0, ring.available());
+	}
+
+	@Test
+	public void fullRingRejectsWrites() {
+		PcmRingBuffer ring = new PcmRingBuffer(64);
+		byte[] buf = new byte[100];
+		assertEquals(64, ring.write(buf, 0, 100));
+		assertEquals(0, ring.free());
+		assertEquals(0, ring.write(buf, 0, 1));
+		assertEquals(10, ring.read(buf, 0, 10));
+		assertEquals(10, ring.write(buf, 0, 100));
+	}
+
+	@Test(timeout = 30000)
+	public void fullRingStopsDecoding() throws InterruptedException {
+		final FakeStream stream = new FakeStream(1L << 30, 3);
+		final StreamDecoder decoder = new StreamDecoder(CAPACITY);
+		try {
+			decoder.attach(stream);
+			await(new Condition() {
+				@Override
+				public boolean holds() { return decoder.getCapacity() - decoder.getBufferedBytes() < 4096; }
+			});
+
+			// the decoder waits for room instead of decoding further
+			long decoded = decoder.getDecodedBytes();
+			Thread.sleep(50);
+			assertEquals(decoded, decoder.getDecodedBytes());
+			assertEquals(decoded, decoder.getBufferedBytes());
+			assertTrue(decoded <= CAPACITY);
+
+			// and decodes again once the consumer reads
+			byte[] buf = new byte[8192];
+			int read = decoder.read(buf, 0, buf.length);
+			assertEquals(buf.length, read);
+			for (int i = 0; i < read; i++)
+				assertEquals(byteAt(i), buf[i]);
+			final long before = decoded;
+			await(new Condition() {
+				@Override
+				public boolean holds() { return decoder.getDecodedBytes() > before; }
+			});
+			assertEquals(0, decoder.getUnderrunCount());
+		} finally {
+			decoder.close();
+		}
+	}
+
+	@Test(timeout = 60000)
+	public void outputMatchesAcrossSeeks() throws InterruptedException {
+		final long length = 4 << 20;
+		FakeStream stream = new FakeStream(length, 4);
+		StreamDecoder decoder = new StreamDecoder(CAPACITY);
+		Random random = new Random(5);
+		byte[] buf = new byte[6000];
+		long position = 0, total = 0;
+		int seeks = 0;
+
+		// seeks only go back, so all happen before the end (SEEKS * SEEK_INTERVAL < length)
+		try {
+			decoder.attach(stream);
+			while (true) {
+				int read = decoder.read(buf, 0, 1 + random.nextInt(buf.length));
+				if (read < 0)
+					break;
+				if (read == 0) {
+					Thread.yield();
+					continue;
+				}
+				for (int i = 0; i < read; i++)
+					assertEquals("at " + (position + i), byteAt(position + i), buf[i]);
+				position += read;
+				total += read;
+
+				if (seeks < SEEKS && total >= (seeks + 1L) * SEEK_INTERVAL) {
+					// take the stream back: it is ahead by the unread bytes
+					int unread = decoder.detach();
+					assertFalse(decoder.isAttached());
+					assertEquals(position, stream.position - unread);
+					assertEquals(0, decoder.getBufferedBytes());
+					if (random.nextBoolean())
+						position = (long) (random.nextDouble() * position);  // seek
+					stream.position = position;
+					decoder.attach(stream);
+					seeks++;
+				}
+			}
+		} finally {
+			decoder.close();
+		}
+		assertEquals(length, position);
+		assertEquals(SEEKS, seeks);
+		assertTrue(total >= length);
+		assertFalse(decoder.isAttached());
+	}
+}
@@ -0,0 +1,131 @@
+/*
+ * opsu!dance - fork of opsu! with cursordance auto
+ * Copyright (C) 2016 yugecin
+ *
+ * opsu!dance is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * opsu!dance is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with opsu!dance.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package yugecin.opsudance;
+
+import static org.junit.Assert.*;
+
+import itdelatrisu.opsu.Options;
+import itdelatrisu.opsu.beatmap.Beatmap;
+import itdelatrisu.opsu.beatmap.BeatmapParser;
+import itdelatrisu.opsu.beatmap.HitObject;
+import itdelatrisu.opsu.objects.GameObject;
+import itdelatrisu.opsu.objects.curves.Vec2f;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class DanceBakerTest {
+
+	private static final int WIDTH = 1920;
+	private static final int HEIGHT = 1080;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	/**
+	 * Dances like the game does in "auto" mod without a baked track, one frame per track sample,
+	 * and checks every sample of the track against it.
+	 */
+	private static void assertLiveDance(DanceTrack track, Dancer dancer, GameObject[] gameObjects, int beatmapID, String name) {
+		dancer.setGameObjects(gameObjects);
+		dancer.reset();
+		dancer.resetMoverDirection(beatmapID);
+		dancer.pippi.reset();
+
+		Vec2f baked = new Vec2f();
+		int objectIndex = 0;
+		for (int i = 0; i < track.size(); i++) {
+			int time = track.getTime(i);
+			dancer.pippi.update(DanceTrack.STEP);
+			while (objectIndex < gameObjects.length && time > gameObjects[objectIndex].getEndTime()) {
+				objectIndex++;
+			}
+			float x, y;
+			if (objectIndex < gameObjects.length - dancer.getPolyMoverFactoryMinBufferSize()) {
+				dancer.update(time, objectIndex);
+				x = dancer.x;
+				y = dancer.y;
+			} else if (objectIndex > 0) {
+				Vec2f point = gameObjects[objectIndex - 1].getPointAt(time);
+				x = point.x;
+				y = point.y;
+			} else {
+				x = Options.width / 2;
+				y = Options.height / 2;
+			}
+			track.getPoint(time, baked);
+			if (x != baked.x || y != baked.y) {
+				fail(String.format("%s at %d ms: baked %s,%s live %s,%s", name, time, baked.x, baked.y, x, y));
+			}
+		}
+		dancer.setGameObjects(null);
+	}
+
+	private static DanceTrack bake(Dancer dancer, GameObject[] gameObjects, int beatmapID) throws InterruptedException {
+		dancer.setGameObjects(gameObjects);
+		DanceBaker baker = new DanceBaker(dancer, "test", gameObjects, null, beatmapID, 0);
+		baker.start();
+		while (!baker.isDone()) {
+			Thread.sleep(5);
+		}
+		dancer.setGameObjects(null);
+		assertNotNull(baker.getTrack());
+		return baker.getTrack();
+	}
+
+	/**
+	 * Bakes the mixed benchmark map with every mover on the baker thread, and compares the track
+	 * with dancing live. The same dancer bakes again afterwards, which must give the same track.
+	 */
+	@Test
+	public void bakedTrackIsLiveDance() throws IOException, InterruptedException {
+		Options.width = WIDTH;
+		Options.height = HEIGHT;
+		HitObject.init(WIDTH, HEIGHT);
+		File mixed = null;
+		for (File file : BenchmarkCorpus.write(folder.newFolder())) {
+			if (file.getName().contains("[mixed]")) {
+				mixed = file;
+			}
+		}
+		Beatmap beatmap = BeatmapParser.parseFile(mixed);
+		GameObject[] gameObjects = DanceReplayExporter.createGameObjects(beatmap);
+
+		Dancer baking = new Dancer(new DanceConfig());
+		Dancer live = new Dancer(new DanceConfig());
+		for (int m = 0; m < baking.moverFactories.length; m++) {
+			baking.setMoverFactoryIndex(m);
+			live.setMoverFactoryIndex(m);
+			String name = baking.moverFactories[m].toString();
+			DanceTrack track = bake(baking, gameObjects, beatmap.beatmapID);
+			assertLiveDance(track, live, gameObjects, beatmap.beatmapID, name);
+
+			DanceTrack again = bake(baking, gameObjects, beatmap.beatmapID);
+			Vec2f a = new Vec2f(), b = new Vec2f();
+			for (int i = 0; i < track.size(); i++) {
+				track.getPoint(track.getTime(i), a);
+				again.getPoint(track.getTime(i), b);
+				assertTrue(name + " rebaked at " + track.getTime(i) + " " + a.x + "," + a.y + " " + b.x + "," + b.y, a.x == b.x && a.y == b.y);
+			}
+		}
+	}
+}
@@ -0,0 +1,107 @@
+/*
+ * opsu!dance - fork of opsu! with cursordance auto
+ * Copyright (C) 2016 yugecin
+ *
+ * opsu!dance is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * opsu!dance is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with opsu!dance.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package yugecin.opsudance;
+
+import static org.junit.Assert.*;
+
+import itdelatrisu.opsu.GameData;
+import itdelatrisu.opsu.beatmap.Beatmap;
+import itdelatrisu.opsu.beatmap.BeatmapParser;
+import itdelatrisu.opsu.objects.GameObject;
+import itdelatrisu.opsu.replay.Replay;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class DanceReplayExporterTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	/**
+	 * Exports the benchmark corpus and checks the results in the replays against
+	 * playing the replays again.
+	 */
+	@Test
+	public void exportsJudgedReplays() throws IOException {
+		File outputDir = folder.newFolder();
+		DanceReplayExporter exporter = new DanceReplayExporter(outputDir);
+		for (File file : BenchmarkCorpus.write(folder.newFolder())) {
+			Replay replay = new Replay(exporter.export(file));
+			replay.load();
+
+			// play the loaded replay again: the results in the file are the results of the frames
+			Beatmap beatmap = BeatmapParser.parseFile(file);
+			GameData data = new GameData(1920, 1080);
+			GameObject[] gameObjects = DanceReplayExporter.createGameObjects(beatmap, data);
+			DanceReplayExporter.judge(beatmap, gameObjects, data, replay.frames);
+			assertEquals(data.getHitResultCount(GameData.HIT_300), replay.hit300);
+			assertEquals(data.getHitResultCount(GameData.HIT_100), replay.hit100);
+			assertEquals(data.getHitResultCount(GameData.HIT_50), replay.hit50);
+			assertEquals(data.getHitResultCount(GameData.HIT_MISS), replay.miss);
+			assertEquals(data.getComboMax(), replay.combo);
+			assertEquals(data.getScore(), replay.score);
+
+			// one result per object, and only perfect without misses
+			assertEquals(gameObjects.length, replay.hit300 + replay.hit100 + replay.hit50 + replay.miss);
+			assertTrue(replay.score > 0);
+			if (replay.perfect) {
+				assertEquals(0, replay.miss);
+			}
+		}
+	}
+
+	/**
+	 * Workers get their beatmaps in a list file, and the JVM arguments of this process.
+	 */
+	@Test
+	public void workersReadBeatmapList() throws IOException {
+		List<File> corpus = BenchmarkCorpus.write(folder.newFolder());
+		File list = folder.newFile();
+		List<String> lines = new ArrayList<>();
+		for (File file : corpus) {
+			lines.add(file.getAbsolutePath());
+			lines.add("");
+		}
+		Files.write(list.toPath(), lines, StandardCharsets.UTF_8);
+
+		List<File> beatmaps = new ArrayList<>();
+		DanceReplayExporter.addBeatmapList(beatmaps, list);
+		assertEquals(corpus, beatmaps);
+
+		File outputDir = folder.newFolder();
+		List<String> command = new DanceReplayExporter(outputDir).workerCommand(Arrays.asList("-mover", "1"), list);
+		List<String> jvmArgs = ManagementFactory.getRuntimeMXBean().getInputArguments();
+		assertEquals(command.subList(1, 1 + jvmArgs.size()), jvmArgs);
+		assertEquals(Arrays.asList(DanceReplayExporter.class.getName(), "-mover", "1", "-o", outputDir.getAbsolutePath(),
+				"-jobs", "1", "-beatmaps", list.getAbsolutePath()), command.subList(command.size() - 9, command.size()));
+		for (File file : corpus) {
+			assertFalse(command.contains(file.getAbsolutePath()));
+		}
+	}
+}
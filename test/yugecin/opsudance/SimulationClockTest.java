@@ -0,0 +1,131 @@
+/*
+ * opsu!dance - fork of opsu! with cursordance auto
+ * Copyright (C) 2016 yugecin
+ *
+ * opsu!dance is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * opsu!dance is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with opsu!dance.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package yugecin.opsudance;
+
+import static org.junit.Assert.*;
+
+import itdelatrisu.opsu.Options;
+import itdelatrisu.opsu.audio.MusicClock;
+import itdelatrisu.opsu.beatmap.Beatmap;
+import itdelatrisu.opsu.beatmap.BeatmapParser;
+import itdelatrisu.opsu.beatmap.HitObject;
+import itdelatrisu.opsu.objects.GameObject;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class SimulationClockTest {
+
+	private static final int FPS = 60;
+	private static final int FRAMES = FPS * 60;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	/** Frames of a run: delta, track position, cursor x and y. */
+	private static class Run {
+		final int[] deltas = new int[FRAMES];
+		final int[] positions = new int[FRAMES];
+		final float[] xs = new float[FRAMES];
+		final float[] ys = new float[FRAMES];
+	}
+
+	/**
+	 * Runs the frames like the game loop does with a fixed frame rate: the music clock follows
+	 * the simulation clock, and the dancer follows the music position. Rendering takes a random
+	 * time, which must not change anything.
+	 */
+	private static Run run(GameObject[] gameObjects, int beatmapID, long seed) throws InterruptedException {
+		Random random = new Random(seed);
+		SimulationClock clock = new SimulationClock();
+		MusicClock music = new MusicClock(new MusicClock.Source() {
+			@Override
+			public float getPosition() { throw new IllegalStateException("fixed clock read the audio position"); }
+
+			@Override
+			public float getPitch() { return 1f; }
+		});
+		Dancer dancer = new Dancer(new DanceConfig());
+		dancer.setGameObjects(gameObjects);
+		dancer.reset();
+		dancer.resetMoverDirection(beatmapID);
+
+		Run run = new Run();
+		try {
+			clock.setFixedFrameRate(FPS);
+			music.setFixed(true);
+			music.invalidate(0);
+			int objectIndex = 0;
+			for (int frame = 0; frame < FRAMES; frame++) {
+				if (random.nextInt(50) == 0)
+					Thread.sleep(1 + random.nextInt(3));
+				int delta = clock.nextFrame(5 + random.nextInt(100));
+				music.update(clock.getTime());
+				int position = (int) music.getPosition();
+				while (objectIndex < gameObjects.length && position > gameObjects[objectIndex].getEndTime())
+					objectIndex++;
+				if (objectIndex < gameObjects.length - dancer.getPolyMoverFactoryMinBufferSize())
+					dancer.update(position, objectIndex);
+				run.deltas[frame] = delta;
+				run.positions[frame] = position;
+				run.xs[frame] = dancer.x;
+				run.ys[frame] = dancer.y;
+			}
+		} finally {
+			clock.setFixedFrameRate(0);
+			dancer.setGameObjects(null);
+		}
+		return run;
+	}
+
+	@Test
+	public void fixedFramesAreTheSameEveryRun() throws IOException, InterruptedException {
+		Options.width = 1920;
+		Options.height = 1080;
+		HitObject.init(Options.width, Options.height);
+		File mixed = null;
+		for (File file : BenchmarkCorpus.write(folder.newFolder())) {
+			if (file.getName().contains("[mixed]"))
+				mixed = file;
+		}
+		Beatmap beatmap = BeatmapParser.parseFile(mixed);
+		GameObject[] gameObjects = DanceReplayExporter.createGameObjects(beatmap);
+
+		Run a = run(gameObjects, beatmap.beatmapID, 1);
+		Run b = run(gameObjects, beatmap.beatmapID, 2);
+		assertArrayEquals(a.deltas, b.deltas);
+		assertArrayEquals(a.positions, b.positions);
+		assertArrayEquals(a.xs, b.xs, 0f);
+		assertArrayEquals(a.ys, b.ys, 0f);
+
+		// the deltas add up to the exact time, and the track follows them
+		int time = 0;
+		for (int frame = 0; frame < FRAMES; frame++) {
+			time += a.deltas[frame];
+			if ((frame + 1) % FPS == 0)
+				assertEquals((frame + 1) / FPS * 1000, time);
+		}
+		// (the music clock starts at 0 on the first frame)
+		assertEquals((FRAMES - 1) * 1000 / FPS, a.positions[FRAMES - 1]);
+	}
+}